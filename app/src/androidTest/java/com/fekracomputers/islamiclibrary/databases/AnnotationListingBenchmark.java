@@ -0,0 +1,123 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.fekracomputers.islamiclibrary.model.PageInfo;
+import com.fekracomputers.islamiclibrary.model.Title;
+import com.fekracomputers.islamiclibrary.utility.StorageUtils;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Compares resolving the page and parent title of every row of a bookmarks or highlights listing
+ * with {@link BookDatabaseHelper#getPageInfoByPageId(int)} and {@link BookDatabaseHelper#getParentTitle(int)}
+ * against {@link BookDatabaseHelper#getPagesAndParentTitles(int[])} on a generated book, the results
+ * are logged under {@value #TAG}
+ * <p>
+ * the book is generated where the helper looks for book {@value #BOOK_ID} and deleted after
+ */
+public class AnnotationListingBenchmark extends AndroidTestCase {
+    private static final String TAG = "AnnotationListingBench";
+    private static final int BOOK_ID = Integer.MAX_VALUE;
+    private static final int PAGE_COUNT = 30000;
+    private static final int PAGES_PER_TITLE = 7;
+    private static final int[] ANNOTATION_COUNTS = {10, 1000, 10000};
+
+    private File mBookFile;
+    private BookDatabaseHelper mBookDatabaseHelper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        File booksDir = new File(StorageUtils.getIslamicLibraryShamelaBooksDir(getContext()));
+        assertTrue(booksDir.isDirectory() || booksDir.mkdirs());
+        mBookFile = new File(booksDir, BOOK_ID + SQL.DOT_SEPARATOR + BooksInformationDbHelper.DATABASE_EXTENSION);
+        SQLiteDatabase.deleteDatabase(mBookFile);
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(mBookFile, null);
+        db.execSQL("CREATE TABLE " + BookDatabaseContract.InfoEntry.TABLE_NAME + " (" +
+                BookDatabaseContract.InfoEntry.COLUMN_NAME_NAME + " TEXT" + SQL.COMMA +
+                BookDatabaseContract.InfoEntry.COLUMN_NAME_VALUE + " TEXT)");
+        db.execSQL("CREATE TABLE " + BookDatabaseContract.PageEntry.TABLE_NAME + " (" +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE + " TEXT)");
+        db.execSQL("CREATE TABLE " + BookDatabaseContract.TitlesEntry.TABLE_NAME + " (" +
+                BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.COLUMN_NAME_PARENT_ID + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.COLUMN_NAME_TITLE + " TEXT)");
+        //the indexes are created by the helper when it opens the book
+        SQLiteStatement insertPage = db.compileStatement("INSERT INTO " + BookDatabaseContract.PageEntry.TABLE_NAME + " VALUES (?,?,?,?)");
+        SQLiteStatement insertTitle = db.compileStatement("INSERT INTO " + BookDatabaseContract.TitlesEntry.TABLE_NAME + " VALUES (?,?,?,?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                insertPage.bindLong(1, i + 1);
+                insertPage.bindLong(2, 1 + i / 1000);
+                insertPage.bindLong(3, 1 + i % 1000);
+                insertPage.bindString(4, "page " + i);
+                insertPage.executeInsert();
+                if (i % PAGES_PER_TITLE == 0) {
+                    insertTitle.bindLong(1, i / PAGES_PER_TITLE + 1);
+                    insertTitle.bindLong(2, 0);
+                    insertTitle.bindLong(3, i + 1);
+                    insertTitle.bindString(4, "title " + i);
+                    insertTitle.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        insertPage.close();
+        insertTitle.close();
+        db.close();
+        mBookDatabaseHelper = BookDatabaseHelper.acquire(getContext(), BOOK_ID);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mBookDatabaseHelper.release();
+        BookDatabaseHelper.closeStatic(BOOK_ID, getContext());
+        SQLiteDatabase.deleteDatabase(mBookFile);
+        super.tearDown();
+    }
+
+    public void testListingQueries() throws Exception {
+        Random random = new Random(1);
+        for (int count : ANNOTATION_COUNTS) {
+            int[] pageIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                pageIds[i] = 1 + random.nextInt(PAGE_COUNT);
+            }
+
+            PageInfo[] pageInfos = new PageInfo[count];
+            Title[] parentTitles = new Title[count];
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                pageInfos[i] = mBookDatabaseHelper.getPageInfoByPageId(pageIds[i]);
+                parentTitles[i] = mBookDatabaseHelper.getParentTitle(pageIds[i]);
+            }
+            long perRowNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            SparseArray<BookDatabaseHelper.PageAndParentTitle> pages = mBookDatabaseHelper.getPagesAndParentTitles(pageIds);
+            long batchNanos = System.nanoTime() - start;
+
+            Log.i(TAG, String.format("%d annotations: per row %.0f us, one query %.0f us",
+                    count, perRowNanos / 1e3, batchNanos / 1e3));
+            for (int i = 0; i < count; i++) {
+                BookDatabaseHelper.PageAndParentTitle page = pages.get(pageIds[i]);
+                assertEquals(pageInfos[i].partNumber, page.pageInfo.partNumber);
+                assertEquals(pageInfos[i].pageNumber, page.pageInfo.pageNumber);
+                assertEquals(parentTitles[i].id, page.parentTitle.id);
+            }
+        }
+    }
+}
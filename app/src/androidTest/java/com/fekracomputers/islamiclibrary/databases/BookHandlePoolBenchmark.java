@@ -0,0 +1,165 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Debug;
+import android.support.annotation.NonNull;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * Runs the queries of a global search over a generated library of {@value #BOOK_COUNT} books with
+ * every book left open as before and with the books pooled by a {@link BookHandleRegistry} of
+ * {@link BookDatabaseHelper#MAX_OPEN_BOOKS}, the open file descriptors and the native heap are
+ * logged under {@value #TAG}
+ */
+public class BookHandlePoolBenchmark extends AndroidTestCase {
+    private static final String TAG = "BookHandlePoolBench";
+    private static final int BOOK_COUNT = 500;
+    private static final int PAGES_PER_BOOK = 200;
+    private static final String PAGE_TEXT = new String(new char[1000]).replace('\0', 'ب');
+
+    private File mBooksDir;
+
+    private static class Book {
+        @NonNull
+        final File file;
+        private SQLiteDatabase mDatabase;
+
+        Book(@NonNull File file) {
+            this.file = file;
+        }
+
+        synchronized SQLiteDatabase getDatabase() {
+            if (mDatabase == null) {
+                mDatabase = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+            }
+            return mDatabase;
+        }
+
+        synchronized void close() {
+            if (mDatabase != null) {
+                mDatabase.close();
+                mDatabase = null;
+            }
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBooksDir = new File(getContext().getCacheDir(), "book_pool_benchmark");
+        mBooksDir.mkdirs();
+        for (int bookId = 1; bookId <= BOOK_COUNT; bookId++) {
+            File bookFile = bookFile(bookId);
+            if (bookFile.exists()) continue;
+            SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(bookFile, null);
+            database.execSQL("CREATE TABLE " + BookDatabaseContract.PageEntry.TABLE_NAME + " (" +
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + SQL.INTEGER + SQL.COMMA +
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + SQL.INTEGER + SQL.COMMA +
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE + " TEXT)");
+            SQLiteStatement insert = database.compileStatement("INSERT INTO " + BookDatabaseContract.PageEntry.TABLE_NAME + " VALUES (?,?,?,?)");
+            database.beginTransaction();
+            try {
+                for (int i = 0; i < PAGES_PER_BOOK; i++) {
+                    insert.bindLong(1, i + 1);
+                    insert.bindLong(2, 1);
+                    insert.bindLong(3, i + 1);
+                    insert.bindString(4, PAGE_TEXT);
+                    insert.executeInsert();
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            insert.close();
+            database.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (int bookId = 1; bookId <= BOOK_COUNT; bookId++) {
+            SQLiteDatabase.deleteDatabase(bookFile(bookId));
+        }
+        mBooksDir.delete();
+        super.tearDown();
+    }
+
+    @NonNull
+    private File bookFile(int bookId) {
+        return new File(mBooksDir, bookId + ".sqlite");
+    }
+
+    private static int countOpenFileDescriptors() {
+        String[] fds = new File("/proc/self/fd").list();
+        return fds == null ? -1 : fds.length;
+    }
+
+    private void searchAllBooks(@NonNull BookHandleRegistry<Book> registry) {
+        for (int bookId = 1; bookId <= BOOK_COUNT; bookId++) {
+            Book book = registry.acquire(bookId, id -> new Book(bookFile(id)));
+            try {
+                //reads every page like a search without the fts index
+                Cursor c = book.getDatabase().rawQuery(SQL.SELECT + "count(*)" + SQL.FROM + BookDatabaseContract.PageEntry.TABLE_NAME +
+                        SQL.WHERE + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE + " LIKE '%ا%'", null);
+                c.moveToFirst();
+                c.close();
+            } finally {
+                registry.release(bookId, book);
+            }
+        }
+    }
+
+    private void logAndClose(@NonNull String name, @NonNull BookHandleRegistry<Book> registry,
+                             int fdsBefore, long heapBefore, long nanos) {
+        Log.i(TAG, String.format("%s: %d fds and %d KB native heap more, %.0f ms, %s",
+                name,
+                countOpenFileDescriptors() - fdsBefore,
+                (Debug.getNativeHeapAllocatedSize() - heapBefore) / 1024,
+                nanos / 1e6,
+                registry.getStats()));
+        for (int bookId = 1; bookId <= BOOK_COUNT; bookId++) {
+            Book book = registry.peek(bookId);
+            if (book != null) book.close();
+        }
+    }
+
+    public void testGlobalSearchOverLibrary() throws Exception {
+        BookHandleRegistry.Validator<Book> validator = new BookHandleRegistry.Validator<Book>() {
+            @NonNull
+            @Override
+            public File getFile(@NonNull Book handle) {
+                return handle.file;
+            }
+
+            @Override
+            public boolean isValid(@NonNull Book handle) {
+                return true;
+            }
+        };
+
+        int fdsBefore = countOpenFileDescriptors();
+        long heapBefore = Debug.getNativeHeapAllocatedSize();
+        BookHandleRegistry<Book> unbounded = new BookHandleRegistry<>(validator);
+        long start = System.nanoTime();
+        searchAllBooks(unbounded);
+        long unboundedNanos = System.nanoTime() - start;
+        assertEquals(BOOK_COUNT, unbounded.getOpenCount());
+        logAndClose("every book left open", unbounded, fdsBefore, heapBefore, unboundedNanos);
+
+        fdsBefore = countOpenFileDescriptors();
+        heapBefore = Debug.getNativeHeapAllocatedSize();
+        BookHandleRegistry<Book> pool = new BookHandleRegistry<>(validator, Book::close,
+                BookDatabaseHelper.MAX_OPEN_BOOKS, BookDatabaseHelper.BOOK_IDLE_TIMEOUT_MILLIS);
+        start = System.nanoTime();
+        searchAllBooks(pool);
+        long poolNanos = System.nanoTime() - start;
+        assertTrue(pool.getOpenCount() <= BookDatabaseHelper.MAX_OPEN_BOOKS);
+        logAndClose("pool of " + BookDatabaseHelper.MAX_OPEN_BOOKS, pool, fdsBefore, heapBefore, poolNanos);
+    }
+}
@@ -0,0 +1,110 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.support.annotation.NonNull;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * Compares running the schema probes of {@link DBValidator} on every getInstance of a book as
+ * before with validating it once per file through a {@link BookHandleRegistry}, on a generated
+ * book, the results are logged under {@value #TAG}
+ */
+public class BookValidationBenchmark extends AndroidTestCase {
+    private static final String TAG = "BookValidationBench";
+    private static final int BOOK_ID = 1;
+    private static final int CALLS = 2000;
+
+    private File mBookFile;
+
+    private static class Book extends SQLiteOpenHelper {
+        @NonNull
+        final File file;
+
+        Book(@NonNull Context context, @NonNull File file) {
+            super(context, file.getPath(), null, 1);
+            this.file = file;
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        }
+
+        boolean isValid() {
+            DBValidator dBValidator = new DBValidator(DBValidator.DataBaseType.BOOK_DATABASE_TYPE);
+            dBValidator.validate(this);
+            return dBValidator.isValid();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBookFile = new File(getContext().getCacheDir(), "book_validation_benchmark.sqlite");
+        SQLiteDatabase.deleteDatabase(mBookFile);
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(mBookFile, null);
+        db.execSQL("CREATE TABLE " + BookDatabaseContract.InfoEntry.TABLE_NAME + " (" +
+                BookDatabaseContract.InfoEntry.COLUMN_NAME_NAME + " TEXT" + SQL.COMMA +
+                BookDatabaseContract.InfoEntry.COLUMN_NAME_VALUE + " TEXT)");
+        db.execSQL("CREATE TABLE " + BookDatabaseContract.PageEntry.TABLE_NAME + " (" +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE + " TEXT)");
+        db.execSQL("CREATE TABLE " + BookDatabaseContract.TitlesEntry.TABLE_NAME + " (" +
+                BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.COLUMN_NAME_PARENT_ID + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.COLUMN_NAME_TITLE + " TEXT)");
+        db.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SQLiteDatabase.deleteDatabase(mBookFile);
+        super.tearDown();
+    }
+
+    public void testGetInstanceValidation() throws Exception {
+        Book book = new Book(getContext(), mBookFile);
+        //opens the book before timing
+        assertTrue(book.isValid());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            assertTrue(book.isValid());
+        }
+        double everyTimeMillis = (System.nanoTime() - start) / 1e6;
+
+        BookHandleRegistry<Book> registry = new BookHandleRegistry<>(new BookHandleRegistry.Validator<Book>() {
+            @NonNull
+            @Override
+            public File getFile(@NonNull Book handle) {
+                return handle.file;
+            }
+
+            @Override
+            public boolean isValid(@NonNull Book handle) {
+                return handle.isValid();
+            }
+        });
+        start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            assertTrue(registry.validate(BOOK_ID, registry.get(BOOK_ID, id -> book)));
+        }
+        double registryMillis = (System.nanoTime() - start) / 1e6;
+        book.close();
+
+        Log.i(TAG, String.format("%d getInstance calls: validated every time %.1f ms, once per file %.1f ms",
+                CALLS, everyTimeMillis, registryMillis));
+        Log.i(TAG, registry.getStats());
+    }
+}
@@ -0,0 +1,171 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.fekracomputers.islamiclibrary.utility.StorageUtils;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Compares the page loads and fts queries of a book opened with every {@link ConnectionProfile},
+ * the results are logged under {@value #TAG}
+ * <p>
+ * the biggest downloaded and indexed book on the device is used, a generated book of
+ * {@value #PAGE_COUNT} pages if there is none
+ */
+public class ConnectionProfileBenchmark extends AndroidTestCase {
+    private static final String TAG = "ConnectionProfileBench";
+    private static final int PAGE_COUNT = 20000;
+    private static final int PAGE_LOADS = 500;
+    private static final String[] QUERIES = {"الله", "قال", "النبي", "صلى", "الصلاة", "كتاب"};
+    private static final String[] WORDS = {"الله", "قال", "النبي", "صلى", "عليه", "وسلم", "الصلاة", "كتاب", "باب", "حدثنا"};
+    private static final ConnectionProfile NO_PROFILE = new ConnectionProfile("default", null,
+            ConnectionProfile.UNSET, ConnectionProfile.UNSET, ConnectionProfile.TEMP_STORE_DEFAULT, false);
+
+    private File mBookFile;
+    private boolean mGenerated;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBookFile = findBiggestIndexedBook();
+        if (mBookFile == null) {
+            mGenerated = true;
+            mBookFile = new File(getContext().getCacheDir(), "connection_profile_benchmark.sqlite");
+            generateBook(mBookFile);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mGenerated) SQLiteDatabase.deleteDatabase(mBookFile);
+        super.tearDown();
+    }
+
+    @Nullable
+    private File findBiggestIndexedBook() {
+        File[] books = new File(StorageUtils.getIslamicLibraryShamelaBooksDir(getContext())).listFiles();
+        if (books == null) return null;
+        File biggest = null;
+        for (File book : books) {
+            if (!book.getName().endsWith(".sqlite")) continue;
+            if (biggest != null && book.length() <= biggest.length()) continue;
+            SQLiteDatabase db = SQLiteDatabase.openDatabase(book.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+            try {
+                if (DatabaseUtils.queryNumEntries(db, "sqlite_master", "name=?",
+                        new String[]{BookDatabaseContract.pagesTextSearch.TABLE_NAME}) > 0) {
+                    biggest = book;
+                }
+            } finally {
+                db.close();
+            }
+        }
+        return biggest;
+    }
+
+    static void generateBook(@NonNull File bookFile) {
+        SQLiteDatabase.deleteDatabase(bookFile);
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(bookFile, null);
+        db.execSQL("CREATE TABLE " + BookDatabaseContract.PageEntry.TABLE_NAME + " (" +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE + " TEXT)");
+        db.execSQL("CREATE VIRTUAL TABLE " + BookDatabaseContract.pagesTextSearch.TABLE_NAME +
+                " USING fts4(" + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + ")");
+        SQLiteStatement insertPage = db.compileStatement("INSERT INTO " + BookDatabaseContract.PageEntry.TABLE_NAME + " VALUES (?,?,?,?)");
+        SQLiteStatement insertFts = db.compileStatement(BookDatabaseHelper.POPULATE_BOOKS_FTS_SQL);
+        Random random = new Random(1);
+        StringBuilder page = new StringBuilder();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                page.setLength(0);
+                for (int w = 0; w < 250; w++) {
+                    page.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                insertPage.bindLong(1, i + 1);
+                insertPage.bindLong(2, 1 + i / 1000);
+                insertPage.bindLong(3, 1 + i % 1000);
+                insertPage.bindString(4, page.toString());
+                insertPage.executeInsert();
+                insertFts.bindLong(1, i + 1);
+                insertFts.bindString(2, page.toString());
+                insertFts.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        insertPage.close();
+        insertFts.close();
+        db.close();
+    }
+
+    private long loadPages(@NonNull SQLiteDatabase db, int maxPageId) {
+        Random random = new Random(2);
+        long sink = 0;
+        for (int i = 0; i < PAGE_LOADS; i++) {
+            Cursor c = db.query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                    new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE},
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + "=?",
+                    new String[]{String.valueOf(1 + random.nextInt(maxPageId))},
+                    null, null, null);
+            if (c.moveToFirst()) sink += c.getString(0).length();
+            c.close();
+        }
+        return sink;
+    }
+
+    private long searchPages(@NonNull SQLiteDatabase db) {
+        long sink = 0;
+        for (String query : QUERIES) {
+            Cursor c = db.rawQuery(SQL.SELECT + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id +
+                            SQL.FROM + BookDatabaseContract.pagesTextSearch.TABLE_NAME +
+                            SQL.WHERE + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + SQL.MATCH + "?" +
+                            " ORDER BY " + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + " DESC",
+                    new String[]{query});
+            while (c.moveToNext()) sink += c.getLong(0);
+            c.close();
+        }
+        return sink;
+    }
+
+    public void testProfiles() throws Exception {
+        ConnectionProfile[] profiles = {NO_PROFILE, ConnectionProfile.BOOK, ConnectionProfile.SEARCH};
+        Log.i(TAG, String.format("book %s, %d KB", mBookFile.getName(), mBookFile.length() / 1024));
+        //the first open warms the file system cache so every profile starts from the same state
+        for (int round = 0; round < 2; round++) {
+            for (ConnectionProfile profile : profiles) {
+                //the benchmark only reads, a downloaded book is never written by it
+                SQLiteDatabase db = SQLiteDatabase.openDatabase(mBookFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+                try {
+                    profile.apply(db);
+                    int maxPageId = (int) DatabaseUtils.longForQuery(db,
+                            SQL.SELECT + "max(" + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + ")" +
+                                    SQL.FROM + BookDatabaseContract.PageEntry.TABLE_NAME, null);
+                    long start = System.nanoTime();
+                    long sink = loadPages(db, maxPageId);
+                    long pageNanos = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    sink += searchPages(db);
+                    long searchNanos = System.nanoTime() - start;
+                    if (round == 1) {
+                        Log.i(TAG, String.format("%s: page load %.1f us, fts query %.0f us (%d)",
+                                profile, pageNanos / 1e3 / PAGE_LOADS, searchNanos / 1e3 / QUERIES.length, sink & 1));
+                    }
+                } finally {
+                    db.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Compares the cost of the position queries run on every swipe before and after {@link PageIdIndex}
+ * on a generated 30k pages book, the results are logged under {@value #TAG}
+ */
+public class PageIdIndexBenchmark extends AndroidTestCase {
+    private static final String TAG = "PageIdIndexBenchmark";
+    private static final int PAGE_COUNT = 30000;
+    private static final int SWIPES = 500;
+    private static final String PAGE_TEXT = new String(new char[1000]).replace('\0', 'ب');
+
+    private File mBookFile;
+    private SQLiteDatabase mDatabase;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBookFile = new File(getContext().getCacheDir(), "page_id_index_benchmark.sqlite");
+        SQLiteDatabase.deleteDatabase(mBookFile);
+        mDatabase = SQLiteDatabase.openOrCreateDatabase(mBookFile, null);
+        mDatabase.execSQL("CREATE TABLE " + BookDatabaseContract.PageEntry.TABLE_NAME + " (" +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + SQL.INTEGER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE + " TEXT)");
+        SQLiteStatement insert = mDatabase.compileStatement("INSERT INTO " + BookDatabaseContract.PageEntry.TABLE_NAME + " VALUES (?,?,?,?)");
+        mDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                //real books have gaps in their page ids
+                insert.bindLong(1, i * 2 + 1);
+                insert.bindLong(2, 1 + i / 1000);
+                insert.bindLong(3, 1 + i % 1000);
+                insert.bindString(4, PAGE_TEXT);
+                insert.executeInsert();
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        insert.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDatabase.close();
+        SQLiteDatabase.deleteDatabase(mBookFile);
+        super.tearDown();
+    }
+
+    private int queryPosition2PageId(int position) {
+        Cursor c = mDatabase.query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID},
+                null, null, null, null,
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " ASC ",
+                position + SQL.COMMA + 1);
+        c.moveToFirst();
+        int pageId = c.getInt(0);
+        c.close();
+        return pageId;
+    }
+
+    private int queryPageId2position(int pageId) {
+        Cursor c = mDatabase.query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                new String[]{"count(*)-1"},
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " <=?",
+                new String[]{String.valueOf(pageId)},
+                null, null, null);
+        c.moveToFirst();
+        int position = c.getInt(0);
+        c.close();
+        return position;
+    }
+
+    private PageIdIndex buildIndex() {
+        Cursor c = mDatabase.query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID},
+                null, null, null, null,
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " ASC ");
+        int[] pageIds = new int[c.getCount()];
+        int i = 0;
+        while (c.moveToNext()) {
+            pageIds[i++] = c.getInt(0);
+        }
+        c.close();
+        return new PageIdIndex(pageIds);
+    }
+
+    public void testSwipeQueries() throws Exception {
+        Random random = new Random(1);
+        int[] positions = new int[SWIPES];
+        for (int i = 0; i < SWIPES; i++) {
+            positions[i] = random.nextInt(PAGE_COUNT);
+        }
+
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int position : positions) {
+            sink += queryPageId2position(queryPosition2PageId(position));
+        }
+        long queriesNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        PageIdIndex pageIdIndex = buildIndex();
+        long buildNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int position : positions) {
+            sink -= pageIdIndex.pageId2position(pageIdIndex.position2PageId(position));
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("queries: %.1f us/swipe, index: %.1f us/swipe, index build: %.1f ms (%d)",
+                queriesNanos / 1e3 / SWIPES, indexNanos / 1e3 / SWIPES, buildNanos / 1e6, sink & 1));
+        for (int position : positions) {
+            assertEquals(queryPosition2PageId(position), pageIdIndex.position2PageId(position));
+            assertEquals(position, pageIdIndex.pageId2position(queryPosition2PageId(position)));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs page loads and fts queries on a generated book from 1, 2 and 4 threads sharing one
+ * connection as the threads of a book did before and sharing a {@link ReadConnectionPool} of
+ * {@link BookDatabaseHelper#MAX_READ_CONNECTIONS}, the queries per second are logged under
+ * {@value #TAG}
+ */
+public class ReadConnectionBenchmark extends AndroidTestCase {
+    private static final String TAG = "ReadConnectionBench";
+    private static final long MEASURE_MILLIS = 3000;
+    private static final String[] QUERIES = {"الله", "قال", "النبي", "صلى", "الصلاة", "كتاب"};
+
+    private File mBookFile;
+    private int mMaxPageId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBookFile = new File(getContext().getCacheDir(), "read_connection_benchmark.sqlite");
+        ConnectionProfileBenchmark.generateBook(mBookFile);
+        SQLiteDatabase db = openReadOnly();
+        mMaxPageId = (int) DatabaseUtils.longForQuery(db,
+                SQL.SELECT + "max(" + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + ")" +
+                        SQL.FROM + BookDatabaseContract.PageEntry.TABLE_NAME, null);
+        db.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SQLiteDatabase.deleteDatabase(mBookFile);
+        super.tearDown();
+    }
+
+    @NonNull
+    private SQLiteDatabase openReadOnly() {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(mBookFile.getPath(), null,
+                SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+        ConnectionProfile.SEARCH.apply(db);
+        return db;
+    }
+
+    /**
+     * every fourth query is an fts query the others load a page, like a search running while the
+     * reader pages through the book
+     */
+    private static long runQuery(@NonNull SQLiteDatabase db, @NonNull Random random, int maxPageId, int i) {
+        long sink = 0;
+        Cursor c;
+        if (i % 4 == 0) {
+            c = db.rawQuery(SQL.SELECT + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id +
+                            SQL.FROM + BookDatabaseContract.pagesTextSearch.TABLE_NAME +
+                            SQL.WHERE + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + SQL.MATCH + "?" +
+                            " LIMIT 500",
+                    new String[]{QUERIES[random.nextInt(QUERIES.length)]});
+            while (c.moveToNext()) sink += c.getLong(0);
+        } else {
+            c = db.query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                    new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE},
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + "=?",
+                    new String[]{String.valueOf(1 + random.nextInt(maxPageId))},
+                    null, null, null);
+            if (c.moveToFirst()) sink += c.getString(0).length();
+        }
+        c.close();
+        return sink;
+    }
+
+    private double measure(@NonNull ReadConnectionPool<SQLiteDatabase> pool, int readers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        AtomicLong queries = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + MEASURE_MILLIS * 1000000;
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int t = 0; t < readers; t++) {
+            final int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                long sink = 0;
+                for (int i = 0; System.nanoTime() < end; i++) {
+                    SQLiteDatabase db = pool.acquire();
+                    try {
+                        sink += runQuery(db, random, mMaxPageId, i);
+                    } finally {
+                        pool.release(db);
+                    }
+                    queries.incrementAndGet();
+                }
+                return sink;
+            }));
+        }
+        long sink = 0;
+        for (Future<Long> future : futures) sink += future.get();
+        long nanos = System.nanoTime() - start;
+        executor.shutdown();
+        pool.close();
+        Log.d(TAG, "sink " + (sink & 1));
+        return queries.get() * 1e9 / nanos;
+    }
+
+    @NonNull
+    private ReadConnectionPool<SQLiteDatabase> newPool(int maxConnections) {
+        return new ReadConnectionPool<>(new ReadConnectionPool.Opener<SQLiteDatabase>() {
+            @NonNull
+            @Override
+            public SQLiteDatabase open() {
+                return openReadOnly();
+            }
+
+            @Override
+            public void close(@NonNull SQLiteDatabase connection) {
+                connection.close();
+            }
+        }, maxConnections);
+    }
+
+    public void testConcurrentReaders() throws Exception {
+        //warms the file system cache
+        measure(newPool(1), 1);
+        for (int readers : new int[]{1, 2, 4}) {
+            double shared = measure(newPool(1), readers);
+            double pooled = measure(newPool(BookDatabaseHelper.MAX_READ_CONNECTIONS), readers);
+            Log.i(TAG, String.format("%d readers: one connection %.0f queries/s, %d connections %.0f queries/s",
+                    readers, shared, BookDatabaseHelper.MAX_READ_CONNECTIONS, pooled));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.fekracomputers.islamiclibrary.model.PageInfo;
+import com.fekracomputers.islamiclibrary.utility.LatencyStats;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares what a burst of highlight changes costs the caller when every change is written right
+ * away as it was before with queuing them on a {@link UserDataWriter}, the results are logged under
+ * {@value #TAG}
+ */
+public class UserDataWriterBenchmark extends AndroidTestCase {
+    private static final String TAG = "UserDataWriterBench";
+    private static final int BOOK_ID = 7;
+    private static final int PAGES = 4;
+    private static final int UPDATES_PER_PAGE = 50;
+
+    private File mDatabaseFile;
+    private SQLiteDatabase mDatabase;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDatabaseFile = new File(getContext().getCacheDir(), "user_data_writer_benchmark.sqlite");
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+        mDatabase = SQLiteDatabase.openOrCreateDatabase(mDatabaseFile, null);
+        mDatabase.execSQL(UserDataDBContract.SerializedHighlightEntry.CREATE_STATEMENT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDatabase.close();
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+        super.tearDown();
+    }
+
+    private void write(int pageId, String serializedHighlights) {
+        ContentValues highlights = new ContentValues();
+        highlights.put(UserDataDBContract.SerializedHighlightEntry.COLUMN_NAME_BOOK_ID, BOOK_ID);
+        highlights.put(UserDataDBContract.SerializedHighlightEntry.COLUMN_NAME_PAGE_ID, pageId);
+        highlights.put(UserDataDBContract.SerializedHighlightEntry.COLUMN_NAME_SERIALIZED_HIGHLIGHTS, serializedHighlights);
+        mDatabase.replace(UserDataDBContract.SerializedHighlightEntry.TABLE_NAME, null, highlights);
+    }
+
+    private static String highlights(int pageId, int version) {
+        return "type:textContent|0$" + version + "$" + pageId + "$highlight1$";
+    }
+
+    public void testBurstOfHighlightChanges() throws Exception {
+        LatencyStats direct = new LatencyStats("highlight written by the caller");
+        for (int version = 0; version < UPDATES_PER_PAGE; version++) {
+            for (int pageId = 1; pageId <= PAGES; pageId++) {
+                long start = System.nanoTime();
+                write(pageId, highlights(pageId, version));
+                direct.record(System.nanoTime() - start);
+            }
+        }
+        Log.i(TAG, direct.getStats());
+
+        UserDataWriter writer = new UserDataWriter(new UserDataWriter.HighlightsSink() {
+            @Override
+            public void writeSerializedHighlights(List<UserDataWriter.PendingHighlights> batch) {
+                mDatabase.beginTransaction();
+                try {
+                    for (UserDataWriter.PendingHighlights pendingHighlights : batch) {
+                        write(pendingHighlights.pageInfo.pageId, pendingHighlights.serializedHighlights);
+                    }
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        }, UserDataWriter.DEFAULT_COALESCE_DELAY_MILLIS);
+        LatencyStats queued = new LatencyStats("highlight queued on the writer");
+        for (int version = 0; version < UPDATES_PER_PAGE; version++) {
+            for (int pageId = 1; pageId <= PAGES; pageId++) {
+                long start = System.nanoTime();
+                writer.setSerializedHighlights(BOOK_ID, new PageInfo(pageId, 1, pageId), highlights(pageId, version));
+                queued.record(System.nanoTime() - start);
+            }
+        }
+        long start = System.nanoTime();
+        assertTrue(writer.flushAndWait(10, TimeUnit.SECONDS));
+        Log.i(TAG, queued.getStats() + ", flushed in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        Log.i(TAG, writer.getStats());
+    }
+}
@@ -0,0 +1,24 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * pages per second of the search normalization used while indexing, the regex pipeline against
+ * {@link ArabicNormalizer}, the results are logged under {@value MicroBenchmark#TAG}
+ */
+public class ArabicNormalizerBenchmark extends AndroidTestCase {
+
+    public void testNormalizePages() throws Exception {
+        String[] pages = MicroBenchmark.loadCorpus(getContext().getExternalFilesDir(MicroBenchmark.CORPUS_DIRECTORY),
+                SamplePages.FULL_PAGE,
+                ArabicUtilities.cleanHtml(SamplePages.HTML_PAGE));
+        ArabicNormalizer normalizer = new ArabicNormalizer();
+
+        double regex = MicroBenchmark.measure("regex pipeline", "pages",
+                iteration -> ArabicUtilities.cleanTextForSearchingQueryWithRegex(pages[iteration % pages.length]).length());
+        double singlePass = MicroBenchmark.measure("ArabicNormalizer", "pages",
+                iteration -> normalizer.normalize(pages[iteration % pages.length]));
+        Log.i(MicroBenchmark.TAG, String.format("speedup x%.1f", singlePass / regex));
+    }
+}
@@ -0,0 +1,55 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * indexing time and allocation per page of the html cleaning, jsoup against {@link HtmlTextExtractor},
+ * the results are logged under {@value MicroBenchmark#TAG}
+ */
+public class HtmlTextExtractorBenchmark extends AndroidTestCase {
+    private static final int ALLOCATION_PAGES = 2000;
+
+    private String[] mPages;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPages = MicroBenchmark.loadCorpus(getContext().getExternalFilesDir(MicroBenchmark.CORPUS_DIRECTORY),
+                SamplePages.HTML_PAGE,
+                SamplePages.FULL_PAGE);
+    }
+
+    public void testCleanPages() throws Exception {
+        String[] pages = mPages;
+        HtmlTextExtractor extractor = new HtmlTextExtractor();
+
+        double jsoup = MicroBenchmark.measure("jsoup cleanHtml", "pages",
+                iteration -> ArabicUtilities.cleanHtmlWithJsoup(pages[iteration % pages.length]).length());
+        double streaming = MicroBenchmark.measure("HtmlTextExtractor", "pages",
+                iteration -> extractor.extract(pages[iteration % pages.length]) ? 1 : 0);
+        Log.i(MicroBenchmark.TAG, String.format("speedup x%.1f", streaming / jsoup));
+
+        MicroBenchmark.measureAllocation("jsoup cleanHtml", "page", ALLOCATION_PAGES,
+                iteration -> ArabicUtilities.cleanHtmlWithJsoup(pages[iteration % pages.length]).length());
+        MicroBenchmark.measureAllocation("HtmlTextExtractor", "page", ALLOCATION_PAGES,
+                iteration -> extractor.extract(pages[iteration % pages.length]) ? 1 : 0);
+    }
+
+    public void testIndexPages() throws Exception {
+        String[] pages = mPages;
+
+        double jsoup = MicroBenchmark.measure("jsoup + normalizer", "pages",
+                iteration -> ArabicUtilities.cleanTextForSearchingQuery(
+                        ArabicUtilities.cleanHtmlWithJsoup(pages[iteration % pages.length])).length());
+        double streaming = MicroBenchmark.measure("cleanTextForSearchingIndexing", "pages",
+                iteration -> ArabicUtilities.cleanTextForSearchingIndexing(pages[iteration % pages.length]).length());
+        Log.i(MicroBenchmark.TAG, String.format("speedup x%.1f", streaming / jsoup));
+
+        MicroBenchmark.measureAllocation("jsoup + normalizer", "page", ALLOCATION_PAGES,
+                iteration -> ArabicUtilities.cleanTextForSearchingQuery(
+                        ArabicUtilities.cleanHtmlWithJsoup(pages[iteration % pages.length])).length());
+        MicroBenchmark.measureAllocation("cleanTextForSearchingIndexing", "page", ALLOCATION_PAGES,
+                iteration -> ArabicUtilities.cleanTextForSearchingIndexing(pages[iteration % pages.length]).length());
+    }
+}
@@ -0,0 +1,117 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import android.os.Debug;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal harness for the micro benchmarks run on the device
+ * <p>
+ * every case is warmed up then run for a fixed time and the throughput is logged under {@value #TAG},
+ * copy exported shamela pages (one page per file) to the {@value #CORPUS_DIRECTORY} directory of the
+ * app external files to benchmark on a real corpus instead of {@link SamplePages}
+ */
+class MicroBenchmark {
+    static final String TAG = "MicroBenchmark";
+    static final String CORPUS_DIRECTORY = "benchmark_corpus";
+    private static final long WARMUP_MILLIS = 300;
+    private static final long MEASURE_MILLIS = 700;
+
+    interface Case {
+        /**
+         * @return anything derived from the work so it is not optimized away
+         */
+        int run(int iteration);
+    }
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * @return the pages of the corpus directory if it has any or the sample pages
+     */
+    @NonNull
+    static String[] loadCorpus(@Nullable File corpusDir, String... samplePages) throws IOException {
+        File[] files = corpusDir == null ? null : corpusDir.listFiles();
+        if (files == null || files.length == 0) return samplePages;
+        List<String> pages = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile()) {
+                pages.add(readFile(file));
+            }
+        }
+        return pages.toArray(new String[pages.size()]);
+    }
+
+    private static String readFile(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @param unit what one call of the case processes e.g. pages
+     * @return operations per second
+     */
+    static double measure(String name, String unit, Case benchmarkCase) {
+        int sink = 0;
+        long end = System.nanoTime() + WARMUP_MILLIS * 1000000;
+        int iteration = 0;
+        while (System.nanoTime() < end) {
+            sink += benchmarkCase.run(iteration++);
+        }
+        long start = System.nanoTime();
+        end = start + MEASURE_MILLIS * 1000000;
+        long operations = 0;
+        long now;
+        do {
+            sink += benchmarkCase.run(iteration++);
+            operations++;
+            now = System.nanoTime();
+        } while (now < end);
+        double perSecond = operations * 1e9 / (now - start);
+        Log.i(TAG, String.format("%-40s %12.1f %s/s (%d)", name, perSecond, unit, sink & 1));
+        return perSecond;
+    }
+
+    /**
+     * @return the bytes allocated by the current thread per call of the case
+     */
+    @SuppressWarnings("deprecation")
+    static long measureAllocation(String name, String unit, int operations, Case benchmarkCase) {
+        int sink = 0;
+        for (int i = 0; i < operations; i++) {
+            sink += benchmarkCase.run(i);
+        }
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < operations; i++) {
+                sink += benchmarkCase.run(i);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        long perOperation = Debug.getThreadAllocSize() / operations;
+        Log.i(TAG, String.format("%-40s %12d bytes/%s (%d)", name, perOperation, unit, sink & 1));
+        return perOperation;
+    }
+}
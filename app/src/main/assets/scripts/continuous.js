@@ -0,0 +1,190 @@
+/**
+ * the continuous reading mode, the body holds a window of consecutive pages that grows at the
+ * edge being scrolled to and is trimmed at the other edge so the document stays bounded,
+ * every page is a section of its own with its highlights applied relative to its content
+ */
+var pageHighlighters = {};
+var firstPosition = -1;
+var lastPosition = -1;
+var maxPages = 5;
+var visiblePosition = -1;
+var scrollScheduled = false;
+
+window.onload = function() {
+        rangy.init();
+        maxPages = continuousinterface.getMaxPages();
+        window.addEventListener("scroll", function() {
+            if (scrollScheduled) return;
+            scrollScheduled = true;
+            setTimeout(onScrolled, 50);
+        });
+        continuousinterface.onShellLoaded();
+};
+
+function addClassApplier(highlighter, className) {
+        highlighter.addClassApplier(rangy.createClassApplier(className, {
+            ignoreWhiteSpace: true,
+            elementTagName: "span"
+        }));
+}
+
+/**
+ * the highlights are stored relative to the body of their page, here their container is the
+ * content element of the page so the container id is set in every serialized highlight
+ */
+function applyHighlights(pageId) {
+        var serializedHighlights = continuousinterface.getSerializedHighlights(pageId);
+        if (!serializedHighlights) return;
+        var containerId = "page_content_" + pageId;
+        var parts = serializedHighlights.split("|");
+        for (var i = 1; i < parts.length; i++) {
+            var fields = parts[i].split("$");
+            fields[4] = containerId;
+            parts[i] = fields.join("$");
+        }
+        var highlighter = rangy.createHighlighter();
+        addClassApplier(highlighter, "highlight1");
+        addClassApplier(highlighter, "highlight2");
+        addClassApplier(highlighter, "highlight3");
+        addClassApplier(highlighter, "highlight4");
+        addClassApplier(highlighter, "note");
+        try {
+            highlighter.deserialize(parts.join("|"));
+            pageHighlighters[pageId] = highlighter;
+        } catch (e) {
+            continuousinterface.jsDebug("highlights of page " + pageId + ": " + e);
+        }
+}
+
+function createPageSection(position) {
+        var pageId = continuousinterface.getPageId(position);
+        if (pageId < 0) return null;
+        var section = document.createElement("section");
+        section.className = continuousinterface.isPageBookmarked(pageId) ? "page bookmarked" : "page";
+        section.id = "page_" + pageId;
+        section.setAttribute("data-position", position);
+        section.setAttribute("data-page-id", pageId);
+        var content = document.createElement("div");
+        content.id = "page_content_" + pageId;
+        content.innerHTML = continuousinterface.getPageContent(pageId);
+        section.appendChild(content);
+        return section;
+}
+
+function appendPage() {
+        var section = createPageSection(lastPosition + 1);
+        if (section == null) return false;
+        document.body.appendChild(section);
+        lastPosition++;
+        applyHighlights(section.getAttribute("data-page-id"));
+        return true;
+}
+
+/**
+ * the document grows above what is read, the scroll position is moved by the height of the new
+ * page so the text doesn't jump
+ */
+function prependPage() {
+        if (firstPosition <= 0) return false;
+        var section = createPageSection(firstPosition - 1);
+        if (section == null) return false;
+        document.body.insertBefore(section, document.body.firstChild);
+        firstPosition--;
+        applyHighlights(section.getAttribute("data-page-id"));
+        window.scrollBy(0, section.offsetHeight);
+        return true;
+}
+
+function removePage(section) {
+        var pageId = section.getAttribute("data-page-id");
+        var highlighter = pageHighlighters[pageId];
+        if (highlighter) {
+            highlighter.removeAllHighlights();
+            delete pageHighlighters[pageId];
+        }
+        document.body.removeChild(section);
+}
+
+/**
+ * removes the pages farthest from the visible one until the window fits
+ */
+function trimPages() {
+        while (lastPosition - firstPosition + 1 > maxPages) {
+            if (visiblePosition - firstPosition > lastPosition - visiblePosition) {
+                var first = document.body.firstElementChild;
+                var height = first.offsetHeight;
+                removePage(first);
+                firstPosition++;
+                window.scrollBy(0, -height);
+            } else {
+                removePage(document.body.lastElementChild);
+                lastPosition--;
+            }
+        }
+}
+
+/**
+ * the page whose section crosses the top of the viewport
+ */
+function findVisiblePosition() {
+        var sections = document.body.children;
+        for (var i = 0; i < sections.length; i++) {
+            if (sections[i].getBoundingClientRect().bottom > 0) {
+                return parseInt(sections[i].getAttribute("data-position"));
+            }
+        }
+        return firstPosition;
+}
+
+function onScrolled() {
+        scrollScheduled = false;
+        if (firstPosition < 0) return;
+        var margin = window.innerHeight;
+        var scrollTop = window.pageYOffset;
+        if (scrollTop + 2 * margin > document.body.scrollHeight) {
+            appendPage();
+        } else if (scrollTop < margin) {
+            prependPage();
+        }
+        updateVisiblePosition();
+        trimPages();
+}
+
+function updateVisiblePosition() {
+        var position = findVisiblePosition();
+        if (position != visiblePosition) {
+            visiblePosition = position;
+            continuousinterface.onPageVisible(position);
+        }
+}
+
+/**
+ * replaces the window with the page at the position and the pages around it, used for jumps
+ */
+function showPageWindow(position) {
+        for (var pageId in pageHighlighters) {
+            pageHighlighters[pageId].removeAllHighlights();
+        }
+        pageHighlighters = {};
+        document.body.innerHTML = "";
+        firstPosition = position;
+        lastPosition = position - 1;
+        visiblePosition = position;
+        if (!appendPage()) {
+            firstPosition = -1;
+            lastPosition = -1;
+            return;
+        }
+        window.scrollTo(0, 0);
+        while (lastPosition - firstPosition + 1 < maxPages && document.body.scrollHeight < 2 * window.innerHeight) {
+            if (!appendPage()) break;
+        }
+        //scrolls by the previous page so the page asked for stays at the top
+        prependPage();
+}
+
+function setPageBookmarked(pageId, bookmarked) {
+        var section = document.getElementById("page_" + pageId);
+        if (section == null) return;
+        section.className = bookmarked ? "page bookmarked" : "page";
+}
@@ -0,0 +1,19 @@
+/**
+ * the display colors are rules of the style element written by PageHtmlTemplate,
+ * the first one is the body and the second one the headings
+ */
+function getDisplayColorsRule(index) {
+        return document.getElementById('display_colors').sheet.cssRules[index];
+}
+
+function setBackgroundColor(color) {
+        getDisplayColorsRule(0).style.backgroundColor = color;
+}
+
+function setHeadingColor(color) {
+        getDisplayColorsRule(1).style.color = color;
+}
+
+function setTextColor(color) {
+        getDisplayColorsRule(0).style.color = color;
+}
@@ -1,4 +1,3 @@
-var serializedHighlights = selectioniterface.getSerializedHighlights();
 var highlighter;
 
 function addNotedHighlight(className)
@@ -14,37 +13,57 @@ function addNotedHighlight(className)
                              }));
                  		}
 
-                         window.onload = function() {
-
-                        rangy.init();
-                 		highlighter = rangy.createHighlighter();
-                 		addNotedHighlight("highlight1");
-                 		addNotedHighlight("highlight2");
-                 		addNotedHighlight("highlight3");
-                 		addNotedHighlight("highlight4");
-
-
-
-                             highlighter.addClassApplier(rangy.createClassApplier("note", {
-                                 ignoreWhiteSpace: true,
-                                 elementTagName: "a",
-                                 elementProperties: {
-                                     href: "#",
-                                     onclick: function() {
-                                         var highlight = highlighter.getHighlightForElement(this);
-                                         if (window.confirm("Delete this note (ID " + highlight.id + ")?")) {
-                                             highlighter.removeHighlights( [highlight] );
-                                         }
-                                         return false;
-                                     }
-                                 }
-                             }));
+function createHighlighter() {
+        highlighter = rangy.createHighlighter();
+        addNotedHighlight("highlight1");
+        addNotedHighlight("highlight2");
+        addNotedHighlight("highlight3");
+        addNotedHighlight("highlight4");
+
+        highlighter.addClassApplier(rangy.createClassApplier("note", {
+            ignoreWhiteSpace: true,
+            elementTagName: "a",
+            elementProperties: {
+                href: "#",
+                onclick: function() {
+                    var highlight = highlighter.getHighlightForElement(this);
+                    if (window.confirm("Delete this note (ID " + highlight.id + ")?")) {
+                        highlighter.removeHighlights( [highlight] );
+                    }
+                    return false;
+                }
+            }
+        }));
+
+        var serializedHighlights = selectioniterface.getSerializedHighlights();
+        if (serializedHighlights) {
+            highlighter.deserialize(serializedHighlights);
+        }
+}
 
+window.onload = function() {
+        rangy.init();
+        createHighlighter();
+        selectioniterface.onShellLoaded();
+};
+
+/**
+ * swaps the page shown by a pooled WebView, the content and the highlights are pulled from the
+ * interface, the ready callback waits for the next frame when the WebView supports it
+ */
+function showPage(pageId) {
+        document.body.setAttribute("data-page-id", pageId);
+        document.body.innerHTML = selectioniterface.getPageContent();
+        window.scrollTo(0, 0);
+        createHighlighter();
+        (window.requestAnimationFrame || function(callback) { setTimeout(callback, 0); })(function() {
+            selectioniterface.onPageReady();
+        });
+}
 
-                             if (serializedHighlights) {
-                                 highlighter.deserialize(serializedHighlights);
-                             }
-                         };
+function clearPage() {
+        document.body.innerHTML = "";
+}
 
 function highlight_clicked()
 {
@@ -96,19 +115,3 @@ function removeHighlightFromSelectedText() {
 function serializeHighlights() {
     selectioniterface.setSerializedHighlights(highlighter.serialize({serializeHighlightText: true}));
 }
-
-function setBackgroundColor(color) {
-        document.body.style.backgroundColor = color;
-}
-
-function setHeadingColor(color) {
-        document
-        .querySelectorAll("h1,h2,h3,h4,h5,h6")
-        .forEach(function(header){
-            header.style.color=color;
-        });
-}
-
-function setTextColor(color) {
-        document.body.style.color = color;
-}
@@ -13,6 +13,7 @@ import android.util.Log;
 
 import com.crashlytics.android.Crashlytics;
 import com.fekracomputers.islamiclibrary.BuildConfig;
+import com.fekracomputers.islamiclibrary.databases.BookDatabaseHelper;
 import com.fekracomputers.islamiclibrary.settings.SettingsFragment;
 
 import java.util.Locale;
@@ -39,6 +40,14 @@ public class IslamicLibraryApplication extends Application {
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            BookDatabaseHelper.closeIdleBooks();
+        }
+    }
+
     public void refreshLocale(@NonNull Context context, boolean force) {
 
         SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(this);
@@ -39,6 +39,7 @@ import com.fekracomputers.islamiclibrary.databases.BooksInformationDbHelper;
 import com.fekracomputers.islamiclibrary.databases.UserDataDBHelper;
 import com.fekracomputers.islamiclibrary.download.downloader.CoverImagesDownloader;
 import com.fekracomputers.islamiclibrary.download.model.DownloadsConstants;
+import com.fekracomputers.islamiclibrary.download.service.PostDownloadJobScheduler;
 import com.fekracomputers.islamiclibrary.homeScreen.controller.BookCollectionsController;
 import com.fekracomputers.islamiclibrary.model.BookCollectionInfo;
 import com.fekracomputers.islamiclibrary.model.BookInfo;
@@ -339,12 +340,19 @@ public class BookInformationFragment extends Fragment implements
 
     public void bindDownloadStatus(int bookDownloadStatus) {
         if (bookDownloadStatus != mBookDownloadStatus) {
+            if (bookDownloadStatus >= STATUS_DOWNLOAD_REQUESTED && bookDownloadStatus < DownloadsConstants.STATUS_FTS_INDEXING_ENDED) {
+                //the user is waiting for this book, unzip and index it before the others
+                PostDownloadJobScheduler.getInstance().prioritize(mBookInfo.getBookId());
+            } else {
+                PostDownloadJobScheduler.getInstance().clearPriority(mBookInfo.getBookId());
+            }
             if (bookDownloadStatus < STATUS_DOWNLOAD_REQUESTED) {
                 mDownloadButtonText.setText(R.string.download_book);
                 mDownloadButtonLayout.setBackgroundResource(R.color.indicator_book_not_downloaded);
                 mDownloadButtonImage.setImageResource(R.drawable.ic_download_thin_white);
 
                 mDownloadButtonLayout.setOnClickListener(v -> {
+                    PostDownloadJobScheduler.getInstance().prioritize(mBookInfo.getBookId());
                     BrowsingUtils.startDownloadingBook(mBookInfo, getContext());
                     setDownloadButtonForStartDownloading();
                 });
@@ -409,6 +417,10 @@ public class BookInformationFragment extends Fragment implements
     @Override
     public void onDetach() {
         super.onDetach();
+        if (mBookInfo != null) {
+            //the user is no longer waiting for this book
+            PostDownloadJobScheduler.getInstance().clearPriority(mBookInfo.getBookId());
+        }
         bookCardEventsCallback = null;
         if (getActivity() instanceof BookCardEventListener)
             ((BookCardEventListener) getActivity()).unRegisterListener(this);
@@ -12,8 +12,9 @@ public class BookDatabaseContract {
         public static final String TABLE_NAME = "searchResult";
         public static final String SEARCH_RESULT_PARTNUMBER = "searchResult_partnumber";
         public static final String SEARCH_RESULT_PAGENUMBER = "searchResult_pagenumber";
-        public static final String SEARCH_RESULT_PAGE = "searchResult_page";
         protected static final String SEARCH_RESULT_PAGE_ID = "searchResult_pageId";
+        protected static final String SEARCH_RESULT_SNIPPET = "searchResult_snippet";
+        protected static final String SEARCH_RESULT_OFFSETS = "searchResult_offsets";
     }
 
     public static class searchResultParentTitleTableAlias {
@@ -86,8 +87,22 @@ public class BookDatabaseContract {
     public static class pagesTextSearch {
         public static final String TABLE_NAME = "pagestextsearch";
         public static final String TABLE_NAME_V3 = "pageTextSearch";
+        /**
+         * the index is built in this table and renamed to {@link #TABLE_NAME} once complete
+         */
+        public static final String BUILDING_TABLE_NAME = "pagestextsearch_building";
         public static final String COLUMN_NAME_DOC_id = "docid";
         public static final String COLUMN_NAME_PAGE = "page";
+        /**
+         * control characters never left in the cleaned indexed text, used to mark matches in snippet()
+         */
+        public static final char SNIPPET_MATCH_START = '\u0002';
+        public static final char SNIPPET_MATCH_END = '\u0003';
+        public static final String SNIPPET_ELLIPSIS = "...";
+        /**
+         * approximate number of tokens in a snippet, fts4 allows up to 64
+         */
+        public static final int SNIPPET_TOKENS = 32;
     }
 
     //insert into titlesTextSearch(docid,page) select id,page from pages
@@ -100,4 +115,49 @@ public class BookDatabaseContract {
         public static final String COLUMN_NAME_TITLE = "title";
     }
 
-}
\ No newline at end of file
+
+    /**
+     * a single row tracking the fts indexing of the book, the last indexed page is committed with
+     * every chunk of pages so an interrupted indexing resumes after it and {@link #COLUMN_NAME_COMPLETE}
+     * is set in the transaction that publishes the index
+     */
+    public static class FtsIndexingStateEntry {
+        public static final String TABLE_NAME = "fts_indexing_state";
+        public static final String COLUMN_NAME_ID = "id";
+        public static final String COLUMN_NAME_LAST_INDEXED_PAGE_ID = "last_indexed_page_id";
+        public static final String COLUMN_NAME_COMPLETE = "complete";
+        public static final int STATE_ROW_ID = 1;
+    }
+
+    /**
+     * a single row holding the {@link BookMetadata} of the book, written when the book is upgraded
+     * to version 5 and never changed since the pages don't change
+     */
+    public static class BookMetadataEntry {
+        public static final String TABLE_NAME = "book_metadata";
+        public static final String COLUMN_NAME_ID = "id";
+        public static final String COLUMN_NAME_FIRST_PART_NUMBER = "first_part_number";
+        public static final String COLUMN_NAME_FIRST_PART_FIRST_PAGE = "first_part_first_page";
+        public static final String COLUMN_NAME_FIRST_PART_LAST_PAGE = "first_part_last_page";
+        public static final String COLUMN_NAME_LAST_PART = "last_part";
+        public static final String COLUMN_NAME_LARGEST_PAGE = "largest_page";
+        public static final String COLUMN_NAME_FIRST_PAGE_ID = "first_page_id";
+        public static final String COLUMN_NAME_FIRST_PAGE_PART_NUMBER = "first_page_part_number";
+        public static final String COLUMN_NAME_FIRST_PAGE_NUMBER = "first_page_number";
+        public static final String COLUMN_NAME_PAGE_COUNT = "page_count";
+        /**
+         * the columns of the values of {@link BookMetadata}, in its order
+         */
+        public static final String[] COLUMNS = {
+                COLUMN_NAME_FIRST_PART_NUMBER,
+                COLUMN_NAME_FIRST_PART_FIRST_PAGE,
+                COLUMN_NAME_FIRST_PART_LAST_PAGE,
+                COLUMN_NAME_LAST_PART,
+                COLUMN_NAME_LARGEST_PAGE,
+                COLUMN_NAME_FIRST_PAGE_ID,
+                COLUMN_NAME_FIRST_PAGE_PART_NUMBER,
+                COLUMN_NAME_FIRST_PAGE_NUMBER,
+                COLUMN_NAME_PAGE_COUNT};
+        public static final int METADATA_ROW_ID = 1;
+    }
+}
@@ -1,5 +1,6 @@
 package com.fekracomputers.islamiclibrary.databases;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
@@ -8,9 +9,13 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
 
 import com.fekracomputers.islamiclibrary.download.model.DownloadFileConstants;
+import com.fekracomputers.islamiclibrary.download.model.DownloadsConstants;
 import com.fekracomputers.islamiclibrary.download.reciver.BookDownloadCompletedReceiver;
 import com.fekracomputers.islamiclibrary.model.AuthorInfo;
 import com.fekracomputers.islamiclibrary.model.BookCategory;
@@ -20,16 +25,23 @@ import com.fekracomputers.islamiclibrary.model.PageCitation;
 import com.fekracomputers.islamiclibrary.model.PageInfo;
 import com.fekracomputers.islamiclibrary.model.PartInfo;
 import com.fekracomputers.islamiclibrary.model.Title;
+import com.fekracomputers.islamiclibrary.search.Bm25Scorer;
 import com.fekracomputers.islamiclibrary.search.model.SearchOptions;
 import com.fekracomputers.islamiclibrary.search.model.SearchResult;
+import com.fekracomputers.islamiclibrary.search.model.SearchSnippet;
 import com.fekracomputers.islamiclibrary.utility.ArabicUtilities;
+import com.fekracomputers.islamiclibrary.utility.FootnoteRenderer;
 import com.fekracomputers.islamiclibrary.utility.StorageUtils;
 import com.fekracomputers.islamiclibrary.utility.SystemUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import timber.log.Timber;
 
@@ -51,26 +63,18 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
             BookDatabaseContract.titlesTextSearch.COLUMN_NAME_TITLE +
             ")" +
             "VALUES (" + "?" + SQL.COMMA + " ?" + ")";
-    public static final int DATABASE_VERSION = 4;
-    private static final String BOOK_FTS_QUERY_SQL = SQL.SELECT +
-            BookDatabaseContract.searchResultPageTableAlias.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGE_ID + SQL.COMMA +
-            BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PARTNUMBER + SQL.COMMA +
-            BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGENUMBER + SQL.COMMA +
-            BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGE + SQL.COMMA +
-            BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID + SQL.AS + BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_ID + SQL.COMMA +
-            BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_TITLE + SQL.AS + BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_TITLE + SQL.COMMA +
-            BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + SQL.AS + BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_PAGE_ID +
-            SQL.FROM +
-            "(" + SQL.SELECT + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + SQL.FROM + BookDatabaseContract.pagesTextSearch.TABLE_NAME + SQL.WHERE + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + SQL.MATCH + "?" + ")" +
-            SQL.AS + BookDatabaseContract.searchResultPageTableAlias.TABLE_NAME +
-            SQL.JOIN +
-            BookDatabaseContract.TitlesEntry.TABLE_NAME +
-            SQL.ON +
-            BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + SQL.EQUALS + "(" + SQL.SELECT + " max(" + BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + ")" + SQL.FROM + BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.WHERE + BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + "<=" + BookDatabaseContract.searchResultPageTableAlias.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + ")" +
-            SQL.JOIN +
-            BookDatabaseContract.PageEntry.TABLE_NAME +
-            SQL.ON +
-            BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.EQUALS + BookDatabaseContract.searchResultPageTableAlias.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id;
+    public static final int DATABASE_VERSION = 6;
+    private static final String BOOK_FTS_MATCH_SUB_QUERY = SQL.SELECT + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + SQL.FROM + BookDatabaseContract.pagesTextSearch.TABLE_NAME + SQL.WHERE + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + SQL.MATCH + "?";
+    private static final String BOOK_FTS_QUERY_SQL = buildSearchResultQuery(BOOK_FTS_MATCH_SUB_QUERY);
+    private static final String BOOK_FTS_MATCHINFO_SQL = SQL.SELECT +
+            BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + SQL.COMMA +
+            "matchinfo(" + BookDatabaseContract.pagesTextSearch.TABLE_NAME + SQL.COMMA + "'" + Bm25Scorer.MATCHINFO_FORMAT + "')" +
+            SQL.FROM + BookDatabaseContract.pagesTextSearch.TABLE_NAME +
+            SQL.WHERE + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + SQL.MATCH + "?";
+    /**
+     * multiplies the relevance of a page that starts a title matching the query
+     */
+    private static final double TITLE_MATCH_BOOST = 1.5;
     private static final String TITLES_COLUMNS =
             BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT + BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID + SQL.COMMA +
                     BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT + BookDatabaseContract.TitlesEntry.COLUMN_NAME_TITLE + SQL.COMMA +
@@ -183,22 +187,118 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
                     SQL.ON +
                     BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + SQL.EQUALS +
                     BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID;
-    private static final String CREATE_BOOK_FTS_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS " +
-            BookDatabaseContract.pagesTextSearch.TABLE_NAME +
-            " USING fts4(content=\"\"" + SQL.COMMA + " page)";
-    private static final String OPTIMIZE_BOOK_FTS = " INSERT INTO " +
-            BookDatabaseContract.pagesTextSearch.TABLE_NAME + "(" + BookDatabaseContract.pagesTextSearch.TABLE_NAME + ")" +
+    /**
+     * the cleaned text is stored (not contentless) so snippet() and offsets() can be used for the
+     * search snippets, books indexed by older versions have a contentless table see {@link #hasFtsSnippets()}
+     * and are indexed again by the stored books sync after their first open by this version
+     */
+    private static final String CREATE_BUILDING_BOOK_FTS_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS " +
+            BookDatabaseContract.pagesTextSearch.BUILDING_TABLE_NAME +
+            " USING fts4(" + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + ")";
+    private static final String POPULATE_BUILDING_BOOK_FTS_SQL = "INSERT OR REPLACE INTO " + BookDatabaseContract.pagesTextSearch.BUILDING_TABLE_NAME +
+            "(" +
+            BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + SQL.COMMA +
+            BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE +
+            ")" +
+            "VALUES (" + "?" + SQL.COMMA + " ?" + ")";
+    private static final String OPTIMIZE_BUILDING_BOOK_FTS = " INSERT INTO " +
+            BookDatabaseContract.pagesTextSearch.BUILDING_TABLE_NAME + "(" + BookDatabaseContract.pagesTextSearch.BUILDING_TABLE_NAME + ")" +
             "VALUES('optimize')";
+    private static final String CONTENTLESS_FTS_OPTION = "content=\"\"";
+    private static final String CREATE_FTS_INDEXING_STATE_TABLE = "CREATE TABLE IF NOT EXISTS " +
+            BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME + "(" +
+            BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+            BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_LAST_INDEXED_PAGE_ID + SQL.INTEGER + SQL.COMMA +
+            BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_COMPLETE + SQL.INTEGER + ")";
+    private static final String CREATE_BOOK_METADATA_TABLE = "CREATE TABLE IF NOT EXISTS " +
+            BookDatabaseContract.BookMetadataEntry.TABLE_NAME + "(" +
+            BookDatabaseContract.BookMetadataEntry.COLUMN_NAME_ID + SQL.INTEGER_PRIMARY_KEY + SQL.COMMA +
+            TextUtils.join(SQL.INTEGER + SQL.COMMA, BookDatabaseContract.BookMetadataEntry.COLUMNS) + SQL.INTEGER + ")";
+    private static final String UPDATE_FTS_INDEXING_CHECKPOINT_SQL = "UPDATE " +
+            BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME + " SET " +
+            BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_LAST_INDEXED_PAGE_ID + SQL.EQUALS + "?" +
+            SQL.WHERE + BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_ID + SQL.EQUALS +
+            BookDatabaseContract.FtsIndexingStateEntry.STATE_ROW_ID;
     //" USING fts4(page TEXT)";
+    /**
+     * how many books no one {@link #acquire(Context, int)}d may stay open, a global search goes
+     * through the books one after the other
+     */
+    public static final int MAX_OPEN_BOOKS = 8;
+    /**
+     * how long a book no one {@link #acquire(Context, int)}d stays open after its last use
+     */
+    public static final long BOOK_IDLE_TIMEOUT_MILLIS = 60 * 1000;
+    /**
+     * how many read only connections a book may have besides the one of the helper, so the reader,
+     * a search and the prefetching don't wait for each other
+     */
+    public static final int MAX_READ_CONNECTIONS = 3;
+    /**
+     * the books, a book is validated when it is first opened and again only if its file changes
+     */
     @NonNull
-    private static SparseArray<BookDatabaseHelper> sIsnstances = new SparseArray<>();
+    private static final BookHandleRegistry<BookDatabaseHelper> sIsnstances = new BookHandleRegistry<>(
+            new BookHandleRegistry.Validator<BookDatabaseHelper>() {
+                @NonNull
+                @Override
+                public File getFile(@NonNull BookDatabaseHelper handle) {
+                    return new File(handle.mBookPath);
+                }
+
+                @Override
+                public boolean isValid(@NonNull BookDatabaseHelper handle) {
+                    //the file was replaced or written since the book was last validated
+                    handle.invalidatePageIdIndex();
+                    return handle.isValidBook();
+                }
+            },
+            BookDatabaseHelper::closeDatabase,
+            MAX_OPEN_BOOKS,
+            BOOK_IDLE_TIMEOUT_MILLIS);
     private final int bookId;
+    /**
+     * set by {@link #onUpgrade} when the book has to be indexed again, see {@link #markForIndexingIfUpgraded}
+     */
+    private volatile boolean mIndexingRequired;
     //  private SQLiteDatabase mDatabase = null;
 
     /**
      * the full path to the database including file extension
      */
     private String mBookPath;
+    /**
+     * cached result of {@link #hasFtsSnippets()}, null if not checked yet
+     */
+    @Nullable
+    private volatile Boolean mHasFtsSnippets;
+    /**
+     * see {@link #getPageIdIndex()}
+     */
+    @Nullable
+    private volatile PageIdIndex mPageIdIndex;
+    /**
+     * see {@link #getBookMetadata()}
+     */
+    @Nullable
+    private volatile BookMetadata mBookMetadata;
+    /**
+     * see {@link #getBookInfo()}
+     */
+    @Nullable
+    private volatile BookInfo mBookInfo;
+    @NonNull
+    private final PageContentCache mPageContentCache = new PageContentCache(PageContentCache.DEFAULT_MAX_BYTES);
+    /**
+     * see {@link #read(ReadQuery)}, created on first use and dropped when the book is closed
+     */
+    @Nullable
+    private ReadConnectionPool<SQLiteDatabase> mReadConnections;
+    /**
+     * how many index builds are writing the book, see {@link #read(ReadQuery)}
+     */
+    @NonNull
+    private final AtomicInteger mIndexBuilds = new AtomicInteger();
 
     private BookDatabaseHelper(@NonNull Context context, int mBookId) {
         //super(new DatabaseContext(context),mBookId+".sqlite", null, 1);
@@ -207,39 +307,134 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
                         File.separator + mBookId + SQL.DOT_SEPARATOR + DownloadFileConstants.DATABASE_FILE_EXTENSTION,
                 null,
                 DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(ConnectionProfile.BOOK.isWriteAheadLogging());
         this.bookId = mBookId;
         mBookPath = StorageUtils.getIslamicLibraryShamelaBooksDir(context) + File.separator + Integer.toString(mBookId) + SQL.DOT_SEPARATOR + BooksInformationDbHelper.DATABASE_EXTENSION;
 
     }
 
 
+    /**
+     * @param pageIdsSubQuery a query returning the ids of the result pages in a column named docid
+     * @return a query joining every result page with its part,page number and parent title, the page
+     * content is not selected and is loaded later only for the results that are shown using {@link #getPagesContent(int[])}
+     */
+    @NonNull
+    private static String buildSearchResultQuery(@NonNull String pageIdsSubQuery) {
+        return SQL.SELECT +
+                BookDatabaseContract.searchResultPageTableAlias.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGE_ID + SQL.COMMA +
+                BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PARTNUMBER + SQL.COMMA +
+                BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGENUMBER + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID + SQL.AS + BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_ID + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_TITLE + SQL.AS + BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_TITLE + SQL.COMMA +
+                BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + SQL.AS + BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_PAGE_ID +
+                SQL.FROM +
+                "(" + pageIdsSubQuery + ")" +
+                SQL.AS + BookDatabaseContract.searchResultPageTableAlias.TABLE_NAME +
+                SQL.JOIN +
+                BookDatabaseContract.TitlesEntry.TABLE_NAME +
+                SQL.ON +
+                BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + SQL.EQUALS + "(" + SQL.SELECT + " max(" + BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + ")" + SQL.FROM + BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.WHERE + BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID + "<=" + BookDatabaseContract.searchResultPageTableAlias.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + ")" +
+                SQL.JOIN +
+                BookDatabaseContract.PageEntry.TABLE_NAME +
+                SQL.ON +
+                BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.EQUALS + BookDatabaseContract.searchResultPageTableAlias.TABLE_NAME + SQL.DOT_SEPARATOR + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id;
+    }
+
     /**
      * @param context
      * @param bookId
      * @return
      * @throws BookDatabaseException if the file is corrupted also delete book entry from book information database
      */
-    public static synchronized BookDatabaseHelper getInstance(@NonNull Context context, int bookId) throws BookDatabaseException {
-        if (sIsnstances.indexOfKey(bookId) < 0) { //no instance for this book already exists
-            sIsnstances.append(bookId, new BookDatabaseHelper(context, bookId));
+    public static BookDatabaseHelper getInstance(@NonNull Context context, int bookId) throws BookDatabaseException {
+        while (true) {
+            BookDatabaseHelper sqLiteOpenHelper = getInstanceNoExeption(context, bookId);
+            if (checkValid(context, bookId, sqLiteOpenHelper)) return sqLiteOpenHelper;
         }
-        BookDatabaseHelper sqLiteOpenHelper = sIsnstances.get(bookId);
-        if (sqLiteOpenHelper.isValidBook()) {
-            return sqLiteOpenHelper;
-        } else {
-            DBValidator dBValidator = new DBValidator(DBValidator.DataBaseType.BOOK_DATABASE_TYPE);
-            dBValidator.validate(sqLiteOpenHelper);
-            deleteInvalidBook(bookId, context);
-            throw new BookDatabaseException(dBValidator.getCause(), bookId, sqLiteOpenHelper.mBookPath);
+    }
+
+    /**
+     * like {@link #getInstance(Context, int)} but the book is kept open until it is {@link #release()}d
+     * <p>
+     * a book no one acquired may be closed by the pool while a query runs on another thread, so
+     * every caller that queries the book acquires it for as long as it does, only the callers
+     * running inside a screen that holds the book, like the fragments of the reader, use
+     * {@link #getInstance(Context, int)}
+     */
+    public static BookDatabaseHelper acquire(@NonNull Context context, int bookId) throws BookDatabaseException {
+        while (true) {
+            BookDatabaseHelper bookDatabaseHelper = sIsnstances.acquire(bookId, id -> new BookDatabaseHelper(context, id));
+            boolean registered;
+            try {
+                registered = checkValid(context, bookId, bookDatabaseHelper);
+            } catch (BookDatabaseException | RuntimeException e) {
+                bookDatabaseHelper.release();
+                throw e;
+            }
+            if (registered) return bookDatabaseHelper;
+        }
+    }
+
+    /**
+     * @return false if the helper was {@link #close()}d concurrently, it is not validated and the
+     * caller gets the helper of the book again
+     * @throws BookDatabaseException if the book is corrupted, it is deleted
+     */
+    private static boolean checkValid(@NonNull Context context, int bookId, @NonNull BookDatabaseHelper sqLiteOpenHelper) throws BookDatabaseException {
+        if (sIsnstances.validate(bookId, sqLiteOpenHelper)) {
+            markForIndexingIfUpgraded(context, sqLiteOpenHelper);
+            return true;
         }
+        //a missing helper is a closed one not a corrupted book
+        if (sIsnstances.peek(bookId) != sqLiteOpenHelper) return false;
+        DBValidator dBValidator = new DBValidator(DBValidator.DataBaseType.BOOK_DATABASE_TYPE);
+        dBValidator.validate(sqLiteOpenHelper);
+        deleteInvalidBook(bookId, context);
+        throw new BookDatabaseException(dBValidator.getCause(), bookId, sqLiteOpenHelper.mBookPath);
     }
 
-    private static synchronized BookDatabaseHelper getInstanceNoExeption(@NonNull Context context, int bookId) {
-        if (sIsnstances.indexOfKey(bookId) < 0) { //no instance for this book already exists
-            sIsnstances.append(bookId, new BookDatabaseHelper(context, bookId));
+    /**
+     * a book whose index was invalidated by {@link #onUpgrade} is marked as not indexed in the
+     * stored books, the next stored books sync requests its indexing
+     */
+    private static void markForIndexingIfUpgraded(@NonNull Context context, @NonNull BookDatabaseHelper bookDatabaseHelper) {
+        if (!bookDatabaseHelper.mIndexingRequired) return;
+        bookDatabaseHelper.mIndexingRequired = false;
+        try {
+            BooksInformationDbHelper.getInstance(context).setStatus(bookDatabaseHelper.bookId, DownloadsConstants.STATUS_UNZIP_ENDED);
+        } catch (RuntimeException e) {
+            Timber.w(e, "can't mark book %d for indexing", bookDatabaseHelper.bookId);
         }
-        return sIsnstances.get(bookId);
+    }
+
+    /**
+     * releases a book {@link #acquire(Context, int)}d
+     */
+    public void release() {
+        sIsnstances.release(bookId, this);
+    }
+
+    @NonNull
+    private static BookDatabaseHelper getInstanceNoExeption(@NonNull Context context, int bookId) {
+        return sIsnstances.get(bookId, id -> new BookDatabaseHelper(context, id));
+    }
 
+    /**
+     * closes the books no one {@link #acquire(Context, int)}d that are idle, for when the memory is low
+     */
+    public static void closeIdleBooks() {
+        int closed = sIsnstances.trimIdle();
+        Timber.d("closed %d idle books, %s", closed, sIsnstances.getStats());
+    }
+
+    /**
+     * @return how many books are open and how many times they were validated and the validations
+     * were skipped
+     */
+    @NonNull
+    public static String getHandleStats() {
+        return sIsnstances.getStats();
     }
 
     public static void deleteInvalidBook(int bookId, @NonNull Context context) {
@@ -247,21 +442,115 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
         BookDownloadCompletedReceiver.broadCastBookDownloadFailed(bookId, "invalidDatabase", context);
     }
 
-    static synchronized void closeStatic(int bookId, Context context) {
-        getInstanceNoExeption(context, bookId).close();
+    static void closeStatic(int bookId, Context context) {
+        BookDatabaseHelper bookDatabaseHelper = sIsnstances.peek(bookId);
+        if (bookDatabaseHelper != null) bookDatabaseHelper.close();
     }
 
-    public static boolean isValidBookStatic(int bookId, Context conext) {
-        DBValidator dBValidator = new DBValidator(DBValidator.DataBaseType.BOOK_DATABASE_TYPE);
-        dBValidator.validate(getInstanceNoExeption(conext, bookId));
-        return dBValidator.isValid();
+    /**
+     * like {@link #getInstance(Context, int)} the book is validated only if it was not validated
+     * against its current file
+     */
+    public static boolean isValidBookStatic(int bookId, @NonNull Context conext) {
+        while (true) {
+            BookDatabaseHelper bookDatabaseHelper = getInstanceNoExeption(conext, bookId);
+            if (sIsnstances.validate(bookId, bookDatabaseHelper)) return true;
+            if (sIsnstances.peek(bookId) == bookDatabaseHelper) return false;
+        }
+    }
+
+    /**
+     * closes the connection and drops the caches but keeps the helper registered, it opens again
+     * on its next use
+     */
+    private synchronized void closeDatabase() {
+        closeReadConnections();
+        super.close();
+        mPageContentCache.clear();
+        invalidatePageIdIndex();
+        mBookMetadata = null;
+        mBookInfo = null;
     }
 
     @Override
     public synchronized void close() {
+        if (!sIsnstances.remove(bookId, this)) {
+            //closing it would orphan the helper its holders still use, it is closed by the pool after its release
+            Timber.w("book %d is held, not closed", bookId);
+            return;
+        }
+        closeReadConnections();
         super.close();
-        //TODO needs more investigation it seems the safest thing is not to close the helper
-        sIsnstances.delete(bookId);//delete the instance
+    }
+
+    private synchronized void closeReadConnections() {
+        if (mReadConnections != null) {
+            mReadConnections.close();
+            mReadConnections = null;
+        }
+    }
+
+    @NonNull
+    private ReadConnectionPool<SQLiteDatabase> getReadConnections() {
+        //the helper opens the book first so it is upgraded before a read only connection sees it
+        getReadableDatabase();
+        synchronized (this) {
+            if (mReadConnections == null) {
+                mReadConnections = new ReadConnectionPool<>(new ReadConnectionPool.Opener<SQLiteDatabase>() {
+                    @NonNull
+                    @Override
+                    public SQLiteDatabase open() {
+                        int flags = SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS;
+                        if (ConnectionProfile.SEARCH.isWriteAheadLogging()) {
+                            flags |= SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING;
+                        }
+                        SQLiteDatabase db = SQLiteDatabase.openDatabase(mBookPath, null, flags);
+                        ConnectionProfile.SEARCH.apply(db);
+                        return db;
+                    }
+
+                    @Override
+                    public void close(@NonNull SQLiteDatabase connection) {
+                        connection.close();
+                    }
+                }, MAX_READ_CONNECTIONS);
+            }
+            return mReadConnections;
+        }
+    }
+
+    /**
+     * runs a query on one of the read only connections of the book instead of the connection of the
+     * helper, which is shared by every thread using the book
+     * <p>
+     * the query must be done with its cursors when it returns
+     */
+    private <T> T read(@NonNull ReadQuery<T> query) {
+        if (mIndexBuilds.get() > 0) {
+            //the index build holds the file lock for longer than the busy timeout of a separate
+            //connection, the connection of the helper waits for the build's transactions instead
+            return query.query(getReadableDatabase());
+        }
+        ReadConnectionPool<SQLiteDatabase> readConnections;
+        SQLiteDatabase db;
+        while (true) {
+            readConnections = getReadConnections();
+            try {
+                db = readConnections.acquire();
+                break;
+            } catch (IllegalStateException closedMeanwhile) {
+                //the book was closed between getting the pool and acquiring from it
+            }
+        }
+        try {
+            return query.query(db);
+        } finally {
+            readConnections.release(db);
+        }
+    }
+
+    private interface ReadQuery<T> {
+        T query(@NonNull SQLiteDatabase db);
     }
 
     private Title cursorToTitle(@NonNull Cursor c, int coulmn_title_id_index, int column_title_text_indexd, int column_pageId_indexd) {
@@ -314,39 +603,38 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
      * @param inclusive true to conider the page as parent title for itself if possible
      */
     public Title getParentTitle(int pageId, boolean inclusive) {
-
-        Cursor cursor = getReadableDatabase().rawQuery(SELECT_TITLES +
-                " where " +
-                BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID +
-                (inclusive ? " <= ?" : "<?") +
-                " order by " + BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " desc "
-                + " limit 1 ", new String[]{String.valueOf(pageId)});
-        int coulmn_id_index = cursor.getColumnIndex(BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID);
-        int coulmn_parentid_index = cursor.getColumnIndex(BookDatabaseContract.TitlesEntry.COLUMN_NAME_PARENT_ID);
-        int column_partnumber_indexd = cursor.getColumnIndex(BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER);
-        int column_title_text_indexd = cursor.getColumnIndex(BookDatabaseContract.TitlesEntry.COLUMN_NAME_TITLE);
-        int column_rowId_indexd = cursor.getColumnIndex(BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID);
-        int column_original_page_indexd = cursor.getColumnIndex(BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER);
-        int coulmn_is_parent_index = cursor.getColumnIndex(BookDatabaseHelper.IS_PARENT);
-        Title title;
-        if (cursor.moveToFirst()) {
-            title = cursorToTitle(
-                    cursor,
-                    coulmn_id_index,
-                    coulmn_parentid_index,
-                    column_partnumber_indexd,
-                    column_title_text_indexd,
-                    column_rowId_indexd,
-                    column_original_page_indexd,
-                    coulmn_is_parent_index
-            );
-
-        } else {
-
-            return Title.createRootTitle(getBookName());
-        }
-        cursor.close();
-        return title;
+        Title title = read(db -> {
+            Cursor cursor = db.rawQuery(SELECT_TITLES +
+                    " where " +
+                    BookDatabaseContract.TitlesEntry.TABLE_NAME + SQL.DOT + BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID +
+                    (inclusive ? " <= ?" : "<?") +
+                    " order by " + BookDatabaseContract.PageEntry.TABLE_NAME + SQL.DOT + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " desc "
+                    + " limit 1 ", new String[]{String.valueOf(pageId)});
+            int coulmn_id_index = cursor.getColumnIndex(BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID);
+            int coulmn_parentid_index = cursor.getColumnIndex(BookDatabaseContract.TitlesEntry.COLUMN_NAME_PARENT_ID);
+            int column_partnumber_indexd = cursor.getColumnIndex(BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER);
+            int column_title_text_indexd = cursor.getColumnIndex(BookDatabaseContract.TitlesEntry.COLUMN_NAME_TITLE);
+            int column_rowId_indexd = cursor.getColumnIndex(BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID);
+            int column_original_page_indexd = cursor.getColumnIndex(BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER);
+            int coulmn_is_parent_index = cursor.getColumnIndex(BookDatabaseHelper.IS_PARENT);
+            Title parentTitle = null;
+            if (cursor.moveToFirst()) {
+                parentTitle = cursorToTitle(
+                        cursor,
+                        coulmn_id_index,
+                        coulmn_parentid_index,
+                        column_partnumber_indexd,
+                        column_title_text_indexd,
+                        column_rowId_indexd,
+                        column_original_page_indexd,
+                        coulmn_is_parent_index
+                );
+            }
+            cursor.close();
+            return parentTitle;
+        });
+        //a page before the first title of the book
+        return title != null ? title : Title.createRootTitle(getBookName());
     }
 
     public String getBookName() {
@@ -502,14 +790,11 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
     }
 
     public int getPageCount() {
-        Cursor c = getReadableDatabase().query(BookDatabaseContract.PageEntry.TABLE_NAME,
-                new String[]{"count(*)"},
-                null, null, null, null, null
-        );
-        c.moveToFirst();
-        int count = c.getInt(0);
-        c.close();
-        return count;
+        return getBookMetadata().getPageCount();
+    }
+
+    private static int queryPageCount(@NonNull SQLiteDatabase db) {
+        return (int) DatabaseUtils.queryNumEntries(db, BookDatabaseContract.PageEntry.TABLE_NAME);
     }
 
     public String getPageContentByOriginalPageNumber(int partNumber, int pageNumber) {
@@ -550,26 +835,203 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
 
     }
 
+    /**
+     * @return the page from the cache or the database with its footnotes rendered, null if the book
+     * has no such page
+     */
+    @Nullable
+    public PageContentCache.Page getPage(int pageId) {
+        PageContentCache.Page page = mPageContentCache.peek(pageId);
+        if (page == null) {
+            ArrayList<PageContentCache.Page> pages = queryPages(BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " = ?",
+                    new String[]{String.valueOf(pageId)});
+            if (!pages.isEmpty()) {
+                page = pages.get(0);
+                mPageContentCache.put(page);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * loads the pages that are not cached yet with a single query, meant to be called off the main thread
+     */
+    public void prefetchPages(@NonNull int[] pageIds) {
+        StringBuilder pageIdsList = new StringBuilder();
+        for (int pageId : pageIds) {
+            if (mPageContentCache.contains(pageId)) continue;
+            if (pageIdsList.length() != 0) pageIdsList.append(',');
+            pageIdsList.append(pageId);
+        }
+        if (pageIdsList.length() == 0) return;
+        for (PageContentCache.Page page : queryPages(BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.IN + "(" + pageIdsList + ")", null)) {
+            mPageContentCache.putPrefetched(page);
+        }
+    }
+
+    @NonNull
+    public PageContentCache getPageContentCache() {
+        return mPageContentCache;
+    }
+
     @NonNull
-    public PageInfo getPageInfoByPageId(int pageId) {
-        Cursor c = getReadableDatabase().query(BookDatabaseContract.PageEntry.TABLE_NAME
-                , new String[]{
+    private ArrayList<PageContentCache.Page> queryPages(@NonNull String selection, @Nullable String[] selectionArgs) {
+        return read(db -> queryPages(db, selection, selectionArgs));
+    }
 
+    @NonNull
+    private ArrayList<PageContentCache.Page> queryPages(@NonNull SQLiteDatabase db, @NonNull String selection, @Nullable String[] selectionArgs) {
+        Cursor c = db.query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID,
+                        BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER,
                         BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER,
-                        BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER
-                },
-                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " = ?",
-                new String[]{String.valueOf(pageId)},
+                        BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE},
+                selection,
+                selectionArgs,
                 null, null, null
         );
-        c.moveToFirst();
-
-        int originalPageNumber = c.getInt(0);
-        int partNumber = c.getInt(1);
+        ArrayList<PageContentCache.Page> pages = new ArrayList<>(c.getCount());
+        while (c.moveToNext()) {
+            int pageId = c.getInt(0);
+            String content = c.getString(3);
+            pages.add(new PageContentCache.Page(pageId, c.getInt(1), c.getInt(2),
+                    content == null ? "" : FootnoteRenderer.render(bookId, pageId, content)));
+        }
         c.close();
+        return pages;
+    }
 
+    /**
+     * @param pageIds the pages to load
+     * @return the content of every existing page keyed by its id
+     */
+    @NonNull
+    public SparseArray<String> getPagesContent(@NonNull int[] pageIds) {
+        StringBuilder pageIdsList = new StringBuilder();
+        for (int i = 0; i < pageIds.length; i++) {
+            if (i != 0) pageIdsList.append(',');
+            pageIdsList.append(pageIds[i]);
+        }
+        return read(db -> {
+            Cursor c = db.query(BookDatabaseContract.PageEntry.TABLE_NAME
+                    , new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID, BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE},
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.IN + "(" + pageIdsList + ")",
+                    null,
+                    null, null, null
+            );
+            SparseArray<String> pagesContent = new SparseArray<>(c.getCount());
+            while (c.moveToNext()) {
+                pagesContent.put(c.getInt(0), c.getString(1));
+            }
+            c.close();
+            return pagesContent;
+        });
+    }
 
-        return new PageInfo(pageId, partNumber, originalPageNumber);
+    /**
+     * @return true if the pages fts table stores its content so {@link #getSearchSnippets(int[], String)}
+     * can be used, false for books indexed by older versions or not indexed yet
+     */
+    public boolean hasFtsSnippets() {
+        Boolean hasFtsSnippets = mHasFtsSnippets;
+        if (hasFtsSnippets == null) {
+            String pagesFtsSql = getPagesFtsSql(getReadableDatabase());
+            hasFtsSnippets = pagesFtsSql != null && !isContentless(pagesFtsSql);
+            mHasFtsSnippets = hasFtsSnippets;
+        }
+        return hasFtsSnippets;
+    }
+
+    /**
+     * @return the statement the pages fts table was created with, null if the book is not indexed
+     */
+    @Nullable
+    private static String getPagesFtsSql(@NonNull SQLiteDatabase db) {
+        Cursor c = db.rawQuery(SQL.SELECT + "sql" + SQL.FROM + "sqlite_master" +
+                        SQL.WHERE + "type='table'" + SQL.AND + "name=?",
+                new String[]{BookDatabaseContract.pagesTextSearch.TABLE_NAME});
+        try {
+            return c.moveToFirst() ? c.getString(0) : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    private static boolean isContentless(@Nullable String pagesFtsSql) {
+        return pagesFtsSql != null && pagesFtsSql.contains(CONTENTLESS_FTS_OPTION);
+    }
+
+    /**
+     * computes the snippets of already known results inside sqlite, the page content never leaves
+     * the database
+     *
+     * @param pageIds      the result pages
+     * @param searchString the query as entered by the user
+     * @return the snippet of every page that matches keyed by its id
+     */
+    @NonNull
+    public SparseArray<SearchSnippet> getSearchSnippets(@NonNull int[] pageIds, String searchString) {
+        StringBuilder pageIdsList = new StringBuilder();
+        for (int i = 0; i < pageIds.length; i++) {
+            if (i != 0) pageIdsList.append(',');
+            pageIdsList.append(pageIds[i]);
+        }
+        String ftsTable = BookDatabaseContract.pagesTextSearch.TABLE_NAME;
+        return read(db -> {
+            Cursor c = db.rawQuery(SQL.SELECT +
+                            BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGE_ID + SQL.COMMA +
+                            "snippet(" + ftsTable + SQL.COMMA +
+                            "'" + BookDatabaseContract.pagesTextSearch.SNIPPET_MATCH_START + "'" + SQL.COMMA +
+                            "'" + BookDatabaseContract.pagesTextSearch.SNIPPET_MATCH_END + "'" + SQL.COMMA +
+                            "'" + BookDatabaseContract.pagesTextSearch.SNIPPET_ELLIPSIS + "'" + SQL.COMMA +
+                            "-1" + SQL.COMMA +
+                            BookDatabaseContract.pagesTextSearch.SNIPPET_TOKENS + ")" + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_SNIPPET + SQL.COMMA +
+                            "offsets(" + ftsTable + ")" + SQL.AS + BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_OFFSETS +
+                            SQL.FROM + ftsTable +
+                            SQL.WHERE + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + SQL.MATCH + "?" +
+                            SQL.AND + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id + SQL.IN + "(" + pageIdsList + ")",
+                    new String[]{ArabicUtilities.cleanTextForSearchingWthStingBuilder(searchString)});
+            SparseArray<SearchSnippet> snippets = new SparseArray<>(c.getCount());
+            while (c.moveToNext()) {
+                snippets.put(c.getInt(0), SearchSnippet.fromFts(c.getString(1), c.getString(2)));
+            }
+            c.close();
+            return snippets;
+        });
+    }
+
+    @NonNull
+    public PageInfo getPageInfoByPageId(int pageId) {
+        PageContentCache.Page page = mPageContentCache.peek(pageId);
+        if (page != null) {
+            return new PageInfo(pageId, page.partNumber, page.pageNumber);
+        }
+        return read(db -> {
+            Cursor c = db.query(BookDatabaseContract.PageEntry.TABLE_NAME
+                    , new String[]{
+
+                            BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER,
+                            BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER
+                    },
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " = ?",
+                    new String[]{String.valueOf(pageId)},
+                    null, null, null
+            );
+            c.moveToFirst();
+
+            int originalPageNumber = c.getInt(0);
+            int partNumber = c.getInt(1);
+            c.close();
+
+
+            return new PageInfo(pageId, partNumber, originalPageNumber);
+        });
+    }
+
+    @Override
+    public void onConfigure(@NonNull SQLiteDatabase db) {
+        super.onConfigure(db);
+        ConnectionProfile.BOOK.apply(db);
     }
 
     @Override
@@ -612,6 +1074,92 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
                     "(" + BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + "," + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + ")");
 
         }
+        if (oldVersion < 5) {
+            //the pages are scanned once here, after the download or on the first open after the update
+            writeBookMetadata(db, computeBookMetadata(db));
+        }
+        if (oldVersion < 6 && isContentless(getPagesFtsSql(db))) {
+            //indexed without its content by an older version, it stays searchable without snippets
+            //until the new index replaces it
+            db.execSQL(CREATE_FTS_INDEXING_STATE_TABLE);
+            ContentValues state = new ContentValues();
+            state.put(BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_ID, BookDatabaseContract.FtsIndexingStateEntry.STATE_ROW_ID);
+            state.putNull(BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_LAST_INDEXED_PAGE_ID);
+            state.put(BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_COMPLETE, 0);
+            db.insertWithOnConflict(BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME, null, state,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+            //the upgrade may run in the background inside this transaction where no service can be started
+            mIndexingRequired = true;
+        }
+    }
+
+    /**
+     * the parts, first page and page count of the book from {@link BookDatabaseContract.BookMetadataEntry},
+     * read once per open
+     */
+    @NonNull
+    public BookMetadata getBookMetadata() {
+        BookMetadata bookMetadata = mBookMetadata;
+        if (bookMetadata == null) {
+            SQLiteDatabase db = getReadableDatabase();
+            bookMetadata = readBookMetadata(db);
+            if (bookMetadata == null) {
+                //a book that was already at this version without the row, computed now and kept if the file is writable
+                bookMetadata = computeBookMetadata(db);
+                try {
+                    writeBookMetadata(getWritableDatabase(), bookMetadata);
+                } catch (SQLException e) {
+                    Timber.w(e, "can't write the metadata of book %d", bookId);
+                }
+            }
+            mBookMetadata = bookMetadata;
+        }
+        return bookMetadata;
+    }
+
+    @NonNull
+    private static BookMetadata computeBookMetadata(@NonNull SQLiteDatabase db) {
+        return new BookMetadata(queryBookPartsInfo(db), queryFirstPageInfo(db), queryPageCount(db));
+    }
+
+    /**
+     * @return null if the book has no metadata row
+     */
+    @Nullable
+    private static BookMetadata readBookMetadata(@NonNull SQLiteDatabase db) {
+        Cursor c;
+        try {
+            c = db.query(BookDatabaseContract.BookMetadataEntry.TABLE_NAME,
+                    BookDatabaseContract.BookMetadataEntry.COLUMNS,
+                    BookDatabaseContract.BookMetadataEntry.COLUMN_NAME_ID + "=?",
+                    new String[]{String.valueOf(BookDatabaseContract.BookMetadataEntry.METADATA_ROW_ID)},
+                    null, null, null);
+        } catch (SQLException e) {
+            //no such table
+            return null;
+        }
+        try {
+            if (!c.moveToFirst()) return null;
+            int[] values = new int[BookDatabaseContract.BookMetadataEntry.COLUMNS.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = c.getInt(i);
+            }
+            return BookMetadata.fromColumnValues(values);
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void writeBookMetadata(@NonNull SQLiteDatabase db, @NonNull BookMetadata bookMetadata) {
+        db.execSQL(CREATE_BOOK_METADATA_TABLE);
+        ContentValues row = new ContentValues();
+        row.put(BookDatabaseContract.BookMetadataEntry.COLUMN_NAME_ID, BookDatabaseContract.BookMetadataEntry.METADATA_ROW_ID);
+        int[] values = bookMetadata.toColumnValues();
+        for (int i = 0; i < values.length; i++) {
+            row.put(BookDatabaseContract.BookMetadataEntry.COLUMNS[i], values[i]);
+        }
+        db.insertWithOnConflict(BookDatabaseContract.BookMetadataEntry.TABLE_NAME, null, row,
+                SQLiteDatabase.CONFLICT_REPLACE);
     }
 
     @NonNull
@@ -658,7 +1206,12 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
 
     @NonNull
     public PartInfo getPartInfo(int partNumber) {
-        Cursor c = getReadableDatabase().query(BookDatabaseContract.PageEntry.TABLE_NAME
+        return queryPartInfo(getReadableDatabase(), partNumber);
+    }
+
+    @NonNull
+    private static PartInfo queryPartInfo(@NonNull SQLiteDatabase db, int partNumber) {
+        Cursor c = db.query(BookDatabaseContract.PageEntry.TABLE_NAME
                 , new String[]{"min(" + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + ")" + SQL.COMMA + "max(" +
                         BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER + ")"
                 },
@@ -675,7 +1228,12 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
 
     @NonNull
     public BookPartsInfo getBookPartsInfo() {
-        Cursor c = getReadableDatabase().rawQuery("select real_minimum+part_offset as min_part ,max_part,max_page  \n" +
+        return getBookMetadata().getBookPartsInfo();
+    }
+
+    @NonNull
+    private static BookPartsInfo queryBookPartsInfo(@NonNull SQLiteDatabase db) {
+        Cursor c = db.rawQuery("select real_minimum+part_offset as min_part ,max_part,max_page  \n" +
                         "from (\n" +
                         " select min(pages.partnumber) as real_minimum,\n" +
                         " max(" + BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER + ") as max_part,\n" +
@@ -695,7 +1253,7 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
         );
         c.moveToFirst();
 
-        BookPartsInfo bookPartsInfo = new BookPartsInfo(getPartInfo(c.getInt(0)), c.getInt(1), c.getInt(2));
+        BookPartsInfo bookPartsInfo = new BookPartsInfo(queryPartInfo(db, c.getInt(0)), c.getInt(1), c.getInt(2));
         c.close();
         return bookPartsInfo;
 
@@ -703,8 +1261,12 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
 
     @NonNull
     public PageInfo getFirstPageInfo() {
+        return getBookMetadata().getFirstPageInfo();
+    }
 
-        Cursor c = getReadableDatabase().query(BookDatabaseContract.PageEntry.TABLE_NAME
+    @NonNull
+    private static PageInfo queryFirstPageInfo(@NonNull SQLiteDatabase db) {
+        Cursor c = db.query(BookDatabaseContract.PageEntry.TABLE_NAME
                 , new String[]{
                         BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID,
                         BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER,
@@ -717,7 +1279,11 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
                 BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " ASC ",
                 "1"
         );
-        c.moveToFirst();
+        if (!c.moveToFirst()) {
+            //a book without pages, it still opens
+            c.close();
+            return new PageInfo(0, 0, 0);
+        }
         int pageId = c.getInt(0);
         int originalPageNumber = c.getInt(1);
         int partNumber = c.getInt(2);
@@ -728,44 +1294,65 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
     }
 
     public int position2PageId(int position) {
+        return getPageIdIndex().position2PageId(position);
+    }
 
-        Cursor c = getReadableDatabase().query(BookDatabaseContract.PageEntry.TABLE_NAME
-                , new String[]{
-                        BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID
-                },
-                null,
-                null,
-                null,
-                null,
-                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " ASC ",
-                position + SQL.COMMA + 1
-        );
-        c.moveToFirst();
-        int pageId = c.getInt(0);
-        c.close();
+    public int pageId2position(int pageId) {
+        return getPageIdIndex().pageId2position(pageId);
+    }
 
-        return pageId;
+    /**
+     * {@link #pageId2position(int)} of many pages
+     */
+    @NonNull
+    public int[] getPagePositions(@NonNull int[] pageIds) {
+        PageIdIndex pageIdIndex = getPageIdIndex();
+        int[] positions = new int[pageIds.length];
+        for (int i = 0; i < pageIds.length; i++) {
+            positions[i] = pageIdIndex.pageId2position(pageIds[i]);
+        }
+        return positions;
     }
 
-    public int pageId2position(int pageId) {
+    /**
+     * built on first use and kept until {@link #invalidatePageIdIndex()}, the lookups don't touch
+     * the file
+     */
+    @NonNull
+    private PageIdIndex getPageIdIndex() {
+        PageIdIndex pageIdIndex = mPageIdIndex;
+        if (pageIdIndex == null) {
+            pageIdIndex = new PageIdIndex(getAllPageIds());
+            mPageIdIndex = pageIdIndex;
+        }
+        return pageIdIndex;
+    }
 
+    /**
+     * called when the helper wrote the book and when {@link #sIsnstances} finds its file changed,
+     * the next lookup rebuilds the index
+     */
+    private void invalidatePageIdIndex() {
+        mPageIdIndex = null;
+    }
 
-        Cursor c = getReadableDatabase().query(BookDatabaseContract.PageEntry.TABLE_NAME
-                , new String[]{
-                        "count(*)-1"
-                },
-                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " <=?",
-                new String[]{String.valueOf(pageId)},
+    @NonNull
+    private int[] getAllPageIds() {
+        Cursor c = getReadableDatabase().query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID},
                 null,
                 null,
                 null,
-                null
+                null,
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " ASC "
         );
-        c.moveToFirst();
-        int position = c.getInt(0);
+        int[] pageIds = new int[c.getCount()];
+        int i = 0;
+        while (c.moveToNext() && i < pageIds.length) {
+            pageIds[i++] = c.getInt(0);
+        }
         c.close();
-        if (position < 0) throw new IndexOutOfBoundsException("this page id doesn't exisit");
-        return position;
+        return pageIds;
     }
 
     @NonNull
@@ -775,28 +1362,7 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
 
     @NonNull
     public PageInfo getPageInfoByPagePosition(int position) {
-        Cursor c = getReadableDatabase().query(
-                BookDatabaseContract.PageEntry.TABLE_NAME,
-                new String[]{
-                        BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID,
-                        BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_NUMBER,
-                        BookDatabaseContract.PageEntry.COLUMN_NAME_PART_NUMBER
-                },
-                null,
-                null,
-                null,
-                null,
-                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + " ASC ",
-                position + SQL.COMMA + 1
-        );
-        c.moveToFirst();
-        int pageId = c.getInt(0);
-        int pageNumber = c.getInt(1);
-        int partNumber = c.getInt(2);
-        c.close();
-
-
-        return new PageInfo(pageId, partNumber, pageNumber);
+        return getPageInfoByPageId(position2PageId(position));
     }
 
     public Cursor searchTitles(String searchString) {
@@ -816,15 +1382,159 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
         from pages
         where pages.id in (select docid from pagesTextSearch where pagesTextSearch.page match "نَافِع")
 */
-        ArrayList<SearchResult> SearchResults = new ArrayList<>();
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(BOOK_FTS_QUERY_SQL
-                , new String[]{cleanedSearchString});
+        if (searchOptions != null && searchOptions.isRankByRelevance()) {
+            return rankedSearch(cleanedSearchString, searchString, searchOptions);
+        }
+        return read(db -> cursorToSearchResults(db.rawQuery(BOOK_FTS_QUERY_SQL, new String[]{cleanedSearchString}),
+                searchString, searchOptions));
+    }
+
+    /**
+     * scores every matching page with {@link Bm25Scorer} from its matchinfo and only builds the
+     * results of the best {@link SearchOptions#getMaxRankedResults()} pages
+     *
+     * @return the results from the most relevant to the least
+     */
+    @NonNull
+    private ArrayList<SearchResult> rankedSearch(String cleanedSearchString, String searchString, @NonNull SearchOptions searchOptions) {
+        HashSet<Integer> titlePages = searchOptions.isBoostTitleMatches() ?
+                getTitleMatchesPageIds(cleanedSearchString) :
+                new HashSet<>();
+        Bm25Scorer.TopK topK = new Bm25Scorer.TopK(searchOptions.getMaxRankedResults());
+        read(db -> {
+            Cursor c = db.rawQuery(BOOK_FTS_MATCHINFO_SQL, new String[]{cleanedSearchString});
+            while (c.moveToNext()) {
+                int pageId = c.getInt(0);
+                double score = Bm25Scorer.score(Bm25Scorer.toIntArray(c.getBlob(1)));
+                if (titlePages.contains(pageId)) {
+                    score *= TITLE_MATCH_BOOST;
+                }
+                topK.offer(pageId, score);
+            }
+            c.close();
+            return null;
+        });
+
+        Bm25Scorer.ScoredPage[] scoredPages = topK.drainInRankOrder();
+        if (scoredPages.length == 0) return new ArrayList<>();
+        int[] pageIds = new int[scoredPages.length];
+        SparseIntArray ranks = new SparseIntArray(scoredPages.length);
+        for (int i = 0; i < scoredPages.length; i++) {
+            pageIds[i] = scoredPages[i].pageId;
+            ranks.put(scoredPages[i].pageId, i);
+        }
+        ArrayList<SearchResult> searchResults = getSearchResults(pageIds, searchString, searchOptions);
+        for (SearchResult searchResult : searchResults) {
+            searchResult.setRelevance((float) scoredPages[ranks.get(searchResult.getPageInfo().pageId)].score);
+        }
+        Collections.sort(searchResults, (o1, o2) -> ranks.get(o1.getPageInfo().pageId) - ranks.get(o2.getPageInfo().pageId));
+        return searchResults;
+    }
 
+    /**
+     * @return the ids of the pages where a title matching the query starts
+     */
+    @NonNull
+    private HashSet<Integer> getTitleMatchesPageIds(String cleanedSearchString) {
+        return read(db -> {
+            HashSet<Integer> pageIds = new HashSet<>();
+            Cursor c = db.rawQuery(SQL.SELECT +
+                            BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID +
+                            SQL.FROM + BookDatabaseContract.TitlesEntry.TABLE_NAME +
+                            SQL.WHERE + BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID + SQL.IN + "(" +
+                            SQL.SELECT + BookDatabaseContract.titlesTextSearch.COLUMN_NAME_DOC_id +
+                            SQL.FROM + BookDatabaseContract.titlesTextSearch.TABLE_NAME +
+                            SQL.WHERE + BookDatabaseContract.titlesTextSearch.COLUMN_NAME_TITLE + SQL.MATCH + "?" + ")",
+                    new String[]{cleanedSearchString});
+            while (c.moveToNext()) {
+                pageIds.add(c.getInt(0));
+            }
+            c.close();
+            return pageIds;
+        });
+    }
+
+    /**
+     * builds the search results for pages that are already known to match, used when the hits come
+     * from the {@link GlobalSearchIndexDbHelper} instead of this book fts table
+     *
+     * @param pageIds the matching pages
+     */
+    @NonNull
+    public ArrayList<SearchResult> getSearchResults(@NonNull int[] pageIds, String searchString, SearchOptions searchOptions) {
+        return read(db -> cursorToSearchResults(db.rawQuery(buildPagesAndParentTitlesQuery(pageIds), null),
+                searchString, searchOptions));
+    }
+
+    /**
+     * @return the query of {@link #buildSearchResultQuery(String)} for known pages
+     */
+    @NonNull
+    static String buildPagesAndParentTitlesQuery(@NonNull int[] pageIds) {
+        StringBuilder pageIdsList = new StringBuilder();
+        for (int i = 0; i < pageIds.length; i++) {
+            if (i != 0) pageIdsList.append(',');
+            pageIdsList.append(pageIds[i]);
+        }
+        return buildSearchResultQuery(
+                SQL.SELECT + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.AS + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_DOC_id +
+                        SQL.FROM + BookDatabaseContract.PageEntry.TABLE_NAME +
+                        SQL.WHERE + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + SQL.IN + "(" + pageIdsList + ")");
+    }
+
+    /**
+     * {@link #getPageInfoByPageId(int)} and {@link #getParentTitle(int)} of many pages with one
+     * query, for listings that would otherwise run both for every row
+     * <p>
+     * the titles only have their id, text and page
+     *
+     * @param pageIds may repeat
+     * @return keyed by page id, the pages before the first title of the book and the missing pages
+     * are not in it
+     */
+    @NonNull
+    public SparseArray<PageAndParentTitle> getPagesAndParentTitles(@NonNull int[] pageIds) {
+        SparseArray<PageAndParentTitle> pages = new SparseArray<>();
+        if (pageIds.length == 0) return pages;
+        return read(db -> {
+            Cursor c = db.rawQuery(buildPagesAndParentTitlesQuery(pageIds), null);
+            final int COLUMN_NAME_PAGE_ID_IDX = c.getColumnIndex(BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGE_ID);
+            final int COLUMN_NAME_PART_NUMBER_IDX = c.getColumnIndex(BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PARTNUMBER);
+            final int COLUMN_NAME_PAGE_NUMBER_IDX = c.getColumnIndex(BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGENUMBER);
+            int coulmn_title_id_index = c.getColumnIndex(BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_ID);
+            int column_title_text_indexd = c.getColumnIndex(BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_TITLE);
+            int column_rowId_indexd = c.getColumnIndex(BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_PAGE_ID);
+            while (c.moveToNext()) {
+                int pageId = c.getInt(COLUMN_NAME_PAGE_ID_IDX);
+                pages.put(pageId, new PageAndParentTitle(
+                        new PageInfo(pageId, c.getInt(COLUMN_NAME_PART_NUMBER_IDX), c.getInt(COLUMN_NAME_PAGE_NUMBER_IDX)),
+                        cursorToTitle(c, coulmn_title_id_index, column_title_text_indexd, column_rowId_indexd)));
+            }
+            c.close();
+            return pages;
+        });
+    }
+
+    /**
+     * @return the page from the pages of {@link #getPagesAndParentTitles(int[])} or with the per page
+     * queries if it is not there
+     */
+    @NonNull
+    public PageAndParentTitle getPageAndParentTitle(@NonNull SparseArray<PageAndParentTitle> pages, int pageId) {
+        PageAndParentTitle page = pages.get(pageId);
+        if (page == null) {
+            page = new PageAndParentTitle(getPageInfoByPageId(pageId), getParentTitle(pageId));
+            pages.put(pageId, page);
+        }
+        return page;
+    }
+
+    @NonNull
+    private ArrayList<SearchResult> cursorToSearchResults(@NonNull Cursor c, String searchString, SearchOptions searchOptions) {
+        ArrayList<SearchResult> SearchResults = new ArrayList<>();
         final int COLUMN_NAME_PAGE_ID_IDX = c.getColumnIndex(BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGE_ID);
         final int COLUMN_NAME_PART_NUMBER_IDX = c.getColumnIndex(BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PARTNUMBER);
         final int COLUMN_NAME_PAGE_NUMBER_IDX = c.getColumnIndex(BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGENUMBER);
-        final int COLUMN_NAME_PAGE_IDX = c.getColumnIndex(BookDatabaseContract.searchResultPageTableAlias.SEARCH_RESULT_PAGE);
 
         int coulmn_title_id_index = c.getColumnIndex(BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_ID);
         int column_title_text_indexd = c.getColumnIndex(BookDatabaseContract.searchResultParentTitleTableAlias.PARENT_TITLE_TITLE);
@@ -841,8 +1551,7 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
             SearchResult SearchResult = new SearchResult(bookId, c.getInt(COLUMN_NAME_PAGE_ID_IDX),
                     c.getInt(COLUMN_NAME_PART_NUMBER_IDX),
                     c.getInt(COLUMN_NAME_PAGE_NUMBER_IDX),
-                    c.getString(COLUMN_NAME_PAGE_IDX)
-                    , searchOptions,
+                    searchOptions,
                     searchString,
                     title);
 
@@ -852,34 +1561,108 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
         return SearchResults;
     }
 
+    /**
+     * @return a cursor over all pages ordered by id with the columns
+     * {@link BookDatabaseContract.PageEntry#COLUMN_NAME_PAGE_ID} and {@link BookDatabaseContract.PageEntry#COLUMN_NAME_PAGE}
+     */
+    public Cursor getAllPages() {
+        return getReadableDatabase().query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID,
+                        BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE},
+                null,
+                null,
+                null,
+                null,
+                BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID
+        );
+    }
+
     public boolean indexFts() throws SQLException {
+        return indexFts(null);
+    }
+
+    /**
+     * the pages are cleaned in parallel by a {@link FtsIndexingPipeline} and inserted into
+     * {@link BookDatabaseContract.pagesTextSearch#BUILDING_TABLE_NAME} in chunks, every chunk is
+     * committed with the id of its last page in {@link BookDatabaseContract.FtsIndexingStateEntry}
+     * so an interrupted indexing resumes after it, the pages are written in id order so all the
+     * pages up to the checkpoint are indexed
+     * <p>
+     * the table is renamed and the index marked complete in the final transaction with the titles
+     * index so {@link #isFtsSearchable()} never accepts a partial index
+     *
+     * @param progressListener called from this thread while the pages are indexed
+     */
+    public boolean indexFts(@Nullable FtsIndexingPipeline.IndexingProgressListener progressListener) throws SQLException {
         if (isFtsSearchable()) return true;
         SQLiteDatabase db = getWritableDatabase();
+        //the connection is shared with the reader and the searches so it is switched back after
+        ConnectionProfile.INDEXER.switchFrom(db, ConnectionProfile.BOOK);
+        mIndexBuilds.incrementAndGet();
+        try {
+            return indexFts(db, progressListener);
+        } finally {
+            mIndexBuilds.decrementAndGet();
+            ConnectionProfile.BOOK.switchFrom(db, ConnectionProfile.INDEXER);
+            invalidatePageIdIndex();
+        }
+    }
+
+    private boolean indexFts(@NonNull SQLiteDatabase db, @Nullable FtsIndexingPipeline.IndexingProgressListener progressListener) throws SQLException {
+        int totalPages = getPageCount();
+
+        long checkpoint = startOrResumeFtsIndexing(db);
+        int pagesBeforeCheckpoint = (int) DatabaseUtils.longForQuery(db,
+                SQL.SELECT + "count(*)" + SQL.FROM + BookDatabaseContract.PageEntry.TABLE_NAME +
+                        SQL.WHERE + BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + "<=?",
+                new String[]{String.valueOf(checkpoint)});
+        if (pagesBeforeCheckpoint > 0) {
+            Timber.i("resuming the indexing of book %d after page %d", bookId, checkpoint);
+        }
+        SQLiteStatement populateFTS_Statement = db.compileStatement(POPULATE_BUILDING_BOOK_FTS_SQL); //pre-compiled sql statement
+        SQLiteStatement checkpointStatement = db.compileStatement(UPDATE_FTS_INDEXING_CHECKPOINT_SQL);
+        try {
+            new FtsIndexingPipeline().run(new PagesBatchReader(db, checkpoint),
+                    ArabicUtilities::cleanTextForSearchingIndexing,
+                    new FtsIndexingPipeline.PageWriter() {
+                        private long mLastInsertedPageId;
+
+                        @Override
+                        public void beginTransaction() {
+                            db.beginTransaction();
+                        }
+
+                        @Override
+                        public void insert(int pageId, @NonNull String cleanedText) {
+                            populateFTS_Statement.clearBindings();
+                            populateFTS_Statement.bindLong(1, pageId);
+                            populateFTS_Statement.bindString(2, cleanedText);
+                            populateFTS_Statement.executeInsert();
+                            mLastInsertedPageId = pageId;
+                        }
+
+                        @Override
+                        public void endTransaction(boolean successful) {
+                            if (successful) {
+                                checkpointStatement.bindLong(1, mLastInsertedPageId);
+                                checkpointStatement.executeUpdateDelete();
+                                db.setTransactionSuccessful();
+                            }
+                            db.endTransaction();
+                        }
+                    },
+                    totalPages,
+                    progressListener == null ? null :
+                            (indexedPages, total) -> progressListener.onIndexingProgress(pagesBeforeCheckpoint + indexedPages, total));
+        } finally {
+            populateFTS_Statement.close();
+            checkpointStatement.close();
+        }
 
-        Cursor allPagesCursor = null;
         Cursor allTitlesCursor = null;
         db.beginTransaction();
         try {
-            allPagesCursor = db.query(BookDatabaseContract.PageEntry.TABLE_NAME,
-                    new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID,
-                            BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE},
-                    null,
-                    null,
-                    null,
-                    null,
-                    null
-            );
-            db.execSQL(CREATE_BOOK_FTS_TABLE);
-            SQLiteStatement populateFTS_Statement = db.compileStatement(POPULATE_BOOKS_FTS_SQL); //pre-compiled sql statement
-            while (allPagesCursor.moveToNext()) {
-                String cleanedText = ArabicUtilities.cleanTextForSearchingIndexing(allPagesCursor.getString(1));
-                populateFTS_Statement.clearBindings();
-                populateFTS_Statement.bindLong(1, allPagesCursor.getLong(0));
-                populateFTS_Statement.bindString(2, cleanedText);
-                populateFTS_Statement.executeInsert();
-            }
-            db.rawQuery(OPTIMIZE_BOOK_FTS, null);
-
+            db.execSQL(OPTIMIZE_BUILDING_BOOK_FTS);
 
             allTitlesCursor = db.query(BookDatabaseContract.TitlesEntry.TABLE_NAME,
                     new String[]{BookDatabaseContract.TitlesEntry.COLUMN_NAME_ID,
@@ -899,14 +1682,21 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
                 populateTitlesFTS_Statement.bindString(2, cleanedText);
                 populateTitlesFTS_Statement.executeInsert();
             }
-            db.rawQuery(OPTIMIZE_TITLES_FTS, null);
+            db.execSQL(OPTIMIZE_TITLES_FTS);
+            //an index left by an interrupted indexing of an older version
+            db.execSQL("DROP TABLE IF EXISTS " + BookDatabaseContract.pagesTextSearch.TABLE_NAME);
+            db.execSQL(SQL.ALTER_TABLE + BookDatabaseContract.pagesTextSearch.BUILDING_TABLE_NAME +
+                    " RENAME TO " + BookDatabaseContract.pagesTextSearch.TABLE_NAME);
+            ContentValues complete = new ContentValues();
+            complete.put(BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_COMPLETE, 1);
+            db.update(BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME, complete,
+                    BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_ID + "=?",
+                    new String[]{String.valueOf(BookDatabaseContract.FtsIndexingStateEntry.STATE_ROW_ID)});
             db.setTransactionSuccessful();
             return true;
         } finally {
             db.endTransaction();
-            if (allPagesCursor != null) {
-                allPagesCursor.close();
-            }
+            mHasFtsSnippets = null;
             if (allTitlesCursor != null) {
                 allTitlesCursor.close();
             }
@@ -916,39 +1706,139 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
 
     }
 
-    public boolean isFtsSearchable() {
-        Cursor c = null;
-        boolean b1;
+    /**
+     * resumes an interrupted indexing if its checkpoint and building table are still there or
+     * starts a new one
+     *
+     * @return the id of the last page already indexed
+     */
+    private static long startOrResumeFtsIndexing(@NonNull SQLiteDatabase db) {
+        db.beginTransaction();
         try {
-            c = getReadableDatabase().rawQuery(
-                    "select docid from " + BookDatabaseContract.pagesTextSearch.TABLE_NAME
-                            + " where " + BookDatabaseContract.pagesTextSearch.COLUMN_NAME_PAGE + " match ? limit 1",
-                    new String[]{"الله"});
+            HashSet<String> tables = getExistingTables(db,
+                    BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME,
+                    BookDatabaseContract.pagesTextSearch.BUILDING_TABLE_NAME);
+            if (tables.size() == 2) {
+                Cursor c = db.query(BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME,
+                        new String[]{BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_LAST_INDEXED_PAGE_ID},
+                        BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_ID + "=?" + SQL.AND +
+                                BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_COMPLETE + "=0",
+                        new String[]{String.valueOf(BookDatabaseContract.FtsIndexingStateEntry.STATE_ROW_ID)},
+                        null, null, null);
+                try {
+                    if (c.moveToFirst()) {
+                        db.setTransactionSuccessful();
+                        return c.isNull(0) ? Long.MIN_VALUE : c.getLong(0);
+                    }
+                } finally {
+                    c.close();
+                }
+            }
+            db.execSQL("DROP TABLE IF EXISTS " + BookDatabaseContract.pagesTextSearch.BUILDING_TABLE_NAME);
+            db.execSQL(CREATE_BUILDING_BOOK_FTS_TABLE);
+            db.execSQL(CREATE_FTS_INDEXING_STATE_TABLE);
+            ContentValues state = new ContentValues();
+            state.put(BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_ID, BookDatabaseContract.FtsIndexingStateEntry.STATE_ROW_ID);
+            state.putNull(BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_LAST_INDEXED_PAGE_ID);
+            state.put(BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_COMPLETE, 0);
+            db.insertWithOnConflict(BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME, null, state,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+            return Long.MIN_VALUE;
+        } finally {
+            db.endTransaction();
+        }
+    }
 
-            b1 = c.getCount() > -1;
-        } catch (Exception e) {
-            b1 = false;
+    /**
+     * @return the given tables that exist in the database, lower cased
+     */
+    @NonNull
+    private static HashSet<String> getExistingTables(@NonNull SQLiteDatabase db, @NonNull String... tableNames) {
+        StringBuilder placeholders = new StringBuilder();
+        String[] lowerCaseNames = new String[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+            lowerCaseNames[i] = tableNames[i].toLowerCase(Locale.ENGLISH);
+        }
+        Cursor c = db.rawQuery(SQL.SELECT + "lower(name)" + SQL.FROM + "sqlite_master" +
+                SQL.WHERE + "type='table'" + SQL.AND + "lower(name)" + SQL.IN + "(" + placeholders + ")", lowerCaseNames);
+        HashSet<String> tables = new HashSet<>();
+        while (c.moveToNext()) {
+            tables.add(c.getString(0));
+        }
+        c.close();
+        return tables;
+    }
+
+    /**
+     * reads the pages in id order one batch per query so the connection is not kept busy between
+     * the writer transactions
+     */
+    private static class PagesBatchReader implements FtsIndexingPipeline.PageReader {
+        @NonNull
+        private final SQLiteDatabase mDatabase;
+        private long mLastPageId;
+
+        /**
+         * @param lastIndexedPageId the pages up to this one are skipped
+         */
+        PagesBatchReader(@NonNull SQLiteDatabase database, long lastIndexedPageId) {
+            mDatabase = database;
+            mLastPageId = lastIndexedPageId;
         }
-        if (c != null) {
+
+        @Override
+        public void read(@NonNull FtsIndexingPipeline.Batch batch) {
+            Cursor c = mDatabase.query(BookDatabaseContract.PageEntry.TABLE_NAME,
+                    new String[]{BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID,
+                            BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE},
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID + ">?",
+                    new String[]{String.valueOf(mLastPageId)},
+                    null,
+                    null,
+                    BookDatabaseContract.PageEntry.COLUMN_NAME_PAGE_ID,
+                    String.valueOf(batch.capacity())
+            );
+            while (c.moveToNext()) {
+                batch.add(c.getInt(0), c.getString(1));
+            }
             c.close();
+            if (batch.size > 0) {
+                mLastPageId = batch.lastPageId();
+            }
         }
-        boolean titlesSearch;
-        Cursor titlesSearchCursor = null;
-        try {
-            titlesSearchCursor = getReadableDatabase().rawQuery(
-                    "select docid from " + BookDatabaseContract.titlesTextSearch.TABLE_NAME
-                            + " where " + BookDatabaseContract.titlesTextSearch.COLUMN_NAME_TITLE + " match ?  limit 1 ",
-                    new String[]{"الله"});
+    }
 
-            titlesSearch = titlesSearchCursor.getCount() > -1;
+    /**
+     * @return true if the fts index is complete as marked by {@link #indexFts()}, books indexed by
+     * older versions or downloaded already indexed have no indexing state, their index was built in
+     * a single transaction so it is complete if both fts tables exist, a contentless pages table
+     * of an older version is not accepted so the book is indexed again
+     */
+    public boolean isFtsSearchable() {
+        boolean searchable;
+        try {
+            SQLiteDatabase db = getReadableDatabase();
+            HashSet<String> tables = getExistingTables(db,
+                    BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME,
+                    BookDatabaseContract.pagesTextSearch.TABLE_NAME,
+                    BookDatabaseContract.titlesTextSearch.TABLE_NAME);
+            if (tables.contains(BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME)) {
+                searchable = DatabaseUtils.longForQuery(db,
+                        SQL.SELECT + BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_COMPLETE +
+                                SQL.FROM + BookDatabaseContract.FtsIndexingStateEntry.TABLE_NAME +
+                                SQL.WHERE + BookDatabaseContract.FtsIndexingStateEntry.COLUMN_NAME_ID + "=?",
+                        new String[]{String.valueOf(BookDatabaseContract.FtsIndexingStateEntry.STATE_ROW_ID)}) == 1;
+            } else {
+                searchable = tables.contains(BookDatabaseContract.pagesTextSearch.TABLE_NAME) &&
+                        tables.contains(BookDatabaseContract.titlesTextSearch.TABLE_NAME) &&
+                        !isContentless(getPagesFtsSql(db));
+            }
         } catch (Exception e) {
-            titlesSearch = false;
-        }
-        if (titlesSearchCursor != null) {
-            titlesSearchCursor.close();
+            searchable = false;
         }
-        close();
-        return b1 && titlesSearch;
+        return searchable;
 
     }
 
@@ -962,14 +1852,30 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
                 new String[]{String.valueOf(partNumber), String.valueOf(pageNumber)}) > 0L;
     }
 
+    /**
+     * runs the schema checks every time, {@link #getInstance(Context, int)} runs them once per book file
+     */
     public boolean isValidBook() {
         DBValidator dBValidator = new DBValidator(DBValidator.DataBaseType.BOOK_DATABASE_TYPE);
         dBValidator.validate(this);
         return dBValidator.isValid();
     }
 
+    /**
+     * read from the info table once per open, the returned object is shared
+     */
     @NonNull
     public BookInfo getBookInfo() {
+        BookInfo bookInfo = mBookInfo;
+        if (bookInfo == null) {
+            bookInfo = queryBookInfo();
+            mBookInfo = bookInfo;
+        }
+        return bookInfo;
+    }
+
+    @NonNull
+    private BookInfo queryBookInfo() {
         Cursor c = getReadableDatabase().query(BookDatabaseContract.InfoEntry.TABLE_NAME,
                 new String[]{BookDatabaseContract.InfoEntry.COLUMN_NAME_NAME, BookDatabaseContract.InfoEntry.COLUMN_NAME_VALUE}
                 , null, null, null, null, null
@@ -994,4 +1900,16 @@ public class BookDatabaseHelper extends SQLiteOpenHelper {
                         map.get(BookDatabaseContract.InfoEntry.KEY_CATEGORY_TITLE))
         );
     }
+
+    public static class PageAndParentTitle {
+        @NonNull
+        public final PageInfo pageInfo;
+        @NonNull
+        public final Title parentTitle;
+
+        PageAndParentTitle(@NonNull PageInfo pageInfo, @NonNull Title parentTitle) {
+            this.pageInfo = pageInfo;
+            this.parentTitle = parentTitle;
+        }
+    }
 }
@@ -0,0 +1,364 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The handles of the books, one per book, validated once per book file and kept open only while
+ * they are used
+ * <p>
+ * a handle remembers the size and modification time of the file it was validated against, while
+ * the file keeps them {@link #validate(int, Object)} only stats the file, a replaced or rewritten file is
+ * validated again and a handle that failed is validated again on every call
+ * <p>
+ * the reader, a search or the indexer {@link #acquire(int, Factory)} the handle for as long as
+ * they use it, the handles no one holds are closed when they are idle for longer than the idle
+ * timeout or, least recently used first, when more than the maximum are open, closed handles stay
+ * registered and open again on their next use
+ * <p>
+ * getting a handle and skipping a validation don't lock, validating or closing a handle locks
+ * only that handle
+ * <p>
+ * thread safe
+ *
+ * @param <T> the handle type
+ */
+public class BookHandleRegistry<T> {
+    @NonNull
+    private final ConcurrentHashMap<Integer, Entry<T>> mEntries = new ConcurrentHashMap<>();
+    @NonNull
+    private final Validator<T> mValidator;
+    @Nullable
+    private final Closer<T> mCloser;
+    private final int mMaxOpen;
+    private final long mIdleTimeoutNanos;
+    private final AtomicLong mValidationCount = new AtomicLong();
+    private final AtomicLong mSkippedValidationCount = new AtomicLong();
+    private final AtomicInteger mOpenCount = new AtomicInteger();
+    private final AtomicInteger mPeakOpenCount = new AtomicInteger();
+    private final AtomicLong mEvictionCount = new AtomicLong();
+    private final AtomicBoolean mTrimming = new AtomicBoolean();
+    private volatile long mLastTrimNanos = System.nanoTime();
+
+    /**
+     * a registry that never closes its handles
+     */
+    public BookHandleRegistry(@NonNull Validator<T> validator) {
+        this(validator, null, Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxOpen           how many handles may stay open, the held ones are never closed so
+     *                          more can be open while they are held
+     * @param idleTimeoutMillis how long a handle no one holds stays open after its last use
+     */
+    public BookHandleRegistry(@NonNull Validator<T> validator, @Nullable Closer<T> closer, int maxOpen, long idleTimeoutMillis) {
+        mValidator = validator;
+        mCloser = closer;
+        mMaxOpen = maxOpen;
+        mIdleTimeoutNanos = idleTimeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+    /**
+     * @return the handle of the book, created by the factory if there is none, a handle created
+     * by a concurrent call that lost is dropped without being used
+     */
+    @NonNull
+    public T get(int bookId, @NonNull Factory<T> factory) {
+        Entry<T> entry = getEntry(bookId, factory);
+        use(entry);
+        return entry.handle;
+    }
+
+    /**
+     * like {@link #get(int, Factory)} but the handle is not closed until it is released
+     */
+    @NonNull
+    public T acquire(int bookId, @NonNull Factory<T> factory) {
+        Entry<T> entry = getEntry(bookId, factory);
+        entry.refCount.incrementAndGet();
+        use(entry);
+        return entry.handle;
+    }
+
+    /**
+     * releases an {@link #acquire(int, Factory)}d handle
+     *
+     * @throws IllegalStateException if it is released more times than it was acquired
+     */
+    public void release(int bookId, @NonNull T handle) {
+        Entry<T> entry = mEntries.get(bookId);
+        if (entry == null || entry.handle != handle) return;
+        if (entry.refCount.decrementAndGet() < 0) {
+            entry.refCount.incrementAndGet();
+            throw new IllegalStateException("book " + bookId + " released more times than acquired");
+        }
+        long now = System.nanoTime();
+        entry.lastUsedNanos = now;
+        trimIfNeeded(now);
+    }
+
+    @NonNull
+    private Entry<T> getEntry(int bookId, @NonNull Factory<T> factory) {
+        Entry<T> entry = mEntries.get(bookId);
+        if (entry == null) {
+            Entry<T> created = new Entry<>(factory.create(bookId));
+            entry = mEntries.putIfAbsent(bookId, created);
+            if (entry == null) entry = created;
+        }
+        return entry;
+    }
+
+    private void use(@NonNull Entry<T> entry) {
+        long now = System.nanoTime();
+        entry.lastUsedNanos = now;
+        if (entry.open.compareAndSet(false, true)) {
+            int openCount = mOpenCount.incrementAndGet();
+            int peak = mPeakOpenCount.get();
+            while (openCount > peak && !mPeakOpenCount.compareAndSet(peak, openCount)) {
+                peak = mPeakOpenCount.get();
+            }
+        }
+        trimIfNeeded(now);
+    }
+
+    /**
+     * @return the handle of the book if it has one, doesn't create or open it
+     */
+    @Nullable
+    public T peek(int bookId) {
+        Entry<T> entry = mEntries.get(bookId);
+        return entry == null ? null : entry.handle;
+    }
+
+    /**
+     * validates the handle of the book unless it was already validated against the same file
+     *
+     * @return false if the handle is not valid or it is no longer the handle of the book, a
+     * removed handle is not validated, {@link #peek(int)} tells the two apart
+     */
+    public boolean validate(int bookId, @NonNull T handle) {
+        Entry<T> entry = mEntries.get(bookId);
+        if (entry == null || entry.handle != handle) return false;
+        File file = mValidator.getFile(entry.handle);
+        long fileLength = file.length();
+        long fileLastModified = file.lastModified();
+        if (entry.isValidatedFor(fileLength, fileLastModified)) {
+            mSkippedValidationCount.incrementAndGet();
+            return true;
+        }
+        synchronized (entry) {
+            //validated by a concurrent call while waiting
+            if (entry.isValidatedFor(fileLength, fileLastModified)) {
+                mSkippedValidationCount.incrementAndGet();
+                return true;
+            }
+            mValidationCount.incrementAndGet();
+            boolean valid = mValidator.isValid(entry.handle);
+            if (valid) {
+                entry.setValidated(fileLength, fileLastModified);
+            } else {
+                entry.clearValidated();
+            }
+            return valid;
+        }
+    }
+
+    /**
+     * the next {@link #validate(int, Object)} of the book validates its handle
+     */
+    public void invalidate(int bookId) {
+        Entry<T> entry = mEntries.get(bookId);
+        if (entry != null) entry.clearValidated();
+    }
+
+    /**
+     * removes the handle of the book if it is still this one and no one holds it, the caller
+     * closes it
+     *
+     * @return false if it is held, it stays registered and open
+     */
+    public boolean remove(int bookId, @NonNull T handle) {
+        Entry<T> entry = mEntries.get(bookId);
+        if (entry == null || entry.handle != handle) return true;
+        synchronized (entry) {
+            if (entry.refCount.get() > 0) return false;
+            if (mEntries.remove(bookId, entry) && entry.open.compareAndSet(true, false)) {
+                mOpenCount.decrementAndGet();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * trims every half idle timeout and whenever too many handles are open, a thread that finds
+     * another one trimming goes on without waiting
+     */
+    private void trimIfNeeded(long now) {
+        if (mCloser == null) return;
+        if (mOpenCount.get() <= mMaxOpen && now - mLastTrimNanos < mIdleTimeoutNanos / 2) return;
+        if (!mTrimming.compareAndSet(false, true)) return;
+        try {
+            trim(now);
+        } finally {
+            mTrimming.set(false);
+        }
+    }
+
+    /**
+     * closes the idle handles no one holds and then the least recently used of the others no one
+     * holds until no more than the maximum are open
+     *
+     * @return how many were closed
+     */
+    @VisibleForTesting
+    int trim(long now) {
+        mLastTrimNanos = now;
+        if (mCloser == null) return 0;
+        ArrayList<Entry<T>> unheld = new ArrayList<>();
+        int closed = 0;
+        for (Entry<T> entry : mEntries.values()) {
+            if (!entry.open.get() || entry.refCount.get() > 0) continue;
+            if (now - entry.lastUsedNanos > mIdleTimeoutNanos) {
+                if (close(entry, now - mIdleTimeoutNanos)) closed++;
+            } else {
+                unheld.add(entry);
+            }
+        }
+        if (mOpenCount.get() > mMaxOpen) {
+            Collections.sort(unheld, (e1, e2) -> Long.compare(e1.lastUsedNanos, e2.lastUsedNanos));
+            for (int i = 0; i < unheld.size() && mOpenCount.get() > mMaxOpen; i++) {
+                if (close(unheld.get(i), now)) closed++;
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * closes the idle handles no one holds, for when the memory is low
+     *
+     * @return how many were closed
+     */
+    public int trimIdle() {
+        return trim(System.nanoTime());
+    }
+
+    /**
+     * @param usedBefore the handle is closed only if it was last used before this, the handle whose
+     *                   use started the trim is not closed
+     */
+    private boolean close(@NonNull Entry<T> entry, long usedBefore) {
+        synchronized (entry) {
+            if (entry.refCount.get() > 0 || entry.lastUsedNanos >= usedBefore
+                    || !entry.open.compareAndSet(true, false)) {
+                return false;
+            }
+            mOpenCount.decrementAndGet();
+            mEvictionCount.incrementAndGet();
+            //noinspection ConstantConditions only called with a closer
+            mCloser.close(entry.handle);
+            return true;
+        }
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public int getOpenCount() {
+        return mOpenCount.get();
+    }
+
+    public int getPeakOpenCount() {
+        return mPeakOpenCount.get();
+    }
+
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    public long getValidationCount() {
+        return mValidationCount.get();
+    }
+
+    public long getSkippedValidationCount() {
+        return mSkippedValidationCount.get();
+    }
+
+    @NonNull
+    public String getStats() {
+        return String.format(Locale.US, "book handles: %d registered, %d open (peak %d), %d closed, %d validations, %d skipped",
+                mEntries.size(), mOpenCount.get(), mPeakOpenCount.get(), mEvictionCount.get(),
+                mValidationCount.get(), mSkippedValidationCount.get());
+    }
+
+    public interface Factory<T> {
+        @NonNull
+        T create(int bookId);
+    }
+
+    public interface Validator<T> {
+        /**
+         * @return the file the handle reads, only stat'ed
+         */
+        @NonNull
+        File getFile(@NonNull T handle);
+
+        /**
+         * runs the schema checks, never called for the same book concurrently
+         */
+        boolean isValid(@NonNull T handle);
+    }
+
+    public interface Closer<T> {
+        /**
+         * releases the connection and the caches of a handle no one holds, the handle opens again
+         * by itself if it is used after that
+         */
+        void close(@NonNull T handle);
+    }
+
+    private static class Entry<T> {
+        @NonNull
+        final T handle;
+        final AtomicInteger refCount = new AtomicInteger();
+        final AtomicBoolean open = new AtomicBoolean();
+        volatile long lastUsedNanos;
+        /**
+         * the file the handle was last validated against, null if it is not validated, replaced
+         * as a whole so the size and the modification time are always of the same validation
+         */
+        @Nullable
+        private volatile long[] mValidatedFile;
+
+        Entry(@NonNull T handle) {
+            this.handle = handle;
+        }
+
+        boolean isValidatedFor(long fileLength, long fileLastModified) {
+            long[] validatedFile = mValidatedFile;
+            return validatedFile != null
+                    && validatedFile[0] == fileLength
+                    && validatedFile[1] == fileLastModified;
+        }
+
+        void setValidated(long fileLength, long fileLastModified) {
+            mValidatedFile = new long[]{fileLength, fileLastModified};
+        }
+
+        void clearValidated() {
+            mValidatedFile = null;
+        }
+    }
+}
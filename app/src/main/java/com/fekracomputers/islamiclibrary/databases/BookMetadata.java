@@ -0,0 +1,104 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.support.annotation.NonNull;
+
+import com.fekracomputers.islamiclibrary.model.BookPartsInfo;
+import com.fekracomputers.islamiclibrary.model.PageInfo;
+import com.fekracomputers.islamiclibrary.model.PartInfo;
+
+/**
+ * What the reader, the searches and the bookmark listings ask a book about its pages, computed
+ * with a scan of the pages when the book is first opened after its download and kept in the book
+ * file in {@link BookDatabaseContract.BookMetadataEntry}
+ * <p>
+ * the model objects are mutable so every getter returns a new one
+ */
+public class BookMetadata {
+    private final int mFirstPartNumber;
+    private final int mFirstPartFirstPage;
+    private final int mFirstPartLastPage;
+    private final int mLastPart;
+    private final int mLargestPage;
+    private final int mFirstPageId;
+    private final int mFirstPagePartNumber;
+    private final int mFirstPageNumber;
+    private final int mPageCount;
+
+    public BookMetadata(@NonNull BookPartsInfo bookPartsInfo, @NonNull PageInfo firstPageInfo, int pageCount) {
+        this(bookPartsInfo.firstPart.partNumber,
+                bookPartsInfo.firstPart.firstPage,
+                bookPartsInfo.firstPart.lastPage,
+                bookPartsInfo.lastPart,
+                bookPartsInfo.largestPage,
+                firstPageInfo.pageId,
+                firstPageInfo.partNumber,
+                firstPageInfo.pageNumber,
+                pageCount);
+    }
+
+    BookMetadata(int firstPartNumber,
+                 int firstPartFirstPage,
+                 int firstPartLastPage,
+                 int lastPart,
+                 int largestPage,
+                 int firstPageId,
+                 int firstPagePartNumber,
+                 int firstPageNumber,
+                 int pageCount) {
+        mFirstPartNumber = firstPartNumber;
+        mFirstPartFirstPage = firstPartFirstPage;
+        mFirstPartLastPage = firstPartLastPage;
+        mLastPart = lastPart;
+        mLargestPage = largestPage;
+        mFirstPageId = firstPageId;
+        mFirstPagePartNumber = firstPagePartNumber;
+        mFirstPageNumber = firstPageNumber;
+        mPageCount = pageCount;
+    }
+
+    @NonNull
+    public BookPartsInfo getBookPartsInfo() {
+        return new BookPartsInfo(new PartInfo(mFirstPartFirstPage, mFirstPartLastPage, mFirstPartNumber),
+                mLastPart,
+                mLargestPage);
+    }
+
+    @NonNull
+    public PageInfo getFirstPageInfo() {
+        return new PageInfo(mFirstPageId, mFirstPagePartNumber, mFirstPageNumber);
+    }
+
+    public int getPageCount() {
+        return mPageCount;
+    }
+
+    /**
+     * @return the values of the columns of {@link BookDatabaseContract.BookMetadataEntry#COLUMNS}
+     * in the same order
+     */
+    @NonNull
+    int[] toColumnValues() {
+        return new int[]{
+                mFirstPartNumber,
+                mFirstPartFirstPage,
+                mFirstPartLastPage,
+                mLastPart,
+                mLargestPage,
+                mFirstPageId,
+                mFirstPagePartNumber,
+                mFirstPageNumber,
+                mPageCount};
+    }
+
+    /**
+     * @param values as returned by {@link #toColumnValues()}
+     */
+    @NonNull
+    static BookMetadata fromColumnValues(@NonNull int[] values) {
+        if (values.length != BookDatabaseContract.BookMetadataEntry.COLUMNS.length) {
+            throw new IllegalArgumentException("expected " + BookDatabaseContract.BookMetadataEntry.COLUMNS.length + " values");
+        }
+        return new BookMetadata(values[0], values[1], values[2], values[3], values[4],
+                values[5], values[6], values[7], values[8]);
+    }
+}
@@ -909,18 +909,19 @@ public class BooksInformationDbHelper extends SQLiteOpenHelper {
             if (status <= DownloadsConstants.STATUS_UNZIP_ENDED) {
                 BookDatabaseHelper bookDatabaseHelper = null;
                 try {
-                    bookDatabaseHelper = BookDatabaseHelper.getInstance(context, bookId);
-                    if (bookDatabaseHelper != null && bookDatabaseHelper.isFtsSearchable()) {
+                    bookDatabaseHelper = BookDatabaseHelper.acquire(context, bookId);
+                    if (bookDatabaseHelper.isFtsSearchable()) {
                         updateStoredBookStatus(db, bookId, DownloadsConstants.STATUS_FTS_INDEXING_ENDED);
                     } else {
                         requestIndexing(bookId, context, filePath);
                         updateStoredBookStatus(db, bookId, DownloadsConstants.STATUS_UNZIP_ENDED);
                     }
-                    if (bookDatabaseHelper != null) {
-                        bookDatabaseHelper.close();
-                    }
                 } catch (BookDatabaseException bookDatabaseException) {
                     Timber.e(bookDatabaseException);
+                } finally {
+                    if (bookDatabaseHelper != null) {
+                        bookDatabaseHelper.release();
+                    }
                 }
             } else if (status == DownloadsConstants.STATUS_FTS_INDEXING_STARTED) {
                 //it started but was not marked as finished may be it is now being indexed or may be it was corrupted
@@ -930,8 +931,9 @@ public class BooksInformationDbHelper extends SQLiteOpenHelper {
                 updateStoredBookStatus(db, bookId, DownloadsConstants.STATUS_UNZIP_ENDED);
             }
         } else {//book wasn't added before
+            BookDatabaseHelper bookDatabaseHelper = null;
             try {
-                BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(context, bookId);
+                bookDatabaseHelper = BookDatabaseHelper.acquire(context, bookId);
                 if (bookDatabaseHelper.isFtsSearchable()) {//the book is fully configured
                     insertStoredBook(db, bookId, DownloadsConstants.STATUS_FTS_INDEXING_ENDED);
                     Intent localIntent =
@@ -953,9 +955,12 @@ public class BooksInformationDbHelper extends SQLiteOpenHelper {
                     requestIndexing(bookId, context, filePath);
 
                 }
-                bookDatabaseHelper.close();
             } catch (BookDatabaseException bookDatabaseException) {
                 Timber.e(bookDatabaseException);
+            } finally {
+                if (bookDatabaseHelper != null) {
+                    bookDatabaseHelper.release();
+                }
             }
         }
 
@@ -1453,6 +1458,9 @@ public class BooksInformationDbHelper extends SQLiteOpenHelper {
             }
         deleteBookFromStoredBooks(bookId, context);
         UserDataDBHelper.getInstance(context).deleteAccessLog(bookId);
+        if (GlobalSearchIndexDbHelper.indexExists(context)) {
+            GlobalSearchIndexDbHelper.getInstance(context).removeBook(bookId);
+        }
     }
 
     public void deleteBookFromStoredBooks(int bookId, Context context) {
@@ -0,0 +1,167 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import timber.log.Timber;
+
+/**
+ * How a connection to a book database is tuned for what it is used for
+ * <p>
+ * applied when the book is opened in {@link BookDatabaseHelper#onConfigure(SQLiteDatabase)}, the
+ * pragmas an older SQLite doesn't know (mmap_size before 3.7.17, query_only before 3.8.0) are
+ * ignored by it
+ * <p>
+ * the presets keep the rollback journal, the books live on external storage where the shared
+ * memory file of write-ahead logging is not reliable
+ */
+public class ConnectionProfile {
+    public static final int TEMP_STORE_DEFAULT = 0;
+    public static final int TEMP_STORE_FILE = 1;
+    public static final int TEMP_STORE_MEMORY = 2;
+    public static final String JOURNAL_MODE_DELETE = "DELETE";
+    public static final String JOURNAL_MODE_TRUNCATE = "TRUNCATE";
+    /**
+     * enabled through {@link android.database.sqlite.SQLiteOpenHelper#setWriteAheadLoggingEnabled(boolean)}
+     * before the book is opened instead of a pragma, see {@link #isWriteAheadLogging()}
+     */
+    public static final String JOURNAL_MODE_WAL = "WAL";
+    /**
+     * leaves a setting as SQLite has it
+     */
+    public static final int UNSET = -1;
+    private static final int MIB = 1024 * 1024;
+
+    /**
+     * a search reads the fts index and the pages and titles of the results, the sort of the
+     * results is kept in memory
+     */
+    public static final ConnectionProfile SEARCH = new ConnectionProfile("search",
+            JOURNAL_MODE_DELETE, 64 * MIB, 2 * 1024, TEMP_STORE_MEMORY, true);
+    /**
+     * the indexing writes the fts index in big transactions, the segments it merges are kept in
+     * a big page cache
+     */
+    public static final ConnectionProfile INDEXER = new ConnectionProfile("indexer",
+            JOURNAL_MODE_DELETE, UNSET, 8 * 1024, TEMP_STORE_MEMORY, false);
+    /**
+     * the connection of {@link BookDatabaseHelper} serves the reader and the searches and is
+     * written by the indexing and the upgrades so it can't be query only
+     */
+    public static final ConnectionProfile BOOK = new ConnectionProfile("book",
+            JOURNAL_MODE_DELETE, 64 * MIB, 2 * 1024, TEMP_STORE_MEMORY, false);
+
+    @NonNull
+    public final String name;
+    /**
+     * null to leave it
+     */
+    @Nullable
+    public final String journalMode;
+    /**
+     * bytes, {@link #UNSET} to leave it
+     */
+    public final long mmapSize;
+    /**
+     * KiB, {@link #UNSET} to leave it
+     */
+    public final int cacheSizeKib;
+    public final int tempStore;
+    public final boolean queryOnly;
+
+    public ConnectionProfile(@NonNull String name,
+                             @Nullable String journalMode,
+                             long mmapSize,
+                             int cacheSizeKib,
+                             int tempStore,
+                             boolean queryOnly) {
+        this.name = name;
+        this.journalMode = journalMode;
+        this.mmapSize = mmapSize;
+        this.cacheSizeKib = cacheSizeKib;
+        this.tempStore = tempStore;
+        this.queryOnly = queryOnly;
+    }
+
+    /**
+     * @return the pragmas of the profile in the order they are applied
+     */
+    @NonNull
+    List<String> getPragmas() {
+        ArrayList<String> pragmas = new ArrayList<>();
+        if (journalMode != null && !isWriteAheadLogging()) pragmas.add("PRAGMA journal_mode=" + journalMode);
+        if (mmapSize != UNSET) pragmas.add("PRAGMA mmap_size=" + mmapSize);
+        //a negative cache size is in KiB instead of pages so it doesn't depend on the page size
+        if (cacheSizeKib != UNSET) pragmas.add("PRAGMA cache_size=" + -cacheSizeKib);
+        if (tempStore != TEMP_STORE_DEFAULT) pragmas.add("PRAGMA temp_store=" + tempStore);
+        if (queryOnly) pragmas.add("PRAGMA query_only=1");
+        return pragmas;
+    }
+
+    /**
+     * @return the pragmas that change a connection configured with the other profile to this one,
+     * for a connection that changes its use for a while
+     */
+    @NonNull
+    List<String> getPragmasSwitchingFrom(@NonNull ConnectionProfile other) {
+        ArrayList<String> pragmas = new ArrayList<>();
+        //a connection can't leave or enter write-ahead logging while it is used
+        if (journalMode != null && !journalMode.equals(other.journalMode)
+                && !isWriteAheadLogging() && !other.isWriteAheadLogging()) {
+            pragmas.add("PRAGMA journal_mode=" + journalMode);
+        }
+        if (mmapSize != other.mmapSize && mmapSize != UNSET) pragmas.add("PRAGMA mmap_size=" + mmapSize);
+        if (cacheSizeKib != other.cacheSizeKib && cacheSizeKib != UNSET) pragmas.add("PRAGMA cache_size=" + -cacheSizeKib);
+        if (tempStore != other.tempStore) pragmas.add("PRAGMA temp_store=" + tempStore);
+        if (queryOnly != other.queryOnly) pragmas.add("PRAGMA query_only=" + (queryOnly ? 1 : 0));
+        return pragmas;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return JOURNAL_MODE_WAL.equals(journalMode);
+    }
+
+    /**
+     * called from onConfigure, before the database is opened for the helper
+     */
+    public void apply(@NonNull SQLiteDatabase db) {
+        execPragmas(db, getPragmas());
+    }
+
+    /**
+     * switches a connection configured with the other profile to this one
+     */
+    public void switchFrom(@NonNull SQLiteDatabase db, @NonNull ConnectionProfile other) {
+        execPragmas(db, getPragmasSwitchingFrom(other));
+    }
+
+    /**
+     * some pragmas return their new value and can't run with execSQL
+     */
+    private static void execPragmas(@NonNull SQLiteDatabase db, @NonNull List<String> pragmas) {
+        for (String pragma : pragmas) {
+            Cursor c = null;
+            try {
+                c = db.rawQuery(pragma, null);
+                c.moveToFirst();
+            } catch (RuntimeException e) {
+                Timber.w(e, "%s failed", pragma);
+            } finally {
+                if (c != null) c.close();
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s(journal=%s, mmap=%d, cache=%dKiB, temp_store=%d, query_only=%b)",
+                name, journalMode, mmapSize, cacheSizeKib, tempStore, queryOnly);
+    }
+}
@@ -0,0 +1,300 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer/consumer pipeline used to build the fts index of a book
+ * <p>
+ * a reader thread streams batches of pages, {@code workers} threads clean them for indexing (the cpu
+ * bound part) and the calling thread is the single writer inserting the batches in page order, the
+ * reader needs a permit for every batch it reads which the writer gives back once the batch is
+ * written so a slow writer stops the reader instead of buffering the whole book
+ * <p>
+ * the writer only keeps a transaction open while it has batches in hand and commits before waiting
+ * for more, so the reader can use the same database connection between two transactions
+ * <p>
+ * an instance runs only once
+ */
+public class FtsIndexingPipeline {
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    /**
+     * cleaning more than this in parallel doesn't help as the writer becomes the bottleneck
+     */
+    private static final int MAX_WORKERS = 4;
+    /**
+     * batches that can be read but not written yet per worker
+     */
+    private static final int BATCHES_IN_FLIGHT_PER_WORKER = 2;
+    private static final long POLL_MILLIS = 100;
+    /**
+     * the writer commits at least every this number of pages even if more batches are ready
+     */
+    private static final int MAX_PAGES_PER_TRANSACTION = 2048;
+    /**
+     * the end of stream marker sent by the reader to every worker and by every worker to the writer
+     */
+    private static final Batch END_OF_PAGES = new Batch(0, 0);
+
+    private final int mWorkers;
+    private final int mBatchSize;
+    @NonNull
+    private final Semaphore mBatchesInFlight;
+    @NonNull
+    private final BlockingQueue<Batch> mReadBatches;
+    @NonNull
+    private final BlockingQueue<Batch> mCleanedBatches;
+    private volatile boolean mCancelled;
+    @Nullable
+    private volatile Throwable mFailure;
+
+    public FtsIndexingPipeline() {
+        this(defaultWorkers(), DEFAULT_BATCH_SIZE);
+    }
+
+    public FtsIndexingPipeline(int workers, int batchSize) {
+        mWorkers = Math.max(1, workers);
+        mBatchSize = Math.max(1, batchSize);
+        int maxBatchesInFlight = mWorkers * BATCHES_IN_FLIGHT_PER_WORKER;
+        mBatchesInFlight = new Semaphore(maxBatchesInFlight);
+        //room for all the batches in flight and the end markers so putting never blocks
+        mReadBatches = new ArrayBlockingQueue<>(maxBatchesInFlight + mWorkers);
+        mCleanedBatches = new ArrayBlockingQueue<>(maxBatchesInFlight + mWorkers);
+    }
+
+    /**
+     * one core is left for the reader and the writer
+     */
+    private static int defaultWorkers() {
+        return Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * runs the pipeline, returns when all the pages are written or rethrows the first failure of
+     * any stage after stopping the others
+     *
+     * @param totalPages used only for progress reporting
+     */
+    public void run(@NonNull PageReader pageReader,
+                    @NonNull TextCleaner textCleaner,
+                    @NonNull PageWriter pageWriter,
+                    int totalPages,
+                    @Nullable IndexingProgressListener progressListener) {
+        ExecutorService executor = Executors.newFixedThreadPool(mWorkers + 1);
+        try {
+            executor.execute(() -> read(pageReader));
+            for (int i = 0; i < mWorkers; i++) {
+                executor.execute(() -> clean(textCleaner));
+            }
+            write(pageWriter, totalPages, progressListener);
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            mCancelled = true;
+            executor.shutdownNow();
+        }
+        Throwable failure = mFailure;
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    private void fail(@NonNull Throwable throwable) {
+        if (mFailure == null) {
+            mFailure = throwable;
+        }
+        mCancelled = true;
+    }
+
+    /**
+     * blocks while too many batches are waiting to be written, this is the backpressure of the pipeline
+     *
+     * @return false if the pipeline was cancelled meanwhile
+     */
+    private boolean acquireBatch() throws InterruptedException {
+        while (!mCancelled) {
+            if (mBatchesInFlight.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) return true;
+        }
+        return false;
+    }
+
+    private void read(@NonNull PageReader pageReader) {
+        try {
+            int sequence = 0;
+            while (acquireBatch()) {
+                Batch batch = new Batch(sequence, mBatchSize);
+                pageReader.read(batch);
+                if (batch.size == 0) break;
+                mReadBatches.add(batch);
+                sequence++;
+            }
+            for (int i = 0; i < mWorkers; i++) {
+                mReadBatches.add(END_OF_PAGES);
+            }
+        } catch (InterruptedException ignored) {
+            //cancelled
+        } catch (Throwable throwable) {
+            fail(throwable);
+        }
+    }
+
+    private void clean(@NonNull TextCleaner textCleaner) {
+        try {
+            while (!mCancelled) {
+                Batch batch = mReadBatches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) continue;
+                if (batch != END_OF_PAGES) {
+                    for (int i = 0; i < batch.size; i++) {
+                        batch.texts[i] = textCleaner.clean(batch.texts[i]);
+                    }
+                }
+                mCleanedBatches.add(batch);
+                if (batch == END_OF_PAGES) return;
+            }
+        } catch (InterruptedException ignored) {
+            //cancelled
+        } catch (Throwable throwable) {
+            fail(throwable);
+        }
+    }
+
+    /**
+     * batches are written in the order they were read, the ones cleaned early wait in a reorder
+     * buffer which can't grow beyond the permits of the batches in flight
+     */
+    private void write(@NonNull PageWriter pageWriter, int totalPages, @Nullable IndexingProgressListener progressListener) {
+        HashMap<Integer, Batch> pending = new HashMap<>();
+        int nextSequence = 0;
+        int endedWorkers = 0;
+        int writtenPages = 0;
+        try {
+            while (!mCancelled) {
+                if (!pending.containsKey(nextSequence)) {
+                    if (endedWorkers == mWorkers) break;
+                    Batch batch = mCleanedBatches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (batch == END_OF_PAGES) {
+                        endedWorkers++;
+                    } else if (batch != null) {
+                        pending.put(batch.sequence, batch);
+                    }
+                    continue;
+                }
+
+                int transactionPages = 0;
+                boolean successful = false;
+                pageWriter.beginTransaction();
+                try {
+                    while (!mCancelled && transactionPages < MAX_PAGES_PER_TRANSACTION) {
+                        Batch ready = pending.remove(nextSequence);
+                        if (ready == null) {
+                            //take what is already cleaned but never wait inside the transaction
+                            Batch cleaned = mCleanedBatches.poll();
+                            if (cleaned == null) break;
+                            if (cleaned == END_OF_PAGES) {
+                                endedWorkers++;
+                            } else {
+                                pending.put(cleaned.sequence, cleaned);
+                            }
+                            continue;
+                        }
+                        nextSequence++;
+                        for (int i = 0; i < ready.size; i++) {
+                            pageWriter.insert(ready.pageIds[i], ready.texts[i]);
+                        }
+                        transactionPages += ready.size;
+                        mBatchesInFlight.release();
+                    }
+                    successful = !mCancelled;
+                } finally {
+                    pageWriter.endTransaction(successful);
+                }
+                writtenPages += transactionPages;
+                if (progressListener != null) {
+                    progressListener.onIndexingProgress(writtenPages, totalPages);
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+        }
+        if (!mCancelled && !pending.isEmpty()) {
+            fail(new IllegalStateException("batch " + nextSequence + " is missing"));
+        }
+    }
+
+    public interface PageReader {
+        /**
+         * fills the batch with the next pages in order, leaving it empty when there are no more pages
+         */
+        void read(@NonNull Batch batch);
+    }
+
+    public interface TextCleaner {
+        @NonNull
+        String clean(@NonNull String pageText);
+    }
+
+    /**
+     * all calls are made from the thread that called {@link #run}
+     */
+    public interface PageWriter {
+        void beginTransaction();
+
+        void insert(int pageId, @NonNull String cleanedText);
+
+        /**
+         * @param successful false if the pipeline failed and the transaction should be rolled back
+         */
+        void endTransaction(boolean successful);
+    }
+
+    public interface IndexingProgressListener {
+        /**
+         * called from the indexing thread after every committed transaction
+         */
+        void onIndexingProgress(int indexedPages, int totalPages);
+    }
+
+    public static class Batch {
+        final int sequence;
+        @NonNull
+        final int[] pageIds;
+        @NonNull
+        final String[] texts;
+        int size;
+
+        Batch(int sequence, int capacity) {
+            this.sequence = sequence;
+            pageIds = new int[capacity];
+            texts = new String[capacity];
+        }
+
+        public int capacity() {
+            return pageIds.length;
+        }
+
+        public void add(int pageId, @NonNull String pageText) {
+            pageIds[size] = pageId;
+            texts[size] = pageText;
+            size++;
+        }
+
+        /**
+         * @return the id of the last page in the batch, only valid if the batch is not empty
+         */
+        public int lastPageId() {
+            return pageIds[size - 1];
+        }
+    }
+}
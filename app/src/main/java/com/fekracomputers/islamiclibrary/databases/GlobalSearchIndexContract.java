@@ -0,0 +1,63 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+/**
+ * Schema of the optional library wide search index
+ * <p>
+ * every indexed copy of a book gets its own segment id, the fts docid of a page is
+ * {@code segmentId << 32 | pageId} so one MATCH query answers with (book,page) pairs for all books
+ */
+public class GlobalSearchIndexContract {
+
+    public static final int PAGE_ID_BITS = 32;
+    public static final long PAGE_ID_MASK = 0xFFFFFFFFL;
+
+    private GlobalSearchIndexContract() {
+    }
+
+    public static long toDocId(long segmentId, int pageId) {
+        return (segmentId << PAGE_ID_BITS) | (pageId & PAGE_ID_MASK);
+    }
+
+    public static class IndexedBooksEntry {
+        public static final String TABLE_NAME = "indexedBooks";
+        public static final String COLUMN_NAME_SEGMENT_ID = "segmentId";
+        public static final String COLUMN_NAME_BOOK_ID = "bookId";
+        public static final String COLUMN_NAME_PAGE_COUNT = "pageCount";
+        public static final String COLUMN_NAME_TIME_STAMP = "timeStamp";
+        public static final String CREATE_STATEMENT = "create table "
+                + TABLE_NAME + "( " +
+                COLUMN_NAME_SEGMENT_ID + SQL.INTEGER_PRIMARY_KEY + " AUTOINCREMENT " + SQL.COMMA +
+                COLUMN_NAME_BOOK_ID + SQL.INTEGER_NOT_NULL_UNIQUE + SQL.COMMA +
+                COLUMN_NAME_PAGE_COUNT + SQL.INTEGER + SQL.COMMA +
+                COLUMN_NAME_TIME_STAMP + SQL.TEXT + "DEFAULT (datetime('now','localtime'))" +
+                ")";
+    }
+
+    /**
+     * contentless, rows can't be deleted so removing a book only drops its segment from
+     * {@link IndexedBooksEntry} and the stale postings are filtered by the join until the index is rebuilt
+     */
+    public static class PagesTextSearch {
+        public static final String TABLE_NAME = "globalPagesTextSearch";
+        public static final String COLUMN_NAME_DOC_id = "docid";
+        public static final String COLUMN_NAME_PAGE = "page";
+        public static final String CREATE_STATEMENT = "CREATE VIRTUAL TABLE IF NOT EXISTS " +
+                TABLE_NAME +
+                " USING fts4(content=\"\"" + SQL.COMMA + COLUMN_NAME_PAGE + ")";
+    }
+
+    /**
+     * key value counters kept along the index
+     */
+    public static class IndexInfoEntry {
+        public static final String TABLE_NAME = "indexInfo";
+        public static final String COLUMN_NAME_NAME = "name";
+        public static final String COLUMN_NAME_VALUE = "value";
+        public static final String KEY_DEAD_PAGES = "deadPages";
+        public static final String CREATE_STATEMENT = "create table "
+                + TABLE_NAME + "( " +
+                COLUMN_NAME_NAME + SQL.TEXT + " PRIMARY KEY " + SQL.COMMA +
+                COLUMN_NAME_VALUE + SQL.INTEGER +
+                ")";
+    }
+}
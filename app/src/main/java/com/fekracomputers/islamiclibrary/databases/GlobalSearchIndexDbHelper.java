@@ -0,0 +1,288 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+
+import com.fekracomputers.islamiclibrary.settings.SettingsFragment;
+import com.fekracomputers.islamiclibrary.utility.ArabicUtilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+
+import timber.log.Timber;
+
+/**
+ * A single fts index over the pages of all downloaded books
+ * <p>
+ * It is optional (see {@link SettingsFragment#KEY_GLOBAL_SEARCH_INDEX}), when enabled global search
+ * runs one MATCH query here instead of one query per book file, page text is then only read from the
+ * book files for the books that have hits
+ */
+public class GlobalSearchIndexDbHelper extends SQLiteOpenHelper {
+    public static final String DATABASE_NAME = "global_search_index";
+    private static final int DATABASE_VERSION = 1;
+    /**
+     * stale postings of removed books are tolerated until they outnumber the live ones
+     */
+    private static final long MIN_DEAD_PAGES_FOR_REBUILD = 10000;
+
+    private static final String POPULATE_FTS_SQL = "INSERT INTO " + GlobalSearchIndexContract.PagesTextSearch.TABLE_NAME +
+            "(" +
+            GlobalSearchIndexContract.PagesTextSearch.COLUMN_NAME_DOC_id + SQL.COMMA +
+            GlobalSearchIndexContract.PagesTextSearch.COLUMN_NAME_PAGE +
+            ")" +
+            "VALUES (" + "?" + SQL.COMMA + " ?" + ")";
+
+    private static final String HIT_ALIAS = "hit";
+    /*
+    select indexedBooks.bookId, hit.docid & 4294967295
+    from (select docid from globalPagesTextSearch where page match ?) as hit
+    join indexedBooks on (hit.docid >> 32) = indexedBooks.segmentId
+    order by hit.docid
+     */
+    private static final String GLOBAL_FTS_QUERY_SQL = SQL.SELECT +
+            GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME + SQL.DOT + GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_BOOK_ID + SQL.COMMA +
+            HIT_ALIAS + SQL.DOT + GlobalSearchIndexContract.PagesTextSearch.COLUMN_NAME_DOC_id + " & " + GlobalSearchIndexContract.PAGE_ID_MASK +
+            SQL.FROM +
+            "(" + SQL.SELECT + GlobalSearchIndexContract.PagesTextSearch.COLUMN_NAME_DOC_id +
+            SQL.FROM + GlobalSearchIndexContract.PagesTextSearch.TABLE_NAME +
+            SQL.WHERE + GlobalSearchIndexContract.PagesTextSearch.COLUMN_NAME_PAGE + SQL.MATCH + "?" + ")" +
+            SQL.AS + HIT_ALIAS +
+            SQL.JOIN + GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME +
+            SQL.ON + "(" + HIT_ALIAS + SQL.DOT + GlobalSearchIndexContract.PagesTextSearch.COLUMN_NAME_DOC_id + " >> " + GlobalSearchIndexContract.PAGE_ID_BITS + ")" +
+            SQL.EQUALS + GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME + SQL.DOT + GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_SEGMENT_ID +
+            SQL.ORDER_BY + HIT_ALIAS + SQL.DOT + GlobalSearchIndexContract.PagesTextSearch.COLUMN_NAME_DOC_id;
+
+    @Nullable
+    private static GlobalSearchIndexDbHelper sInstance;
+
+    private GlobalSearchIndexDbHelper(@NonNull Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static synchronized GlobalSearchIndexDbHelper getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new GlobalSearchIndexDbHelper(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    public static boolean isEnabled(@NonNull Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(SettingsFragment.KEY_GLOBAL_SEARCH_INDEX, false);
+    }
+
+    /**
+     * @return true if the index file was created, doesn't check whether it is enabled
+     */
+    public static boolean indexExists(@NonNull Context context) {
+        return context.getDatabasePath(DATABASE_NAME).exists();
+    }
+
+    /**
+     * closes and deletes the index file to give back its storage when the index is disabled
+     */
+    public static synchronized void deleteIndex(@NonNull Context context) {
+        if (sInstance != null) {
+            sInstance.close();
+            sInstance = null;
+        }
+        if (!context.deleteDatabase(DATABASE_NAME)) {
+            Timber.d("no global search index to delete");
+        }
+    }
+
+    @Override
+    public void onCreate(@NonNull SQLiteDatabase db) {
+        db.execSQL(GlobalSearchIndexContract.IndexedBooksEntry.CREATE_STATEMENT);
+        db.execSQL(GlobalSearchIndexContract.PagesTextSearch.CREATE_STATEMENT);
+        db.execSQL(GlobalSearchIndexContract.IndexInfoEntry.CREATE_STATEMENT);
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(GlobalSearchIndexContract.IndexInfoEntry.COLUMN_NAME_NAME, GlobalSearchIndexContract.IndexInfoEntry.KEY_DEAD_PAGES);
+        contentValues.put(GlobalSearchIndexContract.IndexInfoEntry.COLUMN_NAME_VALUE, 0);
+        db.insert(GlobalSearchIndexContract.IndexInfoEntry.TABLE_NAME, null, contentValues);
+    }
+
+    @Override
+    public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+    }
+
+    public boolean isBookIndexed(int bookId) {
+        return DatabaseUtils.longForQuery(getReadableDatabase(),
+                SQL.SELECT + "count(*)" + SQL.FROM + GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME +
+                        SQL.WHERE + GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_BOOK_ID + "=?",
+                new String[]{String.valueOf(bookId)}) > 0L;
+    }
+
+    @NonNull
+    public HashSet<Integer> getIndexedBookIds() {
+        HashSet<Integer> bookIds = new HashSet<>();
+        Cursor c = getReadableDatabase().query(GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME,
+                new String[]{GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_BOOK_ID},
+                null, null, null, null, null);
+        while (c.moveToNext()) {
+            bookIds.add(c.getInt(0));
+        }
+        c.close();
+        return bookIds;
+    }
+
+    /**
+     * Adds (or replaces) all the pages of a book in the index in a single transaction
+     *
+     * @return true if the book was indexed
+     */
+    public boolean addBook(int bookId, @NonNull BookDatabaseHelper bookDatabaseHelper) {
+        SQLiteDatabase db = getWritableDatabase();
+        Cursor allPagesCursor = null;
+        db.beginTransaction();
+        try {
+            removeBookSegment(db, bookId);
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_BOOK_ID, bookId);
+            contentValues.put(GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_PAGE_COUNT, 0);
+            long segmentId = db.insertOrThrow(GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME, null, contentValues);
+
+            allPagesCursor = bookDatabaseHelper.getAllPages();
+            SQLiteStatement populateFTS_Statement = db.compileStatement(POPULATE_FTS_SQL); //pre-compiled sql statement
+            int pageCount = 0;
+            while (allPagesCursor.moveToNext()) {
+                String cleanedText = ArabicUtilities.cleanTextForSearchingIndexing(allPagesCursor.getString(1));
+                populateFTS_Statement.clearBindings();
+                populateFTS_Statement.bindLong(1, GlobalSearchIndexContract.toDocId(segmentId, allPagesCursor.getInt(0)));
+                populateFTS_Statement.bindString(2, cleanedText);
+                populateFTS_Statement.executeInsert();
+                pageCount++;
+            }
+
+            contentValues = new ContentValues();
+            contentValues.put(GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_PAGE_COUNT, pageCount);
+            db.update(GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME,
+                    contentValues,
+                    GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_SEGMENT_ID + "=?",
+                    new String[]{String.valueOf(segmentId)});
+            db.setTransactionSuccessful();
+            return true;
+        } catch (SQLException e) {
+            Timber.e(e, "adding book %d to the global index failed", bookId);
+            return false;
+        } finally {
+            db.endTransaction();
+            if (allPagesCursor != null) {
+                allPagesCursor.close();
+            }
+        }
+    }
+
+    /**
+     * Removes a book from the index, this is O(1) and safe to call for books that were not indexed
+     */
+    public void removeBook(int bookId) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            removeBookSegment(db, bookId);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void removeBookSegment(@NonNull SQLiteDatabase db, int bookId) {
+        String[] whereArgs = {String.valueOf(bookId)};
+        long deadPages = DatabaseUtils.longForQuery(db,
+                SQL.SELECT + "ifnull(sum(" + GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_PAGE_COUNT + "),0)" +
+                        SQL.FROM + GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME +
+                        SQL.WHERE + GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_BOOK_ID + "=?",
+                whereArgs);
+        if (db.delete(GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME,
+                GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_BOOK_ID + "=?",
+                whereArgs) > 0) {
+            db.execSQL("UPDATE " + GlobalSearchIndexContract.IndexInfoEntry.TABLE_NAME +
+                            " SET " + GlobalSearchIndexContract.IndexInfoEntry.COLUMN_NAME_VALUE + SQL.EQUALS +
+                            GlobalSearchIndexContract.IndexInfoEntry.COLUMN_NAME_VALUE + "+?" +
+                            SQL.WHERE + GlobalSearchIndexContract.IndexInfoEntry.COLUMN_NAME_NAME + "=?",
+                    new Object[]{deadPages, GlobalSearchIndexContract.IndexInfoEntry.KEY_DEAD_PAGES});
+        }
+    }
+
+    /**
+     * @return true if postings of removed books outnumber the live ones and the index should be rebuilt
+     */
+    public boolean needsRebuild() {
+        SQLiteDatabase db = getReadableDatabase();
+        long deadPages = DatabaseUtils.longForQuery(db,
+                SQL.SELECT + GlobalSearchIndexContract.IndexInfoEntry.COLUMN_NAME_VALUE +
+                        SQL.FROM + GlobalSearchIndexContract.IndexInfoEntry.TABLE_NAME +
+                        SQL.WHERE + GlobalSearchIndexContract.IndexInfoEntry.COLUMN_NAME_NAME + "=?",
+                new String[]{GlobalSearchIndexContract.IndexInfoEntry.KEY_DEAD_PAGES});
+        long livePages = DatabaseUtils.longForQuery(db,
+                SQL.SELECT + "ifnull(sum(" + GlobalSearchIndexContract.IndexedBooksEntry.COLUMN_NAME_PAGE_COUNT + "),0)" +
+                        SQL.FROM + GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME,
+                null);
+        return deadPages > Math.max(livePages, MIN_DEAD_PAGES_FOR_REBUILD);
+    }
+
+    /**
+     * drops every thing in the index, the caller is responsible for adding the books again
+     */
+    public void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP TABLE IF EXISTS " + GlobalSearchIndexContract.IndexedBooksEntry.TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + GlobalSearchIndexContract.PagesTextSearch.TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + GlobalSearchIndexContract.IndexInfoEntry.TABLE_NAME);
+            onCreate(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @param searchString the query as typed by the user
+     * @param bookIds      the books to return hits for
+     * @return the ids of the matching pages sorted ascending for every book that has hits
+     */
+    @NonNull
+    public SparseArray<int[]> search(@NonNull String searchString, @NonNull Collection<Integer> bookIds) {
+        String cleanedSearchString = ArabicUtilities.cleanTextForSearchingWthStingBuilder(searchString);
+        HashSet<Integer> requestedBooks = new HashSet<>(bookIds);
+        SparseArray<ArrayList<Integer>> hitsLists = new SparseArray<>();
+        Cursor c = getReadableDatabase().rawQuery(GLOBAL_FTS_QUERY_SQL, new String[]{cleanedSearchString});
+        while (c.moveToNext()) {
+            int bookId = c.getInt(0);
+            if (!requestedBooks.contains(bookId)) continue;
+            ArrayList<Integer> bookHits = hitsLists.get(bookId);
+            if (bookHits == null) {
+                bookHits = new ArrayList<>();
+                hitsLists.put(bookId, bookHits);
+            }
+            bookHits.add(c.getInt(1));
+        }
+        c.close();
+
+        SparseArray<int[]> hits = new SparseArray<>(hitsLists.size());
+        for (int i = 0; i < hitsLists.size(); i++) {
+            ArrayList<Integer> bookHits = hitsLists.valueAt(i);
+            int[] pageIds = new int[bookHits.size()];
+            for (int j = 0; j < pageIds.length; j++) {
+                pageIds[j] = bookHits.get(j);
+            }
+            hits.put(hitsLists.keyAt(i), pageIds);
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,151 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * Least recently used cache of the pages of a book bounded by the memory taken by their content
+ * <p>
+ * the reader fills it ahead of the swipes from a background thread (see
+ * {@link com.fekracomputers.islamiclibrary.reading.PagePrefetcher}) so the pages can be shown
+ * without querying the database on the main thread, the counters tell how often that worked
+ * <p>
+ * thread safe
+ */
+public class PageContentCache {
+    /**
+     * about a hundred pages of an average book
+     */
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+    /**
+     * the page object, its fields and the string header
+     */
+    private static final int PAGE_OVERHEAD_BYTES = 64;
+
+    private final int mMaxBytes;
+    /**
+     * guarded by this, from the least to the most recently used, {@link #get(int)} moves the page to the end
+     */
+    @NonNull
+    private final LinkedHashMap<Integer, Page> mPages = new LinkedHashMap<>();
+    private int mBytes;
+    private long mHits;
+    private long mMisses;
+    private long mPrefetched;
+    private long mEvicted;
+
+    public PageContentCache(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    private static int sizeOf(@NonNull Page page) {
+        return PAGE_OVERHEAD_BYTES + 2 * page.content.length();
+    }
+
+    /**
+     * the lookup of a page about to be shown, counts a hit or a miss
+     */
+    @Nullable
+    public synchronized Page get(int pageId) {
+        Page page = mPages.remove(pageId);
+        if (page != null) {
+            mPages.put(pageId, page);
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        return page;
+    }
+
+    /**
+     * like {@link #get(int)} without counting nor changing the access order
+     */
+    @Nullable
+    public synchronized Page peek(int pageId) {
+        return mPages.get(pageId);
+    }
+
+    public synchronized boolean contains(int pageId) {
+        return mPages.containsKey(pageId);
+    }
+
+    public synchronized void put(@NonNull Page page) {
+        int size = sizeOf(page);
+        if (size > mMaxBytes) return;
+        Page previous = mPages.remove(page.pageId);
+        mPages.put(page.pageId, page);
+        if (previous != null) {
+            mBytes -= sizeOf(previous);
+        }
+        mBytes += size;
+        trimToSize();
+    }
+
+    /**
+     * adds a page loaded before it was requested
+     */
+    public synchronized void putPrefetched(@NonNull Page page) {
+        if (mPages.containsKey(page.pageId)) return;
+        mPrefetched++;
+        put(page);
+    }
+
+    private void trimToSize() {
+        Iterator<Page> iterator = mPages.values().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            mBytes -= sizeOf(iterator.next());
+            iterator.remove();
+            mEvicted++;
+        }
+    }
+
+    public synchronized void clear() {
+        mPages.clear();
+        mBytes = 0;
+    }
+
+    public synchronized int getSizeBytes() {
+        return mBytes;
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return hits over lookups, 0 if there was no lookup
+     */
+    public synchronized float getHitRate() {
+        long lookups = mHits + mMisses;
+        return lookups == 0 ? 0 : (float) mHits / lookups;
+    }
+
+    @NonNull
+    public synchronized String getStats() {
+        return String.format(Locale.US, "hits %d misses %d (%.0f%%) prefetched %d evicted %d size %dKB",
+                mHits, mMisses, 100 * getHitRate(), mPrefetched, mEvicted, mBytes / 1024);
+    }
+
+    public static class Page {
+        public final int pageId;
+        public final int partNumber;
+        public final int pageNumber;
+        @NonNull
+        public final String content;
+
+        public Page(int pageId, int partNumber, int pageNumber, @NonNull String content) {
+            this.pageId = pageId;
+            this.partNumber = partNumber;
+            this.pageNumber = pageNumber;
+            this.content = content;
+        }
+    }
+}
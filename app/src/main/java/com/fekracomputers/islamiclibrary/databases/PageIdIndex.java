@@ -0,0 +1,51 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * All the page ids of a book in ascending order, the position of a page in the reader is its
+ * index here
+ * <p>
+ * answers {@link BookDatabaseHelper#position2PageId(int)} with an array access and
+ * {@link BookDatabaseHelper#pageId2position(int)} with a binary search instead of an offset scan
+ * and a count query, it takes 4 bytes per page
+ */
+public class PageIdIndex {
+    @NonNull
+    private final int[] mPageIds;
+
+    /**
+     * @param sortedPageIds the page ids in ascending order, not copied
+     */
+    public PageIdIndex(@NonNull int[] sortedPageIds) {
+        mPageIds = sortedPageIds;
+    }
+
+    public int getPageCount() {
+        return mPageIds.length;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if there is no page at this position
+     */
+    public int position2PageId(int position) {
+        if (position < 0 || position >= mPageIds.length) {
+            throw new IndexOutOfBoundsException("no page at position " + position);
+        }
+        return mPageIds[position];
+    }
+
+    /**
+     * like {@code count(*)-1 where id<=pageId}, a missing page id gets the position of the page before it
+     *
+     * @throws IndexOutOfBoundsException if the page id is before the first page
+     */
+    public int pageId2position(int pageId) {
+        int i = Arrays.binarySearch(mPageIds, pageId);
+        int position = i >= 0 ? i : -i - 2;
+        if (position < 0) throw new IndexOutOfBoundsException("this page id doesn't exisit");
+        return position;
+    }
+}
@@ -0,0 +1,141 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * A few read only connections to one book so the reader, a search and the prefetching can read
+ * the book at the same time instead of waiting for the single connection of its helper
+ * <p>
+ * a connection is opened only when all the open ones are in use and there are less than the
+ * maximum, after that the callers wait for one to be released
+ * <p>
+ * thread safe
+ *
+ * @param <C> the connection type
+ */
+public class ReadConnectionPool<C> {
+    @NonNull
+    private final Opener<C> mOpener;
+    private final int mMaxConnections;
+    @NonNull
+    private final ArrayDeque<C> mIdle = new ArrayDeque<>();
+    private int mOpenCount;
+    private int mInUseCount;
+    private int mPeakInUseCount;
+    private long mAcquireCount;
+    private long mWaitCount;
+    private boolean mClosed;
+
+    public ReadConnectionPool(@NonNull Opener<C> opener, int maxConnections) {
+        if (maxConnections < 1) throw new IllegalArgumentException("maxConnections " + maxConnections);
+        mOpener = opener;
+        mMaxConnections = maxConnections;
+    }
+
+    /**
+     * waits for a connection if all of them are in use, an interrupt while waiting is kept for
+     * the caller and the wait goes on
+     *
+     * @throws IllegalStateException if the pool is closed
+     */
+    @NonNull
+    public C acquire() {
+        boolean interrupted = false;
+        try {
+            synchronized (this) {
+                boolean waited = false;
+                while (!mClosed && mIdle.isEmpty() && mOpenCount >= mMaxConnections) {
+                    waited = true;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (mClosed) throw new IllegalStateException("the pool is closed");
+                mAcquireCount++;
+                if (waited) mWaitCount++;
+                mInUseCount++;
+                mPeakInUseCount = Math.max(mPeakInUseCount, mInUseCount);
+                C connection = mIdle.pollFirst();
+                if (connection != null) return connection;
+                //the slot is taken now and the connection is opened without holding the pool
+                mOpenCount++;
+            }
+            try {
+                return mOpener.open();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    mOpenCount--;
+                    mInUseCount--;
+                    notifyAll();
+                }
+                throw e;
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    public void release(@NonNull C connection) {
+        boolean close;
+        synchronized (this) {
+            mInUseCount--;
+            close = mClosed;
+            if (close) {
+                mOpenCount--;
+            } else {
+                //the most recently used first so the others can stay unused
+                mIdle.addFirst(connection);
+                notifyAll();
+            }
+        }
+        if (close) mOpener.close(connection);
+    }
+
+    /**
+     * closes the idle connections now and the ones in use when they are released
+     */
+    public void close() {
+        ArrayDeque<C> idle;
+        synchronized (this) {
+            if (mClosed) return;
+            mClosed = true;
+            idle = new ArrayDeque<>(mIdle);
+            mOpenCount -= mIdle.size();
+            mIdle.clear();
+            notifyAll();
+        }
+        for (C connection : idle) {
+            mOpener.close(connection);
+        }
+    }
+
+    public synchronized int getOpenCount() {
+        return mOpenCount;
+    }
+
+    public synchronized int getPeakInUseCount() {
+        return mPeakInUseCount;
+    }
+
+    public synchronized long getWaitCount() {
+        return mWaitCount;
+    }
+
+    @NonNull
+    public synchronized String getStats() {
+        return String.format(Locale.US, "read connections: %d open of %d, peak in use %d, %d acquired, %d waited",
+                mOpenCount, mMaxConnections, mPeakInUseCount, mAcquireCount, mWaitCount);
+    }
+
+    public interface Opener<C> {
+        @NonNull
+        C open();
+
+        void close(@NonNull C connection);
+    }
+}
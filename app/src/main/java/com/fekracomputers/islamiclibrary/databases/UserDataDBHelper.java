@@ -9,6 +9,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.SparseArray;
 
 import com.fekracomputers.islamiclibrary.R;
 import com.fekracomputers.islamiclibrary.download.model.DownloadsConstants;
@@ -26,6 +27,7 @@ import com.fekracomputers.islamiclibrary.userNotes.adapters.UserNoteItem;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import timber.log.Timber;
@@ -34,11 +36,15 @@ import timber.log.Timber;
  * Database Helper class to Store user data (BookMarks ,Notes ,Highlights and comments)
  * one instance per book
  * one file on disk per book
+ * <p>
+ * the highlights, the notes and the page access log are written on the {@link UserDataWriter}
+ * thread, the bookmarks are still written by the caller as they are read back right away
  */
 
 public class UserDataDBHelper {
     private static final String TAG = "UserDataDBHelper";
     private static GlobalUserDBHelper sGlobalUserDBHelper;
+    private static UserDataWriter sUserDataWriter;
     private final Context context;
     private int bookId;
 
@@ -49,15 +55,14 @@ public class UserDataDBHelper {
 
 
     public static synchronized UserDataDBHelper getInstance(Context context, int bookId) {
-        if (sGlobalUserDBHelper == null) {
-            sGlobalUserDBHelper = new GlobalUserDBHelper(context);
-        }
+        getInstance(context);
         return new UserDataDBHelper(context, bookId);
     }
 
     public static synchronized GlobalUserDBHelper getInstance(Context context) {
         if (sGlobalUserDBHelper == null) {
             sGlobalUserDBHelper = new GlobalUserDBHelper(context);
+            sUserDataWriter = new UserDataWriter(sGlobalUserDBHelper, UserDataWriter.DEFAULT_COALESCE_DELAY_MILLIS);
         }
         return sGlobalUserDBHelper;
     }
@@ -81,17 +86,32 @@ public class UserDataDBHelper {
     }
 
     public void addNoteToHighlight(@NonNull Highlight mSelectedHighlight) {
-        sGlobalUserDBHelper.addNoteToHighlight(mSelectedHighlight, bookId);
+        //the highlight rows of the page are written first if pending
+        sUserDataWriter.flush();
+        sUserDataWriter.execute(() -> sGlobalUserDBHelper.addNoteToHighlight(mSelectedHighlight, bookId));
     }
 
+    /**
+     * queued on the writer, repeated calls for the same page shortly after each other are written once
+     */
     public void setSerializedHighlights(@NonNull PageInfo pageInfo, @NonNull String serializedHighlights) {
-        sGlobalUserDBHelper.setSerializedHighlights(pageInfo, serializedHighlights, bookId);
+        sUserDataWriter.setSerializedHighlights(bookId, pageInfo, serializedHighlights);
     }
 
     public String getSerializedHighlights(int pageRowId) {
+        String pendingHighlights = sUserDataWriter.getPendingSerializedHighlights(bookId, pageRowId);
+        if (pendingHighlights != null) return pendingHighlights;
         return sGlobalUserDBHelper.getSerializedHighlights(pageRowId, bookId);
     }
 
+    /**
+     * starts writing what the writer holds back without blocking, called when the reader is paused
+     */
+    public void flushWrites() {
+        sUserDataWriter.flush();
+        Timber.d(sUserDataWriter.getStats());
+    }
+
     public String getDisplayPreferenceValue(String preferenceKey, String s) {
         return sGlobalUserDBHelper.getDisplayPreferenceValue(preferenceKey, s, bookId);
     }
@@ -115,7 +135,7 @@ public class UserDataDBHelper {
     }
 
     public void logPageAccess(@NonNull PageInfo pageId) {
-        sGlobalUserDBHelper.logPageAccess(pageId, bookId);
+        sUserDataWriter.execute(() -> sGlobalUserDBHelper.logPageAccess(pageId, bookId));
     }
 
 
@@ -144,7 +164,7 @@ public class UserDataDBHelper {
     }
 
 
-    public static class GlobalUserDBHelper extends SQLiteOpenHelper {
+    public static class GlobalUserDBHelper extends SQLiteOpenHelper implements UserDataWriter.HighlightsSink {
         public static final int MOST_RECENT_BOOK_COLLECTION_AUTO_ID = 1;
         public static final int BOOK_COLLECTION_MOST_OPENED_AUTO_ID = 2;
         public static final int BOOK_COLLECTION_latest_DOWNLOADED_AUTO_ID = 3;
@@ -283,17 +303,38 @@ public class UserDataDBHelper {
             );
             final int INDEX_PAGE_ID = c.getColumnIndex(UserDataDBContract.BookmarkEntry.COLUMN_NAME_PAGE_ID);
             final int INDEX_TIME_STAMP = c.getColumnIndex(UserDataDBContract.BookmarkEntry.COLUMN_NAME_TIME_STAMP);
-            BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(mContext, bookId);
-            while (c.moveToNext()) {
-                int pageId = c.getInt(INDEX_PAGE_ID);
-                PageInfo pageInfo = bookDatabaseHelper.getPageInfoByPageId(pageId);
-
-                bookmarksList.add(new Bookmark(bookId, pageInfo, c.getString(INDEX_TIME_STAMP), bookDatabaseHelper.getParentTitle(pageId)));
+            BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.acquire(mContext, bookId);
+            try {
+                SparseArray<BookDatabaseHelper.PageAndParentTitle> pages =
+                        bookDatabaseHelper.getPagesAndParentTitles(getPageIds(c, INDEX_PAGE_ID));
+                c.moveToPosition(-1);
+                while (c.moveToNext()) {
+                    BookDatabaseHelper.PageAndParentTitle page = bookDatabaseHelper.getPageAndParentTitle(pages, c.getInt(INDEX_PAGE_ID));
+                    bookmarksList.add(new Bookmark(bookId, page.pageInfo, c.getString(INDEX_TIME_STAMP), page.parentTitle));
+                }
+            } finally {
+                bookDatabaseHelper.release();
             }
             c.close();
             return bookmarksList;
         }
 
+        @Override
+        public void writeSerializedHighlights(@NonNull List<UserDataWriter.PendingHighlights> batch) {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (UserDataWriter.PendingHighlights pendingHighlights : batch) {
+                    setSerializedHighlights(pendingHighlights.pageInfo,
+                            pendingHighlights.serializedHighlights,
+                            pendingHighlights.bookId);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
         void setSerializedHighlights(@NonNull PageInfo pageInfo, @NonNull String serializedHighlights, int bookId) {
 
             ContentValues highlights = new ContentValues();
@@ -334,33 +375,109 @@ public class UserDataDBHelper {
             final int INDEX_TEXT = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_TEXT);
             final int INDEX_NOTE_TEXT = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_NOTE_TEXT);
             final int INDEX_TIME_STAMP = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_NAME_TIME_STAMP);
-            BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(mContext, bookId);
+            BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.acquire(mContext, bookId);
+            try {
+                SparseArray<BookDatabaseHelper.PageAndParentTitle> pages =
+                        bookDatabaseHelper.getPagesAndParentTitles(getPageIds(c, INDEX_PAGE_ID));
+                c.moveToPosition(-1);
 
-            while (c.moveToNext()) {
-                int pageId = c.getInt(INDEX_PAGE_ID);
-                PageInfo pageInfo = bookDatabaseHelper.getPageInfoByPageId(pageId);
-                int highlightId = c.getInt(INDEX_HIGHLIGHT_ID);
-                String className = c.getString(INDEX_CLASS_NAME);
-                int elementId = c.getInt(INDEX_ELEMENT_ID);
-                String timeStamp = c.getString(INDEX_TIME_STAMP);
-                String text = c.getString(INDEX_TEXT);
-                String noteText = c.getString(INDEX_NOTE_TEXT);
-
-                highlightArrayList.add(new Highlight(text,
-                        highlightId,
-                        className,
-                        elementId,
-                        timeStamp,
-                        pageInfo,
-                        bookId,
-                        bookDatabaseHelper.getParentTitle(pageId),
-                        noteText)
-                );
+                while (c.moveToNext()) {
+                    BookDatabaseHelper.PageAndParentTitle page = bookDatabaseHelper.getPageAndParentTitle(pages, c.getInt(INDEX_PAGE_ID));
+                    int highlightId = c.getInt(INDEX_HIGHLIGHT_ID);
+                    String className = c.getString(INDEX_CLASS_NAME);
+                    int elementId = c.getInt(INDEX_ELEMENT_ID);
+                    String timeStamp = c.getString(INDEX_TIME_STAMP);
+                    String text = c.getString(INDEX_TEXT);
+                    String noteText = c.getString(INDEX_NOTE_TEXT);
+
+                    highlightArrayList.add(new Highlight(text,
+                            highlightId,
+                            className,
+                            elementId,
+                            timeStamp,
+                            page.pageInfo,
+                            bookId,
+                            page.parentTitle,
+                            noteText)
+                    );
+                }
+            } finally {
+                bookDatabaseHelper.release();
             }
             c.close();
             return highlightArrayList;
         }
 
+        /**
+         * @return the page ids of all the rows, the cursor is left after the last row
+         */
+        @NonNull
+        private static int[] getPageIds(@NonNull Cursor c, int pageIdIndex) {
+            int[] pageIds = new int[c.getCount()];
+            int i = 0;
+            while (c.moveToNext() && i < pageIds.length) {
+                pageIds[i++] = c.getInt(pageIdIndex);
+            }
+            return pageIds;
+        }
+
+        /**
+         * the downloaded books of the rows with the page info and parent title of their pages looked
+         * up once per book, the books that can't be opened are left out
+         *
+         * @return keyed by book id
+         */
+        @NonNull
+        private SparseArray<BookPages> getBookPages(@NonNull Cursor c, int bookIdIndex, int pageIdIndex) {
+            SparseArray<ArrayList<Integer>> pageIdsByBook = new SparseArray<>();
+            while (c.moveToNext()) {
+                int bookId = c.getInt(bookIdIndex);
+                ArrayList<Integer> pageIds = pageIdsByBook.get(bookId);
+                if (pageIds == null) {
+                    pageIds = new ArrayList<>();
+                    pageIdsByBook.put(bookId, pageIds);
+                }
+                pageIds.add(c.getInt(pageIdIndex));
+            }
+            c.moveToPosition(-1);
+
+            SparseArray<BookPages> bookPages = new SparseArray<>(pageIdsByBook.size());
+            BooksInformationDbHelper booksInformationDbHelper = BooksInformationDbHelper.getInstance(context);
+            if (booksInformationDbHelper == null) return bookPages;
+            for (int i = 0; i < pageIdsByBook.size(); i++) {
+                int bookId = pageIdsByBook.keyAt(i);
+                if (!booksInformationDbHelper.isBookDownloaded(bookId)) continue;
+                try {
+                    ArrayList<Integer> pageIdsList = pageIdsByBook.valueAt(i);
+                    int[] pageIds = new int[pageIdsList.size()];
+                    for (int j = 0; j < pageIds.length; j++) {
+                        pageIds[j] = pageIdsList.get(j);
+                    }
+                    //released by releaseBookPages when the listing is built
+                    BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.acquire(context, bookId);
+                    try {
+                        bookPages.put(bookId, new BookPages(bookDatabaseHelper,
+                                bookDatabaseHelper.getBookInfo(),
+                                bookDatabaseHelper.getBookPartsInfo(),
+                                bookDatabaseHelper.getPagesAndParentTitles(pageIds)));
+                    } catch (RuntimeException e) {
+                        bookDatabaseHelper.release();
+                        releaseBookPages(bookPages);
+                        throw e;
+                    }
+                } catch (BookDatabaseException bookDatabaseException) {
+                    Timber.e(bookDatabaseException);
+                }
+            }
+            return bookPages;
+        }
+
+        private static void releaseBookPages(@NonNull SparseArray<BookPages> bookPages) {
+            for (int i = 0; i < bookPages.size(); i++) {
+                bookPages.valueAt(i).bookDatabaseHelper.release();
+            }
+        }
+
         private void deserializeHighlightsAndSave(@NonNull String serializedHighlights, @NonNull PageInfo pageInfo, int bookId) {
             ArrayList<ContentValues> highlights = Highlight.deserializeToContentValues(serializedHighlights,
                     pageInfo,
@@ -452,16 +569,20 @@ public class UserDataDBHelper {
             final int INDEX_TEXT = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_TEXT);
             final int INDEX_NOTE_TEXT = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_NOTE_TEXT);
             final int INDEX_TIME_STAMP = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_NAME_TIME_STAMP);
-            BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(mContext, bookId);
             Highlight highlight = null;
             if (c.moveToFirst()) {
-                PageInfo pageInfo = bookDatabaseHelper.getPageInfoByPageId(pageId);
-                String className = c.getString(INDEX_CLASS_NAME);
-                int elementId = c.getInt(INDEX_ELEMENT_ID);
-                String timeStamp = c.getString(INDEX_TIME_STAMP);
-                String text = c.getString(INDEX_TEXT);
-                String noteText = c.getString(INDEX_NOTE_TEXT);
-                highlight = new Highlight(text, highlightId, className, elementId, timeStamp, pageInfo, bookId, bookDatabaseHelper.getParentTitle(pageId), noteText);
+                BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.acquire(mContext, bookId);
+                try {
+                    PageInfo pageInfo = bookDatabaseHelper.getPageInfoByPageId(pageId);
+                    String className = c.getString(INDEX_CLASS_NAME);
+                    int elementId = c.getInt(INDEX_ELEMENT_ID);
+                    String timeStamp = c.getString(INDEX_TIME_STAMP);
+                    String text = c.getString(INDEX_TEXT);
+                    String noteText = c.getString(INDEX_NOTE_TEXT);
+                    highlight = new Highlight(text, highlightId, className, elementId, timeStamp, pageInfo, bookId, bookDatabaseHelper.getParentTitle(pageId), noteText);
+                } finally {
+                    bookDatabaseHelper.release();
+                }
             }
             c.close();
             return highlight;
@@ -572,8 +693,12 @@ public class UserDataDBHelper {
                         c.getInt(c.getColumnIndex(UserDataDBContract.AccessInformationEntry.LAST_OPENED_PAGE_NUMBER))
                 );
             } else {
-                BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(context, bookId);
-                pageInfo = bookDatabaseHelper.getFirstPageInfo();
+                BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.acquire(context, bookId);
+                try {
+                    pageInfo = bookDatabaseHelper.getFirstPageInfo();
+                } finally {
+                    bookDatabaseHelper.release();
+                }
             }
             c.close();
             return pageInfo;
@@ -1047,24 +1172,20 @@ public class UserDataDBHelper {
             final int INDEX_BOOK_ID = c.getColumnIndex(UserDataDBContract.BookmarkEntry.COLUMN_NAME_BOOK_ID);
             final int INDEX_PAGE_ID = c.getColumnIndex(UserDataDBContract.BookmarkEntry.COLUMN_NAME_PAGE_ID);
             final int INDEX_TIME_STAMP = c.getColumnIndex(UserDataDBContract.BookmarkEntry.COLUMN_NAME_TIME_STAMP);
-            BooksInformationDbHelper booksInformationDbHelper = BooksInformationDbHelper.getInstance(context);
+            SparseArray<BookPages> bookPages = getBookPages(c, INDEX_BOOK_ID, INDEX_PAGE_ID);
 
-            while (c.moveToNext()) {
-                int bookId = c.getInt(INDEX_BOOK_ID);
-                if (booksInformationDbHelper != null &&
-                        booksInformationDbHelper.isBookDownloaded(bookId)) {
-                    try {
-                        BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(context, bookId);
-                        int pageId = c.getInt(INDEX_PAGE_ID);
-                        BookInfo bookInfo = bookDatabaseHelper.getBookInfo();
-                        BookPartsInfo bookPartsInfo = bookDatabaseHelper.getBookPartsInfo();
-                        PageInfo pageInfo = bookDatabaseHelper.getPageInfoByPageId(pageId);
-                        Bookmark bookmark = new Bookmark(bookId, pageInfo, c.getString(INDEX_TIME_STAMP), bookDatabaseHelper.getParentTitle(pageId));
-                        bookmarksList.add(new BookmarkItem(bookmark, bookPartsInfo, bookInfo));
-                    } catch (BookDatabaseException bookDatabaseException) {
-                        Timber.e(bookDatabaseException);
+            try {
+                while (c.moveToNext()) {
+                    int bookId = c.getInt(INDEX_BOOK_ID);
+                    BookPages book = bookPages.get(bookId);
+                    if (book != null) {
+                        BookDatabaseHelper.PageAndParentTitle page = book.getPage(c.getInt(INDEX_PAGE_ID));
+                        Bookmark bookmark = new Bookmark(bookId, page.pageInfo, c.getString(INDEX_TIME_STAMP), page.parentTitle);
+                        bookmarksList.add(new BookmarkItem(bookmark, book.bookPartsInfo, book.bookInfo));
                     }
                 }
+            } finally {
+                releaseBookPages(bookPages);
             }
             c.close();
             return bookmarksList;
@@ -1099,18 +1220,14 @@ public class UserDataDBHelper {
             final int INDEX_TEXT = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_TEXT);
             final int INDEX_NOTE_TEXT = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_NOTE_TEXT);
             final int INDEX_TIME_STAMP = c.getColumnIndex(UserDataDBContract.HighlightEntry.COLUMN_NAME_TIME_STAMP);
-            BooksInformationDbHelper booksInformationDbHelper = BooksInformationDbHelper.getInstance(context);
+            SparseArray<BookPages> bookPages = getBookPages(c, INDEX_BOOK_ID, INDEX_PAGE_ID);
 
-            while (c.moveToNext()) {
-                int bookId = c.getInt(INDEX_BOOK_ID);
-                if (booksInformationDbHelper != null &&
-                        booksInformationDbHelper.isBookDownloaded(bookId)) {
-                    try {
-                        BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(context, bookId);
-                        int pageId = c.getInt(INDEX_PAGE_ID);
-                        BookInfo bookInfo = bookDatabaseHelper.getBookInfo();
-                        BookPartsInfo bookPartsInfo = bookDatabaseHelper.getBookPartsInfo();
-                        PageInfo pageInfo = bookDatabaseHelper.getPageInfoByPageId(pageId);
+            try {
+                while (c.moveToNext()) {
+                    int bookId = c.getInt(INDEX_BOOK_ID);
+                    BookPages book = bookPages.get(bookId);
+                    if (book != null) {
+                        BookDatabaseHelper.PageAndParentTitle page = book.getPage(c.getInt(INDEX_PAGE_ID));
                         int highlightId = c.getInt(INDEX_HIGHLIGHT_ID);
                         String className = c.getString(INDEX_CLASS_NAME);
                         int elementId = c.getInt(INDEX_ELEMENT_ID);
@@ -1123,22 +1240,51 @@ public class UserDataDBHelper {
                                 className,
                                 elementId,
                                 timeStamp,
-                                pageInfo,
+                                page.pageInfo,
                                 bookId,
-                                bookDatabaseHelper.getParentTitle(pageId),
-                                noteText), bookPartsInfo, bookInfo)
+                                page.parentTitle,
+                                noteText), book.bookPartsInfo, book.bookInfo)
                         );
-
-                    } catch (BookDatabaseException exeption) {
-                        Timber.e(exeption);
                     }
                 }
+            } finally {
+                releaseBookPages(bookPages);
             }
             c.close();
             return highlightArrayList;
         }
 
+        /**
+         * what the listings of all the books need from one book
+         */
+        private static class BookPages {
+            @NonNull
+            final BookDatabaseHelper bookDatabaseHelper;
+            @NonNull
+            final BookInfo bookInfo;
+            @NonNull
+            final BookPartsInfo bookPartsInfo;
+            @NonNull
+            final SparseArray<BookDatabaseHelper.PageAndParentTitle> pages;
+
+            /**
+             * @param bookDatabaseHelper acquired, released with {@link #releaseBookPages(SparseArray)}
+             */
+            BookPages(@NonNull BookDatabaseHelper bookDatabaseHelper,
+                      @NonNull BookInfo bookInfo,
+                      @NonNull BookPartsInfo bookPartsInfo,
+                      @NonNull SparseArray<BookDatabaseHelper.PageAndParentTitle> pages) {
+                this.bookDatabaseHelper = bookDatabaseHelper;
+                this.bookInfo = bookInfo;
+                this.bookPartsInfo = bookPartsInfo;
+                this.pages = pages;
+            }
 
+            @NonNull
+            BookDatabaseHelper.PageAndParentTitle getPage(int pageId) {
+                return bookDatabaseHelper.getPageAndParentTitle(pages, pageId);
+            }
+        }
     }
 
 
@@ -0,0 +1,185 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.fekracomputers.islamiclibrary.model.PageInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * The single thread the user data is written on
+ * <p>
+ * the serialized highlights of a page are written a moment after they change, a change of the same
+ * page before that replaces the pending one so a burst of highlighting is written once, all the
+ * pending pages in one transaction, {@link #flush()} writes them right away and is called when the
+ * reader is paused
+ * <p>
+ * until they are committed the pending highlights are what {@link #getPendingSerializedHighlights(int, int)}
+ * returns so reading them back doesn't go around the writer, a failed write keeps them pending
+ * <p>
+ * thread safe
+ */
+public class UserDataWriter {
+    /**
+     * highlighting a selection serializes the page once or twice in a row
+     */
+    public static final long DEFAULT_COALESCE_DELAY_MILLIS = 500;
+
+    @NonNull
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    @NonNull
+    private final HighlightsSink mSink;
+    private final long mCoalesceDelayMillis;
+    /**
+     * by book and page, in the order they were first changed
+     */
+    @NonNull
+    private final LinkedHashMap<Long, PendingHighlights> mPendingHighlights = new LinkedHashMap<>();
+    @Nullable
+    private ScheduledFuture<?> mScheduledWrite;
+    private long mRequestedCount;
+    private long mWrittenCount;
+    private long mTransactionCount;
+
+    public UserDataWriter(@NonNull HighlightsSink sink, long coalesceDelayMillis) {
+        mSink = sink;
+        mCoalesceDelayMillis = coalesceDelayMillis;
+    }
+
+    private static long key(int bookId, int pageId) {
+        return ((long) bookId << 32) | (pageId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * runs a write after the ones already queued
+     */
+    public void execute(@NonNull Runnable write) {
+        mExecutor.execute(() -> {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                Timber.e(e, "user data write failed");
+            }
+        });
+    }
+
+    /**
+     * queues the highlights of the page replacing the ones of the page still pending if any
+     */
+    public synchronized void setSerializedHighlights(int bookId, @NonNull PageInfo pageInfo, @NonNull String serializedHighlights) {
+        mRequestedCount++;
+        mPendingHighlights.put(key(bookId, pageInfo.pageId), new PendingHighlights(bookId, pageInfo, serializedHighlights));
+        if (mScheduledWrite == null) {
+            mScheduledWrite = mExecutor.schedule(this::writePendingHighlights, mCoalesceDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the highlights of the page that are not written yet, null if there are none
+     */
+    @Nullable
+    public synchronized String getPendingSerializedHighlights(int bookId, int pageId) {
+        PendingHighlights pendingHighlights = mPendingHighlights.get(key(bookId, pageId));
+        return pendingHighlights == null ? null : pendingHighlights.serializedHighlights;
+    }
+
+    /**
+     * writes the pending highlights without waiting for the coalescing delay, doesn't block
+     */
+    public synchronized void flush() {
+        if (mScheduledWrite != null && mScheduledWrite.cancel(false)) {
+            mScheduledWrite = null;
+        }
+        if (!mPendingHighlights.isEmpty() && mScheduledWrite == null) {
+            mScheduledWrite = mExecutor.schedule(this::writePendingHighlights, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * flushes and waits for every write queued so far
+     *
+     * @return false if they were not written within the timeout
+     */
+    public boolean flushAndWait(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        flush();
+        CountDownLatch written = new CountDownLatch(1);
+        mExecutor.execute(written::countDown);
+        return written.await(timeout, unit);
+    }
+
+    @WorkerThread
+    private void writePendingHighlights() {
+        List<PendingHighlights> batch;
+        synchronized (this) {
+            mScheduledWrite = null;
+            if (mPendingHighlights.isEmpty()) return;
+            batch = new ArrayList<>(mPendingHighlights.values());
+        }
+        try {
+            mSink.writeSerializedHighlights(batch);
+        } catch (RuntimeException e) {
+            //still pending so they are read back and written by the next write
+            Timber.e(e, "writing the highlights of %d pages failed", batch.size());
+            return;
+        }
+        synchronized (this) {
+            //a page changed during the write keeps its newer highlights pending
+            for (PendingHighlights pendingHighlights : batch) {
+                long key = key(pendingHighlights.bookId, pendingHighlights.pageInfo.pageId);
+                if (mPendingHighlights.get(key) == pendingHighlights) {
+                    mPendingHighlights.remove(key);
+                }
+            }
+            mWrittenCount += batch.size();
+            mTransactionCount++;
+        }
+    }
+
+    public synchronized long getWrittenCount() {
+        return mWrittenCount;
+    }
+
+    public synchronized long getTransactionCount() {
+        return mTransactionCount;
+    }
+
+    @NonNull
+    public synchronized String getStats() {
+        return String.format(Locale.US, "highlight writes: requested %d written %d in %d transactions",
+                mRequestedCount, mWrittenCount, mTransactionCount);
+    }
+
+    /**
+     * writes the highlights of many pages in one transaction, on the writer thread
+     */
+    public interface HighlightsSink {
+        @WorkerThread
+        void writeSerializedHighlights(@NonNull List<PendingHighlights> batch);
+    }
+
+    public static class PendingHighlights {
+        public final int bookId;
+        @NonNull
+        public final PageInfo pageInfo;
+        @NonNull
+        public final String serializedHighlights;
+
+        PendingHighlights(int bookId, @NonNull PageInfo pageInfo, @NonNull String serializedHighlights) {
+            this.bookId = bookId;
+            this.pageInfo = pageInfo;
+            this.serializedHighlights = serializedHighlights;
+        }
+    }
+}
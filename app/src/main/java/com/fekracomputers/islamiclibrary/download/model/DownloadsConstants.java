@@ -13,6 +13,10 @@ public final class DownloadsConstants {
     public static final String EXTRA_DOWNLOAD_ID = "com.fekracomputers.islamiclibrary.download_id";
     public static final String EXTRA_DOWNLOAD_BOOK_ID = "bookId";
     public static final String EXTRA_NOTIFY_WITHOUT_BOOK_ID = "EXTRA_NOTIFY_WITHOUT_BOOK_ID";
+    /**
+     * percentage of the indexed pages, sent with {@link #STATUS_FTS_INDEXING_PROGRESS}
+     */
+    public static final String EXTRA_FTS_INDEXING_PROGRESS = "com.fekracomputers.islamiclibrary.download.FTS_INDEXING_PROGRESS";
 
     public static final int STATUS_INVALID = -3;
     public static final int STATUS_DOWNLOAD_CANCELLED=-2;
@@ -26,6 +30,10 @@ public final class DownloadsConstants {
     public static final int STATUS_UNZIP_ENDED = 6;
     public static final int STATUS_FTS_INDEXING_STARTED = 7;
     public static final int STATUS_FTS_INDEXING_ENDED = 8;
+    /**
+     * sent while a book is indexed, never stored, the stored status stays {@link #STATUS_FTS_INDEXING_STARTED}
+     */
+    public static final int STATUS_FTS_INDEXING_PROGRESS = 9;
 
 
     public static final int STATUS_INFORMATION_DATABASE_DOWNLOAD_ONLY_SUCCESSFUL = 103;
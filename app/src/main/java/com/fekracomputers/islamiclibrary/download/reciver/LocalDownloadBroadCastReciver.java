@@ -19,6 +19,7 @@ import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstant
 import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstants.STATUS_DOWNLOAD_COMPLETED;
 import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstants.STATUS_DOWNLOAD_REQUESTED;
 import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstants.STATUS_FTS_INDEXING_ENDED;
+import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstants.STATUS_FTS_INDEXING_PROGRESS;
 import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstants.STATUS_FTS_INDEXING_STARTED;
 import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstants.STATUS_INVALID;
 import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstants.STATUS_NOT_DOWNLOAD;
@@ -63,7 +64,6 @@ public class LocalDownloadBroadCastReciver extends BroadcastReceiver {
         if (!notifyCangeWithotBokId) {
             int bookId = intent.getIntExtra(EXTRA_DOWNLOAD_BOOK_ID, BOOK_INFORMATION_DUMMY_ID);
             Log.d("LocalBroadCastReceiver", "onReceive: status" + status + " bookId: " + bookId);
-
             switch (status) {
                 case DownloadsConstants.STATUS_BOOKINFORMATION_UNZIP_ENDED:
                     Intent bookInformationFtsIndexingServiceIntent = new Intent(context, FtsIndexingService.class);
@@ -75,6 +75,13 @@ public class LocalDownloadBroadCastReciver extends BroadcastReceiver {
                     break;
                 case STATUS_BOOKINFORMATION_FAILED:
                     break;
+                case STATUS_FTS_INDEXING_PROGRESS:
+                    //the status was stored when the indexing started, the screens listening for the
+                    //status changes would reload their books on every percent
+                    Log.d("LocalBroadCastReceiver", "onReceive: indexing " +
+                            intent.getIntExtra(DownloadsConstants.EXTRA_FTS_INDEXING_PROGRESS, 0) + "% bookId: " + bookId);
+                    abortBroadcast();
+                    break;
                 case DownloadsConstants.STATUS_UNZIP_ENDED:
                     Intent ftsIndexingServiceIntent = new Intent(context, FtsIndexingService.class);
                     ftsIndexingServiceIntent.putExtra(EXTRA_DOWNLOAD_BOOK_ID, bookId);
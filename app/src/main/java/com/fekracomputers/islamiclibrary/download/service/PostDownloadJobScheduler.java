@@ -0,0 +1,181 @@
+package com.fekracomputers.islamiclibrary.download.service;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Runs the work that follows a book download (unzipping and fts indexing) on a small pool of
+ * threads so a bulk download uses several cores instead of one
+ * <p>
+ * jobs are identified by a key made of their type and book id, a job requested again while it is
+ * waiting or running is ignored, waiting jobs run by priority then in the order they were submitted
+ * and the jobs of books the user is waiting for (see {@link #prioritize(int)}) go first until
+ * {@link #clearPriority(int)}
+ */
+public class PostDownloadJobScheduler {
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_USER_WAITING = 1;
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 30;
+    @Nullable
+    private static PostDownloadJobScheduler sInstance;
+
+    @NonNull
+    private final ThreadPoolExecutor mExecutor;
+    @NonNull
+    private final PriorityBlockingQueue<Runnable> mQueue = new PriorityBlockingQueue<>();
+    /**
+     * the waiting and running jobs by key, guarded by this
+     */
+    @NonNull
+    private final HashMap<String, ScheduledJob> mJobs = new HashMap<>();
+    /**
+     * guarded by this
+     */
+    @NonNull
+    private final HashSet<Integer> mPrioritizedBooks = new HashSet<>();
+    private long mSubmittedJobs;
+
+    @VisibleForTesting
+    PostDownloadJobScheduler(int concurrency) {
+        int threads = Math.max(1, concurrency);
+        mExecutor = new ThreadPoolExecutor(threads, threads,
+                IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, mQueue);
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @NonNull
+    public static synchronized PostDownloadJobScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new PostDownloadJobScheduler(defaultConcurrency());
+        }
+        return sInstance;
+    }
+
+    /**
+     * every indexing job already cleans pages on several threads, so only half of the cores run jobs
+     */
+    private static int defaultConcurrency() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    @NonNull
+    public static String jobKey(@NonNull String jobType, int bookId) {
+        return jobType + ':' + bookId;
+    }
+
+    public int getConcurrency() {
+        return mExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * @param onFinished called on the job thread after the job ran, even if it failed
+     * @return false if the same job is already waiting or running, the job is then dropped and
+     * {@code onFinished} is not called
+     */
+    public synchronized boolean submit(@NonNull String jobType,
+                                       int bookId,
+                                       @NonNull Runnable job,
+                                       @Nullable Runnable onFinished) {
+        String key = jobKey(jobType, bookId);
+        if (mJobs.containsKey(key)) {
+            Timber.d("ignoring duplicate job %s", key);
+            return false;
+        }
+        int priority = mPrioritizedBooks.contains(bookId) ? PRIORITY_USER_WAITING : PRIORITY_NORMAL;
+        ScheduledJob scheduledJob = new ScheduledJob(key, bookId, priority, mSubmittedJobs++, job, onFinished);
+        mJobs.put(key, scheduledJob);
+        mExecutor.execute(scheduledJob);
+        return true;
+    }
+
+    /**
+     * runs the waiting jobs of this book and the ones submitted for it later before the others
+     */
+    public synchronized void prioritize(int bookId) {
+        if (!mPrioritizedBooks.add(bookId)) return;
+        for (ScheduledJob scheduledJob : mJobs.values()) {
+            if (scheduledJob.bookId == bookId && scheduledJob.priority < PRIORITY_USER_WAITING &&
+                    mQueue.remove(scheduledJob)) {
+                ScheduledJob prioritized = new ScheduledJob(scheduledJob.key, bookId,
+                        PRIORITY_USER_WAITING, scheduledJob.sequence, scheduledJob.job, scheduledJob.onFinished);
+                mJobs.put(scheduledJob.key, prioritized);
+                mExecutor.execute(prioritized);
+            }
+        }
+    }
+
+    /**
+     * the jobs submitted for this book from now on are not prioritized, called when the last job of
+     * the book finished or the user stopped waiting for it
+     */
+    public synchronized void clearPriority(int bookId) {
+        mPrioritizedBooks.remove(bookId);
+    }
+
+    @VisibleForTesting
+    synchronized int getPrioritizedBookCount() {
+        return mPrioritizedBooks.size();
+    }
+
+    /**
+     * @return true if the job is waiting or running
+     */
+    public synchronized boolean isScheduled(@NonNull String jobType, int bookId) {
+        return mJobs.containsKey(jobKey(jobType, bookId));
+    }
+
+    private synchronized void finished(@NonNull ScheduledJob scheduledJob) {
+        mJobs.remove(scheduledJob.key);
+    }
+
+    private class ScheduledJob implements Runnable, Comparable<ScheduledJob> {
+        @NonNull
+        final String key;
+        final int bookId;
+        final int priority;
+        final long sequence;
+        @NonNull
+        final Runnable job;
+        @Nullable
+        final Runnable onFinished;
+
+        ScheduledJob(@NonNull String key, int bookId, int priority, long sequence,
+                     @NonNull Runnable job, @Nullable Runnable onFinished) {
+            this.key = key;
+            this.bookId = bookId;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.job = job;
+            this.onFinished = onFinished;
+        }
+
+        @Override
+        public void run() {
+            try {
+                job.run();
+            } catch (RuntimeException e) {
+                Timber.e(e, "job %s failed", key);
+            } finally {
+                finished(this);
+                if (onFinished != null) {
+                    onFinished.run();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(@NonNull ScheduledJob o) {
+            if (priority != o.priority) return priority > o.priority ? -1 : 1;
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+}
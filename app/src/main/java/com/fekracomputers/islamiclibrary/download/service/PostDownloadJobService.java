@@ -0,0 +1,66 @@
+package com.fekracomputers.islamiclibrary.download.service;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * A service handling every start intent as a job of the {@link PostDownloadJobScheduler} so the
+ * intents of several books are handled at the same time, unlike an IntentService it stops itself
+ * only when all its jobs finished
+ * <p>
+ * intents are redelivered if the process is killed, the jobs must be able to run again
+ */
+public abstract class PostDownloadJobService extends Service {
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * only accessed on the main thread
+     */
+    private int mRunningJobs;
+    private int mLastStartId;
+
+    @Override
+    public int onStartCommand(@Nullable Intent intent, int flags, int startId) {
+        mLastStartId = startId;
+        if (intent != null && PostDownloadJobScheduler.getInstance().submit(getJobType(intent),
+                getJobBookId(intent),
+                () -> onHandleIntent(intent),
+                () -> mMainHandler.post(this::onJobFinished))) {
+            mRunningJobs++;
+        } else if (mRunningJobs == 0) {
+            stopSelf(startId);
+        }
+        return START_REDELIVER_INTENT;
+    }
+
+    private void onJobFinished() {
+        mRunningJobs--;
+        if (mRunningJobs == 0) {
+            stopSelf(mLastStartId);
+        }
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /**
+     * @return the type of the job, intents with the same type and book id are the same job
+     */
+    @NonNull
+    protected abstract String getJobType(@NonNull Intent intent);
+
+    protected abstract int getJobBookId(@NonNull Intent intent);
+
+    /**
+     * called on a thread of the {@link PostDownloadJobScheduler}
+     */
+    protected abstract void onHandleIntent(@NonNull Intent intent);
+}
@@ -1,6 +1,5 @@
 package com.fekracomputers.islamiclibrary.download.service;
 
-import android.app.IntentService;
 import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -39,23 +38,11 @@ import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstant
 /**
  * Created by Mohammad Yahia on 03/11/2016.
  */
-public class UnZipIntentService extends IntentService {
+public class UnZipIntentService extends PostDownloadJobService {
     public static final String EXTRA_FILE_PATH = "ZIP_FILE_PATH";
+    public static final String JOB_TYPE = "unzip";
     private static final String TAG = "UnZipIntentService";
 
-    /**
-     * An IntentService must always have a constructor that calls the super constructor. The
-     * string supplied to the super constructor is used to give a name to the IntentService's
-     * background thread.
-     */
-    public UnZipIntentService() {
-
-        super("UnZipIntentService");
-        setIntentRedelivery(true);
-
-
-    }
-
     private static void deleteFileWithException(@NonNull String zipFilePath) {
         File file = new File(zipFilePath);
         if (file.exists()) {
@@ -158,6 +145,35 @@ public class UnZipIntentService extends IntentService {
         return unzip(zipFilePath, destinationPath);
     }
 
+    @NonNull
+    @Override
+    protected String getJobType(@NonNull Intent intent) {
+        return JOB_TYPE;
+    }
+
+    /**
+     * @return the book id in the zip file name, {@link DownloadsConstants#BOOK_INFORMATION_DUMMY_ID}
+     * for the book information database
+     */
+    @Override
+    protected int getJobBookId(@NonNull Intent intent) {
+        String zipFilePath = intent.getStringExtra(EXTRA_FILE_PATH);
+        if (zipFilePath == null) return DownloadsConstants.BOOK_INFORMATION_DUMMY_ID;
+        String fileName = zipFilePath.substring(zipFilePath.lastIndexOf(File.separatorChar) + 1);
+        try {
+            if (BooksInformationDbHelper.compressedBookFileRegex.matcher(fileName).matches()) {
+                return Integer.parseInt(fileName.substring(0, fileName.lastIndexOf('.')));
+            }
+            Matcher matcher = repeatedCompressedBookFileRegex.matcher(fileName);
+            if (matcher.matches()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+        } catch (NumberFormatException e) {
+            Timber.e(e);
+        }
+        return DownloadsConstants.BOOK_INFORMATION_DUMMY_ID;
+    }
+
     @Override
     protected void onHandleIntent(@NonNull Intent workIntent) {
 
@@ -289,8 +305,9 @@ public class UnZipIntentService extends IntentService {
 
         if (unZipInPlace(zipFilePath)) {
             if (BookDatabaseHelper.isValidBookStatic(bookId, this.getApplicationContext())) {
+                BookDatabaseHelper bookDatabaseHelper = null;
                 try {
-                    BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(this.getApplicationContext(), bookId);
+                    bookDatabaseHelper = BookDatabaseHelper.acquire(this.getApplicationContext(), bookId);
                     if (bookDatabaseHelper != null && !bookDatabaseHelper.isFtsSearchable()) {
                         //Broadcast unzip ended
                         Intent unzipEndedBroadCast =
@@ -314,6 +331,10 @@ public class UnZipIntentService extends IntentService {
                     }
                 } catch (BookDatabaseException e) {
                     Timber.e(e);
+                } finally {
+                    if (bookDatabaseHelper != null) {
+                        bookDatabaseHelper.release();
+                    }
                 }
             } else {
                 BookDownloadCompletedReceiver.broadCastBookDownloadFailed(bookId, "invalidDatabase", this);
@@ -0,0 +1,59 @@
+package com.fekracomputers.islamiclibrary.reading;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import com.fekracomputers.islamiclibrary.utility.LatencyStats;
+
+import java.util.Locale;
+
+/**
+ * Records the time between consecutive frames while it is started, the reader starts it for the
+ * duration of every swipe so the frames are measured while pages are being brought in
+ */
+public class FrameTimeMonitor implements Choreographer.FrameCallback {
+    /**
+     * a frame that took longer than one and a half vsync at 60Hz missed at least one
+     */
+    private static final long JANK_THRESHOLD_NANOS = 25_000_000L;
+
+    @NonNull
+    private final LatencyStats mFrameTimes = new LatencyStats("frame time");
+    private boolean mRunning;
+    private long mLastFrameNanos = -1;
+    private long mJankyFrames;
+
+    @MainThread
+    public void start() {
+        if (mRunning) return;
+        mRunning = true;
+        mLastFrameNanos = -1;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @MainThread
+    public void stop() {
+        if (!mRunning) return;
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) return;
+        if (mLastFrameNanos >= 0) {
+            long frameNanos = frameTimeNanos - mLastFrameNanos;
+            mFrameTimes.record(frameNanos);
+            if (frameNanos > JANK_THRESHOLD_NANOS) mJankyFrames++;
+        }
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @NonNull
+    @MainThread
+    public String getStats() {
+        return String.format(Locale.US, "%s janky %d", mFrameTimes.getStats(), mJankyFrames);
+    }
+}
@@ -0,0 +1,174 @@
+package com.fekracomputers.islamiclibrary.reading;
+
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * The html document of a reader page without the page itself
+ * <p>
+ * the head, the styles and the scripts are the same for all the pages of a book with a given
+ * display configuration, they are assembled once and every page only splices its id and content in
+ * <p>
+ * the display colors are in a style element of their own which highlight.js updates when a color
+ * changes, so the loaded pages are not reloaded, the zoom is a setting of the WebView and is not
+ * part of the document
+ * <p>
+ * the body holds nothing but the page so a pooled WebView can swap it, see {@link WebViewPool}, the
+ * continuous document has the same head but its body is filled page by page by continuous.js
+ */
+public class PageHtmlTemplate {
+    /**
+     * the id of the style element holding the display colors, see highlight.js
+     */
+    public static final String DISPLAY_COLORS_STYLE_ID = "display_colors";
+    /**
+     * the page id of the continuous document which holds many pages
+     */
+    public static final int NO_PAGE_ID = -1;
+    private static final String RANGY_SCRIPTS =
+            "<script src='scripts/rangy/rangy-core.js'></script>" +
+                    "<script src='scripts/rangy/rangy-serializer.js'></script>" +
+                    "<script src='scripts/rangy/rangy-highlighter.js'></script>" +
+                    "<script src='scripts/rangy/rangy-classapplier.js'></script>" +
+                    "<script src='scripts/rangy/rangy-textrange.js' defer></script>" +
+                    "<script src='scripts/rangy/rangy-position.js' ></script>" +
+                    "<script src='scripts/display.js'></script>";
+    @Nullable
+    private static PageHtmlTemplate sLastTemplate;
+
+    @NonNull
+    private final String mBookName;
+    private final boolean mIsNightMode;
+    private final int mBackgroundColor;
+    private final int mTextColor;
+    private final int mHeadingColor;
+    /**
+     * everything up to the page id attribute value of the body, the page ids are kept on the body
+     * for the scripts
+     */
+    @NonNull
+    private final String mPrefix;
+    /**
+     * between the page id and the page content
+     */
+    @NonNull
+    private final String mBodyStart;
+    @NonNull
+    private final String mSuffix;
+    @NonNull
+    private final String mContinuousSuffix;
+
+    private PageHtmlTemplate(@NonNull String bookName,
+                             boolean isNightMode,
+                             @ColorInt int backgroundColor,
+                             @ColorInt int textColor,
+                             @ColorInt int headingColor) {
+        mBookName = bookName;
+        mIsNightMode = isNightMode;
+        mBackgroundColor = backgroundColor;
+        mTextColor = textColor;
+        mHeadingColor = headingColor;
+
+        mPrefix = "<!doctype html>" +
+                "<html align='justify' dir=\"rtl\">" +
+                "<head>" +
+                "<title>" + bookName + "</title>" +
+                getDisplayColorsStyle(backgroundColor, textColor, headingColor) +
+                "<link href=\"styles/styles.css\" rel=\"stylesheet\" type=\"text/css\">" +
+                "<link href=\"styles/highlight.css\" rel=\"stylesheet\" type=\"text/css\">" +
+                (isNightMode ? "<link href=\"styles/ReadingNight.css\" rel=\"stylesheet\" type=\"text/css\">" : "") +
+                "</head>" +
+                "<body data-page-id=\"";
+        mBodyStart = "\">";
+        mSuffix = "</body>" +
+                RANGY_SCRIPTS +
+                "<script src='scripts/highlight.js'></script>" +
+                "</html>";
+        mContinuousSuffix = "</body>" +
+                RANGY_SCRIPTS +
+                "<script src='scripts/continuous.js'></script>" +
+                "</html>";
+    }
+
+    /**
+     * @return the template of this configuration, the last one is reused while the configuration
+     * doesn't change
+     */
+    @NonNull
+    public static synchronized PageHtmlTemplate getInstance(@NonNull String bookName,
+                                                            boolean isNightMode,
+                                                            @ColorInt int backgroundColor,
+                                                            @ColorInt int textColor,
+                                                            @ColorInt int headingColor) {
+        PageHtmlTemplate template = sLastTemplate;
+        if (template == null || !template.matches(bookName, isNightMode, backgroundColor, textColor, headingColor)) {
+            template = new PageHtmlTemplate(bookName, isNightMode, backgroundColor, textColor, headingColor);
+            sLastTemplate = template;
+        }
+        return template;
+    }
+
+    private static int getCssColorInt(@ColorInt int color) {
+        return 0x00FFFFFF & color;
+    }
+
+    /**
+     * the first rule holds the background and text colors and the second one the heading color
+     */
+    @NonNull
+    private static String getDisplayColorsStyle(@ColorInt int backgroundColor, @ColorInt int textColor, @ColorInt int headingColor) {
+        return String.format(Locale.US, "<style id=\"" + DISPLAY_COLORS_STYLE_ID + "\">\n" +
+                        "    body {\n" +
+                        "      background-color: #%06X;\n" +
+                        "      color: #%06X;\n" +
+                        "    }\n" +
+                        "    h1,h2,h3,h4,h5,h6 {\n" +
+                        "      color: #%06X\n" +
+                        "    }\n" +
+                        "  </style>",
+                getCssColorInt(backgroundColor),
+                getCssColorInt(textColor),
+                getCssColorInt(headingColor));
+    }
+
+    private boolean matches(@NonNull String bookName,
+                            boolean isNightMode,
+                            @ColorInt int backgroundColor,
+                            @ColorInt int textColor,
+                            @ColorInt int headingColor) {
+        return mIsNightMode == isNightMode &&
+                mBackgroundColor == backgroundColor &&
+                mTextColor == textColor &&
+                mHeadingColor == headingColor &&
+                mBookName.equals(bookName);
+    }
+
+    /**
+     * @return the document of the page
+     */
+    @NonNull
+    public String build(int bookId, int pageId, @NonNull String pageContent) {
+        //the ids, their attribute and some slack
+        return new StringBuilder(mPrefix.length() + 48 + mBodyStart.length() + pageContent.length() + mSuffix.length())
+                .append(mPrefix)
+                .append(pageId)
+                .append("\" data-book-id=\"")
+                .append(bookId)
+                .append(mBodyStart)
+                .append(pageContent)
+                .append(mSuffix)
+                .toString();
+    }
+
+    /**
+     * @return the document of the continuous reading mode, its pages are appended and removed by
+     * continuous.js
+     */
+    @NonNull
+    public String buildContinuousShell(int bookId) {
+        return mPrefix + NO_PAGE_ID + "\" data-book-id=\"" + bookId + mBodyStart + mContinuousSuffix;
+    }
+}
@@ -0,0 +1,183 @@
+package com.fekracomputers.islamiclibrary.reading;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fekracomputers.islamiclibrary.databases.BookDatabaseHelper;
+import com.fekracomputers.islamiclibrary.databases.PageContentCache;
+import com.fekracomputers.islamiclibrary.model.BookInfo;
+import com.fekracomputers.islamiclibrary.model.BookPartsInfo;
+import com.fekracomputers.islamiclibrary.model.PageCitation;
+import com.fekracomputers.islamiclibrary.model.PageInfo;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import timber.log.Timber;
+
+/**
+ * Loads the pages of the reader off the main thread
+ * <p>
+ * every time a page is selected the next pages in the swipe direction and {@link #PAGES_BEHIND}
+ * page in the other direction are loaded into the {@link PageContentCache} of the book so the page
+ * fragments find their content there, a page that is not cached yet is loaded by
+ * {@link #loadPage(int, PageLoadedListener)} on the same single thread so the database is never
+ * queried from the main thread
+ */
+public class PagePrefetcher {
+    public static final int DEFAULT_PAGES_AHEAD = 3;
+    private static final int PAGES_BEHIND = 1;
+
+    @NonNull
+    private final BookDatabaseHelper mBookDatabaseHelper;
+    private final int mPageCount;
+    private final int mPagesAhead;
+    @NonNull
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * only accessed on the main thread
+     */
+    private int mLastPosition = -1;
+    /**
+     * the positions to prefetch, a new selection replaces the pending ones
+     */
+    @NonNull
+    private final AtomicReference<int[]> mPendingPositions = new AtomicReference<>();
+    /**
+     * loaded once on the prefetch thread
+     */
+    @Nullable
+    private volatile BookInfo mBookInfo;
+    @Nullable
+    private volatile BookPartsInfo mBookPartsInfo;
+    private volatile boolean mShutdown;
+
+    public PagePrefetcher(@NonNull BookDatabaseHelper bookDatabaseHelper, int pageCount, int pagesAhead) {
+        mBookDatabaseHelper = bookDatabaseHelper;
+        mPageCount = pageCount;
+        mPagesAhead = pagesAhead;
+    }
+
+    @MainThread
+    public void onPageSelected(int position) {
+        int direction = mLastPosition < 0 || position >= mLastPosition ? 1 : -1;
+        mLastPosition = position;
+        int[] positions = new int[mPagesAhead + PAGES_BEHIND];
+        int count = 0;
+        for (int i = 1; i <= mPagesAhead; i++) {
+            int ahead = position + direction * i;
+            if (ahead >= 0 && ahead < mPageCount) positions[count++] = ahead;
+        }
+        for (int i = 1; i <= PAGES_BEHIND; i++) {
+            int behind = position - direction * i;
+            if (behind >= 0 && behind < mPageCount) positions[count++] = behind;
+        }
+        if (mPendingPositions.getAndSet(Arrays.copyOf(positions, count)) == null && !mShutdown) {
+            mExecutor.execute(this::prefetchPending);
+        }
+    }
+
+    private void prefetchPending() {
+        int[] positions = mPendingPositions.getAndSet(null);
+        if (positions == null || mShutdown) return;
+        try {
+            int[] pageIds = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                pageIds[i] = mBookDatabaseHelper.position2PageId(positions[i]);
+            }
+            mBookDatabaseHelper.prefetchPages(pageIds);
+            loadBookInformation();
+        } catch (RuntimeException e) {
+            //the book may be closed meanwhile, the pages are loaded on demand then
+            Timber.e(e, "prefetching pages failed");
+        }
+    }
+
+    private void loadBookInformation() {
+        if (mBookInfo == null) {
+            mBookPartsInfo = mBookDatabaseHelper.getBookPartsInfo();
+            mBookInfo = mBookDatabaseHelper.getBookInfo();
+        }
+    }
+
+    /**
+     * @return the page if it is cached and the book information was loaded, counted as a hit or a
+     * miss of the cache
+     */
+    @Nullable
+    @MainThread
+    public LoadedPage getLoadedPageIfCached(int pageId) {
+        BookInfo bookInfo = mBookInfo;
+        BookPartsInfo bookPartsInfo = mBookPartsInfo;
+        if (bookInfo == null || bookPartsInfo == null) return null;
+        PageContentCache.Page page = mBookDatabaseHelper.getPageContentCache().get(pageId);
+        if (page == null) return null;
+        return new LoadedPage(page, bookInfo, bookPartsInfo);
+    }
+
+    /**
+     * loads the page in the background, the listener is called on the main thread if the page exists
+     */
+    @MainThread
+    public void loadPage(int pageId, @NonNull PageLoadedListener listener) {
+        LoadedPage cachedPage = getLoadedPageIfCached(pageId);
+        if (cachedPage != null) {
+            listener.onPageLoaded(cachedPage);
+            return;
+        }
+        if (mShutdown) return;
+        mExecutor.execute(() -> {
+            try {
+                PageContentCache.Page page = mBookDatabaseHelper.getPage(pageId);
+                loadBookInformation();
+                BookInfo bookInfo = mBookInfo;
+                BookPartsInfo bookPartsInfo = mBookPartsInfo;
+                if (page != null && bookInfo != null && bookPartsInfo != null) {
+                    LoadedPage loadedPage = new LoadedPage(page, bookInfo, bookPartsInfo);
+                    mMainHandler.post(() -> listener.onPageLoaded(loadedPage));
+                }
+            } catch (RuntimeException e) {
+                Timber.e(e, "loading page %d failed", pageId);
+            }
+        });
+    }
+
+    public void shutdown() {
+        mShutdown = true;
+        mExecutor.shutdown();
+        Timber.d("page cache: %s", mBookDatabaseHelper.getPageContentCache().getStats());
+    }
+
+    public interface PageLoadedListener {
+        @MainThread
+        void onPageLoaded(@NonNull LoadedPage loadedPage);
+    }
+
+    /**
+     * what a page fragment needs to show its page
+     */
+    public static class LoadedPage {
+        @NonNull
+        public final PageContentCache.Page page;
+        @NonNull
+        public final PageInfo pageInfo;
+        @NonNull
+        public final BookInfo bookInfo;
+        @NonNull
+        public final PageCitation pageCitation;
+
+        LoadedPage(@NonNull PageContentCache.Page page, @NonNull BookInfo bookInfo, @NonNull BookPartsInfo bookPartsInfo) {
+            this.page = page;
+            this.bookInfo = bookInfo;
+            pageInfo = new PageInfo(page.pageId, page.partNumber, page.pageNumber);
+            pageCitation = new PageCitation(bookInfo.getName(), bookInfo.getAuthorName(), pageInfo, bookPartsInfo);
+        }
+    }
+}
@@ -62,6 +62,7 @@ import com.fekracomputers.islamiclibrary.reading.dialogs.DisplayOptionsPopupFrag
 import com.fekracomputers.islamiclibrary.reading.dialogs.DisplayPrefChangeListener;
 import com.fekracomputers.islamiclibrary.reading.dialogs.PageNumberPickerDialogFragment;
 import com.fekracomputers.islamiclibrary.reading.fragments.BookPageFragment;
+import com.fekracomputers.islamiclibrary.reading.fragments.ContinuousReadingFragment;
 import com.fekracomputers.islamiclibrary.reading.widget.SearchScrubBar;
 import com.fekracomputers.islamiclibrary.search.model.BookSearchResultsContainer;
 import com.fekracomputers.islamiclibrary.search.model.SearchResult;
@@ -80,7 +81,6 @@ import com.jaredrummler.android.colorpicker.ColorPickerDialogListener;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 import timber.log.Timber;
@@ -90,13 +90,17 @@ import static com.fekracomputers.islamiclibrary.search.view.SearchResultFragment
 
 public class ReadingActivity extends AppCompatActivity implements
         BookPageFragment.PageFragmentListener,
+        ContinuousReadingFragment.ContinuousReadingListener,
         DisplayOptionsPopupFragment.OnPrefDialogInteractionListener,
         SearchResultFragment.OnSearchResultFragmentInteractionListener,
         PageNumberPickerDialogFragment.PageNumberPickerDialogFragmentListener,
         ColorPickerDialogListener {
 
     public static final String KEY_TAB_NAME = "Tab_Name";
-    public static final String KEY_SEARCH_RESULT_ARRAY_LIST = "KEY_SEARCH_RESULT_ARRAY_LIST";
+    /**
+     * the ids of the result pages in page order, an int array
+     */
+    public static final String KEY_SEARCH_RESULT_PAGE_IDS = "KEY_SEARCH_RESULT_PAGE_IDS";
     public static final String KEY_SEARCH_RESULT_CHILD_POSITION = "KEY_SEARCH_RESULT_CHILD_POSITION";
     public static final String KEY_CURRENT_PAGE_INFO = "KEY_CURRENT_PAGE_INFO";
     public static final String KEY_CURRENT_PARTS_INFO = "KEY_CURRENT_PARTS_INFO";
@@ -185,7 +189,16 @@ public class ReadingActivity extends AppCompatActivity implements
     private ViewStub mSearchViewStub;
     private SearchScrubBar searchScrubBar;
     private int mCurrentSearchResultPosition;
-    private ArrayList<SearchResult> mBookSearchResultsArrayList;
+    @Nullable
+    private SearchHitIndex mSearchHitIndex;
+    private PagePrefetcher mPagePrefetcher;
+    private WebViewPool mWebViewPool;
+    /**
+     * null unless the book is read in the continuous scroll mode
+     */
+    @Nullable
+    private ContinuousReadingFragment mContinuousReadingFragment;
+    private final FrameTimeMonitor mFrameTimeMonitor = new FrameTimeMonitor();
     private final ViewPager.OnPageChangeListener searchScrubOnPageChangeListener = new ViewPager.OnPageChangeListener() {
         @Override
         public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
@@ -396,6 +409,8 @@ public class ReadingActivity extends AppCompatActivity implements
         DisplayPreferenceUtilities.setDisplayPreference(SettingsFragment.KEY_IS_THEME_NIGHT_MODE,
                 isDesiredThemeLight,
                 defaultSharedPreferences, mUserDataDBHelper);
+        //unlike the colors the night mode is also the theme of the toolbar, the seek bar and the
+        //popups which can only be applied by starting the activity again
         restartOnThemeChange();
 
     }
@@ -540,6 +555,36 @@ public class ReadingActivity extends AppCompatActivity implements
     }
 
 
+    @Override
+    public boolean isContinuousScroll() {
+        SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        return DisplayPreferenceUtilities.getDisplayPreference(SettingsFragment.KEY_IS_CONTINUOUS_SCROLL_ON,
+                AppConstants.DISPLAY_PREFERENCES_DEFAULTS.KEY_IS_CONTINUOUS_SCROLL_ON,
+                defaultSharedPreferences,
+                mUserDataDBHelper);
+    }
+
+    @Override
+    public void setContinuousScroll(boolean checked) {
+        if (checked == isContinuousScroll()) return;
+        SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        DisplayPreferenceUtilities.setDisplayPreference(SettingsFragment.KEY_IS_CONTINUOUS_SCROLL_ON,
+                checked,
+                defaultSharedPreferences, mUserDataDBHelper);
+        restartOnThemeChange();
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mPager.getCurrentItem();
+    }
+
+    @Override
+    public void onContinuousPageChanged(int position) {
+        //the pager listeners log the access and update the page number, the title and the bookmark
+        mPager.setCurrentItem(position, false);
+    }
+
     private void restartOnThemeChange() {
         finish();
         Intent intent = getIntent();
@@ -651,8 +696,9 @@ public class ReadingActivity extends AppCompatActivity implements
         getSupportFragmentManager()
                 .popBackStack();
 
-        mBookSearchResultsArrayList = bookSearchResultsContainer.getChildArrayList();
-        mCurrentSearchResultPosition = childAdapterPosition;
+        ArrayList<SearchResult> resultsInPageOrder = bookSearchResultsContainer.getChildArrayListInPageOrder();
+        mSearchHitIndex = createSearchHitIndex(BookSearchResultsContainer.getPageIds(resultsInPageOrder));
+        mCurrentSearchResultPosition = bookSearchResultsContainer.getPositionInPageOrder(resultsInPageOrder, childAdapterPosition);
         if (!isSearchViewInflated) {
             mSearchViewStub.inflate();
             isSearchViewInflated = true;
@@ -663,37 +709,40 @@ public class ReadingActivity extends AppCompatActivity implements
         moveToCurrentMatch();
     }
 
-    private void setupSearchScrubOnSearchResultClicked(int position) {
-        int pageId = mBookDatabaseHelper.position2PageId(position);
-
-        int i = Collections.binarySearch(mBookSearchResultsArrayList, new SearchResult(bookId, new PageInfo(pageId, 0, 0)));
-        boolean isCurrentPageMatch = i >= 0;
-        int numberOfMatchesBeforCurrent = isCurrentPageMatch ? i : -i - 1;
+    /**
+     * @param sortedPageIds the result page ids in page order
+     */
+    @NonNull
+    private SearchHitIndex createSearchHitIndex(@NonNull int[] sortedPageIds) {
+        return new SearchHitIndex(sortedPageIds, mBookDatabaseHelper.getPagePositions(sortedPageIds));
+    }
 
-        searchScrubBar.setSearchBarMatchText(numberOfMatchesBeforCurrent,
-                mBookSearchResultsArrayList.size(),
-                isCurrentPageMatch
-        );
-        searchScrubBar.setPreviousButtonEnabled(numberOfMatchesBeforCurrent != 0);
-        searchScrubBar.setNextButtonEnabled(numberOfMatchesBeforCurrent < mBookSearchResultsArrayList.size());
+    private void setupSearchScrubOnSearchResultClicked(int position) {
+        if (mSearchHitIndex != null) {
+            searchScrubBar.setNavigationStatus(mSearchHitIndex.getNavigationStatus(position));
+        }
     }
 
     /**
-     * move the pager to the next search match`
+     * move the pager to the first search match after the current page`
      */
     private void moveToNextMatch() {
-        if (mCurrentSearchResultPosition < mBookSearchResultsArrayList.size() - 1) {
-            mCurrentSearchResultPosition++;
+        if (mSearchHitIndex == null) return;
+        int nextMatch = mSearchHitIndex.nextMatch(mPager.getCurrentItem());
+        if (nextMatch >= 0) {
+            mCurrentSearchResultPosition = nextMatch;
             moveToSearchMatch(mCurrentSearchResultPosition);
         }
     }
 
     /**
-     * move the pager to the previous search match
+     * move the pager to the last search match before the current page
      */
     private void moveToPreviousMatch() {
-        if (mCurrentSearchResultPosition > 0) {
-            mCurrentSearchResultPosition--;
+        if (mSearchHitIndex == null) return;
+        int previousMatch = mSearchHitIndex.previousMatch(mPager.getCurrentItem());
+        if (previousMatch >= 0) {
+            mCurrentSearchResultPosition = previousMatch;
             moveToSearchMatch(mCurrentSearchResultPosition);
         }
     }
@@ -706,11 +755,10 @@ public class ReadingActivity extends AppCompatActivity implements
     }
 
     private void moveToSearchMatch(int matchNumber) {
-        if (mBookSearchResultsArrayList != null &&
+        if (mSearchHitIndex != null &&
                 matchNumber >= 0 &&
-                matchNumber < mBookSearchResultsArrayList.size() &&
-                !mBookSearchResultsArrayList.isEmpty()) {
-            int targetPosition = mBookDatabaseHelper.pageId2position(mBookSearchResultsArrayList.get(matchNumber).getPageInfo().pageId);
+                matchNumber < mSearchHitIndex.size()) {
+            int targetPosition = mSearchHitIndex.getPosition(matchNumber);
             if (targetPosition != mPager.getCurrentItem()) {
                 mPager.setCurrentItem(targetPosition,
                         true);
@@ -800,6 +848,14 @@ public class ReadingActivity extends AppCompatActivity implements
         return b || super.onKeyUp(keyCode, event);
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (mUserDataDBHelper != null) {
+            mUserDataDBHelper.flushWrites();
+        }
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -853,7 +909,7 @@ public class ReadingActivity extends AppCompatActivity implements
         mUserDataDBHelper.logBookAccess();
 
         try {
-            mBookDatabaseHelper = BookDatabaseHelper.getInstance(this, bookId);
+            mBookDatabaseHelper = BookDatabaseHelper.acquire(this, bookId);
             bookName = mBookDatabaseHelper.getBookName();
             logOpenBookAnalytics(bookId, bookName);
 
@@ -891,7 +947,31 @@ public class ReadingActivity extends AppCompatActivity implements
             mPager = findViewById(R.id.pager);
             mPartsInfo = mBookDatabaseHelper.getBookPartsInfo();
             PAGE_COUNT = mBookDatabaseHelper.getPageCount();
-            PagerAdapter pagerAdapter = new BookPageFragmentStatePagerAdapter(getSupportFragmentManager());
+            mPagePrefetcher = new PagePrefetcher(mBookDatabaseHelper, PAGE_COUNT, PagePrefetcher.DEFAULT_PAGES_AHEAD);
+            mWebViewPool = new WebViewPool(this,
+                    PageHtmlTemplate.getInstance(bookName,
+                            isThemeNightMode,
+                            getBackGroundColor(),
+                            getTextColor(isThemeNightMode),
+                            getHeadingColor(isThemeNightMode))
+                            .build(bookId, 0, ""),
+                    WebViewPool.DEFAULT_MAX_IDLE);
+            PagerAdapter pagerAdapter;
+            if (isContinuousScroll()) {
+                pagerAdapter = new PositionPagerAdapter();
+                mContinuousReadingFragment = (ContinuousReadingFragment) getSupportFragmentManager()
+                        .findFragmentByTag(ContinuousReadingFragment.TAG);
+                if (mContinuousReadingFragment == null) {
+                    mContinuousReadingFragment = ContinuousReadingFragment.newInstance(bookId);
+                    getSupportFragmentManager().beginTransaction()
+                            .add(R.id.continuous_reading_container, mContinuousReadingFragment, ContinuousReadingFragment.TAG)
+                            .commit();
+                }
+                findViewById(R.id.continuous_reading_container).setVisibility(View.VISIBLE);
+            } else {
+                mWebViewPool.prewarm();
+                pagerAdapter = new BookPageFragmentStatePagerAdapter(getSupportFragmentManager());
+            }
 
             if (!intent.hasExtra(KEY_PAGE_ID)) {
                 currentPageInfo = mUserDataDBHelper.getLastPageInfo();
@@ -906,15 +986,20 @@ public class ReadingActivity extends AppCompatActivity implements
 
             mPager.setAdapter(pagerAdapter);
             mPager.setCurrentItem(mBookDatabaseHelper.pageId2position(currentPageInfo.pageId));
+            mPagePrefetcher.onPageSelected(mPager.getCurrentItem());
 
             mPager.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
                 @Override
                 public void onPageSelected(int position) {
+                    mPagePrefetcher.onPageSelected(position);
                     currentPageInfo = mBookDatabaseHelper.getPageInfoByPagePosition(position);
                     parentTitle = mBookDatabaseHelper.getParentTitle(currentPageInfo.pageId);
                     mFloatingPageNumberTextView.setText(
                             getPartPageSingleText());
                     mUserDataDBHelper.logPageAccess(currentPageInfo);
+                    if (mContinuousReadingFragment != null) {
+                        mContinuousReadingFragment.showPosition(position);
+                    }
 
                 }
 
@@ -923,13 +1008,18 @@ public class ReadingActivity extends AppCompatActivity implements
                     if (state == ViewPager.SCROLL_STATE_DRAGGING) {
                         showFloatingPageNumber();
                     }
+                    if (state == ViewPager.SCROLL_STATE_IDLE) {
+                        mFrameTimeMonitor.stop();
+                    } else {
+                        mFrameTimeMonitor.start();
+                    }
                 }
             });
 
 
-            if (intent.hasExtra(KEY_SEARCH_RESULT_ARRAY_LIST) && intent.hasExtra(KEY_SEARCH_RESULT_CHILD_POSITION)) {
+            if (intent.hasExtra(KEY_SEARCH_RESULT_PAGE_IDS) && intent.hasExtra(KEY_SEARCH_RESULT_CHILD_POSITION)) {
                 int searchResultListPosition = intent.getIntExtra(ReadingActivity.KEY_SEARCH_RESULT_CHILD_POSITION, 0);
-                mBookSearchResultsArrayList = intent.getParcelableArrayListExtra(ReadingActivity.KEY_SEARCH_RESULT_ARRAY_LIST);
+                mSearchHitIndex = createSearchHitIndex(intent.getIntArrayExtra(KEY_SEARCH_RESULT_PAGE_IDS));
                 mCurrentSearchResultPosition = searchResultListPosition;
                 if (!isSearchViewInflated) {
                     mSearchViewStub.inflate();
@@ -972,10 +1062,33 @@ public class ReadingActivity extends AppCompatActivity implements
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (mBookDatabaseHelper != null) {
+            mBookDatabaseHelper.release();
+        }
+        if (mPagePrefetcher != null) {
+            mPagePrefetcher.shutdown();
+        }
+        mFrameTimeMonitor.stop();
+        Timber.d("swipes: %s", mFrameTimeMonitor.getStats());
+        if (mWebViewPool != null) {
+            mWebViewPool.destroy();
+        }
         SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
         sharedPreferences.unregisterOnSharedPreferenceChangeListener(sharedPreferenceListener);
     }
 
+    @NonNull
+    @Override
+    public PagePrefetcher getPagePrefetcher() {
+        return mPagePrefetcher;
+    }
+
+    @NonNull
+    @Override
+    public WebViewPool getWebViewPool() {
+        return mWebViewPool;
+    }
+
     public void populateReaderActionBar(CharSequence title, CharSequence author) {
         ActionBar actionBar = getSupportActionBar();
         if (actionBar != null) {
@@ -1301,7 +1414,7 @@ public class ReadingActivity extends AppCompatActivity implements
     }
 
     private boolean isInGlobalSearchResult() {
-        return getIntent().hasExtra(KEY_SEARCH_RESULT_ARRAY_LIST);
+        return getIntent().hasExtra(KEY_SEARCH_RESULT_PAGE_IDS);
     }
 
     private void reShowSearchResultFragment() {
@@ -1327,9 +1440,7 @@ public class ReadingActivity extends AppCompatActivity implements
 
     private void clearSearchMatches() {
         mCurrentSearchResultPosition = 0;
-        if (mBookSearchResultsArrayList != null) {
-            mBookSearchResultsArrayList.clear();
-        }
+        mSearchHitIndex = null;
     }
 
     private void removeSearchResultFragment() {
@@ -1721,6 +1832,35 @@ public class ReadingActivity extends AppCompatActivity implements
         }
     }
 
+    /**
+     * the pages of the continuous scroll mode as empty views, the pager keeps the current position
+     * so everything that moves to a page or follows the current one works in both modes
+     */
+    private class PositionPagerAdapter extends PagerAdapter {
+        @NonNull
+        @Override
+        public Object instantiateItem(@NonNull ViewGroup container, int position) {
+            View view = new View(container.getContext());
+            container.addView(view);
+            return view;
+        }
+
+        @Override
+        public void destroyItem(@NonNull ViewGroup container, int position, @NonNull Object object) {
+            container.removeView((View) object);
+        }
+
+        @Override
+        public boolean isViewFromObject(@NonNull View view, @NonNull Object object) {
+            return view == object;
+        }
+
+        @Override
+        public int getCount() {
+            return PAGE_COUNT;
+        }
+    }
+
     public class DepthPageTransformer implements ViewPager.PageTransformer {
         private static final float MIN_SCALE = 0.75f;
 
@@ -0,0 +1,97 @@
+package com.fekracomputers.islamiclibrary.reading;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * The search matches of the book being read, used by the search scrub bar
+ * <p>
+ * holds the ids of the matching pages sorted and their pager positions, both increase together so
+ * every lookup is a binary search on the positions without allocation nor database access
+ */
+public class SearchHitIndex {
+    @NonNull
+    private final int[] mPageIds;
+    @NonNull
+    private final int[] mPositions;
+
+    /**
+     * @param sortedPageIds the page ids in ascending order without duplicates
+     * @param positions     the pager position of every page id
+     */
+    public SearchHitIndex(@NonNull int[] sortedPageIds, @NonNull int[] positions) {
+        if (sortedPageIds.length != positions.length) {
+            throw new IllegalArgumentException("every page needs a position");
+        }
+        mPageIds = sortedPageIds;
+        mPositions = positions;
+    }
+
+    public int size() {
+        return mPageIds.length;
+    }
+
+    public boolean isEmpty() {
+        return mPageIds.length == 0;
+    }
+
+    public int getPageId(int matchNumber) {
+        return mPageIds[matchNumber];
+    }
+
+    public int getPosition(int matchNumber) {
+        return mPositions[matchNumber];
+    }
+
+    /**
+     * @return the match number of the page or a negative value if it is not a match
+     */
+    public int indexOfPageId(int pageId) {
+        return Arrays.binarySearch(mPageIds, pageId);
+    }
+
+    /**
+     * @return the match number of the page at this position or a negative value if it is not a match
+     */
+    public int indexOfPosition(int position) {
+        return Arrays.binarySearch(mPositions, position);
+    }
+
+    public boolean isMatch(int position) {
+        return indexOfPosition(position) >= 0;
+    }
+
+    /**
+     * @return the number of matches in the pages before this position
+     */
+    public int countBefore(int position) {
+        int i = indexOfPosition(position);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /**
+     * @return the first match after this position or -1
+     */
+    public int nextMatch(int position) {
+        int i = indexOfPosition(position);
+        int next = i >= 0 ? i + 1 : -i - 1;
+        return next < mPositions.length ? next : -1;
+    }
+
+    /**
+     * @return the last match before this position or -1
+     */
+    public int previousMatch(int position) {
+        return countBefore(position) - 1;
+    }
+
+    @NonNull
+    public SearchNavigationStatus getNavigationStatus(int position) {
+        return new SearchNavigationStatus(previousMatch(position) >= 0,
+                nextMatch(position) >= 0,
+                countBefore(position),
+                size(),
+                isMatch(position));
+    }
+}
@@ -0,0 +1,108 @@
+package com.fekracomputers.islamiclibrary.reading;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Build;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.webkit.WebView;
+
+import com.fekracomputers.islamiclibrary.reading.widget.PageWebView;
+import com.fekracomputers.islamiclibrary.utility.LatencyStats;
+
+import java.util.ArrayDeque;
+
+import timber.log.Timber;
+
+/**
+ * The WebViews of the reader pages
+ * <p>
+ * a page fragment borrows a {@link PageWebView} that already loaded the page document and its
+ * scripts and gives it back when its view is destroyed, so swiping does not construct WebViews nor
+ * start their javascript again, idle WebViews are created ahead when the main thread is idle
+ * <p>
+ * the pool belongs to an activity as its WebViews use the activity context
+ */
+public class WebViewPool {
+    /**
+     * the pager swaps one page at a time
+     */
+    public static final int DEFAULT_MAX_IDLE = 2;
+
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final String mShellHtml;
+    private final int mMaxIdle;
+    @NonNull
+    private final ArrayDeque<PageWebView> mIdle = new ArrayDeque<>();
+    @NonNull
+    private final LatencyStats mPageReadyStats = new LatencyStats("page ready");
+    private int mCreated;
+    private int mReused;
+    private boolean mDestroyed;
+
+    /**
+     * @param shellHtml the page document without a page, see {@link PageHtmlTemplate}
+     */
+    public WebViewPool(@NonNull Context context, @NonNull String shellHtml, int maxIdle) {
+        mContext = context;
+        mShellHtml = shellHtml;
+        mMaxIdle = maxIdle;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            if (0 != (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE)) {
+                WebView.setWebContentsDebuggingEnabled(true);
+            }
+        }
+    }
+
+    @NonNull
+    private PageWebView create() {
+        mCreated++;
+        return new PageWebView(mContext, mShellHtml, mPageReadyStats);
+    }
+
+    /**
+     * fills the pool one WebView at a time whenever the main thread is idle
+     */
+    @MainThread
+    public void prewarm() {
+        Looper.myQueue().addIdleHandler(() -> {
+            if (mDestroyed || mIdle.size() >= mMaxIdle) return false;
+            mIdle.add(create());
+            return true;
+        });
+    }
+
+    @NonNull
+    @MainThread
+    public PageWebView acquire() {
+        PageWebView webView = mIdle.poll();
+        if (webView == null) {
+            return create();
+        }
+        mReused++;
+        return webView;
+    }
+
+    @MainThread
+    public void release(@NonNull PageWebView webView) {
+        webView.recycle();
+        if (!mDestroyed && mIdle.size() < mMaxIdle) {
+            mIdle.push(webView);
+        } else {
+            webView.destroy();
+        }
+    }
+
+    @MainThread
+    public void destroy() {
+        mDestroyed = true;
+        for (PageWebView webView : mIdle) {
+            webView.destroy();
+        }
+        mIdle.clear();
+        Timber.d("web views: created %d reused %d, %s", mCreated, mReused, mPageReadyStats.getStats());
+    }
+}
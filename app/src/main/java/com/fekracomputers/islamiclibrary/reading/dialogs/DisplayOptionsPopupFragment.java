@@ -137,10 +137,12 @@ public class DisplayOptionsPopupFragment extends DialogFragment {
         final SwitchCompat nightModeSwitch = viewAnimator.findViewById(R.id.pref_night_mode);
         final SwitchCompat tashkeelSwitch = viewAnimator.findViewById(R.id.pref_tashkeel);
         final SwitchCompat PinchZoomSwitch = viewAnimator.findViewById(R.id.pref_pinch_zoom);
+        final SwitchCompat continuousScrollSwitch = viewAnimator.findViewById(R.id.pref_continuous_scroll);
         //nightModeSwitch.setOnCheckedChangeListener(null);
         nightModeSwitch.setChecked(mOnPrefDialogInteractionListener.isThemeNightMode());
         tashkeelSwitch.setChecked(mOnPrefDialogInteractionListener.isTashkeel());
         PinchZoomSwitch.setChecked(mOnPrefDialogInteractionListener.isPinchZoom());
+        continuousScrollSwitch.setChecked(mOnPrefDialogInteractionListener.isContinuousScroll());
 
 
         nightModeSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
@@ -151,6 +153,9 @@ public class DisplayOptionsPopupFragment extends DialogFragment {
         PinchZoomSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
                 mOnPrefDialogInteractionListener.setPinchZoom(PinchZoomSwitch.isChecked()));
 
+        continuousScrollSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                mOnPrefDialogInteractionListener.setContinuousScroll(continuousScrollSwitch.isChecked()));
+
 
         final ViewGroup prefTheme = viewAnimator.findViewById(R.id.pref_theme);
         buttonDay = prefTheme.findViewById(R.id.button_day);
@@ -368,6 +373,13 @@ public class DisplayOptionsPopupFragment extends DialogFragment {
 
         void setPinchZoom(boolean checked);
 
+        boolean isContinuousScroll();
+
+        /**
+         * restarts the reader in the other reading mode
+         */
+        void setContinuousScroll(boolean checked);
+
         void setBackgroundColor(@ColorInt int color);
 
         @ColorInt
@@ -7,11 +7,9 @@ import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.pm.ApplicationInfo;
 import android.graphics.Color;
 import android.graphics.Rect;
 import android.graphics.drawable.StateListDrawable;
-import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.ColorInt;
@@ -36,7 +34,6 @@ import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewStub;
-import android.webkit.JavascriptInterface;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.widget.FrameLayout;
@@ -44,7 +41,6 @@ import android.widget.FrameLayout;
 import com.fekracomputers.islamiclibrary.R;
 import com.fekracomputers.islamiclibrary.databases.BookDatabaseContract;
 import com.fekracomputers.islamiclibrary.databases.BookDatabaseException;
-import com.fekracomputers.islamiclibrary.databases.BookDatabaseHelper;
 import com.fekracomputers.islamiclibrary.databases.BooksInformationDBContract;
 import com.fekracomputers.islamiclibrary.databases.UserDataDBHelper;
 import com.fekracomputers.islamiclibrary.model.BookInfo;
@@ -52,14 +48,16 @@ import com.fekracomputers.islamiclibrary.model.Highlight;
 import com.fekracomputers.islamiclibrary.model.PageCitation;
 import com.fekracomputers.islamiclibrary.model.PageInfo;
 import com.fekracomputers.islamiclibrary.reading.ActionModeChangeListener;
+import com.fekracomputers.islamiclibrary.reading.PagePrefetcher;
 import com.fekracomputers.islamiclibrary.reading.ReadingActivity;
+import com.fekracomputers.islamiclibrary.reading.WebViewPool;
 import com.fekracomputers.islamiclibrary.reading.dialogs.DisplayPrefChangeListener;
 import com.fekracomputers.islamiclibrary.reading.dialogs.NotePopupFragment;
+import com.fekracomputers.islamiclibrary.reading.widget.PageWebView;
 import com.fekracomputers.islamiclibrary.utility.AppConstants;
 import com.fekracomputers.islamiclibrary.utility.ArabicUtilities;
 import com.fekracomputers.islamiclibrary.widget.AnimationUtils;
 
-import java.util.Formatter;
 import java.util.Locale;
 
 import timber.log.Timber;
@@ -72,7 +70,7 @@ public class BookPageFragment extends Fragment implements
         ActionModeChangeListener,
         NotePopupFragment.HighlightNoteDialogListener {
 
-    private static final String ANDROID_ASSET = "file:///android_asset/";
+    private static final int WEB_VIEW_PADDING_DP = 24;
     private static final String KEY_PAGER_POSITION = "PAGER_POSITION";
     /**
      * 0 didn't start yet
@@ -85,12 +83,19 @@ public class BookPageFragment extends Fragment implements
     private static final String KEY_TASHKEEL_ON = "tashkeelOn";
     private final float SCROLL_THRESHOLD = 10;
     public String page_content;
+    /**
+     * the page content as stored in the book with its footnotes rendered, {@link #page_content} may
+     * have its tashkeel removed
+     */
+    @Nullable
+    private String mRawPageContent;
     UserDataDBHelper userDataDBHelper;
     int pageId;
     @Nullable
     private PageFragmentListener pageFragmentListener;
     private int bookId;
-    private WebView mBookPageWebView;
+    @Nullable
+    private PageWebView mBookPageWebView;
     private int mIsInActionMode = ACTION_MODE_NOT_STARTED;
     private PageCitation mPageCitation;
     @Nullable
@@ -126,10 +131,6 @@ public class BookPageFragment extends Fragment implements
         return bookPageFragment;
     }
 
-    private static int getCssColorInt(@ColorInt int color) {
-        return 0x00FFFFFF & color;
-    }
-
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -139,19 +140,32 @@ public class BookPageFragment extends Fragment implements
         pageId = args.getInt(BookDatabaseContract.TitlesEntry.COLUMN_NAME_PAGE_ID, 0);
         mPagerPosition = args.getInt(KEY_PAGER_POSITION, 0);
         userDataDBHelper = UserDataDBHelper.getInstance(getContext(), bookId);
-        try {
-            BookDatabaseHelper bookDatabaseHelperInstance = BookDatabaseHelper.getInstance(getContext(), bookId);
-            mSharedPref = PreferenceManager.getDefaultSharedPreferences(getContext());
-            page_content = bookDatabaseHelperInstance.getPageContentByPageId(pageId);
-            mPageCitation = bookDatabaseHelperInstance.getCitationInformation(pageId);
-            mPageCitation.setResources(getResources());
-            pageInfo = mPageCitation.pageInfo;
-            bookInfo = bookDatabaseHelperInstance.getBookInfo();
-            setHasOptionsMenu(false);
-        } catch (BookDatabaseException bookDatabaseException) {
-            Timber.e(bookDatabaseException);
+        mSharedPref = PreferenceManager.getDefaultSharedPreferences(getContext());
+        setHasOptionsMenu(false);
+    }
+
+    @Override
+    public void onActivityCreated(@Nullable Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
+        //restored fragments are created before the activity has its prefetcher
+        if (pageFragmentListener != null && mRawPageContent == null) {
+            //synchronous if the page was prefetched
+            pageFragmentListener.getPagePrefetcher().loadPage(pageId, this::onPageLoaded);
         }
+    }
 
+    private void onPageLoaded(@NonNull PagePrefetcher.LoadedPage loadedPage) {
+        if (!isAdded()) return;
+        mRawPageContent = loadedPage.page.content;
+        page_content = mRawPageContent;
+        mPageCitation = loadedPage.pageCitation;
+        mPageCitation.setResources(getResources());
+        pageInfo = loadedPage.pageInfo;
+        bookInfo = loadedPage.bookInfo;
+        if (mBookPageWebView != null) {
+            initializeWebView(mBookPageWebView, mBookPageWebView.getSettings());
+            maybeUpdateViews();
+        }
     }
 
     @Override
@@ -168,22 +182,20 @@ public class BookPageFragment extends Fragment implements
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            if (0 != (getContext().getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE)) {
-                WebView.setWebContentsDebuggingEnabled(true);
-            }
-        }
-
         FrameLayout rootView = (FrameLayout) inflater.inflate(R.layout.fragment_book_page, container, false);
 
-        mBookPageWebView = rootView.findViewById(R.id.book_page_web_view);
+        mBookPageWebView = pageFragmentListener.getWebViewPool().acquire();
+        mBookPageWebView.setScriptInterface(new WebAppInterface());
+        int padding = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, WEB_VIEW_PADDING_DP,
+                getResources().getDisplayMetrics());
+        mBookPageWebView.setPadding(padding, padding, padding, padding);
+        rootView.addView(mBookPageWebView, 0, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
 
         WebSettings webSettings = mBookPageWebView.getSettings();
-        webSettings.setDefaultTextEncodingName("utf-8");
-        mBookPageWebView.setVerticalScrollBarEnabled(true);
-        webSettings.setJavaScriptEnabled(true);
-        mBookPageWebView.addJavascriptInterface(new WebAppInterface(), "selectioniterface");
-        initializeWebView(mBookPageWebView, webSettings);
+        if (page_content != null) {
+            initializeWebView(mBookPageWebView, webSettings);
+        }
 
         final ScaleGestureDetector mScaleDetector = new ScaleGestureDetector(getContext(),
                 new ScaleGestureDetector.SimpleOnScaleGestureListener() {
@@ -300,6 +312,19 @@ public class BookPageFragment extends Fragment implements
         return rootView;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mBookPageWebView != null) {
+            if (pageFragmentListener != null) {
+                pageFragmentListener.getWebViewPool().release(mBookPageWebView);
+            } else {
+                mBookPageWebView.destroy();
+            }
+            mBookPageWebView = null;
+        }
+    }
+
     private void maybeUpdateViews() {
         if (this.bookInfo != null) {
             CharSequence title = bookInfo.getName();
@@ -494,7 +519,7 @@ public class BookPageFragment extends Fragment implements
         notePopupFragment.show(fm, "fragment_note");
     }
 
-    private void initializeWebView(@NonNull WebView webView, @NonNull WebSettings webSettings) {
+    private void initializeWebView(@NonNull PageWebView webView, @NonNull WebSettings webSettings) {
         tashkeelOn = pageFragmentListener.getTashkeelState();
         if (!tashkeelOn) page_content = ArabicUtilities.cleanTashkeel(page_content);
 
@@ -504,101 +529,14 @@ public class BookPageFragment extends Fragment implements
         webSettings.setTextZoom(intialZoom);
 
 
-        String data = prepareHtml(isNightMode);
-        loadWebView(data, webView);
+        webView.showPage(pageId,
+                pageFragmentListener.getBackGroundColor(),
+                pageFragmentListener.getTextColor(isNightMode),
+                pageFragmentListener.getHeadingColor(isNightMode));
         if (isNightMode) webView.setBackgroundColor(Color.TRANSPARENT);
 
     }
 
-    private String getHeadStyleCss(boolean isNightMode) {
-        StringBuilder sb = new StringBuilder();
-        Formatter formatter = new Formatter(sb, Locale.US);
-        if (pageFragmentListener != null) {
-            formatter.format("<style>\n" +
-                            "    body {\n" +
-                            "      background-color: #%06X;\n" +
-                            "      color: #%06X;\n" +
-                            "    }\n" +
-                            "    h1,h2,h3,h4,h5,h6 {\n" +
-                            "      color: #%06X\n" +
-                            "    }\n" +
-                            "  </style>",
-                    getCssColorInt(pageFragmentListener.getBackGroundColor()),
-                    getCssColorInt(pageFragmentListener.getTextColor(isNightMode)),
-                    getCssColorInt(pageFragmentListener.getHeadingColor(isNightMode))
-            );
-        }
-
-        return sb.toString();
-
-
-    }
-
-    @NonNull
-    private String prepareHtml(boolean isNightMode) {
-        StringBuilder stringBuilder = new StringBuilder()
-                .append("<!doctype html>")
-                .append("<html align='justify' dir=\"rtl\">")
-                .append("<head>")
-                .append("<title>").append(bookInfo.getName()).append("</title>")
-                .append(getHeadStyleCss(isNightMode))
-                .append("</head>")
-                .append("<body>")
-                .append("<link href=\"styles/styles.css\" rel=\"stylesheet\" type=\"text/css\">")
-                .append("<link href=\"styles/highlight.css\" rel=\"stylesheet\" type=\"text/css\">");
-
-        if (isNightMode)
-            stringBuilder.append("<link href=\"styles/ReadingNight.css\" rel=\"stylesheet\" type=\"text/css\">");
-
-        stringBuilder
-                .append(page_content)
-                .append("</body>").append("<script src=\"scripts/jquery-3.2.1.min.js\"></script>")
-                .append(footNoteScript()).append("<script src='scripts/rangy/rangy-core.js'></script>")
-                .append("<script src='scripts/rangy/rangy-serializer.js'></script>")
-                .append("<script src='scripts/rangy/rangy-highlighter.js'></script>")
-                .append("<script src='scripts/rangy/rangy-classapplier.js'></script>")
-                .append("<script src='scripts/rangy/rangy-textrange.js' defer></script>")
-                .append("<script src='scripts/rangy/rangy-position.js' ></script>")
-                .append("<script src='scripts/highlight.js'></script>")
-                .append("</html>");
-
-
-        return stringBuilder.toString();
-    }
-
-    private void loadWebView(String data, @NonNull WebView webView) {
-        webView.loadDataWithBaseURL(
-                ANDROID_ASSET,
-                data,
-                "text/html",
-                "utf-8",
-                null);
-    }
-
-    @NonNull
-    private String footNoteScript() {
-        return
-                "<script>" +
-                        "if ($(\".comment\").length)" +
-                        "{" +
-                        "$(\"body\").append(\"<hr>\");" +
-                        "var footnote_id_int =1;" +
-                        "var bookId=" +
-                        bookId + ";" +
-                        "var pageRowId=" + pageId + ";" +
-                        "$(\".comment\").each(function() { " +
-                        "var footnote_id  = 'footnote_' +bookId+\"_\"+pageRowId+\"_\"+ footnote_id_int;" +
-                        "var text_reference_id = this.id =\"text_reference_\" +bookId+\"_\"+pageRowId+\"_\"+footnote_id_int;" +
-                        "$(this).text('('+footnote_id_int+')');" +
-                        "$(this).attr(\"href\", '#'+footnote_id);" +
-                        "var footnote_text = $(this).attr('title');" +
-                        "$( \"<a id=\" + footnote_id + \" href=#\" +text_reference_id +\">\" +'('+footnote_id_int+')'+\"</a>\"" +
-                        "+\"<span> \"+\" \"+ footnote_text  + \"</span>\" + \"<br>\").appendTo( \"body\" );" +
-                        " footnote_id_int++;" +
-                        "});" + "}" +
-                        "</script>";
-    }
-
     @Override
     public void onAttach(Context activity) {
         super.onAttach(activity);
@@ -808,6 +746,7 @@ public class BookPageFragment extends Fragment implements
 
     @Override
     public void setZoom(int newZoom) {
+        if (mBookPageWebView == null) return;
         WebSettings webSettings = mBookPageWebView.getSettings();
         if (newZoom != webSettings.getTextZoom())
             webSettings.setTextZoom(newZoom);
@@ -827,40 +766,35 @@ public class BookPageFragment extends Fragment implements
 
     @Override
     public void setBackgroundColor(int color) {
-        mBookPageWebView.loadUrl(String.
+        if (mBookPageWebView == null) return;
+        mBookPageWebView.runScript(String.
                 format(Locale.US,
                         "javascript:setBackgroundColor('#%06X');", 0xFFFFFF & color));
     }
 
     @Override
     public void setHeadingColor(int color) {
-        mBookPageWebView.loadUrl(String.
+        if (mBookPageWebView == null) return;
+        mBookPageWebView.runScript(String.
                 format(Locale.US,
                         "javascript:setHeadingColor('#%06X');", 0xFFFFFF & color));
     }
 
     @Override
     public void setTextColor(int color) {
-        mBookPageWebView.loadUrl(String.
+        if (mBookPageWebView == null) return;
+        mBookPageWebView.runScript(String.
                 format(Locale.US,
                         "javascript:setTextColor('#%06X');", 0xFFFFFF & color));
     }
 
     private void reloadeWithTashkeelOn(boolean tashkeelOn) {
         if (this.tashkeelOn != tashkeelOn) {
-            if (this.tashkeelOn) {
-                page_content = ArabicUtilities.cleanTashkeel(page_content);
-            } else {
-                BookDatabaseHelper bookDatabaseHelperInstance = null;
-                try {
-                    bookDatabaseHelperInstance = BookDatabaseHelper.getInstance(getContext(), bookId);
-
-                    page_content = bookDatabaseHelperInstance.getPageContentByPageId(pageId);
-                } catch (BookDatabaseException e) {
-                    Timber.e(e);
-                }
+            if (mRawPageContent != null && mBookPageWebView != null) {
+                //the tashkeel is removed again if it is off
+                page_content = mRawPageContent;
+                initializeWebView(mBookPageWebView, mBookPageWebView.getSettings());
             }
-            initializeWebView(mBookPageWebView, mBookPageWebView.getSettings());
             this.tashkeelOn = tashkeelOn;
         }
     }
@@ -900,10 +834,16 @@ public class BookPageFragment extends Fragment implements
         int getTextColor(boolean isNightMode);
 
         void populateReaderActionBar(CharSequence title, CharSequence author);
+
+        @NonNull
+        PagePrefetcher getPagePrefetcher();
+
+        @NonNull
+        WebViewPool getWebViewPool();
     }
 
 
-    public class WebAppInterface {
+    public class WebAppInterface implements PageWebView.ScriptInterface {
 
 
         private Handler handler;
@@ -913,18 +853,26 @@ public class BookPageFragment extends Fragment implements
             this.handler = new Handler();
         }
 
-        @JavascriptInterface
+        @Override
+        public String getPageContent() {
+            return page_content;
+        }
+
+        @Override
         public String getSerializedHighlights() {
             return userDataDBHelper.getSerializedHighlights(pageId);
         }
 
-        @JavascriptInterface
+        @Override
         public void setSerializedHighlights(String serializedHighlights) {
-            handler.post(() -> userDataDBHelper.setSerializedHighlights(pageInfo, serializedHighlights));
-
+            //queued on the user data writer straight from the javascript thread
+            PageInfo loadedPageInfo = pageInfo;
+            if (loadedPageInfo != null) {
+                userDataDBHelper.setSerializedHighlights(loadedPageInfo, serializedHighlights);
+            }
         }
 
-        @JavascriptInterface
+        @Override
         public void copySelectedText(String str, String htmlStr) {
             ClipboardManager clipboard = (ClipboardManager)
                     getContext().getSystemService(Context.CLIPBOARD_SERVICE);
@@ -933,7 +881,7 @@ public class BookPageFragment extends Fragment implements
 
         }
 
-        @JavascriptInterface
+        @Override
         public void shareSelectedText(String str, String htmlStr) {
             Intent sendIntent = new Intent();
             sendIntent.setAction(Intent.ACTION_SEND);
@@ -943,19 +891,14 @@ public class BookPageFragment extends Fragment implements
             startActivity(Intent.createChooser(sendIntent, null));
         }
 
-        @JavascriptInterface
-        public void jsDebug(String error) {
-            Log.d("WebAppInterface", "JSError: " + error);
-        }
-
-        @JavascriptInterface
+        @Override
         public void highlightClicked(final int highlightId) {
             Log.d(getString(R.string.sd), getString(R.string.ddd) + highlightId);
             handler.post(() -> BookPageFragment.this.highlightClicked(highlightId));
 
         }
 
-        @JavascriptInterface
+        @Override
         public void setSelectionRect(int left, int top, int right, int bottom) {
             final Rect selectionRect = new Rect(left, top, right, bottom);
             handler.post(() -> BookPageFragment.this.newSelectionRect(selectionRect));
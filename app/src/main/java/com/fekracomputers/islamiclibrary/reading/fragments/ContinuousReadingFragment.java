@@ -0,0 +1,380 @@
+package com.fekracomputers.islamiclibrary.reading.fragments;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.support.v4.view.GestureDetectorCompat;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+import com.fekracomputers.islamiclibrary.databases.BookDatabaseException;
+import com.fekracomputers.islamiclibrary.databases.BookDatabaseHelper;
+import com.fekracomputers.islamiclibrary.databases.BooksInformationDBContract;
+import com.fekracomputers.islamiclibrary.databases.PageContentCache;
+import com.fekracomputers.islamiclibrary.databases.UserDataDBHelper;
+import com.fekracomputers.islamiclibrary.reading.ActionModeChangeListener;
+import com.fekracomputers.islamiclibrary.reading.PageHtmlTemplate;
+import com.fekracomputers.islamiclibrary.reading.ReadingActivity;
+import com.fekracomputers.islamiclibrary.reading.dialogs.DisplayPrefChangeListener;
+import com.fekracomputers.islamiclibrary.utility.AppConstants;
+import com.fekracomputers.islamiclibrary.utility.ArabicUtilities;
+
+import java.util.Locale;
+
+import timber.log.Timber;
+
+/**
+ * Shows the book as one scrolling document instead of a page per swipe
+ * <p>
+ * continuous.js keeps a window of at most {@link #MAX_PAGES} consecutive pages in the document,
+ * appending and removing pages as the user scrolls and pulling their content and highlights from
+ * this fragment, the page at the top of the screen is reported to the activity which keeps
+ * tracking it as its current page
+ * <p>
+ * the highlights are only shown, selecting text and highlighting is done in the paged mode
+ */
+public class ContinuousReadingFragment extends Fragment implements
+        DisplayPrefChangeListener,
+        ActionModeChangeListener {
+    public static final String TAG = "ContinuousReadingFragment";
+    /**
+     * the pages kept in the document, enough for a screen above and below the one being read
+     */
+    private static final int MAX_PAGES = 7;
+    private static final int WEB_VIEW_PADDING_DP = 24;
+    private static final String ANDROID_ASSET = "file:///android_asset/";
+    private static final String SCRIPT_INTERFACE_NAME = "continuousinterface";
+
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private int bookId;
+    private BookDatabaseHelper mBookDatabaseHelper;
+    private int mPageCount;
+    private UserDataDBHelper userDataDBHelper;
+    @Nullable
+    private BookPageFragment.PageFragmentListener pageFragmentListener;
+    @Nullable
+    private ContinuousReadingListener mContinuousReadingListener;
+    @Nullable
+    private WebView mWebView;
+    private boolean mShellLoaded;
+    /**
+     * the position shown at the top of the document, -1 before the first page is shown
+     */
+    private int mVisiblePosition = -1;
+    private volatile boolean tashkeelOn = true;
+    private boolean pinchZoomOn;
+
+    public ContinuousReadingFragment() {
+
+    }
+
+    @NonNull
+    public static ContinuousReadingFragment newInstance(int bookId) {
+        Bundle bundle = new Bundle();
+        bundle.putInt(BooksInformationDBContract.BooksAuthors.COLUMN_NAME_BOOK_ID, bookId);
+        ContinuousReadingFragment fragment = new ContinuousReadingFragment();
+        fragment.setArguments(bundle);
+        return fragment;
+    }
+
+    @Override
+    public void onAttach(Context context) {
+        super.onAttach(context);
+        if (context instanceof BookPageFragment.PageFragmentListener) {
+            pageFragmentListener = (BookPageFragment.PageFragmentListener) context;
+        }
+        if (context instanceof ContinuousReadingListener) {
+            mContinuousReadingListener = (ContinuousReadingListener) context;
+        }
+        if (context instanceof ReadingActivity) {
+            ((ReadingActivity) context).registerBottomToolBarActionListener(this);
+            ((ReadingActivity) context).registerActionModeChangeListener(this);
+        }
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        bookId = getArguments().getInt(BooksInformationDBContract.BooksAuthors.COLUMN_NAME_BOOK_ID, 0);
+        userDataDBHelper = UserDataDBHelper.getInstance(getContext(), bookId);
+        try {
+            mBookDatabaseHelper = BookDatabaseHelper.getInstance(getContext(), bookId);
+            mPageCount = mBookDatabaseHelper.getPageCount();
+        } catch (BookDatabaseException bookDatabaseException) {
+            Timber.e(bookDatabaseException);
+        }
+    }
+
+    @SuppressLint({"SetJavaScriptEnabled", "AddJavascriptInterface"})
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
+                             @Nullable Bundle savedInstanceState) {
+        if (pageFragmentListener == null || mBookDatabaseHelper == null) return null;
+        mWebView = new WebView(getContext());
+        int padding = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, WEB_VIEW_PADDING_DP,
+                getResources().getDisplayMetrics());
+        mWebView.setPadding(padding, padding, padding, padding);
+        WebSettings webSettings = mWebView.getSettings();
+        webSettings.setDefaultTextEncodingName("utf-8");
+        webSettings.setJavaScriptEnabled(true);
+        webSettings.setTextZoom(pageFragmentListener.getDisplayZoom());
+        mWebView.setVerticalScrollBarEnabled(true);
+        mWebView.addJavascriptInterface(new ContinuousScriptInterface(), SCRIPT_INTERFACE_NAME);
+
+        tashkeelOn = pageFragmentListener.getTashkeelState();
+        boolean isNightMode = pageFragmentListener.isNightMode();
+        if (isNightMode) mWebView.setBackgroundColor(Color.TRANSPARENT);
+        mWebView.loadDataWithBaseURL(ANDROID_ASSET,
+                PageHtmlTemplate.getInstance(mBookDatabaseHelper.getBookName(),
+                        isNightMode,
+                        pageFragmentListener.getBackGroundColor(),
+                        pageFragmentListener.getTextColor(isNightMode),
+                        pageFragmentListener.getHeadingColor(isNightMode))
+                        .buildContinuousShell(bookId),
+                "text/html", "utf-8", null);
+
+        final ScaleGestureDetector scaleDetector = new ScaleGestureDetector(getContext(),
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(@NonNull ScaleGestureDetector detector) {
+                        final float scaleFactor = detector.getScaleFactor();
+                        if (scaleFactor <= 0.05) return false;
+                        int newZoom = (int) (webSettings.getTextZoom() * scaleFactor);
+                        newZoom = Math.max(AppConstants.DISPLAY_PREFERENCES_DEFAULTS.MIN_TEXT_ZOOM,
+                                Math.min(newZoom, AppConstants.DISPLAY_PREFERENCES_DEFAULTS.MAX_TEXT_ZOOM));
+                        webSettings.setTextZoom(newZoom);
+                        return true;
+                    }
+
+                    @Override
+                    public void onScaleEnd(ScaleGestureDetector detector) {
+                        if (pageFragmentListener != null) {
+                            pageFragmentListener.onZoomChangedByPinch(webSettings.getTextZoom());
+                        }
+                    }
+                });
+        final GestureDetectorCompat gestureDetector = new GestureDetectorCompat(getContext(),
+                new GestureDetector.SimpleOnGestureListener() {
+                    @Override
+                    public boolean onSingleTapConfirmed(@NonNull MotionEvent e) {
+                        WebView.HitTestResult hitResult = mWebView.getHitTestResult();
+                        if (hitResult != null && hitResult.getExtra() != null) {
+                            // The click was on a link! Return false so to bypass processing.
+                            return false;
+                        }
+                        if (pageFragmentListener != null) pageFragmentListener.onPageTapped();
+                        return true;
+                    }
+                });
+        mWebView.setOnTouchListener((v, e) -> {
+            if (pinchZoomOn) {
+                scaleDetector.onTouchEvent(e);
+            }
+            return gestureDetector.onTouchEvent(e);
+        });
+        return mWebView;
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mWebView != null) {
+            mWebView.destroy();
+            mWebView = null;
+        }
+        mShellLoaded = false;
+        mVisiblePosition = -1;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        ((ReadingActivity) getActivity()).unregisterActionModeChangeListener(this);
+        ((ReadingActivity) getActivity()).unregisterBottomToolBarActionListener(this);
+        pageFragmentListener = null;
+        mContinuousReadingListener = null;
+    }
+
+    /**
+     * moves the document to the page at the position unless it is the page being read already
+     */
+    @MainThread
+    public void showPosition(int position) {
+        if (position == mVisiblePosition) return;
+        mVisiblePosition = position;
+        showPageWindow(position);
+    }
+
+    @MainThread
+    private void showPageWindow(int position) {
+        if (mWebView != null && mShellLoaded && position >= 0) {
+            mWebView.loadUrl("javascript:showPageWindow(" + position + ");");
+        }
+    }
+
+    @MainThread
+    private void onShellLoaded() {
+        mShellLoaded = true;
+        if (mContinuousReadingListener != null) {
+            mVisiblePosition = mContinuousReadingListener.getCurrentPosition();
+        }
+        showPageWindow(mVisiblePosition);
+    }
+
+    @MainThread
+    private void onPageVisible(int position) {
+        if (position == mVisiblePosition) return;
+        mVisiblePosition = position;
+        if (mContinuousReadingListener != null) {
+            mContinuousReadingListener.onContinuousPageChanged(position);
+        }
+    }
+
+    private void runScript(@NonNull String script) {
+        if (mWebView != null && mShellLoaded) {
+            mWebView.loadUrl(script);
+        }
+    }
+
+    @Override
+    public void setZoom(int newZoom) {
+        if (mWebView == null) return;
+        WebSettings webSettings = mWebView.getSettings();
+        if (newZoom != webSettings.getTextZoom())
+            webSettings.setTextZoom(newZoom);
+    }
+
+    @Override
+    public void setTashkeel(boolean tashkeelOn) {
+        if (this.tashkeelOn != tashkeelOn) {
+            this.tashkeelOn = tashkeelOn;
+            //the pages are pulled again with or without their tashkeel
+            showPageWindow(mVisiblePosition);
+        }
+    }
+
+    @Override
+    public void setPinchZoom(boolean pinchZoomOn) {
+        this.pinchZoomOn = pinchZoomOn;
+    }
+
+    @Override
+    public void setBackgroundColor(int color) {
+        runScript(String.format(Locale.US, "javascript:setBackgroundColor('#%06X');", 0xFFFFFF & color));
+    }
+
+    @Override
+    public void setHeadingColor(int color) {
+        runScript(String.format(Locale.US, "javascript:setHeadingColor('#%06X');", 0xFFFFFF & color));
+    }
+
+    @Override
+    public void setTextColor(int color) {
+        runScript(String.format(Locale.US, "javascript:setTextColor('#%06X');", 0xFFFFFF & color));
+    }
+
+    @Override
+    public void actionModeStarted() {
+
+    }
+
+    @Override
+    public void actionModeFinished() {
+
+    }
+
+    /**
+     * the activity already stored the bookmark, only the page in the document is marked
+     */
+    @Override
+    public void onBookmarkStateChange(boolean newBookmarkState, int pageId) {
+        runScript(String.format(Locale.US, "javascript:setPageBookmarked(%d, %b);", pageId, newBookmarkState));
+    }
+
+    @Override
+    public void onContextualMenuItemClicked(int itemId, int currentItem) {
+
+    }
+
+    // Container Activity must implement this interface
+    public interface ContinuousReadingListener {
+        /**
+         * @return the position of the page to start reading from
+         */
+        int getCurrentPosition();
+
+        /**
+         * the user scrolled to the page at the position
+         */
+        void onContinuousPageChanged(int position);
+    }
+
+    /**
+     * what continuous.js calls, on the javascript bridge thread
+     */
+    private class ContinuousScriptInterface {
+        @JavascriptInterface
+        public void onShellLoaded() {
+            mMainHandler.post(ContinuousReadingFragment.this::onShellLoaded);
+        }
+
+        @JavascriptInterface
+        public int getMaxPages() {
+            return MAX_PAGES;
+        }
+
+        /**
+         * @return -1 past the first or the last page
+         */
+        @JavascriptInterface
+        public int getPageId(int position) {
+            if (position < 0 || position >= mPageCount) return -1;
+            return mBookDatabaseHelper.position2PageId(position);
+        }
+
+        @JavascriptInterface
+        public String getPageContent(int pageId) {
+            PageContentCache.Page page = mBookDatabaseHelper.getPage(pageId);
+            if (page == null) return "";
+            return tashkeelOn ? page.content : ArabicUtilities.cleanTashkeel(page.content);
+        }
+
+        @JavascriptInterface
+        public boolean isPageBookmarked(int pageId) {
+            return userDataDBHelper.isPageBookmarked(pageId);
+        }
+
+        @JavascriptInterface
+        public String getSerializedHighlights(int pageId) {
+            return userDataDBHelper.getSerializedHighlights(pageId);
+        }
+
+        @JavascriptInterface
+        public void onPageVisible(int position) {
+            mMainHandler.post(() -> ContinuousReadingFragment.this.onPageVisible(position));
+        }
+
+        @JavascriptInterface
+        public void jsDebug(String error) {
+            Log.d(TAG, "JSError: " + error);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.fekracomputers.islamiclibrary.reading.widget;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.ColorInt;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+import com.fekracomputers.islamiclibrary.utility.LatencyStats;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * A reader WebView that loads the page document with its scripts once and then shows any page of
+ * the book by swapping the body through highlight.js
+ * <p>
+ * the javascript interface is registered once and forwards to the {@link ScriptInterface} of the
+ * page currently shown, scripts run before the document finished loading are queued
+ */
+@SuppressLint("ViewConstructor")
+public class PageWebView extends WebView {
+    private static final String ANDROID_ASSET = "file:///android_asset/";
+    private static final String SCRIPT_INTERFACE_NAME = "selectioniterface";
+
+    @NonNull
+    private final LatencyStats mPageReadyStats;
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    @NonNull
+    private final ArrayList<String> mPendingScripts = new ArrayList<>();
+    @Nullable
+    private volatile ScriptInterface mScriptInterface;
+    private boolean mShellLoaded;
+    private volatile long mShowRequestedNanos;
+
+    @SuppressLint({"SetJavaScriptEnabled", "AddJavascriptInterface"})
+    public PageWebView(@NonNull Context context, @NonNull String shellHtml, @NonNull LatencyStats pageReadyStats) {
+        super(context);
+        mPageReadyStats = pageReadyStats;
+        WebSettings webSettings = getSettings();
+        webSettings.setDefaultTextEncodingName("utf-8");
+        webSettings.setJavaScriptEnabled(true);
+        setVerticalScrollBarEnabled(true);
+        addJavascriptInterface(new ScriptInterfaceForwarder(), SCRIPT_INTERFACE_NAME);
+        loadDataWithBaseURL(ANDROID_ASSET, shellHtml, "text/html", "utf-8", null);
+    }
+
+    /**
+     * @param scriptInterface the page the javascript calls are forwarded to, null when the WebView
+     *                        is not showing a page
+     */
+    @MainThread
+    public void setScriptInterface(@Nullable ScriptInterface scriptInterface) {
+        mScriptInterface = scriptInterface;
+    }
+
+    /**
+     * shows the page served by the {@link ScriptInterface#getPageContent()} of the current script
+     * interface with the given colors
+     */
+    @MainThread
+    public void showPage(int pageId, @ColorInt int backgroundColor, @ColorInt int textColor, @ColorInt int headingColor) {
+        mShowRequestedNanos = System.nanoTime();
+        runScript(String.format(Locale.US,
+                "javascript:setBackgroundColor('#%06X');setTextColor('#%06X');setHeadingColor('#%06X');showPage(%d);",
+                0xFFFFFF & backgroundColor, 0xFFFFFF & textColor, 0xFFFFFF & headingColor, pageId));
+    }
+
+    /**
+     * runs a {@code javascript:} url now or once the document is loaded
+     */
+    @MainThread
+    public void runScript(@NonNull String script) {
+        if (mShellLoaded) {
+            loadUrl(script);
+        } else {
+            mPendingScripts.add(script);
+        }
+    }
+
+    /**
+     * empties the page and detaches the WebView so it can show another page
+     */
+    @MainThread
+    public void recycle() {
+        mScriptInterface = null;
+        mShowRequestedNanos = 0;
+        mPendingScripts.clear();
+        setOnTouchListener(null);
+        if (getParent() instanceof ViewGroup) {
+            ((ViewGroup) getParent()).removeView(this);
+        }
+        if (mShellLoaded) {
+            loadUrl("javascript:clearPage();");
+        }
+    }
+
+    @MainThread
+    private void onShellLoaded() {
+        mShellLoaded = true;
+        for (String script : mPendingScripts) {
+            loadUrl(script);
+        }
+        mPendingScripts.clear();
+    }
+
+    /**
+     * what the scripts of a page call, on the javascript bridge thread
+     */
+    public interface ScriptInterface {
+        String getPageContent();
+
+        String getSerializedHighlights();
+
+        void setSerializedHighlights(String serializedHighlights);
+
+        void copySelectedText(String str, String htmlStr);
+
+        void shareSelectedText(String str, String htmlStr);
+
+        void highlightClicked(int highlightId);
+
+        void setSelectionRect(int left, int top, int right, int bottom);
+    }
+
+    private class ScriptInterfaceForwarder {
+        @JavascriptInterface
+        public void onShellLoaded() {
+            mMainHandler.post(PageWebView.this::onShellLoaded);
+        }
+
+        @JavascriptInterface
+        public String getPageContent() {
+            ScriptInterface scriptInterface = mScriptInterface;
+            return scriptInterface == null ? "" : scriptInterface.getPageContent();
+        }
+
+        /**
+         * the page requested by {@link PageWebView#showPage(int, int, int, int)} was laid out
+         */
+        @JavascriptInterface
+        public void onPageReady() {
+            long showRequestedNanos = mShowRequestedNanos;
+            if (showRequestedNanos != 0) {
+                mPageReadyStats.record(System.nanoTime() - showRequestedNanos);
+                mShowRequestedNanos = 0;
+            }
+        }
+
+        @JavascriptInterface
+        public String getSerializedHighlights() {
+            ScriptInterface scriptInterface = mScriptInterface;
+            return scriptInterface == null ? null : scriptInterface.getSerializedHighlights();
+        }
+
+        @JavascriptInterface
+        public void setSerializedHighlights(String serializedHighlights) {
+            ScriptInterface scriptInterface = mScriptInterface;
+            if (scriptInterface != null) scriptInterface.setSerializedHighlights(serializedHighlights);
+        }
+
+        @JavascriptInterface
+        public void copySelectedText(String str, String htmlStr) {
+            ScriptInterface scriptInterface = mScriptInterface;
+            if (scriptInterface != null) scriptInterface.copySelectedText(str, htmlStr);
+        }
+
+        @JavascriptInterface
+        public void shareSelectedText(String str, String htmlStr) {
+            ScriptInterface scriptInterface = mScriptInterface;
+            if (scriptInterface != null) scriptInterface.shareSelectedText(str, htmlStr);
+        }
+
+        @JavascriptInterface
+        public void jsDebug(String error) {
+            Log.d("WebAppInterface", "JSError: " + error);
+        }
+
+        @JavascriptInterface
+        public void highlightClicked(int highlightId) {
+            ScriptInterface scriptInterface = mScriptInterface;
+            if (scriptInterface != null) scriptInterface.highlightClicked(highlightId);
+        }
+
+        @JavascriptInterface
+        public void setSelectionRect(int left, int top, int right, int bottom) {
+            ScriptInterface scriptInterface = mScriptInterface;
+            if (scriptInterface != null) scriptInterface.setSelectionRect(left, top, right, bottom);
+        }
+    }
+}
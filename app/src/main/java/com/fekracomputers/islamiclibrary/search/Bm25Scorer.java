@@ -0,0 +1,124 @@
+package com.fekracomputers.islamiclibrary.search;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.PriorityQueue;
+
+/**
+ * Okapi BM25 relevance computed from the fts4 {@code matchinfo(table, 'pcnalx')} blob
+ * <p>
+ * the blob layout is: phrases count, columns count, rows count, the average tokens of every column,
+ * the tokens of every column in the current row and then 3 integers for every phrase/column pair
+ * (hits in this row, hits in all rows, rows with hits)
+ */
+public class Bm25Scorer {
+    public static final String MATCHINFO_FORMAT = "pcnalx";
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private Bm25Scorer() {
+    }
+
+    /**
+     * matchinfo integers are unsigned 32 bit in the machine byte order
+     */
+    @NonNull
+    public static int[] toIntArray(@NonNull byte[] matchinfo) {
+        IntBuffer intBuffer = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int[] ints = new int[intBuffer.remaining()];
+        intBuffer.get(ints);
+        return ints;
+    }
+
+    /**
+     * @param matchinfo the {@link #MATCHINFO_FORMAT} matchinfo of one row as integers
+     * @return the BM25 score of the row, higher is more relevant
+     */
+    public static double score(@NonNull int[] matchinfo) {
+        int phrases = matchinfo[0];
+        int columns = matchinfo[1];
+        int rows = matchinfo[2];
+        int averageLengthOffset = 3;
+        int lengthOffset = averageLengthOffset + columns;
+        int hitsOffset = lengthOffset + columns;
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int hits = hitsOffset + 3 * (phrase * columns + column);
+                int hitsInRow = matchinfo[hits];
+                if (hitsInRow == 0) continue;
+                int rowsWithHits = matchinfo[hits + 2];
+                //the +1 keeps the idf positive for terms present in more than half of the pages
+                double idf = Math.log(1 + (rows - rowsWithHits + 0.5) / (rowsWithHits + 0.5));
+                double averageLength = Math.max(1, matchinfo[averageLengthOffset + column]);
+                double lengthNorm = 1 - B + B * matchinfo[lengthOffset + column] / averageLength;
+                score += idf * (hitsInRow * (K1 + 1)) / (hitsInRow + K1 * lengthNorm);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * keeps the best {@code k} pages seen so far using a min heap of size k
+     */
+    public static class TopK {
+        private final int mK;
+        @NonNull
+        private final PriorityQueue<ScoredPage> mHeap;
+
+        /**
+         * @param k the number of pages to keep, 0 or less to keep all pages
+         */
+        public TopK(int k) {
+            mK = k > 0 ? k : Integer.MAX_VALUE;
+            mHeap = new PriorityQueue<>(k > 0 ? k + 1 : 64);
+        }
+
+        public void offer(int pageId, double score) {
+            if (mHeap.size() < mK) {
+                mHeap.add(new ScoredPage(pageId, score));
+            } else if (score > mHeap.peek().score) {
+                mHeap.poll();
+                mHeap.add(new ScoredPage(pageId, score));
+            }
+        }
+
+        public int size() {
+            return mHeap.size();
+        }
+
+        /**
+         * empties the selection
+         *
+         * @return the kept pages from the most relevant to the least
+         */
+        @NonNull
+        public ScoredPage[] drainInRankOrder() {
+            ScoredPage[] scoredPages = new ScoredPage[mHeap.size()];
+            for (int i = scoredPages.length - 1; i >= 0; i--) {
+                scoredPages[i] = mHeap.poll();
+            }
+            return scoredPages;
+        }
+    }
+
+    public static class ScoredPage implements Comparable<ScoredPage> {
+        public final int pageId;
+        public final double score;
+
+        public ScoredPage(int pageId, double score) {
+            this.pageId = pageId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(@NonNull ScoredPage o) {
+            int byScore = Double.compare(score, o.score);
+            //ties are broken by page order so earlier pages rank first
+            return byScore != 0 ? byScore : o.pageId - pageId;
+        }
+    }
+}
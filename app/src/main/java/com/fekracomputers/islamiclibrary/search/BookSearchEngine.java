@@ -0,0 +1,262 @@
+package com.fekracomputers.islamiclibrary.search;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+
+import com.fekracomputers.islamiclibrary.databases.GlobalSearchIndexDbHelper;
+import com.fekracomputers.islamiclibrary.search.model.BookSearchResultsContainer;
+import com.fekracomputers.islamiclibrary.search.model.SearchRequest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Runs a {@link SearchRequest} over many books in parallel
+ * <p>
+ * every book is searched by a worker of a bounded pool and its {@link BookSearchResultsContainer}
+ * is delivered on the main thread as soon as it is ready, in completion order not request order
+ */
+public class BookSearchEngine {
+    /**
+     * every worker holds a connection to a different book database, this keeps the number of
+     * sqlite connections used for searching (and the io contention between them) bounded
+     */
+    public static final int MAX_PARALLEL_BOOK_SEARCHES = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final int POOL_SIZE = Math.max(1,
+            Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLEL_BOOK_SEARCHES));
+
+    @Nullable
+    private static BookSearchEngine sInstance;
+    @NonNull
+    private final ThreadPoolExecutor mExecutor;
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    @NonNull
+    private final Context mContext;
+
+    private BookSearchEngine(@NonNull Context context) {
+        mContext = context.getApplicationContext();
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE,
+                POOL_SIZE,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new SearchThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized BookSearchEngine getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new BookSearchEngine(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * starts searching the books of the request, previous searches are not affected and should be
+     * cancelled by the caller if the query changed
+     *
+     * @param searchRequest the query and the books to search
+     * @param listener      notified on the main thread for every book and once all books are done
+     * @return a handle that can be used to cancel the search
+     */
+    @NonNull
+    public SearchTask search(@NonNull SearchRequest searchRequest, @NonNull SearchListener listener) {
+        SearchTask searchTask = new SearchTask(searchRequest, listener);
+        searchTask.start();
+        return searchTask;
+    }
+
+    public interface SearchListener {
+        /**
+         * called on the main thread once for every searched book including the books with no results
+         */
+        void onBookSearched(@NonNull BookSearchResultsContainer bookSearchResultsContainer);
+
+        /**
+         * called on the main thread after all books have been delivered unless the search was cancelled
+         */
+        void onSearchFinished(long totalTimeMillis);
+    }
+
+    private static class SearchThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread thread = new Thread(r, "BookSearch #" + mCount.getAndIncrement());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+
+    public class SearchTask {
+        @NonNull
+        private final SearchRequest mSearchRequest;
+        @NonNull
+        private final SearchListener mListener;
+        @NonNull
+        private final ArrayList<Future<?>> mFutures = new ArrayList<>();
+        private final AtomicInteger mRemainingBooks = new AtomicInteger();
+        private volatile boolean mCancelled = false;
+        private long mStartTime;
+
+        private SearchTask(@NonNull SearchRequest searchRequest, @NonNull SearchListener listener) {
+            mSearchRequest = searchRequest;
+            mListener = listener;
+        }
+
+        private void start() {
+            BookSearcher bookSearcher = new BookSearcher(mContext,
+                    mSearchRequest.expandAll,
+                    mSearchRequest.searchString,
+                    mSearchRequest.searchOptions);
+            ArrayList<Integer> searchableBooksIds = mSearchRequest.getSearchBleBooksId();
+            mStartTime = SystemClock.elapsedRealtime();
+            mRemainingBooks.set(searchableBooksIds.size());
+            if (searchableBooksIds.isEmpty()) {
+                mMainHandler.post(this::deliverFinished);
+                return;
+            }
+            if (GlobalSearchIndexDbHelper.isEnabled(mContext) && GlobalSearchIndexDbHelper.indexExists(mContext)) {
+                submit(() -> searchGlobalIndex(bookSearcher, searchableBooksIds));
+            } else {
+                for (Integer bookId : searchableBooksIds) {
+                    submit(() -> searchBook(bookSearcher, bookId, null));
+                }
+            }
+        }
+
+        private void submit(@NonNull Runnable runnable) {
+            synchronized (mFutures) {
+                if (!mCancelled) {
+                    mFutures.add(mExecutor.submit(runnable));
+                }
+            }
+        }
+
+        /**
+         * answers the books present in the global index with a single query, the rest of the books
+         * are searched one by one as usual
+         */
+        private void searchGlobalIndex(@NonNull BookSearcher bookSearcher, @NonNull ArrayList<Integer> searchableBooksIds) {
+            if (mCancelled) return;
+            long startTime = SystemClock.elapsedRealtime();
+            GlobalSearchIndexDbHelper globalSearchIndex = GlobalSearchIndexDbHelper.getInstance(mContext);
+            HashSet<Integer> indexedBooks;
+            SparseArray<int[]> hits;
+            try {
+                indexedBooks = globalSearchIndex.getIndexedBookIds();
+                hits = globalSearchIndex.search(mSearchRequest.searchString, searchableBooksIds);
+            } catch (SQLException e) {
+                Timber.e(e, "global index search failed");
+                indexedBooks = new HashSet<>();
+                hits = new SparseArray<>();
+            }
+            Timber.d("global index query took %d ms, %d books with hits",
+                    SystemClock.elapsedRealtime() - startTime,
+                    hits.size());
+            for (Integer bookId : searchableBooksIds) {
+                if (!indexedBooks.contains(bookId)) {
+                    submit(() -> searchBook(bookSearcher, bookId, null));
+                } else {
+                    int[] bookHits = hits.get(bookId);
+                    if (bookHits != null && mSearchRequest.searchOptions.isRankByRelevance()) {
+                        //the global index is only used to skip books without hits, ranking needs the book own fts statistics
+                        submit(() -> searchBook(bookSearcher, bookId, null));
+                    } else if (bookHits != null) {
+                        submit(() -> searchBook(bookSearcher, bookId, bookHits));
+                    } else {
+                        BookSearchResultsContainer emptyContainer = bookSearcher.getEmptyBookSearchResultsContainer(bookId);
+                        mMainHandler.post(() -> deliverBook(emptyContainer));
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param pageIds the hits of this book in the global index or null to run the book fts query
+         */
+        private void searchBook(@NonNull BookSearcher bookSearcher, int bookId, @Nullable int[] pageIds) {
+            if (mCancelled) return;
+            long bookStartTime = SystemClock.elapsedRealtime();
+            BookSearchResultsContainer bookSearchResultsContainer;
+            try {
+                bookSearchResultsContainer = pageIds == null ?
+                        bookSearcher.getBookSearchResultsContainer(bookId) :
+                        bookSearcher.getBookSearchResultsContainer(bookId, pageIds);
+            } catch (RuntimeException e) {
+                Timber.e(e, "searching book %d failed", bookId);
+                bookSearchResultsContainer = bookSearcher.getEmptyBookSearchResultsContainer(bookId);
+            }
+            if (mCancelled) return;
+            if (bookSearchResultsContainer != null) {
+                bookSearchResultsContainer.searchTimeMillis = SystemClock.elapsedRealtime() - bookStartTime;
+                Timber.d("searched book %d in %d ms, %d results",
+                        bookId,
+                        bookSearchResultsContainer.searchTimeMillis,
+                        bookSearchResultsContainer.getChildCount());
+            }
+            final BookSearchResultsContainer result = bookSearchResultsContainer;
+            mMainHandler.post(() -> deliverBook(result));
+        }
+
+        private void deliverBook(@Nullable BookSearchResultsContainer bookSearchResultsContainer) {
+            if (mCancelled) return;
+            if (bookSearchResultsContainer != null) {
+                mListener.onBookSearched(bookSearchResultsContainer);
+            }
+            if (mRemainingBooks.decrementAndGet() == 0) {
+                deliverFinished();
+            }
+        }
+
+        private void deliverFinished() {
+            if (mCancelled) return;
+            long totalTime = SystemClock.elapsedRealtime() - mStartTime;
+            Timber.d("searched %d books in %d ms", mSearchRequest.getSearchBleBooksId().size(), totalTime);
+            mListener.onSearchFinished(totalTime);
+        }
+
+        /**
+         * stops delivering results, books not started yet are dropped from the queue and the ones
+         * already running are left to finish silently
+         * <p>
+         * must be called from the main thread
+         */
+        public void cancel() {
+            mCancelled = true;
+            synchronized (mFutures) {
+                for (Future<?> future : mFutures) {
+                    future.cancel(false);
+                }
+                mFutures.clear();
+            }
+            mExecutor.purge();
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @NonNull
+        public SearchRequest getSearchRequest() {
+            return mSearchRequest;
+        }
+    }
+}
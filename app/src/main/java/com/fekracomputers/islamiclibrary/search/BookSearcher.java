@@ -1,6 +1,7 @@
 package com.fekracomputers.islamiclibrary.search;
 
 import android.content.Context;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.fekracomputers.islamiclibrary.databases.BookDatabaseException;
@@ -35,8 +36,13 @@ public class BookSearcher {
 
     @Nullable
     public BookSearchResultsContainer getBookSearchResultsContainer(int bookId) {
+        BookDatabaseHelper bookDatabaseHelper;
+        try {
+            bookDatabaseHelper = BookDatabaseHelper.acquire(context, bookId);
+        } catch (BookDatabaseException bookDatabaseException) {
+            return getEmptyBookSearchResultsContainer(bookId);
+        }
         try {
-            BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(context, bookId);
             ArrayList<SearchResult> results = bookDatabaseHelper.search(searchString, searchOptions);
             BookPartsInfo bookPartsInfo = bookDatabaseHelper.getBookPartsInfo();
             ListIterator<SearchResult> searchResultIterator = results.listIterator();
@@ -47,10 +53,37 @@ public class BookSearcher {
                 }
             }
             return new BookSearchResultsContainer(isExpanded, bookId, bookDatabaseHelper.getBookName(), bookPartsInfo, results);
+        } finally {
+            bookDatabaseHelper.release();
+        }
+    }
+
+    /**
+     * @param pageIds the pages of this book that matched in the global search index
+     */
+    @NonNull
+    public BookSearchResultsContainer getBookSearchResultsContainer(int bookId, @NonNull int[] pageIds) {
+        BookDatabaseHelper bookDatabaseHelper;
+        try {
+            bookDatabaseHelper = BookDatabaseHelper.acquire(context, bookId);
         } catch (BookDatabaseException bookDatabaseException) {
-            return new BookSearchResultsContainer(isExpanded, bookId, "", null, new ArrayList<>());
+            return getEmptyBookSearchResultsContainer(bookId);
+        }
+        try {
+            ArrayList<SearchResult> results = bookDatabaseHelper.getSearchResults(pageIds, searchString, searchOptions);
+            return new BookSearchResultsContainer(isExpanded, bookId, bookDatabaseHelper.getBookName(), bookDatabaseHelper.getBookPartsInfo(), results);
+        } finally {
+            bookDatabaseHelper.release();
         }
     }
+
+    /**
+     * @return a container for a book without any results
+     */
+    @NonNull
+    public BookSearchResultsContainer getEmptyBookSearchResultsContainer(int bookId) {
+        return new BookSearchResultsContainer(isExpanded, bookId, "", null, new ArrayList<>());
+    }
 }
 
 
@@ -0,0 +1,129 @@
+package com.fekracomputers.islamiclibrary.search;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+
+import com.fekracomputers.islamiclibrary.databases.BookDatabaseException;
+import com.fekracomputers.islamiclibrary.databases.BookDatabaseHelper;
+import com.fekracomputers.islamiclibrary.search.model.BookSearchResultsContainer;
+import com.fekracomputers.islamiclibrary.search.model.SearchResult;
+import com.fekracomputers.islamiclibrary.search.model.SearchSnippet;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import timber.log.Timber;
+
+/**
+ * Loads the page content of search results only when they are about to be shown
+ * <p>
+ * search queries return page ids and titles only, when a result is bound this loads the snippets
+ * of the whole block of {@link #BLOCK_SIZE} results around it with a single query in the background,
+ * the snippets are computed by the fts snippet() function or from the page content for books
+ * indexed by older versions
+ */
+public class SearchSnippetLoader {
+    public static final int BLOCK_SIZE = 20;
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final SnippetsLoadedListener mListener;
+    @NonNull
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * blocks already requested, keyed by {@link #blockKey(int, int)}, only accessed on the main thread
+     */
+    @NonNull
+    private final HashSet<Long> mRequestedBlocks = new HashSet<>();
+    private volatile boolean mShutdown = false;
+
+    public SearchSnippetLoader(@NonNull Context context, @NonNull SnippetsLoadedListener listener) {
+        mContext = context.getApplicationContext();
+        mListener = listener;
+    }
+
+    private static long blockKey(int bookId, int block) {
+        return ((long) bookId << 32) | block;
+    }
+
+    /**
+     * must be called from the main thread, does nothing if the snippet is already loaded or requested
+     *
+     * @param childPosition the position of the result in {@link BookSearchResultsContainer#getChildList()}
+     */
+    public void requestSnippet(@NonNull BookSearchResultsContainer bookSearchResultsContainer, int childPosition) {
+        if (bookSearchResultsContainer.getChildList().get(childPosition).isSnippetLoaded()) return;
+        int block = childPosition / BLOCK_SIZE;
+        if (!mRequestedBlocks.add(blockKey(bookSearchResultsContainer.bookId, block))) return;
+        int from = block * BLOCK_SIZE;
+        int to = Math.min(from + BLOCK_SIZE, bookSearchResultsContainer.getChildCount());
+        mExecutor.execute(() -> loadBlock(bookSearchResultsContainer, from, to));
+    }
+
+    private void loadBlock(@NonNull BookSearchResultsContainer bookSearchResultsContainer, int from, int to) {
+        List<SearchResult> searchResults = bookSearchResultsContainer.getChildList().subList(from, to);
+        int[] pageIds = new int[searchResults.size()];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = searchResults.get(i).getPageInfo().pageId;
+        }
+        BookDatabaseHelper bookDatabaseHelper = null;
+        try {
+            bookDatabaseHelper = BookDatabaseHelper.acquire(mContext, bookSearchResultsContainer.bookId);
+            if (bookDatabaseHelper.hasFtsSnippets()) {
+                SparseArray<SearchSnippet> snippets = bookDatabaseHelper.getSearchSnippets(pageIds,
+                        searchResults.get(0).getSearchString());
+                for (SearchResult searchResult : searchResults) {
+                    SearchSnippet snippet = snippets.get(searchResult.getPageInfo().pageId);
+                    if (snippet != null) {
+                        searchResult.loadSnippet(snippet);
+                    } else {
+                        searchResult.loadSnippet("");
+                    }
+                }
+            } else {
+                SparseArray<String> pagesContent = bookDatabaseHelper.getPagesContent(pageIds);
+                for (SearchResult searchResult : searchResults) {
+                    String pageContent = pagesContent.get(searchResult.getPageInfo().pageId);
+                    searchResult.loadSnippet(pageContent == null ? "" : pageContent);
+                }
+            }
+        } catch (BookDatabaseException | SQLException e) {
+            Timber.e(e);
+            //requested again the next time one of its results is bound
+            mMainHandler.post(() -> mRequestedBlocks.remove(blockKey(bookSearchResultsContainer.bookId, from / BLOCK_SIZE)));
+            return;
+        } finally {
+            if (bookDatabaseHelper != null) {
+                bookDatabaseHelper.release();
+            }
+        }
+        mMainHandler.post(() -> {
+            if (!mShutdown) {
+                mListener.onSnippetsLoaded(bookSearchResultsContainer, from, to - from);
+            }
+        });
+    }
+
+    /**
+     * stops loading, pending blocks are dropped
+     */
+    public void shutdown() {
+        mShutdown = true;
+        mExecutor.shutdownNow();
+    }
+
+    public interface SnippetsLoadedListener {
+        /**
+         * called on the main thread after the snippets of a block of results are loaded
+         */
+        void onSnippetsLoaded(@NonNull BookSearchResultsContainer bookSearchResultsContainer, int fromChild, int childCount);
+    }
+}
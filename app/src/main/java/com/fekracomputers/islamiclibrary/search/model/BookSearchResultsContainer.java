@@ -1,9 +1,12 @@
 package com.fekracomputers.islamiclibrary.search.model;
 
+import android.support.annotation.NonNull;
+
 import com.bignerdranch.expandablerecyclerview.model.Parent;
 import com.fekracomputers.islamiclibrary.model.BookPartsInfo;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class BookSearchResultsContainer implements Parent<SearchResult> {
@@ -14,6 +17,10 @@ public class BookSearchResultsContainer implements Parent<SearchResult> {
     private String bookName;
     public BookPartsInfo bookPartsInfo;
     public int bookId;
+    /**
+     * wall time spent searching this book, used for profiling the search
+     */
+    public long searchTimeMillis;
 
 
     public BookSearchResultsContainer(boolean isInitiallyExpanded,
@@ -49,6 +56,44 @@ public class BookSearchResultsContainer implements Parent<SearchResult> {
         return mSearchResults.size();
     }
 
+    /**
+     * @return the relevance of the best result, results ranked by relevance come sorted from the best
+     */
+    public float getBestRelevance() {
+        return mSearchResults.isEmpty() ? 0 : mSearchResults.get(0).getRelevance();
+    }
+
+    /**
+     * the reader moves between matches in page order whatever the order of the results list is
+     *
+     * @return a copy of the results sorted by page
+     */
+    public ArrayList<SearchResult> getChildArrayListInPageOrder() {
+        ArrayList<SearchResult> searchResults = new ArrayList<>(mSearchResults);
+        Collections.sort(searchResults);
+        return searchResults;
+    }
+
+    /**
+     * @param childPosition position in {@link #getChildList()}
+     * @return the position of the same result in {@link #getChildArrayListInPageOrder()}
+     */
+    public int getPositionInPageOrder(@NonNull ArrayList<SearchResult> resultsInPageOrder, int childPosition) {
+        return Math.max(0, Collections.binarySearch(resultsInPageOrder, mSearchResults.get(childPosition)));
+    }
+
+    /**
+     * @return the page ids of the results in the same order
+     */
+    @NonNull
+    public static int[] getPageIds(@NonNull List<SearchResult> searchResults) {
+        int[] pageIds = new int[searchResults.size()];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = searchResults.get(i).getPageInfo().pageId;
+        }
+        return pageIds;
+    }
+
     public void setChildList(ArrayList<SearchResult> childList) {
         mSearchResults = childList;
     }
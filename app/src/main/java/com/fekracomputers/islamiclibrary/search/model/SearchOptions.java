@@ -10,7 +10,48 @@ import android.support.annotation.NonNull;
  */
 public class SearchOptions implements Parcelable {
 
+    /**
+     * the number of results kept per book when ranking by relevance
+     */
+    public static final int DEFAULT_MAX_RANKED_RESULTS = 200;
+
     private boolean areAllAlefEquivelent,isTaMarboutaEquivlantToHax,neglectTashkeel;
+    /**
+     * sort the results of every book by BM25 relevance instead of page order
+     */
+    private boolean rankByRelevance;
+    /**
+     * rank pages that start a title matching the query higher, only used with {@link #rankByRelevance}
+     */
+    private boolean boostTitleMatches = true;
+    /**
+     * the maximum number of results kept per book when ranking, 0 to keep all
+     */
+    private int maxRankedResults = DEFAULT_MAX_RANKED_RESULTS;
+
+    public boolean isRankByRelevance() {
+        return rankByRelevance;
+    }
+
+    public void setRankByRelevance(boolean rankByRelevance) {
+        this.rankByRelevance = rankByRelevance;
+    }
+
+    public boolean isBoostTitleMatches() {
+        return boostTitleMatches;
+    }
+
+    public void setBoostTitleMatches(boolean boostTitleMatches) {
+        this.boostTitleMatches = boostTitleMatches;
+    }
+
+    public int getMaxRankedResults() {
+        return maxRankedResults;
+    }
+
+    public void setMaxRankedResults(int maxRankedResults) {
+        this.maxRankedResults = maxRankedResults;
+    }
 
     @Override
     public int describeContents() {
@@ -22,6 +63,9 @@ public class SearchOptions implements Parcelable {
         dest.writeByte(this.areAllAlefEquivelent ? (byte) 1 : (byte) 0);
         dest.writeByte(this.isTaMarboutaEquivlantToHax ? (byte) 1 : (byte) 0);
         dest.writeByte(this.neglectTashkeel ? (byte) 1 : (byte) 0);
+        dest.writeByte(this.rankByRelevance ? (byte) 1 : (byte) 0);
+        dest.writeByte(this.boostTitleMatches ? (byte) 1 : (byte) 0);
+        dest.writeInt(this.maxRankedResults);
     }
 
     public SearchOptions() {
@@ -31,6 +75,9 @@ public class SearchOptions implements Parcelable {
         this.areAllAlefEquivelent = in.readByte() != 0;
         this.isTaMarboutaEquivlantToHax = in.readByte() != 0;
         this.neglectTashkeel = in.readByte() != 0;
+        this.rankByRelevance = in.readByte() != 0;
+        this.boostTitleMatches = in.readByte() != 0;
+        this.maxRankedResults = in.readInt();
     }
 
     public static final Parcelable.Creator<SearchOptions> CREATOR = new Parcelable.Creator<SearchOptions>() {
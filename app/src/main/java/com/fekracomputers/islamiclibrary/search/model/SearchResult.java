@@ -3,6 +3,7 @@ package com.fekracomputers.islamiclibrary.search.model;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.Spannable;
 import android.text.SpannableString;
 import android.text.Spanned;
@@ -19,10 +20,18 @@ import com.fekracomputers.islamiclibrary.utility.ArabicUtilities;
  */
 public class SearchResult implements Parcelable, Comparable<SearchResult> {
 
+    private static final int HIGHLIGHT_COLOR = 0xFF8B008B;
+
     private PageInfo pageInfo;
     private int bookId;
     //private Title chapterTitle;
-    private String unformatedPage;
+    @Nullable
+    private volatile CharSequence formatedSearchSnippet;
+    private volatile int matchCount;
+    /**
+     * BM25 score of the page, 0 if the results are not ranked
+     */
+    private float relevance;
     private String searchString;
     public Title parentTitle;
     private SearchOptions searchOptions;
@@ -34,7 +43,54 @@ public class SearchResult implements Parcelable, Comparable<SearchResult> {
     }
 
 
+    /**
+     * computes the snippet from the page content, the content itself is not kept so only the
+     * snippets of the results that were shown stay in memory
+     * <p>
+     * this is O(page length) and should be called off the main thread
+     */
+    public void loadSnippet(@NonNull String unformatedPage) {
+        formatedSearchSnippet = formatSearchSnippet(unformatedPage);
+    }
+
+    /**
+     * uses a snippet computed by sqlite, cheap enough to be called anywhere
+     */
+    public void loadSnippet(@NonNull SearchSnippet searchSnippet) {
+        Spannable snippet = SpannableString.valueOf(searchSnippet.text);
+        for (int i = 0; i + 1 < searchSnippet.highlightRanges.length; i += 2) {
+            snippet.setSpan(new BackgroundColorSpan(HIGHLIGHT_COLOR),
+                    searchSnippet.highlightRanges[i],
+                    searchSnippet.highlightRanges[i + 1],
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        matchCount = searchSnippet.matchCount;
+        formatedSearchSnippet = snippet;
+    }
+
+    /**
+     * @return the number of matches in the page or 0 if unknown, only known for snippets loaded
+     * with {@link #loadSnippet(SearchSnippet)}
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    public boolean isSnippetLoaded() {
+        return formatedSearchSnippet != null;
+    }
+
+    /**
+     * @return the snippet or an empty string if {@link #loadSnippet(String)} wasn't called yet
+     */
+    @NonNull
     public CharSequence getformatedSearchSnippet() {
+        CharSequence snippet = formatedSearchSnippet;
+        return snippet == null ? "" : snippet;
+    }
+
+    @NonNull
+    private CharSequence formatSearchSnippet(@NonNull String unformatedPage) {
         //TODO implement improved snippet function
         String CleanedSearchString = " " + ArabicUtilities.cleanTextForSearchingWthStingBuilder(searchString) + " ";
         StringBuilder cleanedUnformattedPage = new StringBuilder(ArabicUtilities.cleanTextForSearchingWthStingBuilder(unformatedPage));
@@ -51,7 +107,7 @@ public class SearchResult implements Parcelable, Comparable<SearchResult> {
         int index = TextUtils.indexOf(snippet, CleanedSearchString);
         while (index >= 0) {
 
-            snippet.setSpan(new BackgroundColorSpan(0xFF8B008B), index, index
+            snippet.setSpan(new BackgroundColorSpan(HIGHLIGHT_COLOR), index, index
                     + CleanedSearchString.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
             index = TextUtils.indexOf(snippet, CleanedSearchString, index + CleanedSearchString.length());
         }
@@ -65,9 +121,8 @@ public class SearchResult implements Parcelable, Comparable<SearchResult> {
 
 
 
-    public SearchResult(int bookId, int pageId, int partNumber, int pagrNumber, String page, SearchOptions searchOptions, String searchString, Title title) {
+    public SearchResult(int bookId, int pageId, int partNumber, int pagrNumber, SearchOptions searchOptions, String searchString, Title title) {
         this.bookId = bookId;
-        this.unformatedPage = page;
         this.searchOptions = searchOptions;
         this.searchString = searchString;
         this.parentTitle = title;
@@ -83,6 +138,18 @@ public class SearchResult implements Parcelable, Comparable<SearchResult> {
         return bookId;
     }
 
+    public String getSearchString() {
+        return searchString;
+    }
+
+    public float getRelevance() {
+        return relevance;
+    }
+
+    public void setRelevance(float relevance) {
+        this.relevance = relevance;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -92,7 +159,6 @@ public class SearchResult implements Parcelable, Comparable<SearchResult> {
     public void writeToParcel(@NonNull Parcel dest, int flags) {
         dest.writeParcelable(this.pageInfo, flags);
         dest.writeInt(this.bookId);
-        dest.writeString(this.unformatedPage);
         dest.writeString(this.searchString);
         dest.writeParcelable(this.searchOptions, flags);
     }
@@ -100,7 +166,6 @@ public class SearchResult implements Parcelable, Comparable<SearchResult> {
     protected SearchResult(@NonNull Parcel in) {
         this.pageInfo = in.readParcelable(PageInfo.class.getClassLoader());
         this.bookId = in.readInt();
-        this.unformatedPage = in.readString();
         this.searchString = in.readString();
         this.searchOptions = in.readParcelable(SearchOptions.class.getClassLoader());
     }
@@ -0,0 +1,72 @@
+package com.fekracomputers.islamiclibrary.search.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fekracomputers.islamiclibrary.databases.BookDatabaseContract;
+
+/**
+ * A search snippet as returned by the fts snippet() and offsets() functions
+ * <p>
+ * the matches are marked in the text returned by sqlite by {@link BookDatabaseContract.pagesTextSearch#SNIPPET_MATCH_START}
+ * and {@link BookDatabaseContract.pagesTextSearch#SNIPPET_MATCH_END}, the markers are stripped and
+ * kept as character ranges so multi term and prefix matches are highlighted as sqlite matched them
+ */
+public class SearchSnippet {
+    @NonNull
+    public final String text;
+    /**
+     * start and end (exclusive) of every highlighted match in {@link #text}, two entries per match
+     */
+    @NonNull
+    public final int[] highlightRanges;
+    /**
+     * number of matched tokens in the whole page, not only in the snippet
+     */
+    public final int matchCount;
+
+    public SearchSnippet(@NonNull String text, @NonNull int[] highlightRanges, int matchCount) {
+        this.text = text;
+        this.highlightRanges = highlightRanges;
+        this.matchCount = matchCount;
+    }
+
+    /**
+     * @param markedSnippet the result of snippet() with the match markers
+     * @param offsets       the result of offsets(), four integers per matched token
+     */
+    @NonNull
+    public static SearchSnippet fromFts(@NonNull String markedSnippet, @Nullable String offsets) {
+        StringBuilder text = new StringBuilder(markedSnippet.length());
+        int[] ranges = new int[8];
+        int rangesSize = 0;
+        for (int i = 0; i < markedSnippet.length(); i++) {
+            char c = markedSnippet.charAt(i);
+            if (c == BookDatabaseContract.pagesTextSearch.SNIPPET_MATCH_START ||
+                    c == BookDatabaseContract.pagesTextSearch.SNIPPET_MATCH_END) {
+                if (rangesSize == ranges.length) {
+                    int[] grown = new int[ranges.length * 2];
+                    System.arraycopy(ranges, 0, grown, 0, rangesSize);
+                    ranges = grown;
+                }
+                ranges[rangesSize++] = text.length();
+            } else {
+                text.append(c);
+            }
+        }
+        //an unterminated match can't happen with well formed snippets but don't return an odd array
+        rangesSize &= ~1;
+        int[] highlightRanges = new int[rangesSize];
+        System.arraycopy(ranges, 0, highlightRanges, 0, rangesSize);
+        return new SearchSnippet(text.toString(), highlightRanges, countOffsets(offsets));
+    }
+
+    private static int countOffsets(@Nullable String offsets) {
+        if (offsets == null || offsets.isEmpty()) return 0;
+        int integers = 1;
+        for (int i = 0; i < offsets.length(); i++) {
+            if (offsets.charAt(i) == ' ') integers++;
+        }
+        return integers / 4;
+    }
+}
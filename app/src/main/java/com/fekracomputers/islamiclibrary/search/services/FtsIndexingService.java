@@ -1,18 +1,23 @@
 package com.fekracomputers.islamiclibrary.search.services;
 
-import android.app.IntentService;
+import android.content.Context;
 import android.content.Intent;
 import android.database.SQLException;
-import android.support.annotation.Nullable;
+import android.support.annotation.NonNull;
 
 import com.fekracomputers.islamiclibrary.databases.BookDatabaseException;
 import com.fekracomputers.islamiclibrary.databases.BookDatabaseHelper;
 import com.fekracomputers.islamiclibrary.databases.BooksInformationDbHelper;
+import com.fekracomputers.islamiclibrary.databases.FtsIndexingPipeline;
+import com.fekracomputers.islamiclibrary.databases.GlobalSearchIndexDbHelper;
 import com.fekracomputers.islamiclibrary.download.model.DownloadsConstants;
+import com.fekracomputers.islamiclibrary.download.service.PostDownloadJobScheduler;
+import com.fekracomputers.islamiclibrary.download.service.PostDownloadJobService;
 import com.fekracomputers.islamiclibrary.download.service.UnZipIntentService;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
 
 import timber.log.Timber;
 
@@ -25,17 +30,42 @@ import static com.fekracomputers.islamiclibrary.download.model.DownloadsConstant
 /**
  * A service which index sqlite database for books using fts4
  */
-public class FtsIndexingService extends IntentService {
-
+public class FtsIndexingService extends PostDownloadJobService {
+    /**
+     * builds, updates or deletes the global search index according to the user preference
+     */
+    public static final String ACTION_UPDATE_GLOBAL_INDEX = "com.fekracomputers.islamiclibrary.search.services.action.UPDATE_GLOBAL_INDEX";
+    public static final String JOB_TYPE = "index";
+    private static final String GLOBAL_INDEX_JOB_TYPE = "global_index";
+    /**
+     * books are indexed concurrently, the global index is updated by one of them at a time
+     */
+    private static final Object GLOBAL_INDEX_LOCK = new Object();
+
+
+    public static void startUpdatingGlobalIndex(@NonNull Context context) {
+        Intent intent = new Intent(context, FtsIndexingService.class);
+        intent.setAction(ACTION_UPDATE_GLOBAL_INDEX);
+        context.startService(intent);
+    }
 
-    public FtsIndexingService() {
-        super("FtsIndexingService");
-        setIntentRedelivery(true);
+    @NonNull
+    @Override
+    protected String getJobType(@NonNull Intent intent) {
+        return ACTION_UPDATE_GLOBAL_INDEX.equals(intent.getAction()) ? GLOBAL_INDEX_JOB_TYPE : JOB_TYPE;
     }
 
+    @Override
+    protected int getJobBookId(@NonNull Intent intent) {
+        return intent.getIntExtra(EXTRA_DOWNLOAD_BOOK_ID, 0);
+    }
 
     @Override
-    protected void onHandleIntent(@Nullable Intent intent) {
+    protected void onHandleIntent(@NonNull Intent intent) {
+        if (ACTION_UPDATE_GLOBAL_INDEX.equals(intent.getAction())) {
+            updateGlobalIndex();
+            return;
+        }
         int bookId = intent.getIntExtra(EXTRA_DOWNLOAD_BOOK_ID, 0);
         if (bookId != DownloadsConstants.BOOK_INFORMATION_DUMMY_ID) {
             Intent ftsIndexingStartedBroadCast =
@@ -43,16 +73,19 @@ public class FtsIndexingService extends IntentService {
                             .putExtra(EXTRA_DOWNLOAD_STATUS, STATUS_FTS_INDEXING_STARTED)
                             .putExtra(DownloadsConstants.EXTRA_DOWNLOAD_BOOK_ID, bookId);
             sendOrderedBroadcast(ftsIndexingStartedBroadCast, null);
+            BookDatabaseHelper bookDatabaseHelper = null;
             try {
-                BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.getInstance(this, bookId);
-                if (bookDatabaseHelper.isValidBook()) {
+                bookDatabaseHelper = BookDatabaseHelper.acquire(this, bookId);
+                if (BookDatabaseHelper.isValidBookStatic(bookId, this)) {
                     if (!bookDatabaseHelper.isFtsSearchable()) {
-                        if (bookDatabaseHelper.indexFts()) {
+                        if (bookDatabaseHelper.indexFts(new IndexingProgressBroadcaster(bookId))) {
+                            //the book can be opened and searched on its own while it waits for the global index
                             Intent ftsIndexingEndedBroadCast =
                                     new Intent(BROADCAST_ACTION)
                                             .putExtra(EXTRA_DOWNLOAD_STATUS, STATUS_FTS_INDEXING_ENDED)
                                             .putExtra(DownloadsConstants.EXTRA_DOWNLOAD_BOOK_ID, bookId);
                             sendOrderedBroadcast(ftsIndexingEndedBroadCast, null);
+                            addToGlobalIndex(bookId, bookDatabaseHelper);
                         } else {//the indexing failed
 
                             Intent ftsIndexingEndedBroadCast =
@@ -67,6 +100,7 @@ public class FtsIndexingService extends IntentService {
                                         .putExtra(EXTRA_DOWNLOAD_STATUS, STATUS_FTS_INDEXING_ENDED)
                                         .putExtra(DownloadsConstants.EXTRA_DOWNLOAD_BOOK_ID, bookId);
                         sendOrderedBroadcast(ftsIndexingEndedBroadCast, null);
+                        addToGlobalIndex(bookId, bookDatabaseHelper);
                     }
                 } else {
                     if (intent.hasExtra(UnZipIntentService.EXTRA_FILE_PATH)) {
@@ -79,6 +113,12 @@ public class FtsIndexingService extends IntentService {
                 Timber.e(e);
             } catch (BookDatabaseException bookDatabaseException) {
                 Timber.e(bookDatabaseException);
+            } finally {
+                if (bookDatabaseHelper != null) {
+                    bookDatabaseHelper.release();
+                }
+                //indexing is the last job of a book
+                PostDownloadJobScheduler.getInstance().clearPriority(bookId);
             }
 
         } else { //Index book Information Database
@@ -122,4 +162,93 @@ public class FtsIndexingService extends IntentService {
 
     }
 
+    /**
+     * broadcasts the indexing progress of a book every time it advances by a whole percent
+     */
+    private class IndexingProgressBroadcaster implements FtsIndexingPipeline.IndexingProgressListener {
+        private final int mBookId;
+        private int mLastPercent = -1;
+
+        IndexingProgressBroadcaster(int bookId) {
+            mBookId = bookId;
+        }
+
+        @Override
+        public void onIndexingProgress(int indexedPages, int totalPages) {
+            int percent = totalPages > 0 ? Math.min(100, indexedPages * 100 / totalPages) : 0;
+            if (percent == mLastPercent) return;
+            mLastPercent = percent;
+            Intent ftsIndexingProgressBroadCast =
+                    new Intent(BROADCAST_ACTION)
+                            .putExtra(EXTRA_DOWNLOAD_STATUS, DownloadsConstants.STATUS_FTS_INDEXING_PROGRESS)
+                            .putExtra(DownloadsConstants.EXTRA_DOWNLOAD_BOOK_ID, mBookId)
+                            .putExtra(DownloadsConstants.EXTRA_FTS_INDEXING_PROGRESS, percent);
+            sendOrderedBroadcast(ftsIndexingProgressBroadCast, null);
+        }
+    }
+
+    private void addToGlobalIndex(int bookId, @NonNull BookDatabaseHelper bookDatabaseHelper) {
+        if (!GlobalSearchIndexDbHelper.isEnabled(this)) return;
+        synchronized (GLOBAL_INDEX_LOCK) {
+            addToGlobalIndexLocked(bookId, bookDatabaseHelper);
+        }
+    }
+
+    /**
+     * adds only this book, a rebuild of the whole index runs as its own job so it doesn't hold up
+     * the indexing of this book
+     */
+    private void addToGlobalIndexLocked(int bookId, @NonNull BookDatabaseHelper bookDatabaseHelper) {
+        GlobalSearchIndexDbHelper globalSearchIndex = GlobalSearchIndexDbHelper.getInstance(this);
+        if (globalSearchIndex.needsRebuild()) {
+            startUpdatingGlobalIndex(this);
+        }
+        if (!globalSearchIndex.isBookIndexed(bookId)) {
+            globalSearchIndex.addBook(bookId, bookDatabaseHelper);
+        }
+    }
+
+    /**
+     * brings the global index in sync with the downloaded books, rebuilding it from scratch if
+     * too many deleted books are still in it, or deletes it if it was disabled
+     */
+    private void updateGlobalIndex() {
+        synchronized (GLOBAL_INDEX_LOCK) {
+            updateGlobalIndexLocked();
+        }
+    }
+
+    private void updateGlobalIndexLocked() {
+        if (!GlobalSearchIndexDbHelper.isEnabled(this)) {
+            GlobalSearchIndexDbHelper.deleteIndex(this);
+            return;
+        }
+        BooksInformationDbHelper booksInformationDbHelper = BooksInformationDbHelper.getInstance(this);
+        if (booksInformationDbHelper == null) return;
+        GlobalSearchIndexDbHelper globalSearchIndex = GlobalSearchIndexDbHelper.getInstance(this);
+        if (globalSearchIndex.needsRebuild()) {
+            globalSearchIndex.clear();
+        }
+        HashSet<Integer> downloadedBooks = booksInformationDbHelper.getBookIdsDownloadedOnly();
+        HashSet<Integer> indexedBooks = globalSearchIndex.getIndexedBookIds();
+        for (Integer indexedBookId : indexedBooks) {
+            if (!downloadedBooks.contains(indexedBookId)) {
+                globalSearchIndex.removeBook(indexedBookId);
+            }
+        }
+        for (Integer downloadedBookId : downloadedBooks) {
+            if (indexedBooks.contains(downloadedBookId)) continue;
+            if (!GlobalSearchIndexDbHelper.isEnabled(this)) return; //disabled while we are building
+            try {
+                BookDatabaseHelper bookDatabaseHelper = BookDatabaseHelper.acquire(this, downloadedBookId);
+                try {
+                    globalSearchIndex.addBook(downloadedBookId, bookDatabaseHelper);
+                } finally {
+                    bookDatabaseHelper.release();
+                }
+            } catch (BookDatabaseException bookDatabaseException) {
+                Timber.e(bookDatabaseException);
+            }
+        }
+    }
 }
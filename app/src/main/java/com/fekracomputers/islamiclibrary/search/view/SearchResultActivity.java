@@ -15,6 +15,8 @@ import com.fekracomputers.islamiclibrary.search.model.BookSearchResultsContainer
 import com.fekracomputers.islamiclibrary.search.model.SearchResult;
 import com.fekracomputers.islamiclibrary.utility.Util;
 
+import java.util.ArrayList;
+
 public class SearchResultActivity extends AppCompatActivity implements SearchResultFragment.OnSearchResultFragmentInteractionListener {
 
     private boolean mIsArabic;
@@ -62,8 +64,10 @@ public class SearchResultActivity extends AppCompatActivity implements SearchRes
         SearchResult searchResult=bookSearchResultsContainer.getChildList().get(childAdapterPosition);
         Intent intent = new Intent(this, ReadingActivity.class);
         intent.putExtra(ReadingActivity.KEY_BOOK_ID, searchResult.getBookId());
-        intent.putExtra(ReadingActivity.KEY_SEARCH_RESULT_CHILD_POSITION,childAdapterPosition);
-        intent.putParcelableArrayListExtra(ReadingActivity.KEY_SEARCH_RESULT_ARRAY_LIST,bookSearchResultsContainer.getChildArrayList());
+        ArrayList<SearchResult> resultsInPageOrder = bookSearchResultsContainer.getChildArrayListInPageOrder();
+        intent.putExtra(ReadingActivity.KEY_SEARCH_RESULT_CHILD_POSITION, bookSearchResultsContainer.getPositionInPageOrder(resultsInPageOrder, childAdapterPosition));
+        //parceling hundreds of results can exceed the binder limit, only their page ids are sent
+        intent.putExtra(ReadingActivity.KEY_SEARCH_RESULT_PAGE_IDS, BookSearchResultsContainer.getPageIds(resultsInPageOrder));
         startActivity(intent);
     }
 }
@@ -2,11 +2,11 @@ package com.fekracomputers.islamiclibrary.search.view;
 
 import android.app.SearchManager;
 import android.content.Context;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.support.v7.preference.PreferenceManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -16,10 +16,12 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.fekracomputers.islamiclibrary.R;
-import com.fekracomputers.islamiclibrary.search.BookSearcher;
+import com.fekracomputers.islamiclibrary.search.BookSearchEngine;
+import com.fekracomputers.islamiclibrary.search.SearchSnippetLoader;
 import com.fekracomputers.islamiclibrary.search.model.BookSearchResultsContainer;
 import com.fekracomputers.islamiclibrary.search.model.SearchOptions;
 import com.fekracomputers.islamiclibrary.search.model.SearchRequest;
+import com.fekracomputers.islamiclibrary.settings.SettingsFragment;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -31,7 +33,9 @@ import java.util.List;
  * interface.
  */
 public class SearchResultFragment extends Fragment implements
-        SearchResultRecyclerViewAdapter.SearchResultOnClickDelegateListener {
+        SearchResultRecyclerViewAdapter.SearchResultOnClickDelegateListener,
+        BookSearchEngine.SearchListener,
+        SearchSnippetLoader.SnippetsLoadedListener {
     public static final String ARG_SEARCHABLE_BOOKS = "searchable_books";
     SearchRequest mSearchRequest;
     @NonNull
@@ -51,6 +55,12 @@ public class SearchResultFragment extends Fragment implements
     private ArrayList<Integer> requestedSearchBookIds;
     @Nullable
     private String mSearchQuery;
+    @Nullable
+    private BookSearchEngine.SearchTask mSearchTask;
+    @Nullable
+    private SearchSnippetLoader mSearchSnippetLoader;
+    private int mBooksSearched = 0;
+    private int mResults = 0;
 
     /**
      * Mandatory empty constructor for the fragment manager to instantiate the
@@ -99,8 +109,8 @@ public class SearchResultFragment extends Fragment implements
 
         RecyclerView recyclerView = view.findViewById(R.id.list);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        new SearchAsyncTask().execute(new SearchRequest(mSearchQuery, new SearchOptions(), requestedSearchBookIds, !mIsGlobalSearch));
-        searchResultRecyclerViewAdapter = new SearchResultRecyclerViewAdapter(bookSearchResultsContainerList, this, getContext());
+        mSearchSnippetLoader = new SearchSnippetLoader(getContext(), this);
+        searchResultRecyclerViewAdapter = new SearchResultRecyclerViewAdapter(bookSearchResultsContainerList, this, mSearchSnippetLoader, getContext());
 
         recyclerView.setAdapter(searchResultRecyclerViewAdapter);
         mProgressBar = view.findViewById(R.id.search_progress);
@@ -109,9 +119,77 @@ public class SearchResultFragment extends Fragment implements
         mTotalBooksTextView.setText(String.valueOf(requestedSearchBookIds.size()));
         mNumberOfAlreadySearchedBooksTextView = view.findViewById(R.id.current_book);
         mNumberOfAlreadySearchedBooksTextView.setText("0");
+        SearchOptions searchOptions = new SearchOptions();
+        searchOptions.setRankByRelevance(PreferenceManager.getDefaultSharedPreferences(getContext())
+                .getBoolean(SettingsFragment.KEY_SEARCH_RANK_BY_RELEVANCE, false));
+        startSearch(new SearchRequest(mSearchQuery, searchOptions, requestedSearchBookIds, !mIsGlobalSearch));
         return view;
     }
 
+    /**
+     * cancels any running search and starts searching for the new request
+     */
+    private void startSearch(@NonNull SearchRequest searchRequest) {
+        cancelSearch();
+        mBooksSearched = 0;
+        mResults = 0;
+        mSearchTask = BookSearchEngine.getInstance(getContext()).search(searchRequest, this);
+    }
+
+    private void cancelSearch() {
+        if (mSearchTask != null) {
+            mSearchTask.cancel();
+            mSearchTask = null;
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        cancelSearch();
+        if (mSearchSnippetLoader != null) {
+            mSearchSnippetLoader.shutdown();
+            mSearchSnippetLoader = null;
+        }
+        //the search is restarted with the new view
+        bookSearchResultsContainerList.clear();
+        super.onDestroyView();
+    }
+
+    @Override
+    public void onBookSearched(@NonNull BookSearchResultsContainer bookSearchResultsContainer) {
+        if (bookSearchResultsContainer.getChildCount() != 0) {
+            int position = bookSearchResultsContainerList.size();
+            if (mSearchTask != null && mSearchTask.getSearchRequest().searchOptions.isRankByRelevance()) {
+                //books with more relevant results first
+                float bestRelevance = bookSearchResultsContainer.getBestRelevance();
+                position = 0;
+                while (position < bookSearchResultsContainerList.size() &&
+                        bookSearchResultsContainerList.get(position).getBestRelevance() >= bestRelevance) {
+                    position++;
+                }
+            }
+            bookSearchResultsContainerList.add(position, bookSearchResultsContainer);
+            searchResultRecyclerViewAdapter.notifyParentInserted(position);
+            mResults += bookSearchResultsContainer.getChildCount();
+        }
+        mBooksSearched++;
+        mNumberOfAlreadySearchedBooksTextView.setText(String.valueOf(mBooksSearched));
+        mProgressBar.setProgress(mBooksSearched);
+    }
+
+    @Override
+    public void onSearchFinished(long totalTimeMillis) {
+        mSearchTask = null;
+    }
+
+    @Override
+    public void onSnippetsLoaded(@NonNull BookSearchResultsContainer bookSearchResultsContainer, int fromChild, int childCount) {
+        int parentPosition = bookSearchResultsContainerList.indexOf(bookSearchResultsContainer);
+        if (parentPosition >= 0 && searchResultRecyclerViewAdapter != null) {
+            searchResultRecyclerViewAdapter.notifyChildRangeChanged(parentPosition, fromChild, childCount);
+        }
+    }
+
 
     @Override
     public void onAttach(Context context) {
@@ -148,44 +226,4 @@ public class SearchResultFragment extends Fragment implements
     public interface OnSearchResultFragmentInteractionListener {
         void onSearchResultClicked(BookSearchResultsContainer bookSearchResultsContainer, int childAdapterPosition);
     }
-
-    private class SearchAsyncTask extends AsyncTask<SearchRequest, BookSearchResultsContainer, Void> {
-
-
-        private int mBooksSearched = 0;
-        private int mResults = 0;
-
-        @Override
-        protected void onPreExecute() {
-        }
-
-        @Nullable
-        @Override
-        protected Void doInBackground(SearchRequest... searchRequests) {
-            BookSearcher bookSearcher = new BookSearcher(SearchResultFragment.this.getContext(), searchRequests[0].expandAll, searchRequests[0].searchString, searchRequests[0].searchOptions);
-            ArrayList<Integer> searchableBooksIds = searchRequests[0].getSearchBleBooksId();
-            for (Integer bookId : searchableBooksIds) {
-                publishProgress(bookSearcher.getBookSearchResultsContainer(bookId));
-            }
-            return null;
-        }
-
-
-        @Override
-        protected void onProgressUpdate(BookSearchResultsContainer... values) {
-            if (values[0].getChildCount() != 0) {
-                bookSearchResultsContainerList.add(values[0]);
-                searchResultRecyclerViewAdapter.notifyParentInserted(bookSearchResultsContainerList.size() - 1);
-                mResults += values[0].getChildCount();
-            }
-            mBooksSearched++;
-            mNumberOfAlreadySearchedBooksTextView.setText(String.valueOf(mBooksSearched));
-            mProgressBar.setProgress(mBooksSearched);
-
-        }
-
-        @Override
-        protected void onPostExecute(Void v) {
-        }
-    }
 }
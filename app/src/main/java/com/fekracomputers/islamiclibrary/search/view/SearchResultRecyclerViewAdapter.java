@@ -9,6 +9,7 @@ import android.view.ViewGroup;
 
 import com.bignerdranch.expandablerecyclerview.ExpandableRecyclerAdapter;
 import com.fekracomputers.islamiclibrary.R;
+import com.fekracomputers.islamiclibrary.search.SearchSnippetLoader;
 import com.fekracomputers.islamiclibrary.search.model.BookSearchResultsContainer;
 import com.fekracomputers.islamiclibrary.search.model.SearchResult;
 import com.fekracomputers.islamiclibrary.search.view.viewHolder.BookResultsHeaderViewHolder;
@@ -23,16 +24,20 @@ import java.util.List;
 public class SearchResultRecyclerViewAdapter extends ExpandableRecyclerAdapter<BookSearchResultsContainer, SearchResult, BookResultsHeaderViewHolder, SearchResultViewHolder> {
 
     private final SearchResultOnClickDelegateListener mListener;
+    @NonNull
+    private final SearchSnippetLoader mSearchSnippetLoader;
     private LayoutInflater mInflater;
     private Resources mResources;
 
 
     public SearchResultRecyclerViewAdapter(@NonNull List<BookSearchResultsContainer> parentList,
                                            SearchResultFragment mListener,
+                                           @NonNull SearchSnippetLoader searchSnippetLoader,
                                            @NonNull Context context
                                           ) {
         super(parentList);
         this.mListener = mListener;
+        this.mSearchSnippetLoader = searchSnippetLoader;
         mInflater = LayoutInflater.from(context);
         this.mResources = context.getResources();
     }
@@ -58,7 +63,9 @@ public class SearchResultRecyclerViewAdapter extends ExpandableRecyclerAdapter<B
 
     @Override
     public void onBindChildViewHolder(@NonNull SearchResultViewHolder childViewHolder, int parentPosition, int childPosition, @NonNull SearchResult searchResult) {
-        childViewHolder.bind(searchResult,getParentList().get(parentPosition).bookPartsInfo);
+        BookSearchResultsContainer bookSearchResultsContainer = getParentList().get(parentPosition);
+        mSearchSnippetLoader.requestSnippet(bookSearchResultsContainer, childPosition);
+        childViewHolder.bind(searchResult, bookSearchResultsContainer.bookPartsInfo);
 
     }
 
@@ -29,6 +29,7 @@ import com.fekracomputers.islamiclibrary.BuildConfig;
 import com.fekracomputers.islamiclibrary.R;
 import com.fekracomputers.islamiclibrary.databases.BooksInformationDbHelper;
 import com.fekracomputers.islamiclibrary.download.model.DownloadFileConstants;
+import com.fekracomputers.islamiclibrary.search.services.FtsIndexingService;
 import com.fekracomputers.islamiclibrary.utility.PermissionUtil;
 import com.fekracomputers.islamiclibrary.utility.StorageUtils;
 import com.fekracomputers.islamiclibrary.widget.DataListPreference;
@@ -68,8 +69,11 @@ public class SettingsFragment extends XpPreferenceFragment implements
     public static final String KEY_UI_LANG_ARABIC = "ui_lang_arabic";
     public static final String PREF_USE_VOLUME_KEY_NAV = "volumeKeyNavigation";
     public static final String PREF_KEEP_SCREEN_ON = "keepScreenOn";
+    public static final String KEY_GLOBAL_SEARCH_INDEX = "global_search_index";
+    public static final String KEY_SEARCH_RANK_BY_RELEVANCE = "search_rank_by_relevance";
     public static final String KEY_IS_TASHKEEL_ON = "tashkeel_on";
     public static final String KEY_IS_PINCH_ZOOM_ON = "pinch_zoom_on";
+    public static final String KEY_IS_CONTINUOUS_SCROLL_ON = "continuous_scroll_on";
     public static final String KEY_BACKGROUND_COLOR = "background_color";
     public static final String KEY_TEXT_COLOR_DAY = "text_color_day";
     public static final String KEY_TEXT_COLOR_NIGHT = "text_color_night";
@@ -378,6 +382,9 @@ public class SettingsFragment extends XpPreferenceFragment implements
             if (context instanceof SettingsActivity) {
                 ((SettingsActivity) context).restartActivity();
             }
+        } else if (key.equals(KEY_GLOBAL_SEARCH_INDEX)) {
+            //the service builds or deletes the index according to the new value
+            FtsIndexingService.startUpdatingGlobalIndex(getContext());
         }
     }
 
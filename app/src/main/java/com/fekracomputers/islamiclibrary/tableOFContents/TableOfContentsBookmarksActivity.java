@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.design.widget.TabLayout;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
@@ -58,6 +59,11 @@ public class TableOfContentsBookmarksActivity extends AppCompatActivity
     private boolean buildHistory;
     private int titleId;
     private BookPartsInfo mBooksPartInfo;
+    /**
+     * acquired for as long as the activity lists the book
+     */
+    @Nullable
+    private BookDatabaseHelper mBookDatabaseHelper;
     @NonNull
     private ArrayList<BrowsingActivityListingFragment> mDownloadStatusUpdateListener = new ArrayList<>();
     @NonNull
@@ -131,7 +137,8 @@ public class TableOfContentsBookmarksActivity extends AppCompatActivity
         TabLayout tabLayout = findViewById(R.id.tabs);
         tabLayout.setupWithViewPager(mViewPager);
         try {
-            mBooksPartInfo = BookDatabaseHelper.getInstance(this, bookId).getBookPartsInfo();
+            mBookDatabaseHelper = BookDatabaseHelper.acquire(this, bookId);
+            mBooksPartInfo = mBookDatabaseHelper.getBookPartsInfo();
         } catch (BookDatabaseException e) {
             Timber.e(e);
             finish();
@@ -208,6 +215,10 @@ public class TableOfContentsBookmarksActivity extends AppCompatActivity
     public void onDestroy() {
         super.onDestroy();
         bookCardEventsCallback.removeBookDownloadBroadcastListener();
+        if (mBookDatabaseHelper != null) {
+            mBookDatabaseHelper.release();
+            mBookDatabaseHelper = null;
+        }
     }
 
     @NonNull
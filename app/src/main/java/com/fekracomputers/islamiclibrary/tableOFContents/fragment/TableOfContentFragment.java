@@ -99,7 +99,7 @@ public class TableOfContentFragment extends Fragment implements
         bookName = bundle.getString(BooksInformationDBContract.BookInformationEntery.COLUMN_NAME_TITLE);
         bookId = bundle.getInt(BooksInformationDBContract.BooksAuthors.COLUMN_NAME_BOOK_ID);
         try {
-            bookDatabaseHelper = BookDatabaseHelper.getInstance(getContext(), bookId);
+            bookDatabaseHelper = BookDatabaseHelper.acquire(getContext(), bookId);
 
             tableOfContentRecyclerViewAdapter =
                     new TableOfContentRecyclerViewAdapter(bookDatabaseHelper,
@@ -224,6 +224,15 @@ public class TableOfContentFragment extends Fragment implements
         mListener = null;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (bookDatabaseHelper != null) {
+            bookDatabaseHelper.release();
+            bookDatabaseHelper = null;
+        }
+    }
+
     private void restoreNonSearchMode() {
         mHistoryLinkedList.clear();
         mHistoryLinkedList.addAll(mBeforeEnteringSearchHistory);//restore the history linked list
@@ -13,6 +13,7 @@ public class AppConstants {
         public static final boolean IS_THEME_NIGHT_MODE = false;
         public static final boolean KEY_IS_TASHKEEL_ON = true;
         public static final boolean KEY_IS_PINCH_ZOOM_ON = true;
+        public static final boolean KEY_IS_CONTINUOUS_SCROLL_ON = false;
         public static final int KEY_BACKGROUND_COLOR = 0xFFFFFF;
         public static final int KEY_TEXT_COLOR_DAY = 0xFF000000;
         public static final int KEY_HEADING_COLOR_DAY = 0xFF800000;
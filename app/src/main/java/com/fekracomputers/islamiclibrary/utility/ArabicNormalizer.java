@@ -0,0 +1,204 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Single pass, table driven version of the regex pipeline that was used by
+ * {@link ArabicUtilities#cleanTextForSearchingQuery(String)}, it gives exactly the same output
+ * <ol>
+ * <li>separators, symbols, control characters and most punctuation become a space</li>
+ * <li>everything else that is not a letter is removed (tashkeel, digits, brackets, quotes)</li>
+ * <li>runs of spaces are collapsed into one space</li>
+ * <li>alef with hamza or madda become alef, alef maksura becomes yeh and teh marbuta becomes heh</li>
+ * <li>the first tatweel run of every word that follows a letter is removed, see {@link ArabicUtilities#handleTatweela(String)}</li>
+ * </ol>
+ * <p>
+ * an instance keeps its output buffer between calls so normalizing many pages only allocates the
+ * result strings, instances are not thread safe
+ */
+public class ArabicNormalizer {
+    private static final byte REMOVE = 0;
+    private static final byte SPACE = 1;
+    private static final byte LETTER = 2;
+    /**
+     * modifier letters, the tatweel is one of them
+     */
+    private static final byte MODIFIER_LETTER = 3;
+    /**
+     * the action of every BMP character, supplementary code points are classified on the fly
+     */
+    private static final byte[] ACTIONS = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            ACTIONS[c] = actionOf(c);
+        }
+    }
+
+    @NonNull
+    private char[] mBuffer;
+    private int mLength;
+
+    public ArabicNormalizer() {
+        this(1024);
+    }
+
+    public ArabicNormalizer(int initialCapacity) {
+        mBuffer = new char[Math.max(16, initialCapacity)];
+    }
+
+    private static byte actionOf(int codePoint) {
+        if (codePoint == '"') return REMOVE;
+        switch (Character.getType(codePoint)) {
+            case Character.UPPERCASE_LETTER:
+            case Character.LOWERCASE_LETTER:
+            case Character.TITLECASE_LETTER:
+            case Character.OTHER_LETTER:
+                return LETTER;
+            case Character.MODIFIER_LETTER:
+                return MODIFIER_LETTER;
+            case Character.SPACE_SEPARATOR:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+            case Character.MATH_SYMBOL:
+            case Character.CURRENCY_SYMBOL:
+            case Character.MODIFIER_SYMBOL:
+            case Character.OTHER_SYMBOL:
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.PRIVATE_USE:
+            case Character.SURROGATE:
+            case Character.UNASSIGNED:
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return SPACE;
+            default:
+                return REMOVE;
+        }
+    }
+
+    private static char equivalent(char c) {
+        switch (c) {
+            case ArabicUtilities.ALEF_MADDA:
+            case ArabicUtilities.ALEF_HAMZA_ABOVE:
+            case ArabicUtilities.ALEF_HAMZA_BELOW:
+                return ArabicUtilities.ALEF;
+            case ArabicUtilities.DOTLESS_YEH:
+                return ArabicUtilities.YEH;
+            case ArabicUtilities.TEH_MARBUTA:
+                return ArabicUtilities.HEH;
+            default:
+                return c;
+        }
+    }
+
+    /**
+     * normalizes the text into the internal buffer
+     *
+     * @return the length of the result, valid until the next call
+     * @see #getBuffer()
+     */
+    public int normalize(@NonNull CharSequence text) {
+        int length = text.length();
+        ensureCapacity(length);
+        char[] out = mBuffer;
+        int outLength = 0;
+        //tatweel handling state for the current word
+        boolean wordDone = false;
+        boolean previousIsLetter = false;
+        int modifierRunStart = -1;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            byte action;
+            int charCount = 1;
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                action = actionOf(Character.toCodePoint(c, text.charAt(i + 1)));
+                charCount = 2;
+            } else {
+                action = ACTIONS[c];
+            }
+
+            if (action == SPACE) {
+                if (modifierRunStart >= 0) {
+                    outLength = endWordInModifierRun(out, outLength, modifierRunStart);
+                }
+                wordDone = false;
+                previousIsLetter = false;
+                modifierRunStart = -1;
+                if (outLength == 0 || out[outLength - 1] != ' ') {
+                    out[outLength++] = ' ';
+                }
+            } else if (action == LETTER) {
+                if (modifierRunStart >= 0) {
+                    //the tatweel between two letters is dropped
+                    outLength = modifierRunStart;
+                    modifierRunStart = -1;
+                    wordDone = true;
+                }
+                if (charCount == 2) {
+                    out[outLength++] = c;
+                    out[outLength++] = text.charAt(i + 1);
+                } else {
+                    out[outLength++] = equivalent(c);
+                }
+                previousIsLetter = true;
+            } else if (action == MODIFIER_LETTER) {
+                if (!wordDone && modifierRunStart < 0 && previousIsLetter) {
+                    modifierRunStart = outLength;
+                }
+                out[outLength++] = c;
+                if (charCount == 2) {
+                    out[outLength++] = text.charAt(i + 1);
+                }
+                previousIsLetter = false;
+            }
+            i += charCount - 1;
+        }
+        if (modifierRunStart >= 0) {
+            outLength = endWordInModifierRun(out, outLength, modifierRunStart);
+        }
+        mLength = outLength;
+        return outLength;
+    }
+
+    /**
+     * a word ending with a tatweel run keeps only its last modifier letter, this is what the
+     * regex did when backtracking and a lone trailing tatweel is kept
+     */
+    private static int endWordInModifierRun(@NonNull char[] out, int outLength, int modifierRunStart) {
+        int lastModifierStart = Character.isLowSurrogate(out[outLength - 1]) && outLength - 2 >= modifierRunStart ?
+                outLength - 2 :
+                outLength - 1;
+        if (lastModifierStart == modifierRunStart) return outLength;
+        int lastModifierLength = outLength - lastModifierStart;
+        System.arraycopy(out, lastModifierStart, out, modifierRunStart, lastModifierLength);
+        return modifierRunStart + lastModifierLength;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (mBuffer.length < capacity) {
+            mBuffer = new char[Math.max(capacity, mBuffer.length * 2)];
+        }
+    }
+
+    /**
+     * @return the internal buffer holding the last result in its first {@link #length()} chars
+     */
+    @NonNull
+    public char[] getBuffer() {
+        return mBuffer;
+    }
+
+    public int length() {
+        return mLength;
+    }
+
+    @NonNull
+    public String normalizeToString(@NonNull CharSequence text) {
+        int length = normalize(text);
+        //normalize() may have replaced the buffer
+        return new String(mBuffer, 0, length);
+    }
+}
@@ -2,6 +2,7 @@ package com.fekracomputers.islamiclibrary.utility;
 
 
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -59,6 +60,18 @@ public class ArabicUtilities {
             ALEF_MADDA_str + "|" + ALEF_HAMZA_ABOVE_str + "|" + ALEF_HAMZA_BELOW_STR + "|" + DOTLESS_YEH_STR + "|" + TEH_MARBUTA_STR);
     private static final Pattern REMOVE_REPEATED_SPACES = Pattern.compile("\\s\\s+");
     private static final Pattern REMOVE_HTML_TAGS = Pattern.compile("<[^>]*>");
+    private static final ThreadLocal<ArabicNormalizer> NORMALIZER = new ThreadLocal<ArabicNormalizer>() {
+        @Override
+        protected ArabicNormalizer initialValue() {
+            return new ArabicNormalizer();
+        }
+    };
+    private static final ThreadLocal<HtmlTextExtractor> HTML_TEXT_EXTRACTOR = new ThreadLocal<HtmlTextExtractor>() {
+        @Override
+        protected HtmlTextExtractor initialValue() {
+            return new HtmlTextExtractor();
+        }
+    };
 
     public static String cleanTashkeel(@NonNull String s) {
         Matcher matcher = CLEANING_TASHKEEL.matcher(s);
@@ -66,11 +79,31 @@ public class ArabicUtilities {
     }
 
     public static String cleanTextForSearchingIndexing(String s) {
-        return cleanTextForSearchingQuery(cleanHtml(s));
+        HtmlTextExtractor htmlTextExtractor = HTML_TEXT_EXTRACTOR.get();
+        if (htmlTextExtractor.extract(s)) {
+            //normalize straight from the extractor buffer without an intermediate string
+            return NORMALIZER.get().normalizeToString(htmlTextExtractor.getText());
+        }
+        return cleanTextForSearchingQuery(cleanHtmlWithJsoup(s));
     }
 
+    /**
+     * normalizes the text for the fts tables, indexing and querying must use the same normalization
+     *
+     * @see ArabicNormalizer
+     */
     @NonNull
     public static String cleanTextForSearchingQuery(@NonNull String s) {
+        return NORMALIZER.get().normalizeToString(s);
+    }
+
+    /**
+     * the original regex implementation of {@link #cleanTextForSearchingQuery(String)}, kept as
+     * the reference for tests and benchmarks
+     */
+    @VisibleForTesting
+    @NonNull
+    static String cleanTextForSearchingQueryWithRegex(@NonNull String s) {
 
         Matcher matcher = SPACE_REPLACED_PATTERN.matcher(s);
         String space_replaced = matcher.replaceAll(" ");
@@ -170,8 +203,27 @@ public class ArabicUtilities {
         return string.startsWith("ال");
     }
 
+    /**
+     * strips the html tags and appends the footnotes text each on its own line
+     *
+     * @see HtmlTextExtractor
+     */
     @NonNull
     public static String cleanHtml(String htmlText) {
+        HtmlTextExtractor htmlTextExtractor = HTML_TEXT_EXTRACTOR.get();
+        if (htmlTextExtractor.extract(htmlText)) {
+            return htmlTextExtractor.toString();
+        }
+        return cleanHtmlWithJsoup(htmlText);
+    }
+
+    /**
+     * the jsoup implementation of {@link #cleanHtml(String)}, used for the pages
+     * {@link HtmlTextExtractor} can't handle and as the reference for tests and benchmarks
+     */
+    @VisibleForTesting
+    @NonNull
+    static String cleanHtmlWithJsoup(String htmlText) {
         Document doc = Jsoup.parse(htmlText);
         Elements footnotes = doc.select("a[title].comment");
         StringBuilder htmlTextBuilder = new StringBuilder(htmlText);
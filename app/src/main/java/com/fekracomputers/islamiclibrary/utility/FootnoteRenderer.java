@@ -0,0 +1,256 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Numbers the footnotes of a page and moves their text to its end the way the footnote script of
+ * the reader did after every page load
+ * <p>
+ * every element whose class contains {@code comment} gets its content replaced by its number
+ * {@code (n)}, an id and a link to its footnote, the footnotes are appended after an {@code <hr>}
+ * each linking back to its reference, the ids are the ones the script used so the serialized
+ * highlights of the page still apply
+ * <p>
+ * a footnote without an end tag is closed right after its number instead of swallowing the rest of
+ * the page
+ */
+public class FootnoteRenderer {
+    private static final String FOOTNOTE_CLASS = "comment";
+    private static final String TITLE_ATTRIBUTE = "title";
+    private static final String CLASS_ATTRIBUTE = "class";
+    private static final String ID_ATTRIBUTE = "id";
+    private static final String HREF_ATTRIBUTE = "href";
+
+    private FootnoteRenderer() {
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * whitespace as defined by the html tokenizer
+     */
+    private static boolean isTagWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * @return the page with its footnotes rendered, the page itself if it has none
+     */
+    @NonNull
+    public static String render(int bookId, int pageId, @NonNull String page) {
+        if (!page.contains(FOOTNOTE_CLASS)) return page;
+        StringBuilder rendered = null;
+        StringBuilder footnotes = null;
+        String idsPrefix = "_" + bookId + "_" + pageId + "_";
+        int footnoteNumber = 0;
+        int copiedUntil = 0;
+        int length = page.length();
+        int i = 0;
+        while ((i = page.indexOf('<', i)) >= 0 && i + 1 < length) {
+            int tagStart = i;
+            if (!isAsciiLetter(page.charAt(i + 1))) {
+                i++;
+                continue;
+            }
+            Tag tag = parseStartTag(page, tagStart);
+            if (tag == null) break;
+            i = tag.end;
+            if (!tag.isFootnote(page)) continue;
+
+            footnoteNumber++;
+            if (rendered == null) {
+                rendered = new StringBuilder(page.length() + 256);
+                footnotes = new StringBuilder(256);
+            }
+            String number = "(" + footnoteNumber + ")";
+            String footnoteId = "footnote" + idsPrefix + footnoteNumber;
+            String referenceId = "text_reference" + idsPrefix + footnoteNumber;
+
+            rendered.append(page, copiedUntil, tagStart);
+            tag.appendWithoutIdAndHref(page, rendered);
+            rendered.append(" id=\"").append(referenceId)
+                    .append("\" href=\"#").append(footnoteId).append("\">")
+                    .append(number)
+                    .append("</").append(tag.name).append('>');
+            int endTag = tag.selfClosing ? -1 : indexOfEndTag(page, tag.name, tag.end);
+            if (endTag >= 0) {
+                int endTagEnd = page.indexOf('>', endTag);
+                i = endTagEnd < 0 ? length : endTagEnd + 1;
+            }
+            copiedUntil = i;
+
+            footnotes.append("<a id=").append(footnoteId)
+                    .append(" href=#").append(referenceId).append('>')
+                    .append(number)
+                    .append("</a><span>  ");
+            if (tag.titleStart >= 0) footnotes.append(page, tag.titleStart, tag.titleEnd);
+            footnotes.append("</span><br>");
+        }
+        if (rendered == null) return page;
+        return rendered.append(page, copiedUntil, length)
+                .append("<hr>")
+                .append(footnotes)
+                .toString();
+    }
+
+    private static int indexOfEndTag(@NonNull String page, @NonNull String name, int from) {
+        int i = from;
+        while ((i = page.indexOf("</", i)) >= 0) {
+            int nameEnd = i + 2 + name.length();
+            if (page.regionMatches(true, i + 2, name, 0, name.length()) &&
+                    nameEnd < page.length() &&
+                    (page.charAt(nameEnd) == '>' || isTagWhitespace(page.charAt(nameEnd)))) {
+                return i;
+            }
+            i += 2;
+        }
+        return -1;
+    }
+
+    /**
+     * @param start the index of the {@code <}
+     * @return null if the tag is not closed before the end of the page
+     */
+    @Nullable
+    private static Tag parseStartTag(@NonNull String page, int start) {
+        int length = page.length();
+        int i = start + 1;
+        while (i < length && page.charAt(i) != '>' && page.charAt(i) != '/' && !isTagWhitespace(page.charAt(i))) {
+            i++;
+        }
+        Tag tag = new Tag(page.substring(start + 1, i).toLowerCase(Locale.US), start);
+        while (i < length) {
+            int attributeStart = i;
+            while (i < length && isTagWhitespace(page.charAt(i))) i++;
+            if (i >= length) return null;
+            char c = page.charAt(i);
+            if (c == '>') {
+                tag.end = i + 1;
+                return tag;
+            }
+            if (c == '/') {
+                if (i + 1 < length && page.charAt(i + 1) == '>') {
+                    tag.selfClosing = true;
+                    tag.contentEnd = i;
+                }
+                i++;
+                continue;
+            }
+            int nameStart = i;
+            while (i < length && page.charAt(i) != '=' && page.charAt(i) != '>' && page.charAt(i) != '/' && !isTagWhitespace(page.charAt(i))) {
+                i++;
+            }
+            int nameEnd = i;
+            int valueStart = -1;
+            int valueEnd = -1;
+            int j = i;
+            while (j < length && isTagWhitespace(page.charAt(j))) j++;
+            if (j < length && page.charAt(j) == '=') {
+                j++;
+                while (j < length && isTagWhitespace(page.charAt(j))) j++;
+                if (j >= length) return null;
+                char quote = page.charAt(j);
+                if (quote == '"' || quote == '\'') {
+                    valueStart = j + 1;
+                    valueEnd = page.indexOf(quote, valueStart);
+                    if (valueEnd < 0) return null;
+                    i = valueEnd + 1;
+                } else {
+                    valueStart = j;
+                    while (j < length && page.charAt(j) != '>' && !isTagWhitespace(page.charAt(j))) j++;
+                    valueEnd = j;
+                    i = j;
+                }
+            }
+            tag.onAttribute(page, attributeStart, nameStart, nameEnd, valueStart, valueEnd, i);
+        }
+        return null;
+    }
+
+    private static class Tag {
+        @NonNull
+        final String name;
+        final int start;
+        int end;
+        /**
+         * where the attributes end, before the / of a self closed tag
+         */
+        int contentEnd = -1;
+        boolean selfClosing;
+        int classStart = -1;
+        int classEnd = -1;
+        int titleStart = -1;
+        int titleEnd = -1;
+        //the id and href attributes with their leading whitespace, replaced for a footnote
+        int idStart = -1;
+        int idEnd = -1;
+        int hrefStart = -1;
+        int hrefEnd = -1;
+
+        Tag(@NonNull String name, int start) {
+            this.name = name;
+            this.start = start;
+        }
+
+        void onAttribute(@NonNull String page, int attributeStart, int nameStart, int nameEnd, int valueStart, int valueEnd, int attributeEnd) {
+            int nameLength = nameEnd - nameStart;
+            if (nameLength == CLASS_ATTRIBUTE.length() && page.regionMatches(true, nameStart, CLASS_ATTRIBUTE, 0, nameLength)) {
+                classStart = valueStart;
+                classEnd = valueEnd;
+            } else if (nameLength == TITLE_ATTRIBUTE.length() && page.regionMatches(true, nameStart, TITLE_ATTRIBUTE, 0, nameLength)) {
+                titleStart = valueStart;
+                titleEnd = valueEnd;
+            } else if (nameLength == ID_ATTRIBUTE.length() && page.regionMatches(true, nameStart, ID_ATTRIBUTE, 0, nameLength)) {
+                idStart = attributeStart;
+                idEnd = attributeEnd;
+            } else if (nameLength == HREF_ATTRIBUTE.length() && page.regionMatches(true, nameStart, HREF_ATTRIBUTE, 0, nameLength)) {
+                hrefStart = attributeStart;
+                hrefEnd = attributeEnd;
+            }
+        }
+
+        /**
+         * @return whether the class attribute has the footnote class among its classes
+         */
+        boolean isFootnote(@NonNull String page) {
+            if (classStart < 0) return false;
+            int i = classStart;
+            while (i < classEnd) {
+                while (i < classEnd && isTagWhitespace(page.charAt(i))) i++;
+                int classNameStart = i;
+                while (i < classEnd && !isTagWhitespace(page.charAt(i))) i++;
+                if (i - classNameStart == FOOTNOTE_CLASS.length() &&
+                        page.regionMatches(classNameStart, FOOTNOTE_CLASS, 0, FOOTNOTE_CLASS.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * appends the tag without its closing {@code >} nor its id and href attributes
+         */
+        void appendWithoutIdAndHref(@NonNull String page, @NonNull StringBuilder out) {
+            int tagEnd = contentEnd >= 0 ? contentEnd : end - 1;
+            int i = start;
+            while (i < tagEnd) {
+                if (i == idStart) {
+                    i = idEnd;
+                } else if (i == hrefStart) {
+                    i = hrefEnd;
+                } else {
+                    int next = tagEnd;
+                    if (idStart > i && idStart < next) next = idStart;
+                    if (hrefStart > i && hrefStart < next) next = hrefStart;
+                    out.append(page, i, next);
+                    i = next;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import android.support.annotation.NonNull;
+
+import java.nio.CharBuffer;
+import java.util.Locale;
+
+/**
+ * Streaming replacement of the jsoup based {@link ArabicUtilities#cleanHtml(String)} used while indexing
+ * <p>
+ * in one pass over the page it strips the tags the way the {@code <[^>]*>} regex did and collects the
+ * title of every {@code a[title].comment} footnote as jsoup would select it, the footnotes are
+ * appended after the text each on its own line
+ * <p>
+ * markup whose jsoup tree could differ from the plain tag sequence (comments, raw text elements,
+ * tables, unclosed or self closed footnotes, named entities in footnotes...) is not handled,
+ * {@link #extract(String)} returns false for it and the caller should use jsoup, which keeps the
+ * output identical for every page
+ * <p>
+ * an instance reuses its buffers between pages and is not thread safe
+ */
+public class HtmlTextExtractor {
+    private static final String FOOTNOTE_TAG = "a";
+    private static final String FOOTNOTE_CLASS = "comment";
+    private static final String TITLE_ATTRIBUTE = "title";
+    private static final String CLASS_ATTRIBUTE = "class";
+    /**
+     * start tags after which the jsoup tree builder does not simply nest the following elements
+     */
+    private static final String[] UNSUPPORTED_TAGS = {
+            "script", "style", "textarea", "title", "xmp", "plaintext", "iframe", "noembed",
+            "noframes", "noscript", "template", "table", "select", "svg", "math", "frameset"
+    };
+
+    @NonNull
+    private char[] mText = new char[1024];
+    private int mTextLength;
+    @NonNull
+    private char[] mFootnotes = new char[256];
+    private int mFootnotesLength;
+
+    //attributes of the tag being parsed, offsets in the page
+    private int mTitleStart;
+    private int mTitleEnd;
+    private int mClassStart;
+    private int mClassEnd;
+    private boolean mSelfClosing;
+    private boolean mInFootnote;
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * whitespace as defined by the html tokenizer
+     */
+    private static boolean isTagWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean regionEqualsIgnoreCase(@NonNull String html, int start, int end, @NonNull String s) {
+        return end - start == s.length() && html.regionMatches(true, start, s, 0, s.length());
+    }
+
+    /**
+     * @return false if the page contains markup that needs a real html parser, the extracted text
+     * is then undefined
+     */
+    public boolean extract(@NonNull String html) {
+        int length = html.length();
+        mTextLength = 0;
+        mFootnotesLength = 0;
+        mInFootnote = false;
+        ensureTextCapacity(length);
+        char[] text = mText;
+        int textLength = 0;
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c != '<') {
+                text[textLength++] = c;
+                i++;
+                continue;
+            }
+            int tagEnd = html.indexOf('>', i + 1);
+            if (tagEnd < 0) return false;
+            if (!handleTag(html, i + 1, tagEnd)) return false;
+            i = tagEnd + 1;
+        }
+        if (mInFootnote) return false;
+        mTextLength = textLength;
+        stripFootnoteTags();
+        return true;
+    }
+
+    /**
+     * @param start the first char after {@code <}
+     * @param end   the index of the first {@code >}
+     * @return false if the tag can't be handled
+     */
+    private boolean handleTag(@NonNull String html, int start, int end) {
+        for (int i = start; i < end; i++) {
+            //the regex would strip a tag that jsoup sees inside this one
+            if (html.charAt(i) == '<') return false;
+        }
+        if (start == end) return !mInFootnote;
+        char first = html.charAt(start);
+        if (first == '!' || first == '?') return false;
+        boolean endTag = first == '/';
+        int nameStart = endTag ? start + 1 : start;
+        if (nameStart >= end || !isAsciiLetter(html.charAt(nameStart))) {
+            //not a tag for jsoup (text or bogus comment), the regex strips it anyway
+            return !mInFootnote || !endTag;
+        }
+        int nameEnd = nameStart;
+        while (nameEnd < end && !isTagWhitespace(html.charAt(nameEnd)) && html.charAt(nameEnd) != '/') {
+            nameEnd++;
+        }
+        if (!parseAttributes(html, nameEnd, end)) return false;
+
+        boolean isFootnoteTagName = regionEqualsIgnoreCase(html, nameStart, nameEnd, FOOTNOTE_TAG);
+        if (mInFootnote) {
+            //the footnote must be closed right after its text, anything else may make jsoup clone or move it
+            if (!endTag || !isFootnoteTagName) return false;
+            mInFootnote = false;
+            return true;
+        }
+        if (endTag) return true;
+        for (String unsupportedTag : UNSUPPORTED_TAGS) {
+            if (regionEqualsIgnoreCase(html, nameStart, nameEnd, unsupportedTag)) return false;
+        }
+        if (isFootnoteTagName && mTitleStart >= 0 && mClassStart >= 0 && hasFootnoteClass(html)) {
+            if (mSelfClosing) return false;
+            mInFootnote = true;
+            return appendFootnote(html, mTitleStart, mTitleEnd);
+        }
+        return true;
+    }
+
+    /**
+     * parses the attributes like the jsoup tokenizer, the last occurrence of an attribute wins
+     *
+     * @return false if a quoted value is not closed before {@code end} meaning it contains a {@code >}
+     */
+    private boolean parseAttributes(@NonNull String html, int start, int end) {
+        mTitleStart = mTitleEnd = mClassStart = mClassEnd = -1;
+        mSelfClosing = false;
+        int i = start;
+        while (i < end) {
+            char c = html.charAt(i);
+            if (isTagWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '/') {
+                mSelfClosing = i + 1 == end;
+                i++;
+                continue;
+            }
+            mSelfClosing = false;
+            int nameStart = i;
+            i++;
+            while (i < end && !isTagWhitespace(html.charAt(i)) && html.charAt(i) != '/' && html.charAt(i) != '=') {
+                i++;
+            }
+            int nameEnd = i;
+            while (i < end && isTagWhitespace(html.charAt(i))) i++;
+            int valueStart = i;
+            int valueEnd = i;
+            if (i < end && html.charAt(i) == '=') {
+                i++;
+                while (i < end && isTagWhitespace(html.charAt(i))) i++;
+                if (i < end && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                    int quoteEnd = html.indexOf(html.charAt(i), i + 1);
+                    if (quoteEnd < 0 || quoteEnd >= end) return false;
+                    valueStart = i + 1;
+                    valueEnd = quoteEnd;
+                    i = quoteEnd + 1;
+                } else {
+                    valueStart = i;
+                    while (i < end && !isTagWhitespace(html.charAt(i))) i++;
+                    valueEnd = i;
+                }
+            }
+            if (regionEqualsIgnoreCase(html, nameStart, nameEnd, TITLE_ATTRIBUTE)) {
+                mTitleStart = valueStart;
+                mTitleEnd = valueEnd;
+            } else if (regionEqualsIgnoreCase(html, nameStart, nameEnd, CLASS_ATTRIBUTE)) {
+                mClassStart = valueStart;
+                mClassEnd = valueEnd;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasFootnoteClass(@NonNull String html) {
+        int i = mClassStart;
+        while (i < mClassEnd) {
+            char c = html.charAt(i);
+            if (c == '&') return true;//let the caller fail on it, entities in class names aren't decoded
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int tokenStart = i;
+            while (i < mClassEnd && !Character.isWhitespace(html.charAt(i))) i++;
+            if (html.substring(tokenStart, i).toLowerCase(Locale.ENGLISH).equals(FOOTNOTE_CLASS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * appends a new line and the decoded title, only numeric character references are decoded
+     *
+     * @return false if the title can't be decoded exactly like jsoup
+     */
+    private boolean appendFootnote(@NonNull String html, int start, int end) {
+        for (int i = mClassStart; i < mClassEnd; i++) {
+            if (html.charAt(i) == '&') return false;
+        }
+        ensureFootnotesCapacity(mFootnotesLength + 1 + (end - start));
+        mFootnotes[mFootnotesLength++] = '\n';
+        int i = start;
+        while (i < end) {
+            char c = html.charAt(i);
+            if (c == '\r' || c == '\u0000') return false;
+            if (c != '&') {
+                mFootnotes[mFootnotesLength++] = c;
+                i++;
+                continue;
+            }
+            //&#ddd; or &#xhhh;
+            if (i + 2 >= end || html.charAt(i + 1) != '#') return false;
+            boolean hex = html.charAt(i + 2) == 'x' || html.charAt(i + 2) == 'X';
+            int digitsStart = hex ? i + 3 : i + 2;
+            int j = digitsStart;
+            int codePoint = 0;
+            while (j < end && j - digitsStart < 7 && Character.digit(html.charAt(j), hex ? 16 : 10) >= 0) {
+                codePoint = codePoint * (hex ? 16 : 10) + Character.digit(html.charAt(j), hex ? 16 : 10);
+                j++;
+            }
+            if (j == digitsStart || j >= end || html.charAt(j) != ';') return false;
+            if (codePoint == 0 || (codePoint >= 0x80 && codePoint <= 0x9F) ||
+                    (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) ||
+                    codePoint > Character.MAX_CODE_POINT) {
+                return false;
+            }
+            mFootnotesLength += Character.toChars(codePoint, mFootnotes, mFootnotesLength);
+            i = j + 1;
+        }
+        return true;
+    }
+
+    /**
+     * the tag regex ran over the text and the appended titles, a decoded title may contain tags too
+     * and a {@code <} without a following {@code >} is kept as is
+     */
+    private void stripFootnoteTags() {
+        ensureTextCapacity(mTextLength + mFootnotesLength);
+        char[] footnotes = mFootnotes;
+        int i = 0;
+        while (i < mFootnotesLength) {
+            char c = footnotes[i];
+            if (c == '<') {
+                int tagEnd = i + 1;
+                while (tagEnd < mFootnotesLength && footnotes[tagEnd] != '>') tagEnd++;
+                if (tagEnd < mFootnotesLength) {
+                    i = tagEnd + 1;
+                    continue;
+                }
+            }
+            mText[mTextLength++] = c;
+            i++;
+        }
+    }
+
+    private void ensureTextCapacity(int capacity) {
+        if (mText.length < capacity) {
+            char[] text = new char[Math.max(capacity, mText.length * 2)];
+            System.arraycopy(mText, 0, text, 0, mTextLength);
+            mText = text;
+        }
+    }
+
+    private void ensureFootnotesCapacity(int capacity) {
+        if (mFootnotes.length < capacity) {
+            char[] footnotes = new char[Math.max(capacity, mFootnotes.length * 2)];
+            System.arraycopy(mFootnotes, 0, footnotes, 0, mFootnotesLength);
+            mFootnotes = footnotes;
+        }
+    }
+
+    /**
+     * @return a view over the internal buffer valid until the next call of {@link #extract(String)}
+     */
+    @NonNull
+    public CharSequence getText() {
+        return CharBuffer.wrap(mText, 0, mTextLength);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return new String(mText, 0, mTextLength);
+    }
+}
@@ -0,0 +1,72 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Durations of a repeated operation summarized for the logs
+ * <p>
+ * the count, mean and max cover every recorded duration, the percentiles only the last
+ * {@link #MAX_SAMPLES} ones
+ * <p>
+ * thread safe
+ */
+public class LatencyStats {
+    static final int MAX_SAMPLES = 512;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    @NonNull
+    private final String mName;
+    @NonNull
+    private final long[] mSamples = new long[MAX_SAMPLES];
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    public LatencyStats(@NonNull String name) {
+        mName = name;
+    }
+
+    public synchronized void record(long nanos) {
+        mSamples[(int) (mCount % MAX_SAMPLES)] = nanos;
+        mCount++;
+        mTotalNanos += nanos;
+        mMaxNanos = Math.max(mMaxNanos, nanos);
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return 0 if nothing was recorded
+     */
+    public synchronized double getMeanMillis() {
+        return mCount == 0 ? 0 : mTotalNanos / NANOS_PER_MILLI / mCount;
+    }
+
+    public synchronized double getMaxMillis() {
+        return mMaxNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the nearest rank percentile of the retained durations, 0 if nothing was recorded
+     */
+    public synchronized double getPercentileMillis(int percentile) {
+        int size = (int) Math.min(mCount, MAX_SAMPLES);
+        if (size == 0) return 0;
+        long[] sorted = Arrays.copyOf(mSamples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * size);
+        return sorted[Math.max(rank, 1) - 1] / NANOS_PER_MILLI;
+    }
+
+    @NonNull
+    public synchronized String getStats() {
+        return String.format(Locale.US, "%s: count %d mean %.1fms p50 %.1fms p95 %.1fms max %.1fms",
+                mName, mCount, getMeanMillis(), getPercentileMillis(50), getPercentileMillis(95), getMaxMillis());
+    }
+}
@@ -0,0 +1,242 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BookHandleRegistryTest {
+    private static final int BOOK_ID = 3;
+    private static final long NEVER_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private File mBookFile;
+    private volatile boolean mValid = true;
+
+    private class Handle {
+        final int bookId;
+
+        Handle(int bookId) {
+            this.bookId = bookId;
+        }
+    }
+
+    private final BookHandleRegistry.Validator<Handle> mValidator = new BookHandleRegistry.Validator<Handle>() {
+        @Override
+        public File getFile(Handle handle) {
+            return mBookFile;
+        }
+
+        @Override
+        public boolean isValid(Handle handle) {
+            return mValid;
+        }
+    };
+    private final BookHandleRegistry<Handle> mRegistry = new BookHandleRegistry<>(mValidator);
+    private final List<Integer> mClosed = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mBookFile = File.createTempFile("book", ".sqlite");
+        write(mBookFile, 100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mBookFile.delete();
+    }
+
+    private static void write(File file, int length) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[length]);
+        out.close();
+    }
+
+    @Test
+    public void validatedOncePerFile() throws Exception {
+        Handle handle = mRegistry.get(BOOK_ID, Handle::new);
+        for (int i = 0; i < 100; i++) {
+            assertSame(handle, mRegistry.get(BOOK_ID, Handle::new));
+            assertTrue(mRegistry.validate(BOOK_ID, handle));
+        }
+        assertEquals(1, mRegistry.getValidationCount());
+        assertEquals(99, mRegistry.getSkippedValidationCount());
+
+        //a replaced file with another size
+        write(mBookFile, 200);
+        assertTrue(mRegistry.validate(BOOK_ID, handle));
+        assertEquals(2, mRegistry.getValidationCount());
+    }
+
+    @Test
+    public void invalidBookIsValidatedEveryTime() throws Exception {
+        mValid = false;
+        Handle handle = mRegistry.get(BOOK_ID, Handle::new);
+        assertFalse(mRegistry.validate(BOOK_ID, handle));
+        assertFalse(mRegistry.validate(BOOK_ID, handle));
+        assertEquals(2, mRegistry.getValidationCount());
+        mValid = true;
+        assertTrue(mRegistry.validate(BOOK_ID, handle));
+        assertEquals(0, mRegistry.getSkippedValidationCount());
+    }
+
+    @Test
+    public void removedHandleIsValidatedAgain() throws Exception {
+        Handle handle = mRegistry.get(BOOK_ID, Handle::new);
+        assertTrue(mRegistry.validate(BOOK_ID, handle));
+        mRegistry.remove(BOOK_ID, new Handle(BOOK_ID));
+        assertSame(handle, mRegistry.peek(BOOK_ID));
+        mRegistry.remove(BOOK_ID, handle);
+        assertNull(mRegistry.peek(BOOK_ID));
+
+        Handle reopened = mRegistry.get(BOOK_ID, Handle::new);
+        assertTrue(mRegistry.validate(BOOK_ID, reopened));
+        assertEquals(2, mRegistry.getValidationCount());
+    }
+
+    @Test
+    public void heldHandleIsNotRemoved() throws Exception {
+        Handle held = mRegistry.acquire(BOOK_ID, Handle::new);
+        assertFalse(mRegistry.remove(BOOK_ID, held));
+        assertSame(held, mRegistry.peek(BOOK_ID));
+        assertEquals(1, mRegistry.getOpenCount());
+        mRegistry.release(BOOK_ID, held);
+        assertTrue(mRegistry.remove(BOOK_ID, held));
+        assertNull(mRegistry.peek(BOOK_ID));
+        assertEquals(0, mRegistry.getOpenCount());
+    }
+
+    /**
+     * a handle closed by another thread between getting and validating it is not a corrupted book
+     */
+    @Test
+    public void removedHandleIsNotValidated() throws Exception {
+        Handle handle = mRegistry.get(BOOK_ID, Handle::new);
+        mRegistry.remove(BOOK_ID, handle);
+        mValid = false;
+        assertFalse(mRegistry.validate(BOOK_ID, handle));
+        assertEquals(0, mRegistry.getValidationCount());
+        assertNull(mRegistry.peek(BOOK_ID));
+
+        Handle replaced = mRegistry.get(BOOK_ID, Handle::new);
+        assertFalse(mRegistry.validate(BOOK_ID, handle));
+        assertEquals(0, mRegistry.getValidationCount());
+        assertSame(replaced, mRegistry.peek(BOOK_ID));
+    }
+
+    @Test
+    public void concurrentCallersShareOneValidatedHandle() throws Exception {
+        int threads = 8;
+        int callsPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Handle>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit((Callable<Handle>) () -> {
+                Handle handle = null;
+                for (int i = 0; i < callsPerThread; i++) {
+                    handle = mRegistry.get(BOOK_ID, Handle::new);
+                    assertTrue(mRegistry.validate(BOOK_ID, handle));
+                }
+                return handle;
+            }));
+        }
+        Handle handle = futures.get(0).get();
+        for (Future<Handle> future : futures) {
+            assertSame(handle, future.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, mRegistry.getValidationCount());
+        assertEquals(threads * callsPerThread - 1, mRegistry.getSkippedValidationCount());
+        assertEquals(BOOK_ID, handle.bookId);
+        assertEquals(1, mRegistry.size());
+    }
+
+    private BookHandleRegistry<Handle> newPool(int maxOpen, long idleTimeoutMillis) {
+        return new BookHandleRegistry<>(mValidator, handle -> mClosed.add(handle.bookId), maxOpen, idleTimeoutMillis);
+    }
+
+    @Test
+    public void leastRecentlyUsedIsClosedOverTheMaximum() throws Exception {
+        BookHandleRegistry<Handle> pool = newPool(2, NEVER_MILLIS);
+        Handle first = pool.get(1, Handle::new);
+        pool.get(2, Handle::new);
+        pool.get(3, Handle::new);
+        assertEquals(Collections.singletonList(1), mClosed);
+        assertEquals(2, pool.getOpenCount());
+
+        //reopened on its next use
+        assertSame(first, pool.get(1, Handle::new));
+        assertEquals(Arrays.asList(1, 2), mClosed);
+        assertEquals(2, pool.getOpenCount());
+        assertEquals(3, pool.getPeakOpenCount());
+        assertEquals(3, pool.size());
+    }
+
+    @Test
+    public void heldHandleIsNotClosed() throws Exception {
+        BookHandleRegistry<Handle> pool = newPool(1, 1000);
+        Handle held = pool.acquire(1, Handle::new);
+        pool.get(2, Handle::new);
+        pool.get(3, Handle::new);
+        assertEquals(Collections.singletonList(2), mClosed);
+        assertEquals(1, pool.trim(System.nanoTime() + TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(Arrays.asList(2, 3), mClosed);
+
+        pool.release(1, held);
+        assertEquals(1, pool.trim(System.nanoTime() + TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(Arrays.asList(2, 3, 1), mClosed);
+        assertEquals(0, pool.getOpenCount());
+        try {
+            pool.release(1, held);
+            fail();
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void idleHandleIsClosed() throws Exception {
+        BookHandleRegistry<Handle> pool = newPool(8, 1000);
+        pool.get(1, Handle::new);
+        assertEquals(0, pool.trim(System.nanoTime()));
+        assertEquals(1, pool.trim(System.nanoTime() + TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(Collections.singletonList(1), mClosed);
+        assertEquals(1, pool.getEvictionCount());
+    }
+
+    /**
+     * a global search over a big library acquires and releases the books one after the other
+     */
+    @Test
+    public void globalSearchKeepsFewBooksOpen() throws Exception {
+        int books = 500;
+        int maxOpen = 8;
+        BookHandleRegistry<Handle> unbounded = new BookHandleRegistry<>(mValidator);
+        BookHandleRegistry<Handle> pool = newPool(maxOpen, NEVER_MILLIS);
+        for (int bookId = 1; bookId <= books; bookId++) {
+            unbounded.release(bookId, unbounded.acquire(bookId, Handle::new));
+            pool.release(bookId, pool.acquire(bookId, Handle::new));
+        }
+        assertEquals(books, unbounded.getOpenCount());
+        assertEquals(maxOpen, pool.getOpenCount());
+        assertEquals(maxOpen + 1, pool.getPeakOpenCount());
+        assertEquals(books - maxOpen, mClosed.size());
+    }
+}
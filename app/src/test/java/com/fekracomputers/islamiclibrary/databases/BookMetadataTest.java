@@ -0,0 +1,59 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import com.fekracomputers.islamiclibrary.model.BookPartsInfo;
+import com.fekracomputers.islamiclibrary.model.PageInfo;
+import com.fekracomputers.islamiclibrary.model.PartInfo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class BookMetadataTest {
+    private final BookMetadata mMetadata = new BookMetadata(
+            new BookPartsInfo(new PartInfo(1, 320, 1), 4, 410),
+            new PageInfo(7, 1, 1),
+            1450);
+
+    @Test
+    public void gettersReturnTheComputedValues() {
+        BookPartsInfo bookPartsInfo = mMetadata.getBookPartsInfo();
+        assertEquals(1, bookPartsInfo.firstPart.partNumber);
+        assertEquals(1, bookPartsInfo.firstPart.firstPage);
+        assertEquals(320, bookPartsInfo.firstPart.lastPage);
+        assertEquals(4, bookPartsInfo.lastPart);
+        assertEquals(410, bookPartsInfo.largestPage);
+        assertTrue(bookPartsInfo.isMultiPart());
+        PageInfo firstPage = mMetadata.getFirstPageInfo();
+        assertEquals(7, firstPage.pageId);
+        assertEquals(1, firstPage.partNumber);
+        assertEquals(1, firstPage.pageNumber);
+        assertEquals(1450, mMetadata.getPageCount());
+    }
+
+    @Test
+    public void columnValuesRoundTrip() {
+        int[] values = mMetadata.toColumnValues();
+        assertEquals(BookDatabaseContract.BookMetadataEntry.COLUMNS.length, values.length);
+        assertArrayEquals(values, BookMetadata.fromColumnValues(values).toColumnValues());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingColumnValuesAreRejected() {
+        BookMetadata.fromColumnValues(new int[3]);
+    }
+
+    @Test
+    public void changingAReturnedObjectDoesNotChangeTheMetadata() {
+        BookPartsInfo bookPartsInfo = mMetadata.getBookPartsInfo();
+        bookPartsInfo.lastPart = 1;
+        bookPartsInfo.firstPart.lastPage = 0;
+        assertNotSame(bookPartsInfo, mMetadata.getBookPartsInfo());
+        assertEquals(4, mMetadata.getBookPartsInfo().lastPart);
+        assertEquals(320, mMetadata.getBookPartsInfo().firstPart.lastPage);
+        assertFalse(mMetadata.getFirstPageInfo() == mMetadata.getFirstPageInfo());
+    }
+}
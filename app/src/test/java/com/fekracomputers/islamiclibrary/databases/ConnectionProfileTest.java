@@ -0,0 +1,61 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionProfileTest {
+
+    @Test
+    public void searchIsQueryOnlyAndMapped() throws Exception {
+        assertEquals(Arrays.asList(
+                "PRAGMA journal_mode=DELETE",
+                "PRAGMA mmap_size=67108864",
+                "PRAGMA cache_size=-2048",
+                "PRAGMA temp_store=2",
+                "PRAGMA query_only=1"),
+                ConnectionProfile.SEARCH.getPragmas());
+    }
+
+    @Test
+    public void unsetSettingsAreLeft() throws Exception {
+        ConnectionProfile profile = new ConnectionProfile("default", null,
+                ConnectionProfile.UNSET, ConnectionProfile.UNSET, ConnectionProfile.TEMP_STORE_DEFAULT, false);
+        assertTrue(profile.getPragmas().isEmpty());
+    }
+
+    @Test
+    public void indexingSwitchesOnlyWhatDiffers() throws Exception {
+        assertEquals(Collections.singletonList("PRAGMA cache_size=-8192"),
+                ConnectionProfile.INDEXER.getPragmasSwitchingFrom(ConnectionProfile.BOOK));
+        //the indexer doesn't know the mmap size it was left with
+        assertEquals(Arrays.asList("PRAGMA mmap_size=67108864", "PRAGMA cache_size=-2048"),
+                ConnectionProfile.BOOK.getPragmasSwitchingFrom(ConnectionProfile.INDEXER));
+        assertTrue(ConnectionProfile.BOOK.getPragmasSwitchingFrom(ConnectionProfile.BOOK).isEmpty());
+    }
+
+    @Test
+    public void journalModeIsAProfileSetting() throws Exception {
+        ConnectionProfile truncate = new ConnectionProfile("truncate", ConnectionProfile.JOURNAL_MODE_TRUNCATE,
+                ConnectionProfile.UNSET, ConnectionProfile.UNSET, ConnectionProfile.TEMP_STORE_DEFAULT, false);
+        ConnectionProfile wal = new ConnectionProfile("wal", ConnectionProfile.JOURNAL_MODE_WAL,
+                ConnectionProfile.UNSET, ConnectionProfile.UNSET, ConnectionProfile.TEMP_STORE_DEFAULT, false);
+        assertEquals(Collections.singletonList("PRAGMA journal_mode=TRUNCATE"), truncate.getPragmas());
+        assertEquals(Collections.singletonList("PRAGMA journal_mode=DELETE"),
+                ConnectionProfile.BOOK.getPragmasSwitchingFrom(truncate).subList(0, 1));
+        //write-ahead logging is enabled when the book is opened, not by a pragma
+        assertTrue(wal.isWriteAheadLogging() && wal.getPragmas().isEmpty());
+        assertTrue(!ConnectionProfile.BOOK.isWriteAheadLogging() && !ConnectionProfile.SEARCH.isWriteAheadLogging());
+    }
+
+    @Test
+    public void bookConnectionIsWritable() throws Exception {
+        //the indexing and the upgrades write through it
+        assertTrue(!ConnectionProfile.BOOK.queryOnly && !ConnectionProfile.INDEXER.queryOnly);
+        assertTrue(ConnectionProfile.SEARCH.getPragmas().contains("PRAGMA temp_store=2"));
+    }
+}
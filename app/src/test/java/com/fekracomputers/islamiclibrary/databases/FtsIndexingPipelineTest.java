@@ -0,0 +1,124 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FtsIndexingPipelineTest {
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static FtsIndexingPipeline.PageReader pagesReader(int pageCount, @NonNull AtomicInteger readPages) {
+        return batch -> {
+            while (readPages.get() < pageCount && batch.size < batch.capacity()) {
+                int pageId = readPages.incrementAndGet();
+                batch.add(pageId, "page " + pageId);
+            }
+        };
+    }
+
+    @Test
+    public void pagesAreWrittenCleanedAndInOrder() throws Exception {
+        int pageCount = 1000;
+        Random random = new Random(1);
+        RecordingWriter writer = new RecordingWriter();
+        List<Integer> progress = new ArrayList<>();
+        new FtsIndexingPipeline(4, 7).run(pagesReader(pageCount, new AtomicInteger()),
+                pageText -> {
+                    //clean the batches at different speeds so they reach the writer out of order
+                    if (random.nextInt(20) == 0) sleep(2);
+                    return pageText.toUpperCase();
+                },
+                writer,
+                pageCount,
+                (indexedPages, totalPages) -> progress.add(indexedPages));
+
+        assertEquals(pageCount, writer.pageIds.size());
+        for (int i = 0; i < pageCount; i++) {
+            assertEquals(i + 1, (int) writer.pageIds.get(i));
+            assertEquals("PAGE " + (i + 1), writer.texts.get(i));
+        }
+        assertEquals(pageCount, (int) progress.get(progress.size() - 1));
+        assertEquals(0, writer.rolledBack);
+    }
+
+    @Test
+    public void readerIsHeldBackBySlowWriter() throws Exception {
+        int pageCount = 2000;
+        int batchSize = 10;
+        AtomicInteger readPages = new AtomicInteger();
+        AtomicInteger maxReadAhead = new AtomicInteger();
+        RecordingWriter writer = new RecordingWriter() {
+            @Override
+            public void insert(int pageId, @NonNull String cleanedText) {
+                super.insert(pageId, cleanedText);
+                maxReadAhead.set(Math.max(maxReadAhead.get(), readPages.get() - pageId));
+                if (pageId % 100 == 0) sleep(5);
+            }
+        };
+        new FtsIndexingPipeline(2, batchSize).run(pagesReader(pageCount, readPages), pageText -> pageText, writer, pageCount, null);
+
+        assertEquals(pageCount, writer.pageIds.size());
+        //two batches in flight per worker
+        assertTrue("read ahead " + maxReadAhead.get(), maxReadAhead.get() <= 2 * 2 * batchSize);
+    }
+
+    @Test
+    public void failureStopsThePipelineAndRollsBack() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        try {
+            new FtsIndexingPipeline(3, 5).run(pagesReader(500, new AtomicInteger()),
+                    pageText -> {
+                        if (pageText.equals("page 250")) throw new IllegalArgumentException("bad page");
+                        return pageText;
+                    },
+                    writer,
+                    500,
+                    null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("bad page", e.getMessage());
+        }
+        assertTrue(writer.pageIds.size() < 500);
+    }
+
+    private static class RecordingWriter implements FtsIndexingPipeline.PageWriter {
+        final List<Integer> pageIds = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        int rolledBack;
+        boolean inTransaction;
+
+        @Override
+        public void beginTransaction() {
+            assertTrue(!inTransaction);
+            inTransaction = true;
+        }
+
+        @Override
+        public void insert(int pageId, @NonNull String cleanedText) {
+            assertTrue(inTransaction);
+            pageIds.add(pageId);
+            texts.add(cleanedText);
+        }
+
+        @Override
+        public void endTransaction(boolean successful) {
+            inTransaction = false;
+            if (!successful) rolledBack++;
+        }
+    }
+}
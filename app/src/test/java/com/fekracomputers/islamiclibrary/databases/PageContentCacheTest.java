@@ -0,0 +1,77 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PageContentCacheTest {
+
+    private static PageContentCache.Page page(int pageId, int length) {
+        return new PageContentCache.Page(pageId, 1, pageId, new String(new char[length]));
+    }
+
+    @Test
+    public void leastRecentlyUsedPageIsEvicted() throws Exception {
+        //room for three pages of 100 chars
+        PageContentCache cache = new PageContentCache(3 * (64 + 200));
+        cache.put(page(1, 100));
+        cache.put(page(2, 100));
+        cache.put(page(3, 100));
+        assertNotNull(cache.get(1));
+        cache.put(page(4, 100));
+
+        assertTrue(cache.contains(1));
+        assertFalse(cache.contains(2));
+        assertTrue(cache.contains(3));
+        assertTrue(cache.contains(4));
+        assertTrue(cache.getSizeBytes() <= 3 * (64 + 200));
+    }
+
+    @Test
+    public void peekDoesNotChangeTheOrder() throws Exception {
+        PageContentCache cache = new PageContentCache(2 * (64 + 200));
+        cache.put(page(1, 100));
+        cache.put(page(2, 100));
+        assertNotNull(cache.peek(1));
+        cache.put(page(3, 100));
+
+        assertFalse(cache.contains(1));
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    public void pageLargerThanTheCacheIsNotKept() throws Exception {
+        PageContentCache cache = new PageContentCache(1000);
+        cache.put(page(1, 100));
+        cache.put(page(2, 1000));
+        assertTrue(cache.contains(1));
+        assertFalse(cache.contains(2));
+    }
+
+    @Test
+    public void hitRate() throws Exception {
+        PageContentCache cache = new PageContentCache(PageContentCache.DEFAULT_MAX_BYTES);
+        assertEquals(0, cache.getHitRate(), 0);
+        cache.putPrefetched(page(1, 10));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2f / 3, cache.getHitRate(), 1e-6);
+    }
+
+    @Test
+    public void replacingAPageKeepsTheSizeRight() throws Exception {
+        PageContentCache cache = new PageContentCache(PageContentCache.DEFAULT_MAX_BYTES);
+        cache.put(page(1, 100));
+        cache.put(page(1, 50));
+        assertEquals(64 + 100, cache.getSizeBytes());
+        cache.clear();
+        assertEquals(0, cache.getSizeBytes());
+    }
+}
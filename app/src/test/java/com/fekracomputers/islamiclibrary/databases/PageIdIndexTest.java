@@ -0,0 +1,40 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PageIdIndexTest {
+    //page ids of a book with gaps
+    private final PageIdIndex mIndex = new PageIdIndex(new int[]{3, 4, 7, 8, 20});
+
+    @Test
+    public void bothDirectionsAgree() throws Exception {
+        assertEquals(5, mIndex.getPageCount());
+        for (int position = 0; position < mIndex.getPageCount(); position++) {
+            assertEquals(position, mIndex.pageId2position(mIndex.position2PageId(position)));
+        }
+    }
+
+    @Test
+    public void missingPageIdGetsThePreviousPage() throws Exception {
+        assertEquals(1, mIndex.pageId2position(5));
+        assertEquals(3, mIndex.pageId2position(19));
+        assertEquals(4, mIndex.pageId2position(100));
+        try {
+            mIndex.pageId2position(2);
+            fail();
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+    }
+
+    @Test
+    public void positionOutOfRange() throws Exception {
+        try {
+            mIndex.position2PageId(5);
+            fail();
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+    }
+}
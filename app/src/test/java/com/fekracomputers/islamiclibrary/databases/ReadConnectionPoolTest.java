@@ -0,0 +1,170 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReadConnectionPoolTest {
+    private static class Connection {
+        volatile boolean closed;
+    }
+
+    private final AtomicInteger mOpened = new AtomicInteger();
+    private final AtomicInteger mClosed = new AtomicInteger();
+    private volatile boolean mFailOpen;
+
+    private final ReadConnectionPool.Opener<Connection> mOpener = new ReadConnectionPool.Opener<Connection>() {
+        @Override
+        public Connection open() {
+            if (mFailOpen) throw new RuntimeException("can't open");
+            mOpened.incrementAndGet();
+            return new Connection();
+        }
+
+        @Override
+        public void close(Connection connection) {
+            assertFalse(connection.closed);
+            connection.closed = true;
+            mClosed.incrementAndGet();
+        }
+    };
+
+    @Test
+    public void connectionsAreOpenedOnlyWhenAllAreInUse() {
+        ReadConnectionPool<Connection> pool = new ReadConnectionPool<>(mOpener, 3);
+        Connection first = pool.acquire();
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        Connection second = pool.acquire();
+        assertNotSame(first, second);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(2, mOpened.get());
+        assertEquals(2, pool.getOpenCount());
+        assertEquals(2, pool.getPeakInUseCount());
+    }
+
+    @Test
+    public void acquireWaitsForAReleaseOverTheMaximum() throws Exception {
+        ReadConnectionPool<Connection> pool = new ReadConnectionPool<>(mOpener, 1);
+        Connection held = pool.acquire();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Connection> waiting = executor.submit(pool::acquire);
+            Thread.sleep(50);
+            assertFalse(waiting.isDone());
+            pool.release(held);
+            assertSame(held, waiting.get(1, TimeUnit.SECONDS));
+            assertEquals(1, mOpened.get());
+            assertEquals(1, pool.getWaitCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closeClosesIdleConnectionsNowAndHeldOnesOnRelease() {
+        ReadConnectionPool<Connection> pool = new ReadConnectionPool<>(mOpener, 2);
+        Connection idle = pool.acquire();
+        Connection held = pool.acquire();
+        pool.release(idle);
+        pool.close();
+        assertTrue(idle.closed);
+        assertFalse(held.closed);
+        pool.release(held);
+        assertTrue(held.closed);
+        assertEquals(0, pool.getOpenCount());
+        try {
+            pool.acquire();
+            fail("acquired from a closed pool");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void closeWakesUpWaitingThreads() throws Exception {
+        ReadConnectionPool<Connection> pool = new ReadConnectionPool<>(mOpener, 1);
+        Connection held = pool.acquire();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Connection> waiting = executor.submit(pool::acquire);
+            Thread.sleep(50);
+            pool.close();
+            try {
+                waiting.get(1, TimeUnit.SECONDS);
+                fail("acquired from a closed pool");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            pool.release(held);
+            assertEquals(1, mClosed.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedOpenFreesItsSlot() {
+        ReadConnectionPool<Connection> pool = new ReadConnectionPool<>(mOpener, 1);
+        mFailOpen = true;
+        try {
+            pool.acquire();
+            fail("opened");
+        } catch (RuntimeException expected) {
+        }
+        mFailOpen = false;
+        pool.release(pool.acquire());
+        assertEquals(1, pool.getOpenCount());
+    }
+
+    @Test
+    public void neverMoreConnectionsInUseThanTheMaximum() throws Exception {
+        int maxConnections = 3;
+        ReadConnectionPool<Connection> pool = new ReadConnectionPool<>(mOpener, maxConnections);
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 200; i++) {
+                    Connection connection = pool.acquire();
+                    try {
+                        assertFalse(connection.closed);
+                        int now = inUse.incrementAndGet();
+                        maxInUse.accumulateAndGet(now, Math::max);
+                        Thread.yield();
+                        inUse.decrementAndGet();
+                    } finally {
+                        pool.release(connection);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) future.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertTrue(maxInUse.get() <= maxConnections);
+        assertTrue(mOpened.get() <= maxConnections);
+        pool.close();
+        assertEquals(mOpened.get(), mClosed.get());
+    }
+}
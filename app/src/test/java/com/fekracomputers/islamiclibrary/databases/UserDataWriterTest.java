@@ -0,0 +1,150 @@
+package com.fekracomputers.islamiclibrary.databases;
+
+import com.fekracomputers.islamiclibrary.model.PageInfo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UserDataWriterTest {
+    private static final int BOOK_ID = 7;
+    /**
+     * long enough that nothing is written before the test flushes
+     */
+    private static final long NEVER_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static class RecordingSink implements UserDataWriter.HighlightsSink {
+        final List<List<UserDataWriter.PendingHighlights>> batches = new ArrayList<>();
+        final Map<Integer, String> written = new HashMap<>();
+
+        @Override
+        public synchronized void writeSerializedHighlights(List<UserDataWriter.PendingHighlights> batch) {
+            batches.add(batch);
+            for (UserDataWriter.PendingHighlights pendingHighlights : batch) {
+                written.put(pendingHighlights.pageInfo.pageId, pendingHighlights.serializedHighlights);
+            }
+        }
+    }
+
+    private static String highlights(int pageId, int version) {
+        return "type:textContent|0$" + version + "$" + pageId + "$highlight1$";
+    }
+
+    @Test
+    public void burstIsCoalescedIntoOneTransaction() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        UserDataWriter writer = new UserDataWriter(sink, NEVER_MILLIS);
+        int pages = 4;
+        int updatesPerPage = 50;
+        for (int version = 0; version < updatesPerPage; version++) {
+            for (int pageId = 1; pageId <= pages; pageId++) {
+                writer.setSerializedHighlights(BOOK_ID, new PageInfo(pageId, 1, pageId), highlights(pageId, version));
+            }
+        }
+        assertTrue(writer.flushAndWait(10, TimeUnit.SECONDS));
+
+        assertEquals(1, sink.batches.size());
+        assertEquals(pages, sink.batches.get(0).size());
+        assertEquals(pages, writer.getWrittenCount());
+        for (int pageId = 1; pageId <= pages; pageId++) {
+            assertEquals(highlights(pageId, updatesPerPage - 1), sink.written.get(pageId));
+        }
+    }
+
+    @Test
+    public void pendingHighlightsAreReadBackUntilWritten() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        UserDataWriter writer = new UserDataWriter(sink, NEVER_MILLIS);
+        writer.setSerializedHighlights(BOOK_ID, new PageInfo(3, 1, 3), highlights(3, 0));
+        writer.setSerializedHighlights(BOOK_ID, new PageInfo(3, 1, 3), highlights(3, 1));
+        assertEquals(highlights(3, 1), writer.getPendingSerializedHighlights(BOOK_ID, 3));
+        assertNull(writer.getPendingSerializedHighlights(BOOK_ID + 1, 3));
+
+        assertTrue(writer.flushAndWait(10, TimeUnit.SECONDS));
+        assertNull(writer.getPendingSerializedHighlights(BOOK_ID, 3));
+        assertEquals(highlights(3, 1), sink.written.get(3));
+    }
+
+    @Test
+    public void highlightsAreReadBackWhileTheyAreWritten() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink() {
+            @Override
+            public void writeSerializedHighlights(List<UserDataWriter.PendingHighlights> batch) {
+                writing.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.writeSerializedHighlights(batch);
+            }
+        };
+        UserDataWriter writer = new UserDataWriter(sink, NEVER_MILLIS);
+        writer.setSerializedHighlights(BOOK_ID, new PageInfo(3, 1, 3), highlights(3, 0));
+        writer.setSerializedHighlights(BOOK_ID, new PageInfo(4, 1, 4), highlights(4, 0));
+        writer.flush();
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        assertEquals(highlights(3, 0), writer.getPendingSerializedHighlights(BOOK_ID, 3));
+        writer.setSerializedHighlights(BOOK_ID, new PageInfo(4, 1, 4), highlights(4, 1));
+        commit.countDown();
+
+        assertTrue(writer.flushAndWait(10, TimeUnit.SECONDS));
+        assertNull(writer.getPendingSerializedHighlights(BOOK_ID, 3));
+        assertNull(writer.getPendingSerializedHighlights(BOOK_ID, 4));
+        assertEquals(highlights(4, 1), sink.written.get(4));
+        assertEquals(2, sink.batches.size());
+        assertEquals(1, sink.batches.get(1).size());
+    }
+
+    @Test
+    public void highlightsStayPendingWhenTheWriteFails() throws Exception {
+        RecordingSink sink = new RecordingSink() {
+            boolean failed;
+
+            @Override
+            public synchronized void writeSerializedHighlights(List<UserDataWriter.PendingHighlights> batch) {
+                if (!failed) {
+                    failed = true;
+                    throw new RuntimeException("disk full");
+                }
+                super.writeSerializedHighlights(batch);
+            }
+        };
+        UserDataWriter writer = new UserDataWriter(sink, NEVER_MILLIS);
+        writer.setSerializedHighlights(BOOK_ID, new PageInfo(3, 1, 3), highlights(3, 0));
+        assertTrue(writer.flushAndWait(10, TimeUnit.SECONDS));
+        assertEquals(highlights(3, 0), writer.getPendingSerializedHighlights(BOOK_ID, 3));
+        assertEquals(0, writer.getWrittenCount());
+
+        assertTrue(writer.flushAndWait(10, TimeUnit.SECONDS));
+        assertNull(writer.getPendingSerializedHighlights(BOOK_ID, 3));
+        assertEquals(highlights(3, 0), sink.written.get(3));
+    }
+
+    @Test
+    public void writtenAfterTheDelayWithoutFlush() throws Exception {
+        CountDownLatch delayedWrite = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink() {
+            @Override
+            public synchronized void writeSerializedHighlights(List<UserDataWriter.PendingHighlights> batch) {
+                super.writeSerializedHighlights(batch);
+                delayedWrite.countDown();
+            }
+        };
+        UserDataWriter writer = new UserDataWriter(sink, 10);
+        writer.setSerializedHighlights(BOOK_ID, new PageInfo(5, 1, 5), highlights(5, 0));
+        assertTrue(delayedWrite.await(10, TimeUnit.SECONDS));
+        assertEquals(highlights(5, 0), sink.written.get(5));
+    }
+}
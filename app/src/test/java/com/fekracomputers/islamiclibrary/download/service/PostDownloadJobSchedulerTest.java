@@ -0,0 +1,136 @@
+package com.fekracomputers.islamiclibrary.download.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PostDownloadJobSchedulerTest {
+
+    private static Runnable await(CountDownLatch latch) {
+        return () -> {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        };
+    }
+
+    @Test
+    public void duplicateJobIsIgnoredWhileWaitingOrRunning() throws Exception {
+        PostDownloadJobScheduler scheduler = new PostDownloadJobScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+
+        assertTrue(scheduler.submit("index", 1, await(release), finished::countDown));
+        assertTrue(scheduler.submit("index", 2, () -> {
+        }, finished::countDown));
+        //1 is running and 2 is waiting
+        assertFalse(scheduler.submit("index", 1, () -> {
+        }, null));
+        assertFalse(scheduler.submit("index", 2, () -> {
+        }, null));
+        //another type of job of the same book is not a duplicate
+        assertTrue(scheduler.submit("unzip", 2, () -> {
+        }, null));
+        assertTrue(scheduler.isScheduled("index", 1));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertFalse(scheduler.isScheduled("index", 1));
+        assertTrue(scheduler.submit("index", 1, () -> {
+        }, null));
+    }
+
+    @Test
+    public void prioritizedBookRunsFirst() throws Exception {
+        PostDownloadJobScheduler scheduler = new PostDownloadJobScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(5);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        scheduler.submit("index", 0, await(release), finished::countDown);
+        for (int bookId = 1; bookId <= 3; bookId++) {
+            int id = bookId;
+            scheduler.submit("index", bookId, () -> order.add(id), finished::countDown);
+        }
+        scheduler.prioritize(3);
+        //jobs submitted after prioritizing the book go before the normal ones too
+        scheduler.submit("unzip", 3, () -> order.add(30), finished::countDown);
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(4, order.size());
+        assertEquals(3, (int) order.get(0));
+        assertEquals(30, (int) order.get(1));
+        assertEquals(1, (int) order.get(2));
+        assertEquals(2, (int) order.get(3));
+    }
+
+    @Test
+    public void clearedBookIsNoLongerPrioritized() throws Exception {
+        PostDownloadJobScheduler scheduler = new PostDownloadJobScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        scheduler.prioritize(2);
+        scheduler.clearPriority(2);
+        assertEquals(0, scheduler.getPrioritizedBookCount());
+        scheduler.submit("index", 0, await(release), finished::countDown);
+        scheduler.submit("index", 1, () -> order.add(1), finished::countDown);
+        scheduler.submit("index", 2, () -> order.add(2), finished::countDown);
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1, (int) order.get(0));
+        assertEquals(2, (int) order.get(1));
+    }
+
+    @Test
+    public void concurrencyIsBounded() throws Exception {
+        int jobs = 20;
+        PostDownloadJobScheduler scheduler = new PostDownloadJobScheduler(3);
+        CountDownLatch finished = new CountDownLatch(jobs);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int bookId = 0; bookId < jobs; bookId++) {
+            scheduler.submit("index", bookId, () -> {
+                int now = running.incrementAndGet();
+                maxRunning.set(Math.max(maxRunning.get(), now));
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ignored) {
+                }
+                running.decrementAndGet();
+            }, finished::countDown);
+        }
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(3, scheduler.getConcurrency());
+        assertTrue("max running " + maxRunning.get(), maxRunning.get() <= 3);
+        assertTrue(maxRunning.get() > 1);
+    }
+
+    @Test
+    public void failedJobIsFinished() throws Exception {
+        PostDownloadJobScheduler scheduler = new PostDownloadJobScheduler(1);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        scheduler.submit("index", 1, () -> {
+            throw new IllegalStateException("corrupt book");
+        }, finished::countDown);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertFalse(scheduler.isScheduled("index", 1));
+    }
+}
@@ -0,0 +1,53 @@
+package com.fekracomputers.islamiclibrary.reading;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PageHtmlTemplateTest {
+    private static final int BACKGROUND = 0xFFFFFFFF;
+    private static final int TEXT = 0xFF000000;
+    private static final int HEADING = 0xFF8B0000;
+
+    @Test
+    public void reusedWhileConfigurationIsTheSame() throws Exception {
+        PageHtmlTemplate template = PageHtmlTemplate.getInstance("book", false, BACKGROUND, TEXT, HEADING);
+        assertSame(template, PageHtmlTemplate.getInstance("book", false, BACKGROUND, TEXT, HEADING));
+        assertNotSame(template, PageHtmlTemplate.getInstance("book", true, BACKGROUND, TEXT, HEADING));
+        assertNotSame(template, PageHtmlTemplate.getInstance("book", false, BACKGROUND, TEXT, 0xFF00008B));
+        assertNotSame(template, PageHtmlTemplate.getInstance("other book", false, BACKGROUND, TEXT, HEADING));
+    }
+
+    @Test
+    public void pageIsSplicedIn() throws Exception {
+        String html = PageHtmlTemplate.getInstance("book", false, BACKGROUND, TEXT, HEADING)
+                .build(7, 42, "<p>content</p>");
+        assertTrue(html.startsWith("<!doctype html>"));
+        assertTrue(html.endsWith("</html>"));
+        assertTrue(html.contains("<body data-page-id=\"42\" data-book-id=\"7\">"));
+        assertTrue(html.contains("<p>content</p></body>"));
+        assertTrue(html.contains("background-color: #FFFFFF;"));
+        assertTrue(html.contains("color: #8B0000"));
+        assertEquals(-1, html.indexOf("ReadingNight.css"));
+    }
+
+    @Test
+    public void nightModeStyle() throws Exception {
+        String html = PageHtmlTemplate.getInstance("book", true, 0xFF000000, 0xFFEEEEEE, HEADING)
+                .build(7, 42, "");
+        assertTrue(html.contains("styles/ReadingNight.css"));
+        assertTrue(html.contains("color: #EEEEEE;"));
+    }
+
+    @Test
+    public void continuousShellHasNoPage() throws Exception {
+        String html = PageHtmlTemplate.getInstance("book", false, BACKGROUND, TEXT, HEADING)
+                .buildContinuousShell(7);
+        assertTrue(html.contains("<body data-page-id=\"-1\" data-book-id=\"7\"></body>"));
+        assertTrue(html.contains("scripts/continuous.js"));
+        assertEquals(-1, html.indexOf("scripts/highlight.js"));
+    }
+}
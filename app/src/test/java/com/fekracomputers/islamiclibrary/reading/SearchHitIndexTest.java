@@ -0,0 +1,60 @@
+package com.fekracomputers.islamiclibrary.reading;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchHitIndexTest {
+    //matches in the pages at positions 2, 5 and 9
+    private final SearchHitIndex mIndex = new SearchHitIndex(new int[]{12, 20, 31}, new int[]{2, 5, 9});
+
+    @Test
+    public void matchesBeforePosition() throws Exception {
+        assertEquals(0, mIndex.countBefore(0));
+        assertEquals(0, mIndex.countBefore(2));
+        assertEquals(1, mIndex.countBefore(3));
+        assertEquals(2, mIndex.countBefore(9));
+        assertEquals(3, mIndex.countBefore(10));
+        assertTrue(mIndex.isMatch(5));
+        assertFalse(mIndex.isMatch(6));
+        assertEquals(1, mIndex.indexOfPageId(20));
+        assertTrue(mIndex.indexOfPageId(21) < 0);
+    }
+
+    @Test
+    public void nextAndPreviousMatch() throws Exception {
+        assertEquals(0, mIndex.nextMatch(0));
+        assertEquals(1, mIndex.nextMatch(2));
+        assertEquals(2, mIndex.nextMatch(6));
+        assertEquals(-1, mIndex.nextMatch(9));
+        assertEquals(-1, mIndex.previousMatch(2));
+        assertEquals(0, mIndex.previousMatch(5));
+        assertEquals(1, mIndex.previousMatch(6));
+        assertEquals(2, mIndex.previousMatch(100));
+    }
+
+    @Test
+    public void navigationStatus() throws Exception {
+        SearchNavigationStatus status = mIndex.getNavigationStatus(9);
+        assertTrue(status.hasPrevious);
+        assertFalse(status.hasNext);
+        assertEquals(2, status.numMatchesBeforeSpread);
+        assertEquals(3, status.numMatches);
+        assertTrue(status.currentSpreadContainsMatch);
+
+        status = mIndex.getNavigationStatus(1);
+        assertFalse(status.hasPrevious);
+        assertTrue(status.hasNext);
+        assertFalse(status.currentSpreadContainsMatch);
+    }
+
+    @Test
+    public void emptyIndex() throws Exception {
+        SearchHitIndex index = new SearchHitIndex(new int[0], new int[0]);
+        assertTrue(index.isEmpty());
+        assertEquals(-1, index.nextMatch(0));
+        assertEquals(-1, index.previousMatch(0));
+    }
+}
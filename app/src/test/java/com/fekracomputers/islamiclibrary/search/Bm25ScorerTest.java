@@ -0,0 +1,56 @@
+package com.fekracomputers.islamiclibrary.search;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Bm25ScorerTest {
+
+    /**
+     * one phrase, one column, 100 rows averaging 50 tokens, 10 of them containing the phrase
+     */
+    private static int[] matchinfo(int rowLength, int hitsInRow) {
+        return new int[]{1, 1, 100, 50, rowLength, hitsInRow, 30, 10};
+    }
+
+    @Test
+    public void score_moreHitsRankHigher() throws Exception {
+        assertTrue(Bm25Scorer.score(matchinfo(50, 3)) > Bm25Scorer.score(matchinfo(50, 1)));
+    }
+
+    @Test
+    public void score_shorterPagesRankHigher() throws Exception {
+        assertTrue(Bm25Scorer.score(matchinfo(20, 1)) > Bm25Scorer.score(matchinfo(200, 1)));
+    }
+
+    @Test
+    public void score_noHitsIsZero() throws Exception {
+        assertEquals(0, Bm25Scorer.score(matchinfo(50, 0)), 0);
+    }
+
+    @Test
+    public void toIntArray_nativeOrder() throws Exception {
+        int[] expected = matchinfo(50, 2);
+        ByteBuffer byteBuffer = ByteBuffer.allocate(expected.length * 4).order(ByteOrder.nativeOrder());
+        byteBuffer.asIntBuffer().put(expected);
+        assertArrayEquals(expected, Bm25Scorer.toIntArray(byteBuffer.array()));
+    }
+
+    @Test
+    public void topK_keepsBestInRankOrder() throws Exception {
+        Bm25Scorer.TopK topK = new Bm25Scorer.TopK(2);
+        topK.offer(1, 0.5);
+        topK.offer(2, 3.0);
+        topK.offer(3, 1.0);
+        topK.offer(4, 0.1);
+        Bm25Scorer.ScoredPage[] scoredPages = topK.drainInRankOrder();
+        assertEquals(2, scoredPages.length);
+        assertEquals(2, scoredPages[0].pageId);
+        assertEquals(3, scoredPages[1].pageId);
+    }
+}
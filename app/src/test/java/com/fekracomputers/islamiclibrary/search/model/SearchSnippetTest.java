@@ -0,0 +1,25 @@
+package com.fekracomputers.islamiclibrary.search.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SearchSnippetTest {
+    @Test
+    public void fromFts_stripsMarkersAndKeepsRanges() throws Exception {
+        SearchSnippet snippet = SearchSnippet.fromFts("...قال \u0002الله\u0003 تعالى \u0002الرحمن\u0003...",
+                "0 0 10 8 0 1 30 12");
+        assertEquals("...قال الله تعالى الرحمن...", snippet.text);
+        assertArrayEquals(new int[]{7, 11, 18, 24}, snippet.highlightRanges);
+        assertEquals(2, snippet.matchCount);
+    }
+
+    @Test
+    public void fromFts_noMatchInSnippet() throws Exception {
+        SearchSnippet snippet = SearchSnippet.fromFts("بسم الله", null);
+        assertEquals("بسم الله", snippet.text);
+        assertEquals(0, snippet.highlightRanges.length);
+        assertEquals(0, snippet.matchCount);
+    }
+}
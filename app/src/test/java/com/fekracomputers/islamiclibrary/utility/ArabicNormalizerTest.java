@@ -0,0 +1,53 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ArabicNormalizerTest {
+    private final ArabicNormalizer normalizer = new ArabicNormalizer(16);
+
+    private void assertSameAsRegex(String s) {
+        assertEquals(s, ArabicUtilities.cleanTextForSearchingQueryWithRegex(s), normalizer.normalizeToString(s));
+    }
+
+    @Test
+    public void everyCharacterGivesTheSameResultAsRegex() throws Exception {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            assertSameAsRegex("ب" + (char) c + "س " + (char) c);
+        }
+    }
+
+    @Test
+    public void tatweel() throws Exception {
+        assertEquals("بسم", normalizer.normalizeToString("بـــــــــــــــــــسم"));
+        assertEquals("هـ", normalizer.normalizeToString("هـ"));
+        assertEquals("هـ", normalizer.normalizeToString("هـــ"));
+        assertEquals("بسـم", normalizer.normalizeToString("بـسـم"));
+        assertEquals("ـبس هـ", normalizer.normalizeToString("ـبـس  هــ"));
+        assertSameAsRegex("بـسـم هـــ ـــ ـبـ 1ـ2 بَـــِسم");
+    }
+
+    @Test
+    public void randomStringsGiveTheSameResultAsRegex() throws Exception {
+        char[] alphabet = {'ب', 'س', 'ـ', 'ـ', ' ', ' ', '\n', '،', 'َ', '1', '(', '"', 'أ', 'ى', 'ة', 'a', '-', 'ʰ', '\uD840', '\uDC00', '\uD83D', '\uDE00', '.'};
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            assertSameAsRegex(sb.toString());
+        }
+    }
+
+    @Test
+    public void bufferIsReused() throws Exception {
+        assertEquals("الصلاه", normalizer.normalizeToString("الصلاة"));
+        assertEquals("ا", normalizer.normalizeToString("أ"));
+        assertEquals(1, normalizer.length());
+    }
+}
@@ -0,0 +1,39 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FootnoteRendererTest {
+
+    @Test
+    public void pageWithoutFootnotes() throws Exception {
+        String page = "<p>نص <a href=\"#x\">رابط</a></p>";
+        assertSame(page, FootnoteRenderer.render(7, 42, page));
+    }
+
+    @Test
+    public void footnotesAreNumberedAndMovedToTheEnd() throws Exception {
+        String page = "نص<a class=\"comment\" title=\"الحاشية الأولى\" href=\"#\">*</a> ثم" +
+                "<A id=old class='x comment' TITLE='الثانية'>**</A>.";
+        assertEquals("نص<a class=\"comment\" title=\"الحاشية الأولى\"" +
+                        " id=\"text_reference_7_42_1\" href=\"#footnote_7_42_1\">(1)</a> ثم" +
+                        "<A class='x comment' TITLE='الثانية'" +
+                        " id=\"text_reference_7_42_2\" href=\"#footnote_7_42_2\">(2)</a>." +
+                        "<hr>" +
+                        "<a id=footnote_7_42_1 href=#text_reference_7_42_1>(1)</a><span>  الحاشية الأولى</span><br>" +
+                        "<a id=footnote_7_42_2 href=#text_reference_7_42_2>(2)</a><span>  الثانية</span><br>",
+                FootnoteRenderer.render(7, 42, page));
+    }
+
+    @Test
+    public void unclosedFootnote() throws Exception {
+        assertEquals("<span class=comment title=\"ح\" id=\"text_reference_1_2_1\" href=\"#footnote_1_2_1\">(1)</span>بقية" +
+                        "<hr><a id=footnote_1_2_1 href=#text_reference_1_2_1>(1)</a><span>  ح</span><br>",
+                FootnoteRenderer.render(1, 2, "<span class=comment title=\"ح\"/>بقية"));
+        //only whole class names match
+        String page = "<span class=\"comments\">نص</span>";
+        assertSame(page, FootnoteRenderer.render(1, 2, page));
+    }
+}
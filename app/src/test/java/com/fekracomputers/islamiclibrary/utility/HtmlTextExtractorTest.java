@@ -0,0 +1,78 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HtmlTextExtractorTest {
+    private final HtmlTextExtractor extractor = new HtmlTextExtractor();
+
+    private void assertSameAsJsoup(String html) {
+        assertEquals(html, ArabicUtilities.cleanHtmlWithJsoup(html), ArabicUtilities.cleanHtml(html));
+    }
+
+    @Test
+    public void goldenPages() throws Exception {
+        String page = new ArabicUtilitiesTest().testCase;
+        assertTrue(extractor.extract(page));
+        assertEquals(ArabicUtilities.cleanHtmlWithJsoup(page), extractor.toString());
+        String plainText = ArabicUtilities.cleanHtmlWithJsoup(page);
+        assertTrue(extractor.extract(plainText));
+        assertEquals(ArabicUtilities.cleanHtmlWithJsoup(plainText), extractor.toString());
+        assertEquals(ArabicUtilities.cleanTextForSearchingQuery(ArabicUtilities.cleanHtmlWithJsoup(page)),
+                ArabicUtilities.cleanTextForSearchingIndexing(page));
+    }
+
+    @Test
+    public void footnotes() throws Exception {
+        assertTrue(extractor.extract("قال<a class=\"comment\" title=\"الحاشية &#1575;\">(1)</a> بعد"));
+        assertEquals("قال(1) بعد\nالحاشية ا", extractor.toString());
+        assertTrue(extractor.extract("<A TITLE='x' CLASS='a COMMENT'>1</A><a title=\"&#60;b&#62;y&#60;/b&#62;\" class=comment>2</a>"));
+        assertEquals("12\nx\ny", extractor.toString());
+        assertTrue(extractor.extract("<a class=\"comment\" title=\"a\" title=\"b\">d</a>"));
+        assertEquals("d\nb", extractor.toString());
+        assertTrue(extractor.extract("<a title=\"x\" class=\"other\">1</a><p title=\"y\" class=\"comment\">2</p>"));
+        assertEquals("12", extractor.toString());
+    }
+
+    @Test
+    public void unsupportedMarkupFallsBackToJsoup() throws Exception {
+        assertFalse(extractor.extract("<!-- <a title=\"x\" class=\"comment\">1</a> -->"));
+        assertFalse(extractor.extract("<table><td><a title=\"x\" class=\"comment\">1</a></table>"));
+        assertFalse(extractor.extract("<a title=\"x\" class=\"comment\"><b>1</b></a>"));
+        assertFalse(extractor.extract("<a title=\"x\" class=\"comment\"/>"));
+        assertFalse(extractor.extract("<a title=\"&lt;\" class=\"comment\">1</a>"));
+        assertFalse(extractor.extract("<span title=\"a>b\">"));
+        assertFalse(extractor.extract("unclosed <b"));
+        assertSameAsJsoup("<!-- <a title=\"x\" class=\"comment\">1</a> -->");
+        assertSameAsJsoup("<a title=\"&lt;\" class=\"comment\">1</a>");
+        assertSameAsJsoup("unclosed <b");
+    }
+
+    @Test
+    public void randomFragmentsGiveTheSameResultAsJsoup() throws Exception {
+        String[] fragments = {
+                "<a class=\"comment\" title=\"fn &#1575; x\">*</a>", "<a title='t<b>x</b>' class='x COMMENT'>1</a>",
+                "<a title=t class=comment>", "</a>", "<p>", "</p>", "<br/>", "<b>", "</b>", "<span data-x=\"a>b\">",
+                "<!-- c -->", "<table>", "<td>", "<div>", "</div>", "text ", "بسم الله ", "&amp;", "&#65;", " < ", ">",
+                "<", "<a>", "<a title=\"x\" class=\"comment\"/>", "<i>", "</i>", "<h1>", "</h1>",
+                "<a title=\"&lt;\" class=comment>x</a>", "<a href=\"#\" title=\"\" class=\"comment\">z</a>", "\n",
+                "<A TITLE=\"up\" CLASS=\"Comment\">q</A>", "<a title=\"r\r\" class=comment>r</a>", "<form>",
+                "<p title=\"x\" class=\"comment\">", "<a class=\"comment\" title=\"a\" title=\"b\">d</a>",
+                "<a\ttitle=\"tab\"\nclass=\"comment\">t</a>", "< a>", "</ b>", "<?x?>",
+                "<a title=\"&#x41;&#1;\" class=comment>e</a>", "<font>", "<nobr>", "</p >"};
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                sb.append(fragments[random.nextInt(fragments.length)]);
+            }
+            assertSameAsJsoup(sb.toString());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.fekracomputers.islamiclibrary.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyStatsTest {
+    private static final long MILLI = 1000000;
+
+    @Test
+    public void emptyStats() throws Exception {
+        LatencyStats stats = new LatencyStats("empty");
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getMeanMillis(), 0);
+        assertEquals(0, stats.getPercentileMillis(95), 0);
+    }
+
+    @Test
+    public void percentiles() throws Exception {
+        LatencyStats stats = new LatencyStats("test");
+        for (int i = 100; i >= 1; i--) {
+            stats.record(i * MILLI);
+        }
+        assertEquals(100, stats.getCount());
+        assertEquals(50.5, stats.getMeanMillis(), 1e-9);
+        assertEquals(50, stats.getPercentileMillis(50), 1e-9);
+        assertEquals(95, stats.getPercentileMillis(95), 1e-9);
+        assertEquals(1, stats.getPercentileMillis(0), 1e-9);
+        assertEquals(100, stats.getMaxMillis(), 1e-9);
+    }
+
+    @Test
+    public void percentilesOfTheLastSamples() throws Exception {
+        LatencyStats stats = new LatencyStats("test");
+        stats.record(1000 * MILLI);
+        for (int i = 0; i < LatencyStats.MAX_SAMPLES; i++) {
+            stats.record(MILLI);
+        }
+        assertEquals(1, stats.getPercentileMillis(100), 1e-9);
+        assertEquals(1000, stats.getMaxMillis(), 1e-9);
+        assertEquals(LatencyStats.MAX_SAMPLES + 1, stats.getCount());
+    }
+}